@@ -0,0 +1,56 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler attached, so every result reports the allocation rate alongside the
+ * throughput.
+ * <br><br>
+ * Accepts the same arguments as the standard JMH launcher, e.g. {@code java -jar target/benchmarks.jar TranslationBenchmark
+ * -f 1}, and adds the GC profiler to any profilers requested.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class BenchmarkRunner {
+    // Disable the constructor
+    private BenchmarkRunner() {}
+
+    /**
+     * Runs the benchmarks selected by the command line arguments, or all of them if none are selected.
+     *
+     * @param args the standard JMH command line arguments
+     * @throws RunnerException            if a benchmark fails
+     * @throws CommandLineOptionException if the arguments are invalid
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    } // End main method
+} // End BenchmarkRunner class
@@ -0,0 +1,120 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link ChannelAllocator} implementations on their own, without the rest of the translation path.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ChannelAllocatorBenchmark {
+    private static final int CHORD_SIZE = 10; // The number of notes in a chord burst
+
+    /**
+     * The allocator implementation being measured.
+     */
+    @Param({"FirstAvailable", "RoundRobin", "LeastRecentlyReleased"})
+    public String policy;
+
+    private ChannelAllocator allocator; // The allocator being measured, with no channels in use
+    private ChannelAllocator saturated; // An allocator of the same policy with every channel in use
+    private final int[] chord = new int[CHORD_SIZE]; // The channels allocated to the current chord
+
+    /**
+     * Creates the allocators, holding a note on every channel of the saturated one.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        allocator = create(policy);
+        saturated = create(policy);
+        for (int i = 0; i < ChannelAllocator.CHANNELS; i++) { saturated.allocate(i); }
+    } // End setUp method
+
+    /**
+     * Allocates and releases a single channel.
+     *
+     * @return the allocated channel
+     */
+    @Benchmark
+    public int allocateRelease() {
+        int channel = allocator.allocate(0);
+        allocator.release(channel);
+        return channel;
+    } // End allocateRelease method
+
+    /**
+     * Allocates {@value #CHORD_SIZE} channels and then releases them in the same order.
+     *
+     * @param blackhole the sink for the allocated channels
+     */
+    @Benchmark
+    public void chordBurst(Blackhole blackhole) {
+        for (int i = 0; i < CHORD_SIZE; i++) { chord[i] = allocator.allocate(0); }
+        for (int i = 0; i < CHORD_SIZE; i++) {
+            allocator.release(chord[i]);
+            blackhole.consume(chord[i]);
+        } // End for(i < CHORD_SIZE)
+    } // End chordBurst method
+
+    /**
+     * Allocates and releases a channel while every channel is already in use.
+     *
+     * @return the allocated channel
+     */
+    @Benchmark
+    public int allChannelsBusy() {
+        int channel = saturated.allocate(0);
+        saturated.release(channel);
+        return channel;
+    } // End allChannelsBusy method
+
+    // Creates an allocator from the name of its policy
+    private static ChannelAllocator create(String policy) {
+        switch (policy) {
+            case "RoundRobin":
+                return new RoundRobinChannelAllocator();
+            case "LeastRecentlyReleased":
+                return new LeastRecentlyReleasedChannelAllocator();
+            default:
+                return new FirstAvailableChannelAllocator();
+        } // End switch(policy)
+    } // End create method
+} // End ChannelAllocatorBenchmark class
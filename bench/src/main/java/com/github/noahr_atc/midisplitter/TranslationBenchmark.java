@@ -0,0 +1,209 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the translation hot path of {@link MidiProcessor#send(MidiMessage, long)} against a receiver that discards
+ * every message, so only the processor itself is measured.
+ * <br><br>
+ * The processor translates messages in place, so each benchmark reloads its messages before sending them. Reloading a
+ * {@link ShortMessage} of the same length doesn't allocate, so the allocation rate reported by the GC profiler is the
+ * processor's own.
+ * <br><br>
+ * {@link #noteOnOff()} and {@link #noteOnOffDecoded()} send the same messages, but the latter sends them as a trivial
+ * {@code ShortMessage} subclass, such as the JDK's {@code FastShortMessage} from hardware transmitters, whose channel the
+ * processor can't rewrite through its backing bytes. The difference between them is the cost of rewriting a moved note's
+ * channel through {@code setMessage}. The forked JVMs open {@code javax.sound.midi} so that the backing bytes are
+ * accessible on Java 9 and later; Java 8 ignores the option.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.desktop/javax.sound.midi=ALL-UNNAMED"})
+@State(Scope.Thread)
+public class TranslationBenchmark {
+    private static final int CHORD_SIZE = 10;     // The number of notes in a chord burst
+    private static final int SOURCE_CHANNEL = 0;  // The channel every benchmark message is sent on
+    private static final int OVERFLOW_NOTE = 100; // The note played while every channel is busy
+
+    private MidiProcessor processor; // The processor being measured
+    private ShortMessage message;    // The reusable message reloaded and sent by each benchmark
+    private ShortMessage decoded;    // The reusable message of a ShortMessage subclass, which takes the decoding path
+
+    /**
+     * Creates a processor that forwards to a receiver discarding every message.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        processor = new MidiProcessor(new NullReceiver());
+        message = new ShortMessage();
+        decoded = new DecodedShortMessage();
+    } // End setUp method
+
+    /**
+     * Closes the processor.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() { processor.close(); }
+
+    /**
+     * Sends a single NOTE-ON followed by its NOTE-OFF.
+     *
+     * @throws InvalidMidiDataException never; the messages are always valid
+     */
+    @Benchmark
+    public void noteOnOff() throws InvalidMidiDataException {
+        send(ShortMessage.NOTE_ON, 60, 100);
+        send(ShortMessage.NOTE_OFF, 60, 0);
+    } // End noteOnOff method
+
+    /**
+     * Sends a single NOTE-ON followed by its NOTE-OFF as a {@code ShortMessage} subclass, whose channel is rewritten by
+     * reloading it rather than through its backing bytes.
+     *
+     * @throws InvalidMidiDataException never; the messages are always valid
+     */
+    @Benchmark
+    public void noteOnOffDecoded() throws InvalidMidiDataException {
+        decoded.setMessage(ShortMessage.NOTE_ON, SOURCE_CHANNEL, 60, 100);
+        processor.send(decoded, -1);
+        decoded.setMessage(ShortMessage.NOTE_OFF, SOURCE_CHANNEL, 60, 0);
+        processor.send(decoded, -1);
+    } // End noteOnOffDecoded method
+
+    /**
+     * Sends a burst of {@value #CHORD_SIZE} NOTE-ONs, spreading them across channels, followed by their NOTE-OFFs.
+     *
+     * @throws InvalidMidiDataException never; the messages are always valid
+     */
+    @Benchmark
+    public void chordBurst() throws InvalidMidiDataException {
+        for (int i = 0; i < CHORD_SIZE; i++) { send(ShortMessage.NOTE_ON, 60 + i, 100); }
+        for (int i = 0; i < CHORD_SIZE; i++) { send(ShortMessage.NOTE_OFF, 60 + i, 0); }
+    } // End chordBurst method
+
+    /**
+     * Sends a NOTE-ON and NOTE-OFF while every channel is busy, which takes the least used channel path.
+     *
+     * @param state the state holding every channel busy
+     * @throws InvalidMidiDataException never; the messages are always valid
+     */
+    @Benchmark
+    public void allChannelsBusy(Overflow state) throws InvalidMidiDataException {
+        state.benchmark.send(ShortMessage.NOTE_ON, OVERFLOW_NOTE, 100);
+        state.benchmark.send(ShortMessage.NOTE_OFF, OVERFLOW_NOTE, 0);
+    } // End allChannelsBusy method
+
+    /**
+     * Sends a four note chord and then a PROGRAM_CHANGE, which discards the chord's translations and resets every channel.
+     *
+     * @throws InvalidMidiDataException never; the messages are always valid
+     */
+    @Benchmark
+    public void programChangeReset() throws InvalidMidiDataException {
+        for (int i = 0; i < 4; i++) { send(ShortMessage.NOTE_ON, 60 + i, 100); }
+        send(ShortMessage.PROGRAM_CHANGE, 0, 0);
+    } // End programChangeReset method
+
+    /**
+     * Queries the first available channel while no notes are held.
+     *
+     * @return the first available channel
+     * @throws MidiProcessor.ExceededMidiChannelsException never; no channels are in use
+     */
+    @Benchmark
+    public int firstAvailableChannel() throws MidiProcessor.ExceededMidiChannelsException {
+        return processor.firstAvailableChannel();
+    } // End firstAvailableChannel method
+
+    /**
+     * Queries the least used channel while every channel is busy.
+     *
+     * @param state the state holding every channel busy
+     * @return the least used channel
+     */
+    @Benchmark
+    public int leastUsedChannel(Overflow state) { return state.benchmark.processor.leastUsedChannel(); }
+
+    // Reloads the reusable message and sends it on the source channel
+    private void send(int command, int data1, int data2) throws InvalidMidiDataException {
+        message.setMessage(command, SOURCE_CHANNEL, data1, data2);
+        processor.send(message, -1);
+    } // End send method
+
+    /**
+     * Holds a note on every channel for the whole trial, so that every NOTE-ON overflows onto an already busy channel.
+     */
+    @State(Scope.Thread)
+    public static class Overflow {
+        TranslationBenchmark benchmark; // The benchmark state whose processor has every channel busy
+
+        /**
+         * Creates a processor and holds a note on each of its channels.
+         *
+         * @throws InvalidMidiDataException never; the messages are always valid
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws InvalidMidiDataException {
+            benchmark = new TranslationBenchmark();
+            benchmark.setUp();
+            for (int i = 0; i < 16; i++) { benchmark.send(ShortMessage.NOTE_ON, i, 100); }
+        } // End setUp method
+
+        /**
+         * Closes the processor.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() { benchmark.tearDown(); }
+    } // End Overflow class
+
+    // A ShortMessage that behaves identically, but whose backing bytes aren't written directly because of its class
+    private static class DecodedShortMessage extends ShortMessage {}
+
+    // A receiver that discards every message
+    private static class NullReceiver implements Receiver {
+        @Override
+        public void send(MidiMessage message, long timeStamp) {}
+
+        @Override
+        public void close() {}
+    } // End NullReceiver class
+} // End TranslationBenchmark class
@@ -0,0 +1,164 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Splits every Standard MIDI File in a directory tree, writing the results to the same relative paths under an output
+ * directory.
+ * <br><br>
+ * Files are split in parallel on a {@link ForkJoinPool} with one worker per available processor, and each file gets its
+ * own {@link MidiProcessor} so that no translation state is shared between files. The directory tree is walked lazily
+ * and only a bounded number of files are queued or being split at once, so memory use doesn't grow with the size of the
+ * tree.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class BatchSplitter {
+    private final Path inputDirectory;                 // The root of the directory tree to split
+    private final Path outputDirectory;                // The root of the directory tree to write the results to
+    private final int parallelism;                     // The number of files split at the same time
+    private final int maxInFlight;                     // The maximum number of files queued or being split at once
+    private final BiConsumer<Path, Exception> onError; // Notified of each file that couldn't be split
+
+    /**
+     * Constructs a {@code BatchSplitter} that splits files on one thread per available processor.
+     *
+     * @param inputDirectory  the root of the directory tree to split
+     * @param outputDirectory the root of the directory tree to write the results to
+     * @param onError         the consumer notified of each file that couldn't be split, along with the reason; called
+     *                        from worker threads
+     */
+    BatchSplitter(Path inputDirectory, Path outputDirectory, BiConsumer<Path, Exception> onError) {
+        this.inputDirectory = inputDirectory.toAbsolutePath().normalize();
+        this.outputDirectory = outputDirectory.toAbsolutePath().normalize();
+        this.onError = onError;
+        parallelism = Runtime.getRuntime().availableProcessors();
+        maxInFlight = parallelism * 2; // Keep every worker busy while the next file is being found
+    } // End BatchSplitter(Path, Path, BiConsumer) constructor
+
+    /**
+     * Splits every file under the input directory with a {@code .mid} or {@code .midi} extension, waiting for all of them
+     * to finish.
+     *
+     * @return the totals of the run
+     * @throws IOException if the input directory can't be walked
+     */
+    Result run() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        LongAdder files = new LongAdder();
+        LongAdder failures = new LongAdder();
+        LongAdder events = new LongAdder();
+        long start = System.nanoTime();
+        boolean interrupted = false;
+
+        try (Stream<Path> tree = Files.walk(inputDirectory)) {
+            // Note: The output directory is skipped in case it's inside the input directory, so results aren't split again
+            Iterator<Path> paths = tree.filter(p -> !p.startsWith(outputDirectory) && isMidiFile(p)).iterator();
+            while (paths.hasNext()) {
+                Path file = paths.next();
+
+                // Wait for a file to finish before queueing another, which caps the number of open files and buffers
+                try { inFlight.acquire(); } catch (InterruptedException e) {
+                    interrupted = true;
+                    break;
+                } // End try {} catch(InterruptedException)
+                pool.execute(() -> {
+                    try {
+                        events.add(split(file));
+                        files.increment();
+                    } catch (Exception e) {
+                        failures.increment();
+                        onError.accept(file, e);
+                    } finally { inFlight.release(); }
+                }); // End pool.execute call
+            } // End while(paths.hasNext)
+        } finally {
+            // Let the queued files finish even if walking the tree failed part way through
+            pool.shutdown();
+            while (!pool.isTerminated()) {
+                try { pool.awaitTermination(1, TimeUnit.MINUTES); } catch (InterruptedException e) { interrupted = true; }
+            } // End while(!pool.isTerminated)
+            if (interrupted) { Thread.currentThread().interrupt(); }
+        } // End try(tree) {} finally
+        return new Result(files.sum(), failures.sum(), events.sum(), System.nanoTime() - start);
+    } // End run method
+
+    // Splits a single file with its own processor, returning the number of events written
+    private long split(Path file) throws Exception {
+        Path output = outputDirectory.resolve(inputDirectory.relativize(file));
+        if (output.getParent() != null) { Files.createDirectories(output.getParent()); }
+        try (MidiFileSplitter splitter = new MidiFileSplitter()) { return splitter.split(file, output); }
+    } // End split method
+
+    // Checks if a path is a regular file with a Standard MIDI File extension
+    private static boolean isMidiFile(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return (name.endsWith(".mid") || name.endsWith(".midi")) && Files.isRegularFile(path);
+    } // End isMidiFile method
+
+    /**
+     * The totals of a batch run.
+     */
+    static class Result {
+        final long files;        // The number of files split successfully
+        final long failures;     // The number of files that couldn't be split
+        final long events;       // The number of events written across all files
+        final long elapsedNanos; // The wall-clock time of the run, in nanoseconds
+
+        Result(long files, long failures, long events, long elapsedNanos) {
+            this.files = files;
+            this.failures = failures;
+            this.events = events;
+            this.elapsedNanos = elapsedNanos;
+        } // End Result(long, long, long, long) constructor
+
+        /**
+         * Calculates the number of files split per second.
+         *
+         * @return the file throughput of the run
+         */
+        double filesPerSecond() { return files / seconds(); }
+
+        /**
+         * Calculates the number of events written per second.
+         *
+         * @return the event throughput of the run
+         */
+        double eventsPerSecond() { return events / seconds(); }
+
+        /**
+         * Retrieves the wall-clock time of the run.
+         *
+         * @return the number of seconds the run took
+         */
+        double seconds() { return Math.max(elapsedNanos, 1) / 1e9; }
+    } // End Result class
+} // End BatchSplitter class
@@ -0,0 +1,290 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Transmitter;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Opens and closes MIDI devices away from the calling thread, giving up on any call that takes longer than a timeout.
+ * <br><br>
+ * A misbehaving driver can block in {@link MidiDevice#open()} or {@link MidiDevice#close()} for seconds, or forever, and
+ * there is no way to interrupt it. Every device call is therefore made on a separate caller thread while the requesting
+ * thread waits for at most the timeout. When a call is abandoned, either because it timed out or because the waiting
+ * thread was interrupted, whatever it eventually returns is closed again, so a device that finally opens after the
+ * splitter gave up on it isn't left open.
+ * <br><br>
+ * Longer sequences of calls, such as starting or stopping the splitter, can be {@linkplain #submit submitted} to run one
+ * at a time on the worker thread, and cancelled by interrupting them. This class must not refer to any AWT or Swing
+ * classes, since it is also used in headless mode.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class DeviceWorker {
+    /**
+     * The default time to wait for a single device call, in milliseconds; equal to {@value #DEFAULT_TIMEOUT_MILLIS}.
+     */
+    static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    private final ExecutorService worker;  // The thread running submitted tasks one at a time
+    private final ExecutorService callers; // The threads making the device calls, which may be left blocked in a driver
+    private volatile long timeoutMillis;   // The time to wait for a single device call
+
+    /**
+     * Constructs a {@code DeviceWorker}. Its threads are daemon threads that are only started once they are needed.
+     *
+     * @param timeoutMillis the time to wait for a single device call, in milliseconds
+     * @throws IllegalArgumentException if {@code timeoutMillis} is less than 1
+     */
+    DeviceWorker(long timeoutMillis) {
+        setTimeout(timeoutMillis);
+        worker = Executors.newSingleThreadExecutor(task -> daemon(task, "MidiSplitter-device-worker"));
+        callers = Executors.newCachedThreadPool(task -> daemon(task, "MidiSplitter-device-call"));
+    } // End DeviceWorker(long) constructor
+
+    /**
+     * Sets the time to wait for a single device call. Calls that are already waiting keep their timeout.
+     *
+     * @param timeoutMillis the timeout in milliseconds
+     * @throws IllegalArgumentException if {@code timeoutMillis} is less than 1
+     */
+    void setTimeout(long timeoutMillis) {
+        if (timeoutMillis < 1) { throw new IllegalArgumentException("timeoutMillis must be positive: " + timeoutMillis); }
+        this.timeoutMillis = timeoutMillis;
+    } // End setTimeout method
+
+    /**
+     * Retrieves the time to wait for a single device call.
+     *
+     * @return the timeout in milliseconds
+     */
+    long getTimeout() { return timeoutMillis; }
+
+    /**
+     * Queues a task to run on the worker thread after every task submitted before it. The task can be cancelled with
+     * {@link Future#cancel(boolean) cancel(true)}, which interrupts any device call it is waiting for.
+     * <br><br>
+     * {@code whenDone} is called exactly once, when the task finishes or as soon as it is cancelled, on whichever thread
+     * that happens. If the task is cancelled while running and still returns a result, {@code discard} is given the
+     * result so that it can be closed, since nobody else will receive it.
+     *
+     * @param task     the task to run
+     * @param discard  the action closing the result of a task that was cancelled while running, or {@code null}
+     * @param whenDone the action to take with the finished or cancelled task
+     * @param <T>      the type of the task's result
+     * @return the task's future
+     */
+    <T> Future<T> submit(Callable<T> task, Consumer<T> discard, Consumer<Future<T>> whenDone) {
+        FutureTask<T> future = new FutureTask<T>(task) {
+            @Override
+            protected void set(T result) {
+                super.set(result);
+                if (isCancelled() && discard != null && result != null) { discard.accept(result); }
+            } // End set method
+
+            @Override
+            protected void done() { whenDone.accept(this); }
+        }; // End FutureTask anonymous class
+        worker.execute(future);
+        return future;
+    } // End submit method
+
+    /**
+     * Opens a device.
+     *
+     * @param device the device to open
+     * @throws MidiUnavailableException if the device can't be opened or doesn't open within the timeout
+     * @throws InterruptedException     if the calling thread is interrupted while waiting
+     */
+    void open(MidiDevice device) throws MidiUnavailableException, InterruptedException {
+        call("Opening '" + device.getDeviceInfo().getName() + "'", () -> {
+            device.open();
+            return device;
+        }, MidiDevice::close); // End call call
+    } // End open method
+
+    /**
+     * Retrieves a transmitter of an open device.
+     *
+     * @param device the device to retrieve a transmitter from
+     * @return the transmitter
+     * @throws MidiUnavailableException if no transmitter is available or it isn't retrieved within the timeout
+     * @throws InterruptedException     if the calling thread is interrupted while waiting
+     */
+    Transmitter getTransmitter(MidiDevice device) throws MidiUnavailableException, InterruptedException {
+        return call("Connecting to '" + device.getDeviceInfo().getName() + "'", device::getTransmitter, Transmitter::close);
+    } // End getTransmitter method
+
+    /**
+     * Borrows a transmitter of a device from a pool, which opens the device unless the pool still has it open.
+     *
+     * @param pool   the pool to borrow from
+     * @param device the device to retrieve a transmitter from
+     * @return the lease of the transmitter
+     * @throws MidiUnavailableException if the device can't be opened or no transmitter is retrieved within the timeout
+     * @throws InterruptedException     if the calling thread is interrupted while waiting
+     */
+    MidiDevicePool.Lease borrowTransmitter(MidiDevicePool pool, MidiDevice device)
+            throws MidiUnavailableException, InterruptedException {
+        return call(
+                "Opening '" + device.getDeviceInfo().getName() + "'",
+                () -> pool.borrowTransmitter(device),
+                MidiDevicePool.Lease::close
+        ); // End call call
+    } // End borrowTransmitter method
+
+    /**
+     * Constructs a {@link MidiProcessor} sending to a device, which opens the device or borrows it from a pool.
+     *
+     * @param device    the device to send split notes to
+     * @param debugMode whether to run the processor in debugging mode
+     * @param pool      the pool to borrow the device from, or {@code null} to have the processor open it
+     * @return the running processor
+     * @throws MidiUnavailableException if the device can't be opened or doesn't open within the timeout
+     * @throws InterruptedException     if the calling thread is interrupted while waiting
+     */
+    MidiProcessor openProcessor(MidiDevice device, boolean debugMode, MidiDevicePool pool)
+            throws MidiUnavailableException, InterruptedException {
+        return call(
+                "Opening '" + device.getDeviceInfo().getName() + "'",
+                () -> (pool == null) ? new MidiProcessor(device, debugMode) : new MidiProcessor(device, debugMode, pool),
+                MidiProcessor::close
+        ); // End call call
+    } // End openProcessor method
+
+    /**
+     * Closes a device or processor, giving up once the timeout has passed. A close that times out or fails is logged
+     * rather than reported, since there is nothing more the caller could do about it.
+     *
+     * @param description what is being closed, for the log
+     * @param close       the call closing it
+     * @return {@code true} if the call completed within the timeout
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    boolean close(String description, Runnable close) throws InterruptedException {
+        try {
+            call("Closing " + description, () -> {
+                close.run();
+                return null;
+            }, null); // End call call
+            return true;
+        } catch (MidiUnavailableException e) {
+            Logger.getLogger("MidiSplitter").log(Level.WARNING, e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            Logger.getLogger("MidiSplitter").log(Level.WARNING, "Closing " + description + " failed", e);
+            return false;
+        } // End try {} catch(MidiUnavailableException) {} catch(RuntimeException)
+    } // End close method
+
+    /**
+     * Stops the worker thread once the tasks already submitted have run, waiting a limited time for them to do so. Device
+     * calls still blocked in a driver are left to finish on their own.
+     * <br><br>
+     * The caller threads are only stopped once the submitted tasks have finished, since those tasks may still make device
+     * calls. If they don't finish in time, the caller threads are left to them and exit once they have been idle for a
+     * minute.
+     *
+     * @param waitMillis the longest time to wait for the submitted tasks, in milliseconds
+     * @return {@code true} if every submitted task finished in time
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    boolean shutdown(long waitMillis) throws InterruptedException {
+        worker.shutdown();
+        if (!worker.awaitTermination(waitMillis, TimeUnit.MILLISECONDS)) { return false; }
+        callers.shutdown();
+        return true;
+    } // End shutdown method
+
+    // Makes a device call on a caller thread, waiting for at most the timeout and closing the result if it's abandoned
+    private <T> T call(String description, Callable<T> call, Consumer<T> discard)
+            throws MidiUnavailableException, InterruptedException {
+        AtomicBoolean settled = new AtomicBoolean(false); // Set by whichever of the call and the waiter finishes first
+        Future<T> future = callers.submit(() -> {
+            T result = call.call();
+            if (!settled.compareAndSet(false, true) && discard != null && result != null) {
+                Logger.getLogger("MidiSplitter").log(Level.INFO, description + " finished after being abandoned");
+                discard.accept(result);
+            } // End if(abandoned)
+            return result;
+        }); // End callers.submit call
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            // If the call finished just as we gave up then it was never abandoned, so keep its outcome
+            if (settled.compareAndSet(false, true)) {
+                future.cancel(true);
+                if (e instanceof InterruptedException) { throw (InterruptedException) e; }
+                throw new MidiUnavailableException(description + " timed out after " + timeoutMillis + " ms");
+            } // End if(abandoned)
+            if (e instanceof InterruptedException) { Thread.currentThread().interrupt(); }
+            return outcome(future);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } // End try {} catch(TimeoutException | InterruptedException) {} catch(ExecutionException)
+    } // End call method
+
+    // Retrieves the outcome of a call that has already finished
+    private static <T> T outcome(Future<T> future) throws MidiUnavailableException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) { interrupted = true; }
+            } // End while(true)
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            if (interrupted) { Thread.currentThread().interrupt(); }
+        } // End try {} catch(ExecutionException) {} finally
+    } // End outcome method
+
+    // Rethrows the exception a device call failed with as the exception the caller expects
+    private static MidiUnavailableException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof MidiUnavailableException) { return (MidiUnavailableException) cause; }
+        if (cause instanceof RuntimeException) { throw (RuntimeException) cause; }
+        if (cause instanceof Error) { throw (Error) cause; }
+        MidiUnavailableException wrapped = new MidiUnavailableException(String.valueOf(cause));
+        wrapped.initCause(cause);
+        return wrapped;
+    } // End unwrap method
+
+    // Creates a daemon thread, so that a call blocked in a driver can't keep the JVM running
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    } // End daemon method
+} // End DeviceWorker class
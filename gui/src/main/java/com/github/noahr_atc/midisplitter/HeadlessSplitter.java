@@ -0,0 +1,166 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import java.util.List;
+
+/**
+ * Runs a {@link MidiProcessor} between an input and an output device without any user interface, for running
+ * {@link MidiSplitter} as a background service.
+ * <br><br>
+ * Devices are opened and closed through a {@link DeviceWorker}, so a driver that never returns can't stop the splitter
+ * from reporting the failure or from shutting down.
+ * <br><br>
+ * This class must not refer to any AWT or Swing classes, directly or through the classes it uses, so that headless mode
+ * neither loads the desktop toolkit nor fails on systems without a display.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class HeadlessSplitter {
+    private final List<MidiDevice.Info> inputDevices;  // The prioritized list of input devices to try to open
+    private final List<MidiDevice.Info> outputDevices; // The prioritized list of output devices to try to open
+    private final boolean debugMode;                   // Whether the processor runs in debugging mode
+    private final DeviceWorker worker;                 // The worker opening and closing devices with a timeout
+    private MidiDevice inputDevice;                    // The open input device, or null if not running
+    private MidiDevice outputDevice;                   // The output device the processor opened, or null if not running
+    private MidiProcessor processor;                   // The processor splitting the input's notes, or null if not running
+
+    /**
+     * Constructs a {@code HeadlessSplitter} that will use the first device of each list that can be opened.
+     *
+     * @param inputDevices  the prioritized list of input devices to transmit from
+     * @param outputDevices the prioritized list of output devices to send split notes to
+     * @param debugMode     whether to run the processor in debugging mode, including its debug log
+     * @param timeoutMillis the time to wait for a device to open or close, in milliseconds
+     * @throws IllegalArgumentException if {@code timeoutMillis} is less than 1
+     */
+    HeadlessSplitter(List<MidiDevice.Info> inputDevices, List<MidiDevice.Info> outputDevices, boolean debugMode, long timeoutMillis) {
+        this.inputDevices = inputDevices;
+        this.outputDevices = outputDevices;
+        this.debugMode = debugMode;
+        worker = new DeviceWorker(timeoutMillis);
+    } // End HeadlessSplitter(List, List, boolean, long) constructor
+
+    /**
+     * Opens the first input and output devices that are available and starts splitting notes between them.
+     *
+     * @throws MidiUnavailableException if none of the input devices or none of the output devices could be opened within
+     *                                  the timeout, or the calling thread was interrupted
+     */
+    synchronized void start() throws MidiUnavailableException {
+        try {
+            startDevices();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MidiUnavailableException("Interrupted while opening devices");
+        } // End try {} catch(InterruptedException)
+    } // End start method
+
+    // Opens the devices and starts splitting, rolling back if either device can't be opened
+    private void startDevices() throws MidiUnavailableException, InterruptedException {
+        MidiDevice input = openInput();
+        MidiUnavailableException failure = null;
+
+        // Try each output until the processor accepts one, closing the input again if none of them do
+        try {
+            for (MidiDevice.Info info : outputDevices) {
+                try {
+                    MidiDevice output = MidiSystem.getMidiDevice(info);
+                    processor = worker.openProcessor(output, debugMode, null);
+                    outputDevice = output;
+                    break;
+                } catch (MidiUnavailableException | IllegalArgumentException e) {
+                    failure = new MidiUnavailableException("Output device '" + info.getName() + "' unavailable: " + e.getMessage());
+                } // End try {} catch(MidiUnavailableException | IllegalArgumentException)
+            } // End for(info : outputDevices)
+            if (processor == null) { throw (failure != null) ? failure : new MidiUnavailableException("No output device"); }
+            processor.registerMBean(); // Allow the live channel state to be monitored through JMX
+            worker.getTransmitter(input).setReceiver(processor);
+        } catch (MidiUnavailableException | InterruptedException e) {
+            if (processor != null) { worker.close("the processor", processor::close); }
+            processor = null;
+            outputDevice = null;
+            worker.close("'" + input.getDeviceInfo().getName() + "'", input::close);
+            throw e;
+        } // End try {} catch(MidiUnavailableException | InterruptedException)
+        inputDevice = input;
+    } // End startDevices method
+
+    /**
+     * Stops splitting: closes the input so no more notes arrive, sends a NOTE-OFF for every note still held, and closes
+     * the output. Does nothing if not running. A device that doesn't close within the timeout is abandoned.
+     */
+    synchronized void stop() {
+        if (processor == null) { return; }
+        try {
+            MidiProcessor running = processor;
+            worker.close("'" + inputDevice.getDeviceInfo().getName() + "'", inputDevice::close);
+            worker.close("the processor", () -> {
+                running.releaseAllNotes();
+                running.close();
+            }); // End worker.close call
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Stopping anyway, so just let the caller know
+        } // End try {} catch(InterruptedException)
+        inputDevice = null;
+        outputDevice = null;
+        processor = null;
+    } // End stop method
+
+    /**
+     * Retrieves the input device notes are being split from.
+     *
+     * @return the open input device, or {@code null} if not running
+     */
+    synchronized MidiDevice getInputDevice() { return inputDevice; }
+
+    /**
+     * Retrieves the output device split notes are being sent to.
+     *
+     * @return the output device, or {@code null} if not running
+     */
+    synchronized MidiDevice getOutputDevice() { return outputDevice; }
+
+    /**
+     * Retrieves the processor splitting the notes.
+     *
+     * @return the running processor, or {@code null} if not running
+     */
+    synchronized MidiProcessor getProcessor() { return processor; }
+
+    // Opens the first input device that can be opened and has a transmitter
+    private MidiDevice openInput() throws MidiUnavailableException, InterruptedException {
+        MidiUnavailableException failure = null;
+
+        for (MidiDevice.Info info : inputDevices) {
+            try {
+                MidiDevice device = MidiSystem.getMidiDevice(info);
+                if (device.getMaxTransmitters() == 0) { continue; }
+                worker.open(device);
+                return device;
+            } catch (MidiUnavailableException | IllegalArgumentException e) {
+                failure = new MidiUnavailableException("Input device '" + info.getName() + "' unavailable: " + e.getMessage());
+            } // End try {} catch(MidiUnavailableException | IllegalArgumentException)
+        } // End for(info : inputDevices)
+        throw (failure != null) ? failure : new MidiUnavailableException("No input device");
+    } // End openInput method
+} // End HeadlessSplitter class
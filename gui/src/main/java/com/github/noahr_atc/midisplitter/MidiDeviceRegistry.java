@@ -0,0 +1,295 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of the MIDI devices available for input and output, so that devices are enumerated once rather than by
+ * every part of the application that needs them, and never on the Swing event dispatch thread.
+ * <br><br>
+ * Devices are enumerated by a background poller thread, which rescans periodically and whenever a refresh is requested.
+ * Whether a device is an input, an output, or both is only looked up when it first appears, since opening a
+ * {@link MidiDevice} to query it can be slow on systems with many ports, and the result is cached for as long as the
+ * device is present. Each scan is compared with the previous one and only the devices that appeared or disappeared are
+ * passed to the registered {@link Listener}s.
+ * <br><br>
+ * This class must not refer to any AWT or Swing classes, since it is also used in headless mode.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class MidiDeviceRegistry {
+    private static final long POLL_INTERVAL_MILLIS = 2000; // The time between scans when no refresh is requested
+    private static final int INPUT = 1;                    // The capability flag of a device that transmits to us
+    private static final int OUTPUT = 2;                   // The capability flag of a device that receives from us
+    private static MidiDeviceRegistry shared;              // The registry shared by the application, or null until needed
+
+    private final Object scanLock;                  // The lock serializing scans, which guards capabilities
+    private Map<MidiDevice.Info, Integer> capabilities; // The capability flags of every device found by the last scan
+    private volatile List<MidiDevice.Info> inputDevices;  // The input devices found by the last scan, in enumeration order
+    private volatile List<MidiDevice.Info> outputDevices; // The output devices found by the last scan, in enumeration order
+    private final CountDownLatch scanned;           // Released once the first scan has finished
+    private final List<Listener> listeners;         // The listeners notified of each change
+    private final long pollIntervalNanos;           // The time between scans when no refresh is requested
+    private volatile Thread poller;                 // The thread scanning for devices, or null if not polling
+
+    /**
+     * Constructs a {@code MidiDeviceRegistry} that hasn't scanned for devices yet.
+     *
+     * @param pollIntervalMillis the time between scans once polling is started, in milliseconds
+     */
+    MidiDeviceRegistry(long pollIntervalMillis) {
+        scanLock = new Object();
+        capabilities = new HashMap<>();
+        inputDevices = Collections.emptyList();
+        outputDevices = Collections.emptyList();
+        scanned = new CountDownLatch(1);
+        listeners = new CopyOnWriteArrayList<>();
+        pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(pollIntervalMillis);
+    } // End MidiDeviceRegistry(long) constructor
+
+    /**
+     * Retrieves the registry shared by the application, creating it and starting its poller on first use.
+     *
+     * @return the shared registry
+     */
+    static synchronized MidiDeviceRegistry getShared() {
+        if (shared == null) {
+            shared = new MidiDeviceRegistry(POLL_INTERVAL_MILLIS);
+            shared.startPolling();
+        } // End if(shared == null)
+        return shared;
+    } // End getShared method
+
+    /**
+     * Creates a registry holding the devices available now, enumerated once on the calling thread without starting a
+     * poller, for callers that don't follow devices appearing and disappearing.
+     *
+     * @return the scanned registry
+     */
+    static MidiDeviceRegistry scanOnce() {
+        MidiDeviceRegistry registry = new MidiDeviceRegistry(POLL_INTERVAL_MILLIS);
+        registry.scan();
+        return registry;
+    } // End scanOnce method
+
+    /**
+     * Starts the background poller, which scans for devices immediately and then periodically. Does nothing if already
+     * polling.
+     */
+    synchronized void startPolling() {
+        if (poller != null) { return; }
+        Thread thread = new Thread(this::poll, "MidiDeviceRegistry-poller");
+        thread.setDaemon(true);
+        poller = thread;
+        thread.start();
+    } // End startPolling method
+
+    /**
+     * Stops the background poller, waiting for any scan in progress to finish. Does nothing if not polling.
+     */
+    synchronized void stopPolling() {
+        Thread thread = poller;
+        boolean interrupted = false;
+
+        if (thread == null) { return; }
+        poller = null;
+        LockSupport.unpark(thread);
+        while (thread.isAlive()) {
+            try { thread.join(); } catch (InterruptedException e) { interrupted = true; }
+        } // End while(thread.isAlive)
+        if (interrupted) { Thread.currentThread().interrupt(); }
+    } // End stopPolling method
+
+    /**
+     * Asks the poller to scan for devices as soon as possible instead of waiting for the next poll, without waiting for the
+     * scan. Does nothing if not polling.
+     */
+    void requestRefresh() {
+        Thread thread = poller;
+        if (thread != null) { LockSupport.unpark(thread); }
+    } // End requestRefresh method
+
+    /**
+     * Retrieves the input devices, waiting for the first scan to finish if it hasn't yet.
+     *
+     * @return an unmodifiable list of the devices that can transmit to us, in enumeration order
+     */
+    List<MidiDevice.Info> getInputDevices() {
+        awaitFirstScan();
+        return inputDevices;
+    } // End getInputDevices method
+
+    /**
+     * Retrieves the output devices, waiting for the first scan to finish if it hasn't yet.
+     *
+     * @return an unmodifiable list of the devices that can receive from us, in enumeration order
+     */
+    List<MidiDevice.Info> getOutputDevices() {
+        awaitFirstScan();
+        return outputDevices;
+    } // End getOutputDevices method
+
+    /**
+     * Registers a listener to be notified of the devices that appear or disappear in later scans. Listeners are called on
+     * the thread that scanned, so they must hand the change over to their own thread if necessary.
+     *
+     * @param listener the listener to notify
+     */
+    void addListener(Listener listener) { listeners.add(listener); }
+
+    /**
+     * Unregisters a listener. Does nothing if it isn't registered.
+     *
+     * @param listener the listener to stop notifying
+     */
+    void removeListener(Listener listener) { listeners.remove(listener); }
+
+    /**
+     * Enumerates the MIDI devices on the calling thread, looking up the capabilities of new devices, and notifies the
+     * listeners if any devices appeared or disappeared. Devices that can't currently be queried are skipped and retried on
+     * the next scan.
+     *
+     * @return {@code true} if the devices changed since the last scan; {@code false} otherwise
+     */
+    boolean scan() {
+        Change change;
+
+        synchronized (scanLock) {
+            Map<MidiDevice.Info, Integer> found = new HashMap<>();
+            List<MidiDevice.Info> inputs = new ArrayList<>();
+            List<MidiDevice.Info> outputs = new ArrayList<>();
+            List<MidiDevice.Info> addedInputs = new ArrayList<>();
+            List<MidiDevice.Info> addedOutputs = new ArrayList<>();
+            List<MidiDevice.Info> removedInputs = new ArrayList<>();
+            List<MidiDevice.Info> removedOutputs = new ArrayList<>();
+
+            for (MidiDevice.Info d : MidiSystem.getMidiDeviceInfo()) {
+                Integer flags = capabilities.get(d);
+
+                // Only query devices that weren't present in the last scan
+                if (flags == null) {
+                    try {
+                        MidiDevice device = MidiSystem.getMidiDevice(d);
+                        // If the device has a transmitter, then it transmits to us and is therefore an input port;
+                        //      if the device has a receiver, then it receives from us and is therefore an output port
+                        flags = ((device.getMaxTransmitters() != 0) ? INPUT : 0) | ((device.getMaxReceivers() != 0) ? OUTPUT : 0);
+                        if ((flags & INPUT) != 0) { addedInputs.add(d); }
+                        if ((flags & OUTPUT) != 0) { addedOutputs.add(d); }
+                    } catch (MidiUnavailableException | IllegalArgumentException e) { continue; } // Skip device if unavailable
+                } // End if(flags == null)
+                found.put(d, flags);
+                if ((flags & INPUT) != 0) { inputs.add(d); }
+                if ((flags & OUTPUT) != 0) { outputs.add(d); }
+            } // End for(d : getMidiDeviceInfo)
+
+            // Any device from the last scan that wasn't found again has been removed
+            for (Map.Entry<MidiDevice.Info, Integer> e : capabilities.entrySet()) {
+                if (found.containsKey(e.getKey())) { continue; }
+                if ((e.getValue() & INPUT) != 0) { removedInputs.add(e.getKey()); }
+                if ((e.getValue() & OUTPUT) != 0) { removedOutputs.add(e.getKey()); }
+            } // End for(e : capabilities)
+
+            capabilities = found;
+            inputDevices = Collections.unmodifiableList(inputs);
+            outputDevices = Collections.unmodifiableList(outputs);
+            change = new Change(addedInputs, addedOutputs, removedInputs, removedOutputs);
+        } // End synchronized(scanLock)
+        scanned.countDown();
+
+        if (change.isEmpty()) { return false; }
+        for (Listener l : listeners) { l.devicesChanged(change); }
+        return true;
+    } // End scan method
+
+    // The poller thread's loop, scanning until polling is stopped
+    private void poll() {
+        Thread self = Thread.currentThread();
+        while (poller == self) {
+            try { scan(); } catch (RuntimeException e) {
+                // Keep polling even if a provider or listener misbehaves, since the lists would otherwise go stale
+                Logger.getLogger("MidiSplitter").log(Level.WARNING, "Scanning MIDI devices failed", e);
+            } // End try {} catch(RuntimeException)
+            LockSupport.parkNanos(this, pollIntervalNanos);
+        } // End while(poller == self)
+    } // End poll method
+
+    // Waits for the first scan to finish, scanning on the calling thread if nothing else is going to
+    private void awaitFirstScan() {
+        boolean interrupted = false;
+
+        if (poller == null && scanned.getCount() != 0) { scan(); }
+        while (scanned.getCount() != 0) {
+            try { scanned.await(); } catch (InterruptedException e) { interrupted = true; }
+        } // End while(!scanned)
+        if (interrupted) { Thread.currentThread().interrupt(); }
+    } // End awaitFirstScan method
+
+    /**
+     * Receives the devices that appeared or disappeared between two scans of a {@link MidiDeviceRegistry}.
+     */
+    interface Listener {
+        /**
+         * Called after a scan found that devices appeared or disappeared, on the thread that scanned.
+         *
+         * @param change the devices that changed
+         */
+        void devicesChanged(Change change);
+    } // End Listener interface
+
+    /**
+     * The devices that appeared or disappeared between two scans. A device that can both transmit and receive is listed
+     * as both an input and an output.
+     */
+    static class Change {
+        final List<MidiDevice.Info> addedInputs;    // The input devices that appeared
+        final List<MidiDevice.Info> addedOutputs;   // The output devices that appeared
+        final List<MidiDevice.Info> removedInputs;  // The input devices that disappeared
+        final List<MidiDevice.Info> removedOutputs; // The output devices that disappeared
+
+        Change(List<MidiDevice.Info> addedInputs, List<MidiDevice.Info> addedOutputs, List<MidiDevice.Info> removedInputs, List<MidiDevice.Info> removedOutputs) {
+            this.addedInputs = Collections.unmodifiableList(addedInputs);
+            this.addedOutputs = Collections.unmodifiableList(addedOutputs);
+            this.removedInputs = Collections.unmodifiableList(removedInputs);
+            this.removedOutputs = Collections.unmodifiableList(removedOutputs);
+        } // End Change(List, List, List, List) constructor
+
+        /**
+         * Checks whether any devices changed.
+         *
+         * @return {@code true} if no devices appeared or disappeared; {@code false} otherwise
+         */
+        boolean isEmpty() {
+            return addedInputs.isEmpty() && addedOutputs.isEmpty() && removedInputs.isEmpty() && removedOutputs.isEmpty();
+        } // End isEmpty method
+    } // End Change class
+} // End MidiDeviceRegistry class
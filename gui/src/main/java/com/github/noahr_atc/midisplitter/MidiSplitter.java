@@ -19,16 +19,16 @@ limitations under the License.
 import org.jetbrains.annotations.NotNull;
 
 import javax.sound.midi.MidiDevice;
-import javax.sound.midi.MidiSystem;
 import javax.sound.midi.MidiUnavailableException;
-import javax.swing.*;
-import java.awt.*;
-import java.awt.event.WindowAdapter;
-import java.awt.event.WindowEvent;
-import java.util.Collections;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * <h1>MIDI Splitter (Java)</h1>
@@ -58,6 +58,8 @@ import java.util.ArrayList;
  * @since 2020-01-28
  */
 public class MidiSplitter {
+    // Note: This class must not refer to any Swing or AWT classes, since it's loaded in headless mode as well
+
     private static boolean runningWindows; // Static boolean used to know if the computer running the program is on Windows. Visible to all classes in this package
     private static OutputMode outputMode = OutputMode.NORMAL;
     //                        // ^ Describes whether to output to console normally, quietly, silently, or with debug info. Visible to all classes in this package
@@ -86,6 +88,28 @@ public class MidiSplitter {
      *                              <li>If both a valid --input and --output argument are provided, the splitter will start on launch</li>
      *                          </ul>
      *                  </li>
+     *                  <li><b>--batch</b> <i>directory</i>
+     *                          <ul>
+     *                              <li>Split every Standard MIDI File under a directory tree instead of launching the GUI</li>
+     *                              <li>Requires --out</li>
+     *                          </ul>
+     *                  </li>
+     *                  <li><b>--out</b> <i>directory</i>
+     *                          <ul>
+     *                              <li>Specify the directory that files split by --batch are written to, keeping their relative paths</li>
+     *                          </ul>
+     *                  </li>
+     *                  <li><b>--headless</b>
+     *                          <ul>
+     *                              <li>Split notes between the --input and --output devices without launching the GUI, until terminated</li>
+     *                              <li>Requires --input and --output; never asks for user input</li>
+     *                          </ul>
+     *                  </li>
+     *                  <li><b>--timeout</b> <i>milliseconds</i>
+     *                          <ul>
+     *                              <li>Specify how long to wait for a MIDI device to open or close before giving up on it; defaults to 5000</li>
+     *                          </ul>
+     *                  </li>
      *                  <li><b>-s</b>, <b>--silent</b>
      *                          <ul>
      *                              <li>Suppress all console output, including error messages</li>
@@ -98,7 +122,7 @@ public class MidiSplitter {
      *                  </li>
      *                  <li><b>-d</b>, <b>--debug</b>
      *                          <ul>
-     *                              <li>Output MIDI translation debugging information to the console; overridden by --silent and --quiet</li>
+     *                              <li>Log MIDI translation debugging information to a binary file in the temporary directory, which can be rendered as text with DebugLogDecoder; overridden by --silent and --quiet</li>
      *                          </ul>
      *                  </li>
      *                  <li><b>--</b>
@@ -114,61 +138,121 @@ public class MidiSplitter {
      * @since 2020-03-08
      */
     public static void main(String[] args) {
-        ArrayList<MidiDevice.Info> inputDevices = new ArrayList<>();
-        ArrayList<MidiDevice.Info> outputDevices = new ArrayList<>();
-        MidiDevice.Info[] devices;
+        long startTime = System.nanoTime(); // Used to report the startup time in headless debug mode
         Options options;
-        MidiSplitterForm form;
 
         // Check if running on Windows; see MidiSplitterForm refresh code for reasoning
         runningWindows = System.getProperty("os.name").startsWith("Windows");
 
-        // Enumerate MIDI devices
-        devices = MidiSystem.getMidiDeviceInfo();
-        for (MidiDevice.Info d : devices) {
-            try {
-                MidiDevice device = MidiSystem.getMidiDevice(d);
-                // If the device has a transmitter, then it transmits to us and is therefore an input port
-                if (device.getMaxTransmitters() != 0) { inputDevices.add(d); }
-                // If the device has a receiver, then it receives from us and is therefore an output port
-                if (device.getMaxReceivers() != 0) { outputDevices.add(d); }
-            } catch (MidiUnavailableException ignored) {} // Skip device if unavailable
-        } // End for(d : devices)
-
-        // Create the main frame, setting minimum dimensions and standard properties
-        JFrame frame = new JFrame("MIDI Splitter");
-
-        options = ParseArguments(args, inputDevices, outputDevices);
-
-        // Using the selected default devices, construct the form and set the frame properties
-        form = new MidiSplitterForm(options.defaultInputDeviceList, options.defaultOutputDeviceList);
-        frame.setContentPane(form.mainPanel);
-        frame.setMinimumSize(new Dimension(346, 98));
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.addWindowListener(new WindowAdapter() {
-            @Override
-            public void windowClosing(WindowEvent e) {
-                form.close();
-                super.windowClosing(e);
-            }
-        }); // End frame.addWindowListener call
-        frame.pack();
-        frame.setVisible(true);
-        if (options.launchStarted) { form.performPlayClick(); }
+        // Parse the arguments, which only waits for the MIDI devices to be enumerated if they are actually needed
+        options = ParseArguments(args);
+
+        // Split the requested directory tree without the GUI if in batch mode
+        if (options.batchDirectory != null) { System.exit(runBatch(options.batchDirectory, options.outputDirectory)); }
+
+        // Split between the requested devices without the GUI if in headless mode, which only ends with the JVM
+        // Note: Exiting while the JVM is already shutting down would block forever, so only exit if starting failed
+        if (options.headless) {
+            int status = runHeadless(options, startTime);
+            if (status != ExitCodes.NORMAL) { System.exit(status); }
+            return;
+        } // End if(options.headless)
+
+        // Otherwise launch the GUI using the selected default devices, enumerating the devices in the background meanwhile
+        MidiDeviceRegistry.getShared();
+        MidiSplitterForm.show(
+                options.defaultInputDeviceList, options.defaultOutputDeviceList, options.launchStarted, options.deviceTimeoutMillis
+        ); // End show call
     } // End main method
 
     static boolean isWindows() { return runningWindows; }
 
+    // Splits every Standard MIDI File under a directory tree, reporting the throughput, and returns the exit code
+    private static int runBatch(@NotNull Path batchDirectory, @NotNull Path outputDirectory) {
+        BatchSplitter.Result result;
+
+        if (!Files.isDirectory(batchDirectory)) {
+            if (outputMode != OutputMode.SILENT) { System.out.print("MidiSplitter: --batch: '" + batchDirectory + "' is not a directory\n"); }
+            return ExitCodes.INVALID_ARGUMENTS;
+        } // End if(!batchDirectory.isDirectory)
+
+        try {
+            result = new BatchSplitter(batchDirectory, outputDirectory, (file, e) -> {
+                if (outputMode != OutputMode.SILENT) { System.err.print("MidiSplitter: " + file + ": " + e.getMessage() + "\n"); }
+            }).run();
+        } catch (IOException e) {
+            if (outputMode != OutputMode.SILENT) { System.out.print("MidiSplitter: --batch: " + e.getMessage() + "\n"); }
+            return ExitCodes.BATCH_FAILED;
+        } // End try {} catch(IOException)
+
+        if (outputMode != OutputMode.SILENT) {
+            System.out.printf(
+                    "Split %d files (%d events) in %.3f s: %.1f files/s, %.0f events/s%s%n",
+                    result.files, result.events, result.seconds(), result.filesPerSecond(), result.eventsPerSecond(),
+                    (result.failures == 0) ? "" : ", " + result.failures + " failed"
+            ); // End printf call
+        } // End if(!OutputMode.SILENT)
+        return (result.failures == 0) ? ExitCodes.NORMAL : ExitCodes.BATCH_FAILED;
+    } // End runBatch method
+
+    // Splits notes between the requested devices until the JVM is terminated, and returns the exit code once the shutdown
+    // hook has stopped the splitter or if starting fails
+    private static int runHeadless(@NotNull Options options, long startTime) {
+        HeadlessSplitter splitter = new HeadlessSplitter(
+                options.defaultInputDeviceList, options.defaultOutputDeviceList, debugMode(), options.deviceTimeoutMillis
+        ); // End HeadlessSplitter constructor call
+        CountDownLatch stopped = new CountDownLatch(1); // Counted down by the shutdown hook once the splitter has stopped
+
+        try {
+            splitter.start();
+        } catch (MidiUnavailableException e) {
+            if (outputMode != OutputMode.SILENT) { System.out.print("MidiSplitter: --headless: " + e.getMessage() + "\n"); }
+            return ExitCodes.DEVICE_UNAVAILABLE;
+        } // End try {} catch(MidiUnavailableException)
+
+        // On SIGTERM, SIGINT, or any other orderly shutdown, stop the input and end every held note before exiting
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            splitter.stop();
+            stopped.countDown();
+        }, "MidiSplitter-shutdown")); // End addShutdownHook call
+
+        if (outputMode == OutputMode.DEBUG) {
+            System.out.printf(
+                    "Started in %.1f ms (%d ms since JVM start)%n",
+                    (System.nanoTime() - startTime) / 1e6, ManagementFactory.getRuntimeMXBean().getUptime()
+            ); // End printf call
+        } // End if(OutputMode.DEBUG)
+        if (outputMode == OutputMode.NORMAL || outputMode == OutputMode.DEBUG) {
+            System.out.print(
+                    "Splitting '" + splitter.getInputDevice().getDeviceInfo().getName() + "' to '"
+                            + splitter.getOutputDevice().getDeviceInfo().getName() + "'\n"
+            );
+        } // End if(OutputMode.NORMAL || OutputMode.DEBUG)
+
+        // Wait until the JVM is terminated and the splitter has been stopped
+        while (stopped.getCount() != 0) {
+            try {
+                stopped.await();
+            } catch (InterruptedException ignored) {} // Nothing else stops headless mode, so keep waiting
+        } // End while(!stopped)
+        return ExitCodes.NORMAL;
+    } // End runHeadless method
+
     static boolean debugMode() { return (outputMode == OutputMode.DEBUG); }
 
-    private static Options ParseArguments(@NotNull String[] args, @NotNull List<MidiDevice.Info> inputDevices, @NotNull List<MidiDevice.Info> outputDevices) {
+    private static Options ParseArguments(@NotNull String[] args) {
         ArrayList<MidiDevice.Info> defaultInputDeviceList = new ArrayList<>();
         ArrayList<MidiDevice.Info> defaultOutputDeviceList = new ArrayList<>();
         boolean interpretOptions = true;
         boolean expectArgumentNext = false;
         boolean inputDeviceRequested = false;
         boolean outputDeviceRequested = false;
+        boolean headless = false;
+        long deviceTimeoutMillis = DeviceWorker.DEFAULT_TIMEOUT_MILLIS;
+        Path batchDirectory = null;
+        Path outputDirectory = null;
         ArrayList<String[]> commands = new ArrayList<>();
+        MidiDeviceRegistry registry = null; // The registry requested devices are looked up in, or null until needed
 
         // Prior to parsing all options, scan for quiet, silent, or debug modes
         for (String a : args) {
@@ -210,7 +294,8 @@ public class MidiSplitter {
                 switch (a) {
                     case "-h":
                     case "-help":
-                    case "--help": {
+                    case "--help":
+                    case "--headless": {
                         // Error if an argument is expected, otherwise carry on
                         if (expectArgumentNext) {
                             // Check for silent mode (no output allowed)
@@ -229,11 +314,14 @@ public class MidiSplitter {
                         } // End if(expectArgumentNext)
                         commands.add(new String[]{a, ""});
                         break;
-                    } // End "--help", "--debug" cases
+                    } // End "--help", "--headless" cases
                     case "-i":
                     case "--input":
-                    case "-o": // Handling here is the same for both --input and --output flags
-                    case "--output": {
+                    case "-o": // Handling here is the same for --input, --output, --batch, --out, and --timeout flags
+                    case "--output":
+                    case "--batch":
+                    case "--out":
+                    case "--timeout": {
                         // Error if an argument is expected, otherwise carry on
                         if (expectArgumentNext) {
                             // Check for silent mode (no output allowed)
@@ -329,6 +417,12 @@ public class MidiSplitter {
             System.exit(ExitCodes.INVALID_ARGUMENTS);
         } // End if(expectArgumentNext)
 
+        // Headless mode must be known before any devices are looked up, since it enumerates them once on this thread
+        //      rather than starting the shared registry's poller, which would keep scanning for as long as it runs
+        for (String[] c : commands) {
+            if (c[0].equals("--headless")) { headless = true; }
+        } // End for(c : commands)
+
         // Parse the rest of the command-line options
         for (String[] c : commands) {
             switch (c[0]) {
@@ -354,7 +448,7 @@ public class MidiSplitter {
                                     "\033[1m-q\033[0m, \033[1m--quiet\033[0m\n" +
                                     "\tShow console error messages, but don't ask for user input; overridden by --silent\n" +
                                     "\033[1m-d\033[0m, \033[1m--debug\033[0m\n" +
-                                    "\tOutput MIDI translation debugging information to the console; overridden by --silent or --quiet\n" +
+                                    "\tLog MIDI translation debugging information to a binary file in the temporary directory; overridden by --silent or --quiet\n" +
                                     "\033[1m--\033[0m\n" +
                                     "\tDon't interpret arguments inside '--' block as options (for example if for some reason device " +
                                     "name is --input)"
@@ -369,12 +463,21 @@ public class MidiSplitter {
                                     "\tSpecify a default MIDI output device to attempt to select\n" +
                                     "\tIf this is specified more than once, it acts as a prioritized list with the first having priority\n" +
                                     "\tIf this is specified with --input then the splitter is started upon launch\n" +
+                                    "--batch directory\n" +
+                                    "\tSplit every Standard MIDI File under a directory tree instead of launching the GUI; requires --out\n" +
+                                    "--out directory\n" +
+                                    "\tSpecify the directory that files split by --batch are written to, keeping their relative paths\n" +
+                                    "--headless\n" +
+                                    "\tSplit notes between the --input and --output devices without launching the GUI, until terminated\n" +
+                                    "\tRequires --input and --output; never asks for user input\n" +
+                                    "--timeout milliseconds\n" +
+                                    "\tSpecify how long to wait for a MIDI device to open or close before giving up on it; defaults to 5000\n" +
                                     "-s, --silent\n" +
                                     "\tSuppress all console output, including error messages\n" +
                                     "-q, --quiet\n" +
                                     "\tShow console error messages, but don't ask for user input; overridden by --silent\n" +
                                     "-d, --debug\n" +
-                                    "\tOutput MIDI translation debugging information to the console; overridden by --silent or --quiet\n" +
+                                    "\tLog MIDI translation debugging information to a binary file in the temporary directory; overridden by --silent or --quiet\n" +
                                     "--\n" +
                                     "\tDon't interpret arguments inside '--' block as options (for example if for some reason device name is --input)\n"
                     );
@@ -386,7 +489,8 @@ public class MidiSplitter {
                     // Toggle that a specific input device was requested
                     if (!inputDeviceRequested) {inputDeviceRequested = true;}
                     // Iterate through the available input devices until the requested one is found or list exhausted
-                    for (MidiDevice.Info in : inputDevices) {
+                    if (registry == null) { registry = headless ? MidiDeviceRegistry.scanOnce() : MidiDeviceRegistry.getShared(); }
+                    for (MidiDevice.Info in : registry.getInputDevices()) {
                         if (in.getName().equals(c[1])) { defaultInputDeviceList.add(in); }
                     } // End for(in : inputDevices)
                     break;
@@ -396,16 +500,70 @@ public class MidiSplitter {
                     // Toggle that a specific output device was requested
                     if (!outputDeviceRequested) {outputDeviceRequested = true;}
                     // Iterate through the available output devices until the requested one is found or list exhausted
-                    for (MidiDevice.Info out : outputDevices) {
+                    if (registry == null) { registry = headless ? MidiDeviceRegistry.scanOnce() : MidiDeviceRegistry.getShared(); }
+                    for (MidiDevice.Info out : registry.getOutputDevices()) {
                         if (out.getName().equals(c[1])) { defaultOutputDeviceList.add(out); }
                     } // End for(in : inputDevices)
                     break;
                 } // End "--output" case
+                case "--batch": {
+                    batchDirectory = Paths.get(c[1]);
+                    break;
+                } // End "--batch" case
+                case "--out": {
+                    outputDirectory = Paths.get(c[1]);
+                    break;
+                } // End "--out" case
+                case "--headless": {
+                    break; // Already found before parsing the other options
+                } // End "--headless" case
+                case "--timeout": {
+                    try {
+                        deviceTimeoutMillis = Long.parseLong(c[1]);
+                    } catch (NumberFormatException e) { deviceTimeoutMillis = 0; }
+                    if (deviceTimeoutMillis < 1) {
+                        // Check for silent mode (no output allowed)
+                        if (outputMode == OutputMode.SILENT) { System.exit(ExitCodes.INVALID_ARGUMENTS); }
+                        System.out.print(
+                                "MidiSplitter: --timeout: '" + c[1] + "' is not a positive number of milliseconds\n" +
+                                        "Use 'MidiSplitter --help' for additional information"
+                        );
+                        System.exit(ExitCodes.INVALID_ARGUMENTS);
+                    } // End if(deviceTimeoutMillis < 1)
+                    break;
+                } // End "--timeout" case
                 case "-d":
                 case "--debug":
             } // End switch(c[0])
         } // End for (c : commands)
 
+        // Batch mode doesn't use any devices, so skip selecting them once its options are validated
+        if (batchDirectory != null || outputDirectory != null) {
+            if (batchDirectory == null || outputDirectory == null) {
+                // Check for silent mode (no output allowed)
+                if (outputMode == OutputMode.SILENT) { System.exit(ExitCodes.INVALID_ARGUMENTS); }
+                System.out.print(
+                        "MidiSplitter: options '--batch' and '--out' must be specified together\n" +
+                                "Usage: MidiSplitter [OPTIONS]... --batch \033[3mdirectory\033[0m --out \033[3mdirectory\033[0m\n" +
+                                "Use 'MidiSplitter --help' for additional information"
+                );
+                System.exit(ExitCodes.INVALID_ARGUMENTS);
+            } // End if(batchDirectory == null || outputDirectory == null)
+            return new Options(outputMode, batchDirectory, outputDirectory);
+        } // End if(batchDirectory != null || outputDirectory != null)
+
+        // Headless mode has no way to choose devices, so they must be given explicitly
+        if (headless && (!inputDeviceRequested || !outputDeviceRequested)) {
+            // Check for silent mode (no output allowed)
+            if (outputMode == OutputMode.SILENT) { System.exit(ExitCodes.INVALID_ARGUMENTS); }
+            System.out.print(
+                    "MidiSplitter: option '--headless' requires '--input' and '--output'\n" +
+                            "Usage: MidiSplitter [OPTIONS]... --headless --input \033[3mdevice\033[0m --output \033[3mdevice\033[0m\n" +
+                            "Use 'MidiSplitter --help' for additional information"
+            );
+            System.exit(ExitCodes.INVALID_ARGUMENTS);
+        } // End if(headless && !(inputDeviceRequested && outputDeviceRequested))
+
         // Check if an input/output device was requested but none were found, in which case if allowed we will give an
         //      error and ask if the user would like to use the default device
         if (inputDeviceRequested && defaultInputDeviceList.isEmpty()) {
@@ -413,16 +571,23 @@ public class MidiSplitter {
             if (outputMode == OutputMode.SILENT) { System.exit(ExitCodes.INVALID_INPUT_DEVICE); }
             System.out.print("MidiSplitter: --input: None of the requested MIDI input devices not found\n");
 
-            // Check for silent mode (no input allowed)
-            if (outputMode == OutputMode.QUIET) { System.exit(ExitCodes.INVALID_INPUT_DEVICE); }
+            // Check for quiet or headless mode (no input allowed)
+            if (outputMode == OutputMode.QUIET || headless) { System.exit(ExitCodes.INVALID_INPUT_DEVICE); }
             // Ask if the user wants to use the default device and process response
             System.out.print("Would you like to use the default input device instead? [Y/n] ");
             Scanner s = new Scanner(System.in);
             switch (s.next()) {
                 case "y":
-                case "Y:":
-                    // Allow the constructor call logic/following --input options to assign default device
+                case "Y": {
+                    // Use the first available device, which is the one the GUI selects when none is requested
+                    List<MidiDevice.Info> devices = MidiDeviceRegistry.getShared().getInputDevices();
+                    if (devices.isEmpty()) {
+                        System.out.print("MidiSplitter: No MIDI input devices available\n");
+                        System.exit(ExitCodes.INVALID_INPUT_DEVICE);
+                    } // End if(devices.isEmpty)
+                    defaultInputDeviceList.add(devices.get(0));
                     break;
+                } // End "Y" case
                 case "n":
                 case "N":
                     // Default device not wanted, quit with error code instead
@@ -438,16 +603,23 @@ public class MidiSplitter {
             if (outputMode == OutputMode.SILENT) { System.exit(ExitCodes.INVALID_OUTPUT_DEVICE); }
             System.out.print("MidiSplitter: --output: None of the requested MIDI output devices not found\n");
 
-            // Check for silent mode (no input allowed)
-            if (outputMode == OutputMode.QUIET) { System.exit(ExitCodes.INVALID_OUTPUT_DEVICE); }
+            // Check for quiet or headless mode (no input allowed)
+            if (outputMode == OutputMode.QUIET || headless) { System.exit(ExitCodes.INVALID_OUTPUT_DEVICE); }
             // Ask if the user wants to use the default device and process response
             System.out.print("Would you like to use the default output device instead? [Y/n] ");
             Scanner s = new Scanner(System.in);
             switch (s.next()) {
                 case "y":
-                case "Y:":
-                    // Allow the constructor call logic/following --output options to assign default device
+                case "Y": {
+                    // Use the first available device, which is the one the GUI selects when none is requested
+                    List<MidiDevice.Info> devices = MidiDeviceRegistry.getShared().getOutputDevices();
+                    if (devices.isEmpty()) {
+                        System.out.print("MidiSplitter: No MIDI output devices available\n");
+                        System.exit(ExitCodes.INVALID_OUTPUT_DEVICE);
+                    } // End if(devices.isEmpty)
+                    defaultOutputDeviceList.add(devices.get(0));
                     break;
+                } // End "Y" case
                 case "n":
                 case "N":
                     // Default device not wanted, quit with error code instead
@@ -460,12 +632,17 @@ public class MidiSplitter {
         } // End if(!defaultOutputDeviceList)
 
         // Construct and return the Options object containing the parsed information
-        return new Options(
+        // Note: Devices that weren't requested are left empty for the GUI to choose once the devices have been enumerated,
+        //      so that enumerating them can overlap with the GUI starting up
+        Options options = new Options(
                 outputMode,
-                (defaultInputDeviceList.isEmpty()) ? Collections.singletonList(inputDevices.get(0)) : defaultInputDeviceList,
-                (defaultOutputDeviceList.isEmpty()) ? Collections.singletonList(outputDevices.get(0)) : defaultOutputDeviceList,
+                defaultInputDeviceList,
+                defaultOutputDeviceList,
                 (!defaultInputDeviceList.isEmpty() && !defaultOutputDeviceList.isEmpty())
         );
+        options.headless = headless;
+        options.deviceTimeoutMillis = deviceTimeoutMillis;
+        return options;
     } // End ParseArguments method
 
     /**
@@ -498,6 +675,16 @@ public class MidiSplitter {
          */
         public static final int INVALID_OUTPUT_DEVICE = 4;
 
+        /**
+         * One or more files couldn't be split in batch mode; equal to {@value #BATCH_FAILED}
+         */
+        public static final int BATCH_FAILED = 5;
+
+        /**
+         * None of the requested devices could be opened in headless mode; equal to {@value #DEVICE_UNAVAILABLE}
+         */
+        public static final int DEVICE_UNAVAILABLE = 6;
+
         // Disable the constructor
         private ExitCodes() {}
     } // End ExitCodes class
@@ -516,6 +703,10 @@ public class MidiSplitter {
         public List<MidiDevice.Info> defaultInputDeviceList;
         public List<MidiDevice.Info> defaultOutputDeviceList;
         public boolean launchStarted;
+        public boolean headless;
+        public long deviceTimeoutMillis = DeviceWorker.DEFAULT_TIMEOUT_MILLIS;
+        public Path batchDirectory;
+        public Path outputDirectory;
 
         /**
          * Verbose constructor. Assigns properties as passed.
@@ -532,6 +723,19 @@ public class MidiSplitter {
             this.launchStarted = launchStarted;
         } // End verbose Options constructor
 
+        /**
+         * Batch mode constructor. Assigns the directories as passed and devices to null.
+         *
+         * @param outputMode      Represents whether console output should be normal, quiet, or silent
+         * @param batchDirectory  The root of the directory tree of files to split
+         * @param outputDirectory The root of the directory tree to write the split files to
+         */
+        public Options(OutputMode outputMode, Path batchDirectory, Path outputDirectory) {
+            this(outputMode, null, null, false);
+            this.batchDirectory = batchDirectory;
+            this.outputDirectory = outputDirectory;
+        } // End batch mode Options constructor
+
         /**
          * Default constructor. Assigns the output mode to normal, devices to null, and to not launch started.
          */
@@ -19,20 +19,34 @@ limitations under the License.
 import javax.sound.midi.*;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import com.github.noahr_atc.midisplitter.MidiProcessor;
 
 /**
  * The GUI for {@link MidiSplitter}. This {@linkplain javax.swing Swing} GUI allows the user to
  * choose the input and output devices to perform note translations on, as well as to start and stop note translations.
+ * <br><br>
+ * Devices are opened and closed by a {@link DeviceWorker} rather than on the event dispatch thread, so a slow or hung
+ * driver never freezes the GUI. While the devices are being opened the progress is shown in the title of the frame, and
+ * the stop button cancels starting instead.
+ * <br><br>
+ * The devices are borrowed from a {@link MidiDevicePool} that keeps them open for a while after stopping, so that
+ * starting again with the same devices, or switching back to a recently used one, doesn't wait for them to reopen.
  *
  * @author Noah Reeder
  * @version 1.0
  * @since 2020-01-28
  */
 public class MidiSplitterForm {
+    private static final long DEVICE_IDLE_MILLIS = 60000; // The time devices are kept open after stopping, in case of a restart
+
     /**
      * Contains all UI elements of this {@code MidiSplitterForm}
      */
@@ -52,8 +66,19 @@ public class MidiSplitterForm {
     private MidiDevice inputDevice;         // The MIDI device to receive MIDI messages from
     private MidiDevice outputDevice;        // The MIDI device to transmit MIDI messages to
     private Transmitter midiIn;             // The Transmitter instance received from inputDevice used for accessing MIDI messages
+    private MidiDevicePool.Lease inputLease; // The lease midiIn was borrowed under, which returns inputDevice to the pool
     private boolean firstManualRefresh;     // Boolean to know whether or not the lists have been manually refreshed yet
     private MidiProcessor processor;        // The MidiProcessor used to handle and split MIDI messages
+    private MidiDeviceRegistry registry;    // The registry keeping track of the available MIDI devices
+    private MidiDeviceRegistry.Listener deviceListener;
+    //                                      // ^ The listener applying the registry's device changes to the comboboxes
+    private DeviceWorker worker;            // The worker opening and closing the devices off the event dispatch thread
+    private MidiDevicePool devicePool;      // The pool keeping recently used devices open
+    private Future<Connection> pendingStart;
+    //                                      // ^ The devices being opened by the worker, or null if not starting
+    private Future<?> pendingStop;          // The devices being closed by the worker, or null if not stopping
+    private int startAttempts;              // The number of times starting was requested, identifying the latest attempt
+    private String title;                   // The title of the frame while no progress is being shown, or null if unknown
 
     /**
      * Constructs a {@code MidiSplitterForm} using the specified lists to select the initial input and output MIDI devices.
@@ -92,60 +117,35 @@ public class MidiSplitterForm {
         }); // End refreshButton.addActionListener call
 
         // Define the listener for a start button press
-        startButton.addActionListener((e) -> {
-            try {
-                startSplitting();
-            } catch (MidiUnavailableException ex) {
-                // No resource available, allow user to try again
-                JOptionPane.showMessageDialog(
-                        SwingUtilities.getAncestorOfClass(JFrame.class, mainPanel),
-                        "<html><body><p style='width: 203px;'>" +
-                                "Error accessing MIDI device." +
-                                "</p></body></html>",
-                        "MIDI Device Error",
-                        JOptionPane.WARNING_MESSAGE
-                ); // End showMessageDialog call
-            } // End try {} catch(MidiUnavailableException)
-            catch (IllegalArgumentException ex) {
-                // No resource available, allow user to try again
-                JOptionPane.showMessageDialog(
-                        SwingUtilities.getAncestorOfClass(JFrame.class, mainPanel),
-                        "<html><body><p style='width: 203px;'>" +
-                                "Selected MIDI device removed, the list will now be refreshed." +
-                                "</p></body></html>",
-                        "MIDI Device Error",
-                        JOptionPane.WARNING_MESSAGE
-                ); // End showMessageDialog call
-            } // End try {} catch(IllegalArgumentException)
-        }); // End startButton.addActionListener call
-
-        // Define the listener for a stop button press
-        stopButton.addActionListener((e) -> stopSplitting());
-
-        // Ensure the device lists are valid
+        startButton.addActionListener((e) -> startSplitting());
+
+        // Define the listener for a stop button press, which cancels starting while the devices are still being opened
+        stopButton.addActionListener((e) -> {
+            if (pendingStart != null) {
+                pendingStart.cancel(true);
+                stopButton.setEnabled(false);
+                showProgress("Cancelling...");
+            } // End if(pendingStart != null)
+            else { stopSplitting(); }
+        }); // End stopButton.addActionListener call
+
+        // Fill the comboboxes from the device registry, then keep them up to date as devices appear and disappear
+        // Note: The listener is added first so that no change can be missed; applying a change twice is harmless
+        registry = MidiDeviceRegistry.getShared();
+        deviceListener = change -> SwingUtilities.invokeLater(() -> applyDeviceChange(change));
+        registry.addListener(deviceListener);
+        addDevices(registry.getInputDevices(), inputDevicesMap, inputBox);
+        addDevices(registry.getOutputDevices(), outputDevicesMap, outputBox);
+
+        // Ensure the device lists are valid, defaulting to the first input and output devices
         if (defaultInputDeviceList == null) { defaultInputDeviceList = new ArrayList<>(); }
         if (defaultOutputDeviceList == null) { defaultOutputDeviceList = new ArrayList<>(); }
-        if (defaultInputDeviceList.isEmpty() || defaultOutputDeviceList.isEmpty()) {
-            // Iterate over the list of MIDI devices until the first input and output devices are found, using those to construct the form
-            // Note: Iteration is escaped as soon as both a transmitter and receiver are found
-            MidiDevice.Info[] devices;
-            devices = MidiSystem.getMidiDeviceInfo();
-            for (MidiDevice.Info d : devices) {
-                try {
-                    MidiDevice device = MidiSystem.getMidiDevice(d);
-                    // If the device has a transmitter, then it transmits to us and is therefore an input port
-                    if (device.getMaxTransmitters() != 0) {
-                        if (defaultInputDeviceList.isEmpty()) { defaultInputDeviceList.add(d); }
-                        if (!defaultOutputDeviceList.isEmpty()) {break;}
-                    } // End if(device.numTransmitters != 0)
-                    // If the device has a receiver, then it receives from us and is therefore an output port
-                    if (device.getMaxReceivers() != 0) {
-                        if (defaultOutputDeviceList.isEmpty()) {defaultOutputDeviceList.add(d);}
-                        if (!defaultInputDeviceList.isEmpty()) {break;}
-                    } // End if(device.numReceivers != 0)
-                } catch (MidiUnavailableException ignored) {} // Skip device if unavailable
-            } // End for(d : devices)
-        } // End if(defaultInputDeviceList.isEmpty || defaultOutputDeviceList.isEmpty)
+        if (defaultInputDeviceList.isEmpty() && !registry.getInputDevices().isEmpty()) {
+            defaultInputDeviceList.add(registry.getInputDevices().get(0));
+        } // End if(defaultInputDeviceList.isEmpty)
+        if (defaultOutputDeviceList.isEmpty() && !registry.getOutputDevices().isEmpty()) {
+            defaultOutputDeviceList.add(registry.getOutputDevices().get(0));
+        } // End if(defaultOutputDeviceList.isEmpty)
 
         // Attempt to select the requested devices
         // Note: In the (unlikely) case that since launch all of the requested devices have been removed, we will simply
@@ -170,47 +170,72 @@ public class MidiSplitterForm {
     /**
      * Constructs a {@code MidiSplitterForm} with the first input and output MIDI devices selected.
      */
-    public MidiSplitterForm() {
-        MidiDevice.Info[] devices;
-        MidiDevice.Info defaultInputDevice = null;
-        MidiDevice.Info defaultOutputDevice = null;
-
-        // Iterate over the list of MIDI devices until the first input and output devices are found, using those to construct the form
-        // Note: Iteration is escaped as soon as both a transmitter and receiver are found
-        devices = MidiSystem.getMidiDeviceInfo();
-        for (MidiDevice.Info d : devices) {
-            try {
-                MidiDevice device = MidiSystem.getMidiDevice(d);
-                // If the device has a transmitter, then it transmits to us and is therefore an input port
-                if (device.getMaxTransmitters() != 0) {
-                    defaultInputDevice = d;
-                    if (defaultOutputDevice != null) {break;}
-                } // End if(device.numTransmitters != 0)
-                // If the device has a receiver, then it receives from us and is therefore an output port
-                if (device.getMaxReceivers() != 0) {
-                    defaultOutputDevice = d;
-                    if (defaultInputDevice != null) {break;}
-                } // End if(device.numReceivers != 0)
-            } catch (MidiUnavailableException ignored) {} // Skip device if unavailable
-        } // End for(d : devices)
+    public MidiSplitterForm() { this(new ArrayList<>(), new ArrayList<>()); }
 
-        // Use the verbose constructor to create the MidiSplitterForm object
-        new MidiSplitterForm(Collections.singletonList(defaultInputDevice), Collections.singletonList(defaultOutputDevice));
-    } // End constructor MidiSplitterForm()
+    /**
+     * Creates the main frame of the application containing a new {@code MidiSplitterForm} and displays it.
+     * <br><br>
+     * This is kept out of {@link MidiSplitter} so that the launcher itself doesn't refer to any Swing or AWT classes,
+     * which would otherwise be loaded even when running headless.
+     *
+     * @param defaultInputDeviceList  the prioritized list of devices to attempt to select as the default MIDI input device
+     * @param defaultOutputDeviceList the prioritized list of devices to attempt to select as the default MIDI output device
+     * @param launchStarted           whether to start splitting as soon as the frame is displayed
+     * @param deviceTimeoutMillis     the time to wait for a device to open or close, in milliseconds
+     */
+    static void show(List<MidiDevice.Info> defaultInputDeviceList, List<MidiDevice.Info> defaultOutputDeviceList,
+                     boolean launchStarted, long deviceTimeoutMillis) {
+        // Create the main frame, setting minimum dimensions and standard properties
+        JFrame frame = new JFrame("MIDI Splitter");
+
+        // Using the selected default devices, construct the form and set the frame properties
+        MidiSplitterForm form = new MidiSplitterForm(defaultInputDeviceList, defaultOutputDeviceList);
+        form.setDeviceTimeout(deviceTimeoutMillis);
+        frame.setContentPane(form.mainPanel);
+        frame.setMinimumSize(new Dimension(346, 98));
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                form.close();
+                super.windowClosing(e);
+            }
+        }); // End frame.addWindowListener call
+        frame.pack();
+        frame.setVisible(true);
+        if (launchStarted) { form.performPlayClick(); }
+    } // End show method
 
     /**
      * Simulates a play button press.
      */
     public void performPlayClick() { startButton.doClick(); }
 
+    /**
+     * Sets the time to wait for a device to open or close before giving up on it.
+     *
+     * @param timeoutMillis the timeout in milliseconds
+     * @throws IllegalArgumentException if {@code timeoutMillis} is less than 1
+     */
+    void setDeviceTimeout(long timeoutMillis) { worker.setTimeout(timeoutMillis); }
+
     /**
      * Releases held resources. Ensure this is called upon form closure.
+     * <br><br>
+     * Starting is cancelled and the devices are closed, waiting a limited time for the worker to finish so that a hung
+     * driver can't stop the application from exiting.
      */
     public void close() {
-        if (processor != null) {
-            processor.close();
-            processor = null;
-        } // End if(processor != null)
+        registry.removeListener(deviceListener);
+        if (pendingStart != null) { pendingStart.cancel(true); }
+        if (processor != null) { stopSplitting(); }
+        worker.submit(() -> worker.close("the idle devices", devicePool::close), null, future -> {});
+
+        // Note: A cancelled start may still be releasing its devices ahead of the stop, each taking up to two timeouts,
+        //      followed by closing the pool
+        try {
+            worker.shutdown(5 * worker.getTimeout());
+        } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
     } // End close method
 
     // The method for creating UI components. Called immediately upon construction
@@ -220,137 +245,258 @@ public class MidiSplitterForm {
         outputDevicesMap = new LinkedHashMap<>();
         firstManualRefresh = true;
         processor = null;
+        worker = new DeviceWorker(DeviceWorker.DEFAULT_TIMEOUT_MILLIS);
+        devicePool = new MidiDevicePool(DEVICE_IDLE_MILLIS);
 
         // Create the refresh button and adjust its margins
         refreshButton = new JButton();
         refreshButton.setMargin(new Insets(-5, 0, -2, 0));
 
-        // Configure the MIDI I/O selection comboboxes and retrieve current MIDI devices
+        // Configure the MIDI I/O selection comboboxes, which are filled from the device registry by the constructor
         inputBox = new JComboBox<>();
         outputBox = new JComboBox<>();
         inputBox.setPrototypeDisplayValue("X");
         outputBox.setPrototypeDisplayValue("X");
-        refreshDeviceLists();
     } // End createUIComponents method
 
-    // The method for refreshing the device comboboxes
-    private void refreshDeviceLists() {
-        // Save currently selected items
-        String currentInputDevice = String.valueOf(inputBox.getSelectedItem());
-        String currentOutputDevice = String.valueOf(outputBox.getSelectedItem());
+    // The method for refreshing the device comboboxes, which only asks the registry to rescan in the background so that the
+    //      event dispatch thread never waits for the devices to be enumerated; any changes found arrive at applyDeviceChange
+    private void refreshDeviceLists() { registry.requestRefresh(); }
+
+    // Applies the devices that appeared or disappeared to the comboboxes; must be called on the event dispatch thread
+    private void applyDeviceChange(MidiDeviceRegistry.Change change) {
+        removeDevices(change.removedInputs, inputDevicesMap, inputBox);
+        removeDevices(change.removedOutputs, outputDevicesMap, outputBox);
 
-        // Clear all current lists
-        inputBox.removeAllItems();
-        outputBox.removeAllItems();
-        inputDevicesMap.clear();
-        outputDevicesMap.clear();
+        // Add the registry's current devices rather than just the change's, so that a device sharing its name with a
+        //      removed device takes its place; devices already listed are left untouched
+        addDevices(registry.getInputDevices(), inputDevicesMap, inputBox);
+        addDevices(registry.getOutputDevices(), outputDevicesMap, outputBox);
 
-        // Retrieve and iterate over the list of MIDI devices, adding to the hashmaps as necessary
-        MidiDevice.Info[] devices = MidiSystem.getMidiDeviceInfo();
+        // If not currently splitting, starting, or stopping, only allow starting while both comboboxes have a device selected
+        if (processor == null && pendingStart == null && pendingStop == null) {
+            startButton.setEnabled(inputBox.getSelectedItem() != null && outputBox.getSelectedItem() != null);
+        } // End if(idle)
+    } // End applyDeviceChange method
+
+    // Adds the devices that aren't listed yet to a combobox and its name map, keeping the current selection
+    private static void addDevices(List<MidiDevice.Info> devices, Map<String, MidiDevice.Info> map, JComboBox<String> box) {
         for (MidiDevice.Info d : devices) {
-            try {
-                MidiDevice device = MidiSystem.getMidiDevice(d);
-                // If the device has a transmitter, then it transmits to us and is therefore an input port
-                if (device.getMaxTransmitters() != 0) { inputDevicesMap.put(d.getName(), d); }
-                // If the device has a receiver, then it receives from us and is therefore an output port
-                if (device.getMaxReceivers() != 0) { outputDevicesMap.put(d.getName(), d); }
-            } catch (MidiUnavailableException ignored) {} // Skip device if unavailable
-        } // End for (d : devices)
-
-        // Add all hashmap keys to the comboboxes
-        inputDevicesMap.keySet().forEach((i) -> inputBox.addItem(i));
-        outputDevicesMap.keySet().forEach((i) -> outputBox.addItem(i));
-
-        // Attempt to restore the selected devices
-        // Note: If the previously selected device is not found, the selection will remain as the first entry
-        if (currentInputDevice != null) { inputBox.setSelectedItem(currentInputDevice); }
-        if (currentOutputDevice != null) { outputBox.setSelectedItem(currentOutputDevice); }
-    } // End refreshDeviceLists method
-
-    // The method for starting the MidiProcessor
-    private void startSplitting() throws MidiUnavailableException, IllegalArgumentException {
-        MidiProcessor newProcessor;
-
-        // Ensure the input and output devices are closed and set to null
-        if (inputDevice != null) {if (inputDevice.isOpen()) { inputDevice.close(); }}
-        if (outputDevice != null) {if (outputDevice.isOpen()) { outputDevice.close(); }}
-        midiIn = null;
-        inputDevice = null;
-        outputDevice = null;
+            if (map.put(d.getName(), d) == null) { box.addItem(d.getName()); }
+        } // End for(d : devices)
+    } // End addDevices method
+
+    // Removes devices from a combobox and its name map, unless another device with the same name has replaced them
+    private static void removeDevices(List<MidiDevice.Info> devices, Map<String, MidiDevice.Info> map, JComboBox<String> box) {
+        for (MidiDevice.Info d : devices) {
+            if (map.get(d.getName()) != d) { continue; }
+            map.remove(d.getName());
+            box.removeItem(d.getName());
+        } // End for(d : devices)
+    } // End removeDevices method
+
+    // The method for starting the MidiProcessor, which has the worker open the selected devices and returns immediately;
+    //      the outcome arrives at finishStarting
+    private void startSplitting() {
+        MidiDevice.Info inputInfo;
+        MidiDevice.Info outputInfo;
+        int attempt = ++startAttempts;
 
         // Ensure an item is selected in both boxes
         if (inputBox.getSelectedItem() == null || outputBox.getSelectedItem() == null) {
-            throw new IllegalArgumentException("null item in combobox");
-        }
+            startFailed(new IllegalArgumentException("null item in combobox"));
+            return;
+        } // End if(no selection)
+        inputInfo = inputDevicesMap.get(inputBox.getSelectedItem().toString());
+        outputInfo = outputDevicesMap.get(outputBox.getSelectedItem().toString());
+
+        // Disable everything but the stop button, which cancels starting until the devices are open
+        setControlsEnabled(false);
+        stopButton.setEnabled(true);
+        stopButton.setToolTipText("Cancel");
+        showProgress("Opening '" + inputInfo.getName() + "'...");
+        pendingStart = worker.submit(
+                () -> openDevices(inputInfo, outputInfo, attempt),
+                Connection::close,
+                future -> SwingUtilities.invokeLater(() -> finishStarting(future))
+        ); // End worker.submit call
+    } // End startSplitting method
+
+    // Borrows the input device and opens the processor on the worker thread, returning the input again if either fails
+    private Connection openDevices(MidiDevice.Info inputInfo, MidiDevice.Info outputInfo, int attempt)
+            throws MidiUnavailableException, InterruptedException {
+        MidiDevice input = MidiSystem.getMidiDevice(inputInfo);
+        MidiDevice output = MidiSystem.getMidiDevice(outputInfo);
+        MidiDevicePool.Lease lease = null;
+        MidiProcessor newProcessor = null;
 
-        // Attempt to pass the necessary information to the MIDI processor
         try {
-            // Retrieve the input and output devices, and explicitly open the input device
-            inputDevice = MidiSystem.getMidiDevice(inputDevicesMap.get(inputBox.getSelectedItem().toString()));
-            outputDevice = MidiSystem.getMidiDevice(outputDevicesMap.get(outputBox.getSelectedItem().toString()));
-            inputDevice.open();
-
-            // Get the transmitter of the input device
-            midiIn = inputDevice.getTransmitter();
-
-            // Construct the new MIDI processor before overwriting the current processor. This is done because the new processor
-            // construction is the last call that could generate an exception, so we want to ensure that the current processor
-            // is preserved just in case the new processor construction raises an exception. We will also ensure that the previous
-            // MIDI processor was closed
-            // Note: Although we close the processor here, I strongly recommend closing it beforehand to avoid issues with
-            //      creating a new MidiProcessor using the same output device due to the original MidiProcessor potentially
-            //      holding a lock on it
-            if (processor != null) { if (processor.isRunning()) { processor.close(); }}
-            newProcessor = new MidiProcessor(outputDevice, MidiSplitter.debugMode());
-            processor = newProcessor;
-
-            // Set the transmitter to transmit to the processor
-            midiIn.setReceiver(processor);
-        } catch (MidiUnavailableException | IllegalArgumentException e) { // Handle both types of exception
-            // If e is an IllegalArgumentException, then something about the requested devices has changed (e.g. it was
-            // removed), so we need to refresh the lists)
-            if (e instanceof IllegalArgumentException) {
-                // Simulate pressing the refresh button so the Windows warning is displayed if necessary
-                refreshButton.doClick();
-            } // End if(e ∈ IllegalArgumentException)
-
-            // Close input device if necessary and reset devices to null, forwarding the exception
-            // Note: midiIn is also closed by inputDevice.close
-            if (inputDevice != null) {if (inputDevice.isOpen()) { inputDevice.close(); }}
-            midiIn = null;
-            inputDevice = null;
-            outputDevice = null;
+            // Borrow a transmitter of the input device, which is only opened if the pool doesn't still have it open
+            lease = worker.borrowTransmitter(devicePool, input);
+
+            // Construct the MIDI processor, which opens the output device, and set the transmitter to transmit to it
+            SwingUtilities.invokeLater(() -> {
+                if (attempt == startAttempts && pendingStart != null) { showProgress("Opening '" + outputInfo.getName() + "'..."); }
+            }); // End invokeLater call
+            newProcessor = worker.openProcessor(output, MidiSplitter.debugMode(), devicePool);
+            newProcessor.registerMBean(); // Allow the live channel state to be monitored through JMX
+            lease.getTransmitter().setReceiver(newProcessor);
+        } catch (MidiUnavailableException | IllegalArgumentException | InterruptedException e) {
+            // Close the processor and return the input device if necessary, forwarding the exception
+            new Connection(lease, output, newProcessor).close();
             throw e;
-        } // End try {} catch(Exception)
+        } // End try {} catch(MidiUnavailableException | IllegalArgumentException | InterruptedException)
+        return new Connection(lease, output, newProcessor);
+    } // End openDevices method
+
+    // Applies the outcome of opening the devices; must be called on the event dispatch thread
+    private void finishStarting(Future<Connection> future) {
+        Connection connection;
+
+        // Ignore the outcome of an attempt that was already cancelled and has since been superseded
+        if (future != pendingStart) { return; }
+        pendingStart = null;
+        hideProgress();
+        stopButton.setToolTipText(null);
+
+        try {
+            connection = future.get(); // Doesn't wait, since the attempt is done
+        } catch (CancellationException | InterruptedException e) {
+            setControlsEnabled(true);
+            stopButton.setEnabled(false);
+            return;
+        } catch (ExecutionException e) {
+            setControlsEnabled(true);
+            stopButton.setEnabled(false);
+            startFailed(e.getCause());
+            return;
+        } // End try {} catch(CancellationException | InterruptedException) {} catch(ExecutionException)
+        inputLease = connection.inputLease;
+        inputDevice = inputLease.getDevice();
+        outputDevice = connection.output;
+        midiIn = inputLease.getTransmitter();
+        processor = connection.processor;
 
         // Disable the start and refresh buttons, and enable the stop button
-        startButton.setEnabled(false);
-        refreshButton.setEnabled(false);
-        outputBox.setEnabled(false);
-        inputBox.setEnabled(false);
+        setControlsEnabled(false);
         stopButton.setEnabled(true);
-    } // End startSplitting method
-
-    // The method for stopping the MidiProcessor
+    } // End finishStarting method
+
+    // Lets the user know why starting failed so they can try again; must be called on the event dispatch thread
+    private void startFailed(Throwable cause) {
+        if (cause instanceof MidiUnavailableException) {
+            // No resource available, allow user to try again
+            JOptionPane.showMessageDialog(
+                    SwingUtilities.getAncestorOfClass(JFrame.class, mainPanel),
+                    "<html><body><p style='width: 203px;'>" +
+                            "Error accessing MIDI device." +
+                            ((cause.getMessage() != null) ? "<br><br>" + cause.getMessage() : "") +
+                            "</p></body></html>",
+                    "MIDI Device Error",
+                    JOptionPane.WARNING_MESSAGE
+            ); // End showMessageDialog call
+        } // End if(cause instanceof MidiUnavailableException)
+        else if (cause instanceof IllegalArgumentException) {
+            // Something about the requested devices has changed (e.g. it was removed), so we need to refresh the lists
+            // Note: Simulate pressing the refresh button so the Windows warning is displayed if necessary
+            refreshButton.doClick();
+            JOptionPane.showMessageDialog(
+                    SwingUtilities.getAncestorOfClass(JFrame.class, mainPanel),
+                    "<html><body><p style='width: 203px;'>" +
+                            "Selected MIDI device removed, the list will now be refreshed." +
+                            "</p></body></html>",
+                    "MIDI Device Error",
+                    JOptionPane.WARNING_MESSAGE
+            ); // End showMessageDialog call
+        } // End if(cause instanceof MidiUnavailableException) {} else if(cause instanceof IllegalArgumentException)
+        else if (cause instanceof RuntimeException) { throw (RuntimeException) cause; }
+        else if (cause instanceof Error) { throw (Error) cause; }
+        // Otherwise the attempt was interrupted, which only happens when it's cancelled
+    } // End startFailed method
+
+    // The method for stopping the MidiProcessor, which has the worker close the devices and returns immediately
     private void stopSplitting() {
-        // Shutdown the MIDI processor
-        if (processor != null) {
-            processor.close();
-            processor = null;
-        } // End if(processor != null)
-
-        // Close input device if necessary and reset devices to null, forwarding the exception
-        // Note: midiIn is also closed by inputDevice.close
-        if (inputDevice != null) {if (inputDevice.isOpen()) { inputDevice.close(); }}
+        Connection stopping = new Connection(inputLease, outputDevice, processor);
+
+        // Reset devices to null, then disable everything until the worker has released them
+        processor = null;
+        inputLease = null;
         midiIn = null;
         inputDevice = null;
         outputDevice = null;
+        setControlsEnabled(false);
+        stopButton.setEnabled(false);
+        showProgress("Stopping...");
+        pendingStop = worker.submit(
+                () -> {
+                    stopping.close();
+                    return null;
+                },
+                null,
+                future -> SwingUtilities.invokeLater(this::finishStopping)
+        ); // End worker.submit call
+    } // End stopSplitting method
+
+    // Re-enables starting once the devices have been closed; must be called on the event dispatch thread
+    private void finishStopping() {
+        pendingStop = null;
+        hideProgress();
 
         // Disable the stop button, and enable the start and refresh buttons
         stopButton.setEnabled(false);
-        refreshButton.setEnabled(true);
-        outputBox.setEnabled(true);
-        inputBox.setEnabled(true);
-        startButton.setEnabled(true);
-    } // End stopSplittingMethod
+        setControlsEnabled(true);
+    } // End finishStopping method
+
+    // Enables or disables the start and refresh buttons and the comboboxes together
+    private void setControlsEnabled(boolean enabled) {
+        startButton.setEnabled(enabled);
+        refreshButton.setEnabled(enabled);
+        outputBox.setEnabled(enabled);
+        inputBox.setEnabled(enabled);
+    } // End setControlsEnabled method
+
+    // Shows what the worker is doing in the title of the frame, with a busy cursor over the form
+    private void showProgress(String progress) {
+        JFrame frame = (JFrame) SwingUtilities.getAncestorOfClass(JFrame.class, mainPanel);
+        if (frame != null) {
+            if (title == null) { title = frame.getTitle(); }
+            frame.setTitle(title + " - " + progress);
+        } // End if(frame != null)
+        mainPanel.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+    } // End showProgress method
+
+    // Restores the title of the frame and the cursor once the worker is done
+    private void hideProgress() {
+        JFrame frame = (JFrame) SwingUtilities.getAncestorOfClass(JFrame.class, mainPanel);
+        if (frame != null && title != null) { frame.setTitle(title); }
+        mainPanel.setCursor(null);
+    } // End hideProgress method
+
+    // The devices and processor opened by one start, handed from the worker to the event dispatch thread as a whole
+    private class Connection {
+        final MidiDevicePool.Lease inputLease; // The lease of the input device's transmitter, which sends to the processor
+        final MidiDevice output;               // The output device the processor borrowed
+        final MidiProcessor processor;         // The processor splitting the input device's notes
+
+        Connection(MidiDevicePool.Lease inputLease, MidiDevice output, MidiProcessor processor) {
+            this.inputLease = inputLease;
+            this.output = output;
+            this.processor = processor;
+        } // End Connection(MidiDevicePool.Lease, MidiDevice, MidiProcessor) constructor
+
+        // Returns the input device to the pool so that nothing more is sent to the processor, then shuts down the
+        // processor; must be called on the worker thread
+        // Note: The pool closes the devices once they have been idle for long enough. An interrupt from cancelling is held
+        //      back until both are released, since nothing else would release them
+        void close() {
+            boolean interrupted = Thread.interrupted();
+            try {
+                if (inputLease != null) { worker.close("'" + inputLease.getDevice().getDeviceInfo().getName() + "'", inputLease::close); }
+            } catch (InterruptedException e) { interrupted = true; }
+            try {
+                if (processor != null) { worker.close("the processor", processor::close); }
+            } catch (InterruptedException e) { interrupted = true; }
+            if (interrupted) { Thread.currentThread().interrupt(); }
+        } // End close method
+    } // End Connection class
 } // End MidiSplitterForm class
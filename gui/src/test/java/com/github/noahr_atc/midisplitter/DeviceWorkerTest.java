@@ -0,0 +1,215 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+
+import org.junit.Test;
+
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Transmitter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link DeviceWorker}, using a device whose {@code open()} blocks until it is allowed to finish.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class DeviceWorkerTest {
+    private static final long TIMEOUT_MILLIS = 100; // The timeout of the workers tested
+
+    @Test(timeout = 10000)
+    public void opensADeviceThatOpensInTime() throws Exception {
+        DeviceWorker worker = new DeviceWorker(TIMEOUT_MILLIS);
+        StubDevice device = new StubDevice(false);
+
+        worker.open(device);
+        assertTrue(device.isOpen());
+        assertEquals(0, device.closes.get());
+        assertTrue(worker.shutdown(1000));
+    } // End opensADeviceThatOpensInTime method
+
+    @Test(timeout = 10000)
+    public void reportsTheFailureOfACall() throws Exception {
+        DeviceWorker worker = new DeviceWorker(TIMEOUT_MILLIS);
+        StubDevice device = new StubDevice(false);
+
+        device.failure = new MidiUnavailableException("in use");
+        try {
+            worker.open(device);
+            fail("opened a device that failed to open");
+        } catch (MidiUnavailableException e) { assertSame(device.failure, e); }
+        assertTrue(worker.shutdown(1000));
+    } // End reportsTheFailureOfACall method
+
+    @Test(timeout = 10000)
+    public void closesADeviceThatOpensAfterTimingOut() throws Exception {
+        DeviceWorker worker = new DeviceWorker(TIMEOUT_MILLIS);
+        StubDevice device = new StubDevice(true);
+        long start = System.nanoTime();
+
+        try {
+            worker.open(device);
+            fail("waited for a device that never opened");
+        } catch (MidiUnavailableException e) { assertTrue(e.getMessage(), e.getMessage().contains("timed out")); }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS));
+
+        // Once the driver finally returns, the device nobody is waiting for is closed again
+        device.proceed.countDown();
+        assertTrue(device.closed.await(5, TimeUnit.SECONDS));
+        assertFalse(device.isOpen());
+        assertEquals(1, device.closes.get());
+        assertTrue(worker.shutdown(1000));
+    } // End closesADeviceThatOpensAfterTimingOut method
+
+    @Test(timeout = 10000)
+    public void closesADeviceThatOpensAfterTheWaiterIsInterrupted() throws Exception {
+        DeviceWorker worker = new DeviceWorker(DeviceWorker.DEFAULT_TIMEOUT_MILLIS);
+        StubDevice device = new StubDevice(true);
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try { worker.open(device); } catch (Exception e) { thrown.set(e); }
+        }); // End Thread constructor call
+
+        waiter.start();
+        assertTrue(device.entered.await(5, TimeUnit.SECONDS));
+        waiter.interrupt();
+        waiter.join();
+        assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof InterruptedException);
+
+        device.proceed.countDown();
+        assertTrue(device.closed.await(5, TimeUnit.SECONDS));
+        assertFalse(device.isOpen());
+        assertTrue(worker.shutdown(1000));
+    } // End closesADeviceThatOpensAfterTheWaiterIsInterrupted method
+
+    @Test(timeout = 10000)
+    public void discardsTheResultOfATaskCancelledWhileRunning() throws Exception {
+        DeviceWorker worker = new DeviceWorker(TIMEOUT_MILLIS);
+        StubDevice device = new StubDevice(false);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        List<MidiDevice> discarded = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger done = new AtomicInteger(0);
+        Future<MidiDevice> future;
+
+        // The task ignores being interrupted and still opens the device, which must then be closed by the discard action
+        future = worker.submit(() -> {
+            running.countDown();
+            while (true) {
+                try {
+                    proceed.await();
+                    break;
+                } catch (InterruptedException e) { /* Keep waiting, like a task that doesn't check for interrupts */ }
+            } // End while(true)
+            worker.open(device);
+            return device;
+        }, d -> {
+            discarded.add(d);
+            d.close();
+        }, f -> done.incrementAndGet()); // End worker.submit call
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(true));
+        assertEquals(1, done.get());
+
+        // Shutting down waits for the task, which can still make device calls
+        proceed.countDown();
+        assertTrue(worker.shutdown(5000));
+        assertEquals(Collections.singletonList(device), discarded);
+        assertFalse(device.isOpen());
+        assertEquals(1, done.get());
+    } // End discardsTheResultOfATaskCancelledWhileRunning method
+
+    // A device that can be made to block in open until allowed to finish, as a misbehaving driver might
+    private static class StubDevice implements MidiDevice {
+        final CountDownLatch entered = new CountDownLatch(1); // Counted down once open has been called
+        final CountDownLatch proceed = new CountDownLatch(1); // Counted down to let a blocking open finish
+        final CountDownLatch closed = new CountDownLatch(1);  // Counted down once close has been called
+        final AtomicInteger closes = new AtomicInteger(0);    // The number of times close has been called
+        private final boolean blocking;                       // Whether open blocks until proceed is counted down
+        private volatile boolean open = false;                // Whether the device is open
+        volatile MidiUnavailableException failure = null;     // The exception open throws, or null to succeed
+
+        StubDevice(boolean blocking) { this.blocking = blocking; }
+
+        @Override
+        public Info getDeviceInfo() { return new Info("Stub", "Test", "A device whose open can block", "1.0") {}; }
+
+        @Override
+        public void open() throws MidiUnavailableException {
+            entered.countDown();
+            if (failure != null) { throw failure; }
+
+            // Like a driver stuck in a native call, don't give up when interrupted
+            while (blocking) {
+                try {
+                    proceed.await();
+                    break;
+                } catch (InterruptedException e) { /* Keep blocking */ }
+            } // End while(blocking)
+            open = true;
+        } // End open method
+
+        @Override
+        public void close() {
+            open = false;
+            closes.incrementAndGet();
+            closed.countDown();
+        } // End close method
+
+        @Override
+        public boolean isOpen() { return open; }
+
+        @Override
+        public long getMicrosecondPosition() { return -1; }
+
+        @Override
+        public int getMaxReceivers() { return 0; }
+
+        @Override
+        public int getMaxTransmitters() { return 0; }
+
+        @Override
+        public Receiver getReceiver() throws MidiUnavailableException { throw new MidiUnavailableException("no receivers"); }
+
+        @Override
+        public List<Receiver> getReceivers() { return Collections.emptyList(); }
+
+        @Override
+        public Transmitter getTransmitter() throws MidiUnavailableException { throw new MidiUnavailableException("no transmitters"); }
+
+        @Override
+        public List<Transmitter> getTransmitters() { return Collections.emptyList(); }
+    } // End StubDevice class
+} // End DeviceWorkerTest class
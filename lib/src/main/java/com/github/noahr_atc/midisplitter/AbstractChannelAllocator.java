@@ -0,0 +1,244 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * A {@link ChannelAllocator} that tracks how many notes are using each channel in constant time, leaving only the choice
+ * of channel to subclasses.
+ * <br><br>
+ * Each channel has a capacity, which is the number of notes it can play at once before it stops being available. By
+ * default every channel has a capacity of 1, but instruments that are polyphonic on each channel can be given more, and
+ * channels can be excluded altogether with a capacity of 0, e.g. the General MIDI drum channel or channels wired to
+ * nothing.
+ * <br><br>
+ * Channels are grouped into load buckets, where bucket {@code n} is a 64-bit mask of every channel currently at load
+ * level {@code n}. A channel's level is its number of uses plus the difference between the highest capacity and its own,
+ * which is precomputed for each channel, so channels with the most room left are always in the lowest bucket and
+ * channels at their capacity are at the highest capacity's level. With the default capacity the level is simply the
+ * number of uses. The lowest non-empty bucket is tracked as uses are added and removed, and the set of channels with
+ * room left is kept as a separate mask, so both are available in constant time. The buckets only grow when a channel
+ * reaches a higher load than ever before, so allocating and releasing don't create any objects once the allocator has
+ * warmed up.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public abstract class AbstractChannelAllocator implements ChannelAllocator {
+    private final int channelCount;       // The number of channels allocated between
+    private final long allChannels;       // The mask with a bit set for every channel
+    private final long enabledChannels;   // The mask with a bit set for every channel with a capacity above 0
+    private final int[] capacities;       // The number of notes each channel can play at once, or 0 if it is excluded
+    private final int[] levelOffsets;     // The load level of each channel while it has no uses
+    private final long[] initialLoadMasks; // The load buckets while no channel has any uses
+    private final int[] uses;             // The current number of uses of each channel
+    private long[] loadMasks;             // The mask of channels at load level n, indexed by n
+    private long availableChannels;       // The mask of channels with fewer uses than their capacity
+    private int minLoad;                  // The lowest n where loadMasks[n] is non-zero
+
+    /**
+     * Constructs an {@code AbstractChannelAllocator} for a number of channels, with all channels available and each able
+     * to play a single note at once.
+     *
+     * @param channelCount the number of channels to allocate between
+     * @throws IllegalArgumentException if {@code channelCount} is less than 1 or greater than {@link #MAX_CHANNELS}
+     */
+    protected AbstractChannelAllocator(int channelCount) { this(uniformCapacities(channelCount)); }
+
+    /**
+     * Constructs an {@code AbstractChannelAllocator} for the {@value #CHANNELS} channels of a single output, with all
+     * channels available and each able to play a single note at once.
+     */
+    protected AbstractChannelAllocator() { this(CHANNELS); }
+
+    /**
+     * Constructs an {@code AbstractChannelAllocator} with a capacity for each channel, with all channels available. The
+     * number of channels is the length of {@code capacities}, and channels with a capacity of 0 are never allocated.
+     *
+     * @param capacities the number of notes each channel can play at once, or 0 to exclude it; the array is copied
+     * @throws IllegalArgumentException if there are less than 1 or more than {@link #MAX_CHANNELS} capacities, any of
+     *                                  them is negative or greater than {@link #MAX_CAPACITY}, or all of them are 0
+     */
+    protected AbstractChannelAllocator(int[] capacities) {
+        int maxCapacity = 0;
+        long enabled = 0;
+
+        if (capacities.length < 1 || capacities.length > MAX_CHANNELS) {
+            throw new IllegalArgumentException("channel count out of range: " + capacities.length);
+        } // End if(channelCount out of range)
+        for (int i = 0; i < capacities.length; i++) {
+            if (capacities[i] < 0 || capacities[i] > MAX_CAPACITY) {
+                throw new IllegalArgumentException("capacity of channel " + i + " out of range: " + capacities[i]);
+            } // End if(capacity out of range)
+            if (capacities[i] > 0) { enabled |= 1L << i; }
+            maxCapacity = Math.max(maxCapacity, capacities[i]);
+        } // End for(i < channelCount)
+        if (enabled == 0) { throw new IllegalArgumentException("every channel is excluded"); }
+
+        channelCount = capacities.length;
+        allChannels = (channelCount == 64) ? -1L : (1L << channelCount) - 1;
+        enabledChannels = enabled;
+        this.capacities = capacities.clone();
+        levelOffsets = new int[channelCount];
+        initialLoadMasks = new long[maxCapacity];
+        for (int i = 0; i < channelCount; i++) {
+            // Excluded channels get the level of a full channel, so that they can never look like they have room
+            levelOffsets[i] = maxCapacity - capacities[i];
+            if (capacities[i] > 0) { initialLoadMasks[levelOffsets[i]] |= 1L << i; }
+        } // End for(i < channelCount)
+        uses = new int[channelCount];
+        loadMasks = new long[Math.max(64, 2 * maxCapacity)];
+        System.arraycopy(initialLoadMasks, 0, loadMasks, 0, maxCapacity);
+        availableChannels = enabledChannels;
+        minLoad = 0; // The channels with the highest capacity start at level 0
+    } // End AbstractChannelAllocator(int[]) constructor
+
+    /**
+     * Chooses a channel using {@link #choose(int)} and adds a use to it.
+     *
+     * @param preferredChannel the channel the note was originally sent on, which the policy may prefer
+     * @return the chosen channel
+     */
+    @Override
+    public final int allocate(int preferredChannel) {
+        int channel = choose(preferredChannel);
+        addUse(channel);
+        return channel;
+    } // End allocate method
+
+    /**
+     * Chooses the channel for a new note, without adding a use to it. Channels with a capacity of 0 must not be chosen;
+     * choosing from {@link #getAvailableMask()} and {@link #getLeastUsedMask()} guarantees that.
+     *
+     * @param preferredChannel the channel the note was originally sent on, which the policy may prefer
+     * @return the chosen channel, from 0 to {@link #getChannelCount()} - 1
+     */
+    protected abstract int choose(int preferredChannel);
+
+    @Override
+    public void release(int channel) {
+        int load = uses[channel];
+        int level = load + levelOffsets[channel];
+        long bit = 1L << channel;
+
+        if (load == 0) { return; }
+        loadMasks[level] &= ~bit;
+        loadMasks[level - 1] |= bit;
+        if (load == capacities[channel]) { availableChannels |= bit; }
+        uses[channel] = load - 1;
+        if (level - 1 < minLoad) { minLoad = level - 1; }
+    } // End release method
+
+    @Override
+    public final int getChannelCount() { return channelCount; }
+
+    @Override
+    public final int getUses(int channel) { return uses[channel]; }
+
+    @Override
+    public final int getCapacity(int channel) { return capacities[channel]; }
+
+    @Override
+    public final boolean isAvailable(int channel) {
+        return channel >= 0 && channel < channelCount && (availableChannels & (1L << channel)) != 0;
+    } // End isAvailable method
+
+    @Override
+    public final int firstAvailable() { return (availableChannels == 0) ? -1 : Long.numberOfTrailingZeros(availableChannels); }
+
+    /**
+     * Finds the channel with the most room left or, if every channel is at its capacity, the channel with the fewest
+     * notes beyond its capacity, choosing the lowest numbered channel if several are equal. With the default capacity this
+     * is the channel with the least uses.
+     *
+     * @return the least used channel
+     */
+    @Override
+    public final int leastUsed() { return Long.numberOfTrailingZeros(loadMasks[minLoad]); }
+
+    /**
+     * Removes all uses from all channels. Only the buckets that can be occupied are touched, so the time taken
+     * doesn't depend on the highest load ever reached. Subclasses that keep their own state should override this to reset it as well.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < channelCount; i++) {
+            loadMasks[uses[i] + levelOffsets[i]] = 0;
+            uses[i] = 0;
+        } // End for(i < channelCount)
+        System.arraycopy(initialLoadMasks, 0, loadMasks, 0, initialLoadMasks.length);
+        availableChannels = enabledChannels;
+        minLoad = 0;
+    } // End reset method
+
+    /**
+     * Retrieves the set of all channels this allocator covers, including any that are excluded.
+     *
+     * @return a mask with bit {@code n} set for every channel {@code n} below {@link #getChannelCount()}
+     */
+    protected final long getChannelMask() { return allChannels; }
+
+    /**
+     * Retrieves the set of channels that aren't excluded, i.e. that have a capacity above 0.
+     *
+     * @return a mask with bit {@code n} set if channel {@code n} can be allocated
+     */
+    protected final long getEnabledMask() { return enabledChannels; }
+
+    /**
+     * Retrieves the set of channels with fewer uses than their capacity.
+     *
+     * @return a mask with bit {@code n} set if channel {@code n} is available
+     */
+    protected final long getAvailableMask() { return availableChannels; }
+
+    /**
+     * Retrieves the set of channels with the most room left as described by {@link #leastUsed()}, which is a subset of the
+     * available channels if there are any. Excluded channels are never included.
+     *
+     * @return a mask with bit {@code n} set if channel {@code n} is one of the least used channels; never 0
+     */
+    protected final long getLeastUsedMask() { return loadMasks[minLoad]; }
+
+    // Creates the capacities of a number of channels that can each play a single note
+    private static int[] uniformCapacities(int channelCount) {
+        int[] capacities;
+
+        if (channelCount < 1 || channelCount > MAX_CHANNELS) {
+            throw new IllegalArgumentException("channel count out of range: " + channelCount);
+        } // End if(channelCount out of range)
+        capacities = new int[channelCount];
+        Arrays.fill(capacities, 1);
+        return capacities;
+    } // End uniformCapacities method
+
+    // Adds one to the number of notes using a channel
+    private void addUse(int channel) {
+        int load = uses[channel];
+        int level = load + levelOffsets[channel];
+        long bit = 1L << channel;
+
+        if (level + 1 == loadMasks.length) { loadMasks = Arrays.copyOf(loadMasks, loadMasks.length * 2); }
+        loadMasks[level] &= ~bit;
+        loadMasks[level + 1] |= bit;
+        if (load + 1 >= capacities[channel]) { availableChannels &= ~bit; }
+        uses[channel] = load + 1;
+        if (level == minLoad && loadMasks[level] == 0) { minLoad = level + 1; }
+    } // End addUse method
+} // End AbstractChannelAllocator class
@@ -0,0 +1,232 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.ShortMessage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decouples a {@link MidiProcessor} from a slow downstream receiver. Translated messages are published into a
+ * preallocated ring buffer and forwarded by a dedicated dispatcher thread, so the sending thread only waits if the
+ * buffer is full.
+ * <br><br>
+ * Messages can be published either as {@link MidiMessage} objects or packed as described by {@link PackedMidiMessage}.
+ * Packed messages are forwarded through a {@link ShortMessage} owned by the dispatcher and reused for every packed
+ * message, so no objects are created for them. Each message carries the output port it is routed to, which is passed
+ * downstream along with it.
+ * <br><br>
+ * The ring buffer supports a single producer, as described by {@link OutputStage}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class AsyncOutputStage implements OutputStage {
+    private final MidiMessage[] messages;               // The ring of messages awaiting dispatch
+    private final int[] packedMessages;                 // The ring of packed messages where messages holds null, otherwise ports
+    private final long[] timeStamps;                    // The ring of timestamps matching messages
+    private final ShortMessage packedMessage;           // The dispatcher's reusable message for forwarding packed messages
+    private final int mask;                             // The mask converting a sequence number into a ring index
+    private final AtomicLong published;                 // The sequence number after the last published message
+    private final AtomicLong consumed;                  // The sequence number after the last dispatched message
+    private final WaitStrategy waitStrategy;            // How the dispatcher and a blocked producer wait
+    private final Downstream downstream;                // The consumer that dispatched messages are forwarded to
+    private final Thread dispatcher;                    // The thread forwarding messages downstream
+    private volatile boolean running;                   // Whether the dispatcher should keep waiting for messages
+    private volatile boolean dispatcherParked;          // Whether the dispatcher is parked and needs to be woken
+    private long nextSequence;                          // The producer's next sequence number
+    private long cachedConsumed;                        // The producer's last read of consumed, to avoid rereading it
+
+    /**
+     * Constructs an {@code AsyncOutputStage} and starts its dispatcher thread.
+     *
+     * @param capacity     the minimum number of messages that can be queued; rounded up to a power of two
+     * @param waitStrategy how the dispatcher waits for messages and how a producer waits for space
+     * @param downstream   the consumer to forward messages, their ports, and their timestamps to
+     * @throws IllegalArgumentException if {@code capacity} is less than 1 or greater than 2<sup>30</sup>
+     */
+    AsyncOutputStage(int capacity, WaitStrategy waitStrategy, Downstream downstream) {
+        if (capacity < 1 || capacity > (1 << 30)) { throw new IllegalArgumentException("capacity out of range: " + capacity); }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) { size <<= 1; }
+
+        messages = new MidiMessage[size];
+        packedMessages = new int[size];
+        timeStamps = new long[size];
+        packedMessage = new ShortMessage();
+        mask = size - 1;
+        published = new AtomicLong(0);
+        consumed = new AtomicLong(0);
+        this.waitStrategy = waitStrategy;
+        this.downstream = downstream;
+        running = true;
+        dispatcher = new Thread(this::dispatch, "MidiProcessor-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    } // End AsyncOutputStage(int, WaitStrategy, Downstream) constructor
+
+    /**
+     * Queues a message for dispatch, waiting according to the wait strategy while the ring buffer is full. Must only be
+     * called by one thread at a time.
+     *
+     * @param message   the message to forward
+     * @param port      the output port the message is routed to, or {@code -1} for every port
+     * @param timeStamp the timestamp of the message
+     */
+    @Override
+    public void publish(MidiMessage message, int port, long timeStamp) { enqueue(message, port, timeStamp); }
+
+    /**
+     * Queues a packed message for dispatch, waiting according to the wait strategy while the ring buffer is full. Must only
+     * be called by one thread at a time.
+     *
+     * @param message   the message to forward, packed and routed as described by {@link PackedMidiMessage}
+     * @param timeStamp the timestamp of the message
+     */
+    @Override
+    public void publish(int message, long timeStamp) { enqueue(null, message, timeStamp); }
+
+    /**
+     * Queues a message that is dispatched in order with every other message, which the ring buffer already guarantees.
+     * Must only be called by one thread at a time.
+     *
+     * @param message the message to forward
+     */
+    @Override
+    public void publishBarrier(MidiMessage message) { enqueue(message, -1, -1); }
+
+    // Queues either a message object and its port, or a packed message if the object is null
+    private void enqueue(MidiMessage message, int packed, long timeStamp) {
+        long sequence = nextSequence;
+        int index;
+
+        // Wait for the dispatcher to free a slot, only rereading its progress when the cached value says we're full
+        while (sequence - cachedConsumed > mask) {
+            cachedConsumed = consumed.get();
+            if (sequence - cachedConsumed > mask) { waitStrategy.idle(); }
+        } // End while(full)
+
+        // Fill the slot, then publish it
+        // Note: When the dispatcher may be parked the publication must be a full volatile write, otherwise the parked
+        //      check below could be reordered before it and the wake-up lost
+        index = (int) sequence & mask;
+        messages[index] = message;
+        packedMessages[index] = packed;
+        timeStamps[index] = timeStamp;
+        nextSequence = sequence + 1;
+        if (waitStrategy == WaitStrategy.PARK) {
+            published.set(nextSequence);
+            if (dispatcherParked) { LockSupport.unpark(dispatcher); }
+        } // End if(waitStrategy == PARK)
+        else { published.lazySet(nextSequence); }
+    } // End enqueue method
+
+    /**
+     * Retrieves the number of messages waiting to be dispatched.
+     *
+     * @return the current queue depth
+     */
+    @Override
+    public int getDepth() { return (int) Math.max(0, published.get() - consumed.get()); }
+
+    /**
+     * Retrieves the number of messages the ring buffer can hold.
+     *
+     * @return the capacity of the ring buffer
+     */
+    @Override
+    public int getCapacity() { return mask + 1; }
+
+    /**
+     * Stops the dispatcher once all queued messages have been forwarded, waiting for it to finish.
+     */
+    @Override
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+        awaitTermination();
+    } // End shutdown method
+
+    /**
+     * Waits for the dispatcher to finish after a shutdown, unless called from the dispatcher itself.
+     */
+    @Override
+    public void awaitTermination() {
+        boolean interrupted = false;
+
+        if (Thread.currentThread() == dispatcher) { return; }
+        while (dispatcher.isAlive()) {
+            try { dispatcher.join(); } catch (InterruptedException e) { interrupted = true; }
+        } // End while(dispatcher.isAlive)
+        if (interrupted) { Thread.currentThread().interrupt(); }
+    } // End awaitTermination method
+
+    // The dispatcher thread's loop, forwarding messages until shut down and drained
+    private void dispatch() {
+        long next = consumed.get();
+
+        while (true) {
+            // Read running before published so that a shutdown can't slip in between draining and exiting
+            boolean keepRunning = running;
+            long available = published.get();
+
+            if (next < available) {
+                while (next < available) {
+                    int index = (int) next & mask;
+                    MidiMessage message = messages[index];
+                    int port = packedMessages[index];
+                    messages[index] = null; // Don't hold on to the message after dispatching it
+                    try {
+                        if (message == null) {
+                            message = unpack(port);
+                            port = PackedMidiMessage.getPort(port);
+                        } // End if(message == null)
+                        if (message != null) { downstream.accept(message, port, timeStamps[index]); }
+                    } catch (RuntimeException e) {
+                        // Keep dispatching even if the receiver misbehaves, since nobody else would forward the messages
+                        Logger.getLogger("MidiProcessor").log(Level.SEVERE, "Dispatching message failed", e);
+                    } // End try {} catch(RuntimeException)
+                    consumed.lazySet(++next);
+                } // End while(next < available)
+            } // End if(next < available)
+            else if (!keepRunning) { return; }
+            else if (waitStrategy == WaitStrategy.PARK) {
+                dispatcherParked = true;
+                if (published.get() == next && running) { LockSupport.park(this); }
+                dispatcherParked = false;
+            } // End if(next < available) {} else if(!keepRunning) {} else if(PARK)
+            else { waitStrategy.idle(); }
+        } // End while(true)
+    } // End dispatch method
+
+    // Loads a packed message into the reusable message, returning null if it isn't a valid short message
+    private ShortMessage unpack(int message) {
+        try {
+            packedMessage.setMessage(
+                    PackedMidiMessage.getStatus(message),
+                    PackedMidiMessage.getData1(message),
+                    PackedMidiMessage.getData2(message)
+            ); // End setMessage call
+        } catch (InvalidMidiDataException e) { return null; }
+        return packedMessage;
+    } // End unpack method
+} // End AsyncOutputStage class
@@ -0,0 +1,127 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+/**
+ * Chooses the MIDI channel each new note is assigned to, and tracks how many notes are using each channel.
+ * <br><br>
+ * A {@link MidiProcessor} calls {@link #allocate(int)} for every NOTE-ON it translates and {@link #release(int)} for the
+ * matching NOTE-OFF, so implementations should be constant-time and must not allocate on either path. Most
+ * implementations should extend {@link AbstractChannelAllocator}, which tracks the channel uses and only leaves the
+ * choice of channel to the subclass.
+ * <br><br>
+ * An allocator covers a fixed number of channels, which is 16 for a processor with a single output. A processor with
+ * several outputs allocates the channels of every output as one pool, so its allocator must cover 16 channels per
+ * output; see {@link MidiProcessor} for how pooled channel numbers map onto the outputs.
+ * <br><br>
+ * A channel is available while it has fewer uses than its {@linkplain #getCapacity(int) capacity}, which is 1 unless the
+ * allocator supports more. Channels with a capacity of 0 are excluded and never allocated.
+ * <br><br>
+ * Implementations don't need to be thread-safe, since the owning {@code MidiProcessor} only calls them while it has
+ * claimed its channel state. For the same reason, an allocator must not be shared between processors.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ * @see FirstAvailableChannelAllocator
+ * @see RoundRobinChannelAllocator
+ * @see LeastRecentlyReleasedChannelAllocator
+ */
+public interface ChannelAllocator {
+    /**
+     * The number of MIDI channels of a single output.
+     */
+    int CHANNELS = 16;
+
+    /**
+     * The maximum number of channels an allocator can cover, i.e. the channels of four outputs.
+     */
+    int MAX_CHANNELS = 64;
+
+    /**
+     * The maximum number of notes a single channel can be configured to play at once.
+     */
+    int MAX_CAPACITY = 16;
+
+    /**
+     * Retrieves the number of channels this allocator allocates between.
+     *
+     * @return the number of channels, from 1 to {@link #MAX_CHANNELS}
+     */
+    int getChannelCount();
+
+    /**
+     * Chooses the channel for a new note and adds a use to it. If no channel is available, a channel that is already in
+     * use must still be chosen.
+     *
+     * @param preferredChannel the channel the note was originally sent on, which the policy may prefer
+     * @return the chosen channel, from 0 to {@link #getChannelCount()} - 1
+     */
+    int allocate(int preferredChannel);
+
+    /**
+     * Removes a use from a channel once a note assigned to it has ended. When all uses are removed, the channel is
+     * available. Does nothing if the channel has no uses.
+     *
+     * @param channel the channel to remove a use from
+     */
+    void release(int channel);
+
+    /**
+     * Retrieves the number of notes using a channel.
+     *
+     * @param channel the channel to check
+     * @return the number of uses of {@code channel}
+     */
+    int getUses(int channel);
+
+    /**
+     * Retrieves the number of notes a channel can play at once before it stops being available.
+     *
+     * @param channel the channel to check
+     * @return the capacity of {@code channel}, or 0 if it is excluded; 1 unless the allocator supports more
+     */
+    default int getCapacity(int channel) { return 1; }
+
+    /**
+     * Checks whether a channel has room for another note.
+     *
+     * @param channel the channel to check
+     * @return {@code true} if {@code channel} has fewer uses than its capacity; {@code false} otherwise
+     */
+    default boolean isAvailable(int channel) { return getUses(channel) < getCapacity(channel); }
+
+    /**
+     * Finds the lowest numbered channel with room for another note.
+     *
+     * @return the available channel, or {@code -1} if all channels are in use
+     */
+    int firstAvailable();
+
+    /**
+     * Finds the channel with the least uses, choosing the lowest numbered channel if multiple have an equal number of uses.
+     * Allocators with capacities may instead weigh the uses against each channel's capacity.
+     *
+     * @return the least used channel
+     */
+    int leastUsed();
+
+    /**
+     * Removes all uses from all channels, returning the allocator to its initial state.
+     */
+    void reset();
+} // End ChannelAllocator interface
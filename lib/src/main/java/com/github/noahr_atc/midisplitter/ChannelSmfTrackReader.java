@@ -0,0 +1,73 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An {@link SmfTrackReader} that reads its track from a position in a shared {@link FileChannel} through a small heap
+ * buffer, so any number of tracks of the same file can be read side by side while only keeping one buffer per track in
+ * memory.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class ChannelSmfTrackReader extends SmfTrackReader {
+    private static final int BUFFER_SIZE = 8192; // The number of bytes read from the file at a time
+
+    private final FileChannel channel; // The channel of the file containing the track
+    private final ByteBuffer buffer;   // The buffer that each window of the track is read into
+    private long filePosition;         // The position in the file of the next byte to read into the buffer
+
+    /**
+     * Constructs a {@code ChannelSmfTrackReader} for the track chunk data at a position in a file.
+     *
+     * @param channel the channel of the file containing the track
+     * @param start   the position in the file of the first event of the track, just after the chunk header
+     * @param length  the length of the track chunk data
+     */
+    ChannelSmfTrackReader(FileChannel channel, long start, long length) {
+        super(length);
+        this.channel = channel;
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        filePosition = start;
+    } // End ChannelSmfTrackReader(FileChannel, long, long) constructor
+
+    /**
+     * Reads the next window of the track from the file into the buffer.
+     *
+     * @param remaining the number of bytes of the track not yet decoded
+     * @return the buffer, holding the next window
+     * @throws IOException if reading the file fails, or the file ends before the track does
+     */
+    @Override
+    protected ByteBuffer refill(long remaining) throws IOException {
+        buffer.clear();
+        if (buffer.capacity() > remaining) { buffer.limit((int) remaining); }
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, filePosition);
+            if (read < 0) { throw new EOFException("File ends in the middle of a track"); }
+            filePosition += read;
+        } // End while(buffer.hasRemaining)
+        buffer.flip();
+        return buffer;
+    } // End refill method
+} // End ChannelSmfTrackReader class
@@ -0,0 +1,235 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import javax.sound.midi.ShortMessage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the translation decisions of a {@link MidiProcessor} as fixed-size binary records, written to a log file by a
+ * background thread so that tracing doesn't slow down the thread doing the translating.
+ * <br><br>
+ * Records are written into a preallocated ring buffer. If the writer thread falls so far behind that the ring buffer is
+ * full, new records are dropped and counted rather than making the translating thread wait. The ring buffer supports a
+ * single producer; the owning {@code MidiProcessor} only records while it has claimed its channel state.
+ * <br><br>
+ * The file starts with a {@value #HEADER_SIZE} byte header: the magic number {@code "MSDL"}, the format version and
+ * record size as shorts, and the wall-clock time the log was started in milliseconds since the epoch. Each record is
+ * {@code 16 + 2n} bytes, where {@code n} is the number of channels the processor allocates between, all big-endian:
+ * <ul>
+ *     <li>the nanoseconds since the log was started (8 bytes)</li>
+ *     <li>the command: {@link ShortMessage#NOTE_ON}, {@link ShortMessage#NOTE_OFF}, or {@link ShortMessage#PROGRAM_CHANGE} (1 byte)</li>
+ *     <li>the source channel, plus 16 times the index of the input it came from if it came from an attached input (1 byte)</li>
+ *     <li>the target channel, or {@code 0xFF} if the message wasn't translated (1 byte)</li>
+ *     <li>the note number (1 byte)</li>
+ *     <li>the use count of each of the {@code n} channels after the message, as unsigned shorts ({@code 2n} bytes)</li>
+ *     <li>padding (4 bytes)</li>
+ * </ul>
+ * The number of channels can therefore be recovered from the record size. Target channels and use counts are numbered
+ * across all of the processor's outputs, as described by {@link MidiProcessor}. Logs are rendered as text by
+ * {@link DebugLogDecoder}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class DebugEventLog implements Closeable {
+    /**
+     * The magic number at the start of every log file, {@code "MSDL"}.
+     */
+    static final int MAGIC = 0x4D53444C;
+
+    /**
+     * The version of the log file format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The number of bytes in the file header.
+     */
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * The number of bytes at the start of each record before the channel use counts.
+     */
+    static final int RECORD_PREFIX_SIZE = 12;
+
+    /**
+     * The number of bytes of padding at the end of each record.
+     */
+    static final int RECORD_PADDING = 4;
+
+    /**
+     * The target channel recorded for messages that weren't translated.
+     */
+    static final int NO_TARGET = 0xFF;
+
+    private static final int CAPACITY = 8192;                                // The number of records the ring buffer holds
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // How long the writer sleeps when idle
+
+    private final FileChannel channel;   // The channel of the log file
+    private final int channelCount;      // The number of channels whose use counts are recorded
+    private final int recordSize;        // The number of bytes in each record
+    private final ByteBuffer ring;       // The ring buffer of records awaiting writing
+    private final long startNanos;       // The System.nanoTime of the start of the log, which timestamps are relative to
+    private final AtomicLong published;  // The sequence number after the last recorded record
+    private final AtomicLong consumed;   // The sequence number after the last record written to the file
+    private final AtomicLong dropped;    // The number of records dropped because the ring buffer was full
+    private final Thread writer;         // The thread writing records to the file
+    private volatile boolean running;    // Whether the writer should keep waiting for records
+    private long nextSequence;           // The producer's next sequence number
+
+    /**
+     * Creates or truncates a log file, writes its header, and starts the writer thread.
+     *
+     * @param file         the file to log to
+     * @param channelCount the number of channels the processor allocates between
+     * @throws IOException if the file can't be opened or written
+     */
+    DebugEventLog(Path file, int channelCount) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        this.channelCount = channelCount;
+        recordSize = recordSize(channelCount);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        startNanos = System.nanoTime();
+        header.putInt(MAGIC).putShort((short) VERSION).putShort((short) recordSize).putLong(System.currentTimeMillis());
+        header.flip();
+        try { while (header.hasRemaining()) { channel.write(header); }} catch (IOException e) {
+            channel.close();
+            throw e;
+        } // End try {} catch(IOException)
+
+        ring = ByteBuffer.allocate(CAPACITY * recordSize);
+        published = new AtomicLong(0);
+        consumed = new AtomicLong(0);
+        dropped = new AtomicLong(0);
+        running = true;
+        writer = new Thread(this::write, "MidiProcessor-debug-log");
+        writer.setDaemon(true);
+        writer.start();
+    } // End DebugEventLog(Path, int) constructor
+
+    /**
+     * Computes the size of the records of a log.
+     *
+     * @param channelCount the number of channels whose use counts are recorded
+     * @return the number of bytes in each record
+     */
+    static int recordSize(int channelCount) { return RECORD_PREFIX_SIZE + 2 * channelCount + RECORD_PADDING; }
+
+    /**
+     * Records a translation decision, dropping it if the ring buffer is full. Must only be called by one thread at a time.
+     *
+     * @param command   the command of the message
+     * @param source    the source channel of the message
+     * @param target    the channel the message was translated to, or {@link #NO_TARGET}
+     * @param note      the note number of the message
+     * @param allocator the allocator holding the channel use counts after the message
+     */
+    void record(int command, int source, int target, int note, ChannelAllocator allocator) {
+        long sequence = nextSequence;
+        int position;
+
+        if (sequence - consumed.get() >= CAPACITY) {
+            dropped.incrementAndGet();
+            return;
+        } // End if(full)
+
+        position = (int) (sequence % CAPACITY) * recordSize;
+        ring.putLong(position, System.nanoTime() - startNanos);
+        ring.put(position + 8, (byte) command);
+        ring.put(position + 9, (byte) source);
+        ring.put(position + 10, (byte) target);
+        ring.put(position + 11, (byte) note);
+        for (int i = 0; i < channelCount; i++) {
+            ring.putShort(position + RECORD_PREFIX_SIZE + i * 2, (short) Math.min(allocator.getUses(i), 0xFFFF));
+        } // End for(i < channelCount)
+        nextSequence = sequence + 1;
+        published.lazySet(nextSequence);
+    } // End record method
+
+    /**
+     * Retrieves the number of records dropped because the ring buffer was full.
+     *
+     * @return the number of dropped records
+     */
+    long getDroppedRecords() { return dropped.get(); }
+
+    /**
+     * Writes any remaining records, stops the writer thread, and closes the file.
+     *
+     * @throws IOException if closing the file fails
+     */
+    @Override
+    public void close() throws IOException {
+        boolean interrupted = false;
+
+        running = false;
+        LockSupport.unpark(writer);
+        while (writer.isAlive()) {
+            try { writer.join(); } catch (InterruptedException e) { interrupted = true; }
+        } // End while(writer.isAlive)
+        if (interrupted) { Thread.currentThread().interrupt(); }
+        if (dropped.get() > 0) {
+            Logger.getLogger("MidiProcessor").log(Level.WARNING, dropped.get() + " debug log records were dropped");
+        } // End if(dropped > 0)
+        channel.close();
+    } // End close method
+
+    // The writer thread's loop, writing records to the file until closed and drained
+    private void write() {
+        ByteBuffer view = ring.duplicate();
+        long next = 0;
+
+        while (true) {
+            // Read running before published so that a close can't slip in between draining and exiting
+            boolean keepRunning = running;
+            long available = published.get();
+
+            if (next < available) {
+                // Write the records in at most two contiguous runs, since they may wrap around the end of the ring buffer
+                try {
+                    while (next < available) {
+                        int start = (int) (next % CAPACITY);
+                        int end = (int) Math.min(CAPACITY, start + (available - next));
+                        view.limit(end * recordSize).position(start * recordSize);
+                        while (view.hasRemaining()) { channel.write(view); }
+                        next += end - start;
+                        consumed.lazySet(next);
+                    } // End while(next < available)
+                } catch (IOException e) {
+                    // There's no sensible way to recover from a failing log file, so stop logging rather than spin on it
+                    Logger.getLogger("MidiProcessor").log(Level.SEVERE, "Writing debug log failed", e);
+                    return;
+                } // End try {} catch(IOException)
+            } // End if(next < available)
+            else if (!keepRunning) { return; }
+            else { LockSupport.parkNanos(this, IDLE_NANOS); }
+        } // End while(true)
+    } // End write method
+} // End DebugEventLog class
@@ -0,0 +1,147 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import javax.sound.midi.ShortMessage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+
+/**
+ * Renders a binary debug log written by a {@link MidiProcessor} in debugging mode as text, one line per record.
+ * <br><br>
+ * Usage: {@code java -cp <library jar> com.github.noahr_atc.midisplitter.DebugLogDecoder <log file>...}
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class DebugLogDecoder {
+    // Disable the constructor
+    private DebugLogDecoder() {}
+
+    /**
+     * Decodes each log file given on the command line to standard output.
+     *
+     * @param args the paths of the log files to decode
+     */
+    public static void main(String[] args) {
+        int status = 0;
+
+        if (args.length == 0) {
+            System.err.println("Usage: DebugLogDecoder <log file>...");
+            System.exit(2);
+        } // End if(args.length == 0)
+        for (String a : args) {
+            try { decode(Paths.get(a), System.out); } catch (IOException e) {
+                System.err.println("DebugLogDecoder: " + a + ": " + e.getMessage());
+                status = 1;
+            } // End try {} catch(IOException)
+        } // End for(a : args)
+        System.exit(status);
+    } // End main method
+
+    /**
+     * Decodes a log file, printing one line per record.
+     *
+     * @param file the log file to decode
+     * @param out  the stream to print the decoded records to
+     * @throws IOException if the file can't be read or isn't a debug log
+     */
+    public static void decode(Path file, PrintStream out) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            long startMillis;
+            int recordSize;
+            int channelCount;
+            int ports;
+            byte[] padding;
+            StringBuilder line = new StringBuilder();
+
+            // Read the header
+            if (in.readInt() != DebugEventLog.MAGIC) { throw new IOException("Not a MIDI Splitter debug log"); }
+            if (in.readUnsignedShort() != DebugEventLog.VERSION) { throw new IOException("Unsupported debug log version"); }
+            recordSize = in.readUnsignedShort();
+            channelCount = (recordSize - DebugEventLog.recordSize(0)) / 2;
+            if (channelCount < 1 || DebugEventLog.recordSize(channelCount) != recordSize) {
+                throw new IOException("Invalid record size " + recordSize);
+            } // End if(invalid record size)
+            ports = Math.max(1, channelCount / ChannelAllocator.CHANNELS);
+            startMillis = in.readLong();
+            padding = new byte[DebugEventLog.RECORD_PADDING];
+
+            // Decode records until the end of the file, ignoring a partially written final record
+            while (true) {
+                long offset;
+                int command;
+                int source;
+                int target;
+                int note;
+                Instant time;
+
+                try { offset = in.readLong(); } catch (EOFException e) { return; }
+                try {
+                    command = in.readUnsignedByte();
+                    source = in.readUnsignedByte();
+                    target = in.readUnsignedByte();
+                    note = in.readUnsignedByte();
+                    time = Instant.ofEpochMilli(startMillis).plusNanos(offset);
+
+                    line.setLength(0);
+                    line.append(time).append(' ');
+                    switch (command) {
+                        case ShortMessage.NOTE_ON:
+                            appendSource(line.append("NOTE-ON ").append(note).append(" ["), source).append("] --> [");
+                            appendChannel(line, target, ports).append("]; ");
+                            break;
+                        case ShortMessage.NOTE_OFF:
+                            appendSource(line.append("NOTE-OFF ").append(note).append(" ["), source).append("] ");
+                            if (target == DebugEventLog.NO_TARGET) { line.append("<X>; "); }
+                            else { appendChannel(line.append("--> ["), target, ports).append("]; "); }
+                            break;
+                        case ShortMessage.PROGRAM_CHANGE:
+                            line.append("RESET-TRANSLATIONS; ");
+                            break;
+                        default:
+                            line.append("UNKNOWN ").append(command).append("; ");
+                            break;
+                    } // End switch(command)
+                    for (int i = 0; i < channelCount; i++) { line.append(in.readUnsignedShort()).append(','); }
+                    in.readFully(padding);
+                } catch (EOFException e) { return; }
+                out.println(line);
+            } // End while(true)
+        } // End try(in)
+    } // End decode method
+
+    // Appends a source channel, as "input:channel" if it came from an input attached to the processor
+    private static StringBuilder appendSource(StringBuilder line, int channel) {
+        if (channel < ChannelAllocator.CHANNELS) { return line.append(channel); }
+        return line.append(channel / ChannelAllocator.CHANNELS).append(':').append(channel % ChannelAllocator.CHANNELS);
+    } // End appendSource method
+
+    // Appends a target channel, as "port:channel" if the processor had several outputs
+    private static StringBuilder appendChannel(StringBuilder line, int channel, int ports) {
+        if (ports == 1) { return line.append(channel); }
+        return line.append(channel % ports).append(':').append(channel / ports);
+    } // End appendChannel method
+} // End DebugLogDecoder class
@@ -0,0 +1,170 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+/**
+ * A fixed-capacity binary min-heap of events, ordered by time and then by sequence number so that events at the same time
+ * keep the order they were added in. Each event carries an {@code int} value and optionally an object, held in parallel
+ * primitive arrays so that adding and removing events creates no objects.
+ * <br><br>
+ * Times are compared by the sign of their difference, like {@link System#nanoTime()} values, so they may wrap around as
+ * long as no two events in the heap are more than 2<sup>63</sup> apart. Not thread-safe.
+ *
+ * @param <T> the type of the objects carried by the events
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class EventHeap<T> {
+    private final long[] times;     // The time of each event
+    private final long[] sequences; // The sequence number of each event, which breaks ties between times
+    private final int[] values;     // The value of each event
+    private final Object[] objects; // The object of each event, or null if it carries none
+    private int size;               // The number of events in the heap
+
+    /**
+     * Constructs an empty {@code EventHeap}.
+     *
+     * @param capacity the maximum number of events the heap can hold
+     */
+    EventHeap(int capacity) {
+        times = new long[capacity];
+        sequences = new long[capacity];
+        values = new int[capacity];
+        objects = new Object[capacity];
+        size = 0;
+    } // End EventHeap(int) constructor
+
+    /**
+     * Retrieves the number of events in the heap.
+     *
+     * @return the number of events
+     */
+    int size() { return size; }
+
+    /**
+     * Checks whether the heap holds no events.
+     *
+     * @return {@code true} if the heap is empty; {@code false} otherwise
+     */
+    boolean isEmpty() { return size == 0; }
+
+    /**
+     * Adds an event to the heap, which must not be full.
+     *
+     * @param time     the time of the event
+     * @param sequence the sequence number of the event, ordering it among events at the same time
+     * @param value    the value of the event
+     * @param object   the object of the event, or {@code null}
+     */
+    void add(long time, long sequence, int value, T object) {
+        times[size] = time;
+        sequences[size] = sequence;
+        values[size] = value;
+        objects[size] = object;
+        siftUp(size++);
+    } // End add method
+
+    /**
+     * Retrieves the time of the earliest event, which must exist.
+     *
+     * @return the time of the earliest event
+     */
+    long peekTime() { return times[0]; }
+
+    /**
+     * Retrieves the value of the earliest event, which must exist.
+     *
+     * @return the value of the earliest event
+     */
+    int peekValue() { return values[0]; }
+
+    /**
+     * Retrieves the object of the earliest event, which must exist.
+     *
+     * @return the object of the earliest event, or {@code null} if it carries none
+     */
+    @SuppressWarnings("unchecked")
+    T peekObject() { return (T) objects[0]; }
+
+    /**
+     * Moves the earliest event, which must exist, to a new time and restores the heap order.
+     *
+     * @param time the new time of the event
+     */
+    void replaceHeadTime(long time) {
+        times[0] = time;
+        siftDown(0);
+    } // End replaceHeadTime method
+
+    /**
+     * Removes the earliest event, which must exist.
+     */
+    void poll() {
+        size--;
+        times[0] = times[size];
+        sequences[0] = sequences[size];
+        values[0] = values[size];
+        objects[0] = objects[size];
+        objects[size] = null; // Don't hold on to the object after removing it
+        siftDown(0);
+    } // End poll method
+
+    // Checks whether the event at one index is ordered before the event at another
+    private boolean before(int a, int b) {
+        return times[a] - times[b] < 0 || (times[a] == times[b] && sequences[a] < sequences[b]);
+    } // End before method
+
+    // Moves an event towards the root until its parent is ordered before it
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!before(i, parent)) { return; }
+            swap(i, parent);
+            i = parent;
+        } // End while(i > 0)
+    } // End siftUp method
+
+    // Moves an event towards the leaves until it is ordered before both of its children
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            if (left < size && before(left, smallest)) { smallest = left; }
+            if (left + 1 < size && before(left + 1, smallest)) { smallest = left + 1; }
+            if (smallest == i) { return; }
+            swap(i, smallest);
+            i = smallest;
+        } // End while(true)
+    } // End siftDown method
+
+    // Exchanges the events at two indices
+    private void swap(int a, int b) {
+        long time = times[a];
+        long sequence = sequences[a];
+        int value = values[a];
+        Object object = objects[a];
+        times[a] = times[b];
+        sequences[a] = sequences[b];
+        values[a] = values[b];
+        objects[a] = objects[b];
+        times[b] = time;
+        sequences[b] = sequence;
+        values[b] = value;
+        objects[b] = object;
+    } // End swap method
+} // End EventHeap class
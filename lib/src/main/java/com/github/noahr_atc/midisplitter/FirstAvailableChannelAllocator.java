@@ -0,0 +1,60 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+/**
+ * The default {@link ChannelAllocator}, which keeps notes on their original channel whenever possible.
+ * <br><br>
+ * A new note is assigned its original channel if that channel is free, otherwise the lowest numbered free channel. If
+ * no channels are free, it is assigned the least used channel, which lazily distributes a burst of notes across all of
+ * the channels so that when a channel opens up it isn't left empty while notes are stacked on another. If channels can
+ * play several notes at once, a note that can't stay on its original channel goes to the free channel with the most room
+ * left, so notes are spread out before they are stacked.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class FirstAvailableChannelAllocator extends AbstractChannelAllocator {
+    /**
+     * Constructs a {@code FirstAvailableChannelAllocator} for the {@value #CHANNELS} channels of a single output.
+     */
+    public FirstAvailableChannelAllocator() { super(); }
+
+    /**
+     * Constructs a {@code FirstAvailableChannelAllocator} for a number of channels.
+     *
+     * @param channelCount the number of channels to allocate between
+     * @throws IllegalArgumentException if {@code channelCount} is less than 1 or greater than {@link #MAX_CHANNELS}
+     */
+    public FirstAvailableChannelAllocator(int channelCount) { super(channelCount); }
+
+    /**
+     * Constructs a {@code FirstAvailableChannelAllocator} with a capacity for each channel.
+     *
+     * @param capacities the number of notes each channel can play at once, or 0 to exclude it
+     * @throws IllegalArgumentException if the capacities are invalid as described by
+     *                                  {@link AbstractChannelAllocator#AbstractChannelAllocator(int[])}
+     */
+    public FirstAvailableChannelAllocator(int[] capacities) { super(capacities); }
+
+    @Override
+    protected int choose(int preferredChannel) {
+        if (isAvailable(preferredChannel)) { return preferredChannel; }
+        return Long.numberOfTrailingZeros(getLeastUsedMask()); // The least used channels are the free ones if any are free
+    } // End choose method
+} // End FirstAvailableChannelAllocator class
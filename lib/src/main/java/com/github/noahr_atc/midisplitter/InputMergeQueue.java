@@ -0,0 +1,170 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import javax.sound.midi.MidiMessage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The merge point of the messages sent to a {@link MidiProcessor} and its inputs: a bounded queue that any number of
+ * sending threads can add messages to at once without locking, drained by whichever thread currently holds the
+ * processor's channel state.
+ * <br><br>
+ * Each slot carries a sequence number saying whether it is free for the producer that reserves it or published for the
+ * consumer. A producer reserves a slot with a single compare-and-set on the tail and then fills and publishes it, so a
+ * sender never waits for another sender, only for space when the queue is full. Nothing is created per message: short
+ * messages sent to inputs are queued packed as described by {@link PackedMidiMessage}, and other messages are queued as
+ * objects.
+ * <br><br>
+ * Only one thread may drain the queue at a time; the owning {@code MidiProcessor} only drains it while it has claimed its
+ * channel state.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class InputMergeQueue {
+    private final AtomicLongArray sequences; // The sequence each slot is free for, or one more than that once published
+    private final int[] inputs;              // The ring of the inputs the messages came from
+    private final int[] packedMessages;      // The ring of packed messages, used where messages holds null
+    private final MidiMessage[] messages;    // The ring of messages that aren't short messages
+    private final long[] timeStamps;         // The ring of timestamps matching messages
+    private final int mask;                  // The mask converting a sequence number into a ring index
+    private final AtomicLong tail;           // The sequence number of the next slot to reserve
+    private volatile long head;              // The sequence number of the next slot to drain
+
+    /**
+     * Constructs an empty {@code InputMergeQueue}.
+     *
+     * @param capacity the number of messages that can be queued, which must be a power of two
+     */
+    InputMergeQueue(int capacity) {
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) { sequences.set(i, i); }
+        inputs = new int[capacity];
+        packedMessages = new int[capacity];
+        messages = new MidiMessage[capacity];
+        timeStamps = new long[capacity];
+        mask = capacity - 1;
+        tail = new AtomicLong(0);
+        head = 0;
+    } // End InputMergeQueue(int) constructor
+
+    /**
+     * Adds a message to the queue. May be called by any number of threads at once.
+     *
+     * @param input     the index of the input the message came from
+     * @param message   the message if it isn't a short message, otherwise {@code null}
+     * @param packed    the packed short message if {@code message} is {@code null}
+     * @param timeStamp the timestamp of the message
+     * @return {@code true} if the message was queued; {@code false} if the queue is full
+     */
+    boolean offer(int input, MidiMessage message, int packed, long timeStamp) {
+        long sequence;
+        int index;
+
+        // Reserve a slot, retrying only if another producer reserved the same one first
+        while (true) {
+            sequence = tail.get();
+            index = (int) sequence & mask;
+            long available = sequences.get(index);
+            if (available == sequence) {
+                if (tail.compareAndSet(sequence, sequence + 1)) { break; }
+            } // End if(available == sequence)
+            else if (available < sequence) { return false; } // The slot hasn't been drained since the last lap, so we're full
+        } // End while(true)
+
+        // Fill the slot, then publish it
+        inputs[index] = input;
+        messages[index] = message;
+        packedMessages[index] = packed;
+        timeStamps[index] = timeStamp;
+        sequences.lazySet(index, sequence + 1);
+        return true;
+    } // End offer method
+
+    /**
+     * Checks whether the next message to drain has been published.
+     *
+     * @return {@code true} if {@link #drain(Sink)} would pass on at least one message; {@code false} otherwise
+     */
+    boolean hasPublished() {
+        long next = head;
+        return sequences.get((int) next & mask) == next + 1;
+    } // End hasPublished method
+
+    /**
+     * Passes every published message to a sink in the order they were reserved, stopping at the first slot that has been
+     * reserved but not yet published. Must only be called by one thread at a time.
+     *
+     * @param sink the sink to pass the messages to
+     */
+    void drain(Sink sink) { drain(sink, Integer.MAX_VALUE); }
+
+    /**
+     * Passes up to a number of published messages to a sink in the order they were reserved, stopping early at the first
+     * slot that has been reserved but not yet published. Must only be called by one thread at a time.
+     *
+     * @param sink  the sink to pass the messages to
+     * @param limit the maximum number of messages to pass on
+     * @return the number of messages passed on
+     */
+    int drain(Sink sink, int limit) {
+        long next = head;
+        int drained = 0;
+
+        while (drained < limit) {
+            int index = (int) next & mask;
+            int input;
+            int packed;
+            long timeStamp;
+            MidiMessage message;
+
+            if (sequences.get(index) != next + 1) { break; }
+            input = inputs[index];
+            packed = packedMessages[index];
+            timeStamp = timeStamps[index];
+            message = messages[index];
+            messages[index] = null; // Don't hold on to the message after draining it
+
+            // Free the slot for the producer one lap ahead before passing the message on, so a misbehaving sink can't
+            // leave it occupied
+            sequences.lazySet(index, next + mask + 1);
+            head = ++next;
+            drained++;
+            sink.accept(input, message, packed, timeStamp);
+        } // End while(drained < limit)
+        return drained;
+    } // End drain(Sink, int) method
+
+    /**
+     * Receives the messages drained from an {@code InputMergeQueue}.
+     */
+    @FunctionalInterface
+    interface Sink {
+        /**
+         * Processes a drained message.
+         *
+         * @param input     the index of the input the message came from
+         * @param message   the message if it isn't a short message, otherwise {@code null}
+         * @param packed    the packed short message if {@code message} is {@code null}
+         * @param timeStamp the timestamp of the message
+         */
+        void accept(int input, MidiMessage message, int packed, long timeStamp);
+    } // End Sink interface
+} // End InputMergeQueue class
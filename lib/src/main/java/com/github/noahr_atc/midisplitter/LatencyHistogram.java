@@ -0,0 +1,138 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-memory, lock-free histogram of latencies in nanoseconds.
+ * <br><br>
+ * Buckets are log-linear: latencies below {@value #LINEAR_BUCKETS} ns each have their own bucket, and every power of
+ * two above that is divided into {@value #SUB_BUCKETS} equal buckets, which bounds the relative error of a percentile
+ * to about 3% while covering latencies of up to 2<sup>36</sup> ns, about 69 seconds, in {@value #BUCKETS} counters. Longer
+ * latencies are counted in the last bucket, although the maximum is still tracked exactly.
+ * <br><br>
+ * Recording is a single atomic increment plus, only when a new maximum is seen, a compare-and-set, so any number of
+ * threads may record concurrently without blocking each other. Statistics are calculated from a pass over the buckets
+ * and so are approximate while latencies are being recorded.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class LatencyHistogram implements LatencyHistogramMXBean {
+    private static final int SUB_BUCKET_BITS = 5;                         // The number of bits of precision per power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;          // The number of buckets per power of two
+    private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;            // The number of exact buckets for the smallest latencies
+    private static final int BUCKETS = 1024;                              // The total number of buckets
+    private static final long MAX_TRACKABLE = bucketUpperBound(BUCKETS - 1); // The highest latency with its own bucket
+
+    private final AtomicLongArray counts; // The number of latencies recorded in each bucket
+    private final AtomicLong max;         // The highest latency recorded
+
+    /**
+     * Constructs an empty {@code LatencyHistogram}.
+     */
+    LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+        max = new AtomicLong(0);
+    } // End LatencyHistogram constructor
+
+    /**
+     * Records a latency. Negative latencies are recorded as 0.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    void record(long nanos) {
+        long currentMax;
+
+        if (nanos < 0) { nanos = 0; }
+        counts.getAndIncrement(bucketIndex(Math.min(nanos, MAX_TRACKABLE)));
+        currentMax = max.get();
+        while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) { currentMax = max.get(); }
+    } // End record method
+
+    /**
+     * Calculates the latency at a percentile of the recorded latencies.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the highest latency in the bucket containing the percentile, capped at the maximum recorded latency, or
+     * {@code 0} if nothing has been recorded. Percentiles in the last bucket are reported as the maximum
+     */
+    long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        long target;
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        } // End for(i < BUCKETS)
+        if (total == 0) { return 0; }
+
+        // Find the bucket containing the ranked latency, rounding the rank up so that e.g. p99 of 10 latencies is the 10th
+        target = Math.max(1, (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100));
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) { return (i == BUCKETS - 1) ? max.get() : Math.min(bucketUpperBound(i), max.get()); }
+        } // End for(i < BUCKETS)
+        return max.get();
+    } // End getValueAtPercentile method
+
+    @Override
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) { total += counts.get(i); }
+        return total;
+    } // End getCount method
+
+    @Override
+    public long getP50Nanos() { return getValueAtPercentile(50); }
+
+    @Override
+    public long getP99Nanos() { return getValueAtPercentile(99); }
+
+    @Override
+    public long getP999Nanos() { return getValueAtPercentile(99.9); }
+
+    @Override
+    public long getMaxNanos() { return max.get(); }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) { counts.set(i, 0); }
+        max.set(0);
+    } // End reset method
+
+    // Finds the bucket a latency is counted in, from its highest set bit and the bits just below it
+    private static int bucketIndex(long nanos) {
+        int shift;
+        if (nanos < LINEAR_BUCKETS) { return (int) nanos; }
+        shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS; // At least 1, since nanos >= LINEAR_BUCKETS
+        return shift * SUB_BUCKETS + (int) (nanos >>> shift);
+    } // End bucketIndex method
+
+    // Calculates the highest latency counted in a bucket
+    private static long bucketUpperBound(int index) {
+        int shift;
+        if (index < LINEAR_BUCKETS) { return index; }
+        shift = index / SUB_BUCKETS - 1;
+        return ((long) (index - shift * SUB_BUCKETS + 1) << shift) - 1;
+    } // End bucketUpperBound method
+} // End LatencyHistogram class
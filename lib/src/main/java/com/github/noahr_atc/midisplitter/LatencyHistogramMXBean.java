@@ -0,0 +1,69 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+/**
+ * The management interface of a latency histogram, exposing summary statistics of the recorded latencies through JMX.
+ * <br><br>
+ * Percentiles are accurate to within about 3% of the true value, and are reported as the highest latency that falls
+ * into the same bucket as the true value.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public interface LatencyHistogramMXBean {
+    /**
+     * Retrieves the number of latencies recorded.
+     *
+     * @return the number of latencies recorded since creation or the last reset
+     */
+    long getCount();
+
+    /**
+     * Retrieves the median latency.
+     *
+     * @return the 50th percentile latency in nanoseconds, or {@code 0} if none have been recorded
+     */
+    long getP50Nanos();
+
+    /**
+     * Retrieves the 99th percentile latency.
+     *
+     * @return the 99th percentile latency in nanoseconds, or {@code 0} if none have been recorded
+     */
+    long getP99Nanos();
+
+    /**
+     * Retrieves the 99.9th percentile latency.
+     *
+     * @return the 99.9th percentile latency in nanoseconds, or {@code 0} if none have been recorded
+     */
+    long getP999Nanos();
+
+    /**
+     * Retrieves the highest latency recorded.
+     *
+     * @return the maximum latency in nanoseconds, or {@code 0} if none have been recorded
+     */
+    long getMaxNanos();
+
+    /**
+     * Discards all recorded latencies. Latencies recorded while the reset is in progress may or may not be discarded.
+     */
+    void reset();
+} // End LatencyHistogramMXBean interface
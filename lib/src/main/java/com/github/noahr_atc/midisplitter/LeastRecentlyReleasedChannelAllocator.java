@@ -0,0 +1,131 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+/**
+ * A {@link ChannelAllocator} that assigns each new note the free channel that has been free the longest, giving
+ * instruments the most time to recover between notes and letting release tails ring out before a channel is reused.
+ * <br><br>
+ * The free channels are kept in an intrusive doubly linked list ordered by the time they became free, so that taking
+ * the oldest and appending a newly released channel are both constant-time. Initially the channels are ordered from
+ * lowest to highest. If no channels are free, a new note is assigned the least used channel. If channels can play several
+ * notes at once, only channels without any notes are in the list, so a partly used channel is only chosen once every
+ * channel is in use.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class LeastRecentlyReleasedChannelAllocator extends AbstractChannelAllocator {
+    private static final int NONE = -1; // The link marking the end of the list
+
+    private final int[] previous;  // The channel released before each free channel, or NONE
+    private final int[] following; // The channel released after each free channel, or NONE
+    private int head;              // The free channel released longest ago, or NONE if no channels are free
+    private int tail;              // The free channel released most recently, or NONE if no channels are free
+
+    /**
+     * Constructs a {@code LeastRecentlyReleasedChannelAllocator} for the {@value #CHANNELS} channels of a single output,
+     * with all channels available.
+     */
+    public LeastRecentlyReleasedChannelAllocator() { this(CHANNELS); }
+
+    /**
+     * Constructs a {@code LeastRecentlyReleasedChannelAllocator} for a number of channels, with all channels available.
+     *
+     * @param channelCount the number of channels to allocate between
+     * @throws IllegalArgumentException if {@code channelCount} is less than 1 or greater than {@link #MAX_CHANNELS}
+     */
+    public LeastRecentlyReleasedChannelAllocator(int channelCount) {
+        super(channelCount);
+        previous = new int[channelCount];
+        following = new int[channelCount];
+        resetOrder();
+    } // End LeastRecentlyReleasedChannelAllocator(int) constructor
+
+    /**
+     * Constructs a {@code LeastRecentlyReleasedChannelAllocator} with a capacity for each channel, with all channels
+     * available. Excluded channels are never added to the free list.
+     *
+     * @param capacities the number of notes each channel can play at once, or 0 to exclude it
+     * @throws IllegalArgumentException if the capacities are invalid as described by
+     *                                  {@link AbstractChannelAllocator#AbstractChannelAllocator(int[])}
+     */
+    public LeastRecentlyReleasedChannelAllocator(int[] capacities) {
+        super(capacities);
+        previous = new int[capacities.length];
+        following = new int[capacities.length];
+        resetOrder();
+    } // End LeastRecentlyReleasedChannelAllocator(int[]) constructor
+
+    @Override
+    protected int choose(int preferredChannel) {
+        int channel;
+
+        if (head == NONE) { return Long.numberOfTrailingZeros(getLeastUsedMask()); }
+        channel = head;
+        unlink(channel);
+        return channel;
+    } // End choose method
+
+    /**
+     * Removes a use from a channel, moving it to the end of the free list if it is now available.
+     *
+     * @param channel the channel to remove a use from
+     */
+    @Override
+    public void release(int channel) {
+        if (getUses(channel) == 0) { return; }
+        super.release(channel);
+        if (getUses(channel) == 0) { append(channel); }
+    } // End release method
+
+    /**
+     * Removes all uses from all channels and restores the initial order of the free list.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        resetOrder();
+    } // End reset method
+
+    // Links every channel that isn't excluded into the free list in numerical order
+    private void resetOrder() {
+        head = NONE;
+        tail = NONE;
+        for (int i = 0; i < previous.length; i++) {
+            if (getCapacity(i) > 0) { append(i); }
+        } // End for(i < count)
+    } // End resetOrder method
+
+    // Removes a channel from the free list
+    private void unlink(int channel) {
+        if (previous[channel] == NONE) { head = following[channel]; }
+        else { following[previous[channel]] = following[channel]; }
+        if (following[channel] == NONE) { tail = previous[channel]; }
+        else { previous[following[channel]] = previous[channel]; }
+    } // End unlink method
+
+    // Adds a channel to the end of the free list
+    private void append(int channel) {
+        previous[channel] = tail;
+        following[channel] = NONE;
+        if (tail == NONE) { head = channel; }
+        else { following[tail] = channel; }
+        tail = channel;
+    } // End append method
+} // End LeastRecentlyReleasedChannelAllocator class
@@ -0,0 +1,75 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An {@link SmfTrackReader} that decodes its track directly from memory-mapped windows of the file, so the track's bytes
+ * are never copied onto the heap.
+ * <br><br>
+ * The track is mapped a window of at most {@value #WINDOW_SIZE} bytes at a time, which keeps each mapping within the
+ * limits of a {@link java.nio.MappedByteBuffer} and lets files much larger than the heap be read. Each window stays
+ * mapped until it is garbage collected, so only the current window of each track is reachable at once.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class MappedSmfTrackReader extends SmfTrackReader {
+    /**
+     * The maximum number of bytes of a track mapped at once.
+     */
+    static final int WINDOW_SIZE = 1 << 28;
+
+    private final FileChannel channel; // The channel of the file containing the track
+    private long filePosition;         // The position in the file of the start of the next window
+
+    /**
+     * Constructs a {@code MappedSmfTrackReader} for the track chunk data at a position in a file.
+     *
+     * @param channel the channel of the file containing the track, which must be open for reading
+     * @param start   the position in the file of the first event of the track, just after the chunk header
+     * @param length  the length of the track chunk data
+     */
+    MappedSmfTrackReader(FileChannel channel, long start, long length) {
+        super(length);
+        this.channel = channel;
+        filePosition = start;
+    } // End MappedSmfTrackReader(FileChannel, long, long) constructor
+
+    /**
+     * Maps the next window of the track.
+     *
+     * @param remaining the number of bytes of the track not yet decoded
+     * @return the mapping of the next window
+     * @throws IOException if mapping the file fails, or the file ends before the track does
+     */
+    @Override
+    protected ByteBuffer refill(long remaining) throws IOException {
+        long size = Math.min(remaining, WINDOW_SIZE);
+        ByteBuffer window;
+
+        if (filePosition + size > channel.size()) { throw new EOFException("File ends in the middle of a track"); }
+        window = channel.map(FileChannel.MapMode.READ_ONLY, filePosition, size);
+        filePosition += size;
+        return window;
+    } // End refill method
+} // End MappedSmfTrackReader class
@@ -0,0 +1,292 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Transmitter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps MIDI devices open while they are in use and for a while afterwards, so that a device that is used again soon,
+ * such as when splitting is stopped and restarted or an output is switched back, doesn't have to be reopened. Reopening a
+ * USB interface can take hundreds of milliseconds, during which any notes played are lost.
+ * <br><br>
+ * Receivers and transmitters are {@linkplain #borrowReceiver(MidiDevice) borrowed} from the pool as a {@link Lease}.
+ * Each device is opened by its first lease and reference counted, so it stays open for as long as any lease of it is
+ * held. Once the last lease is closed the device is left open for the idle period, and only closed if nothing borrows
+ * it again by then. Idle devices are closed by a background thread that sleeps until the next one is due.
+ * <br><br>
+ * The pool owns every device it is given: a device must not be opened or closed by anything else while it is in use by
+ * the pool. A pool is safe to use from multiple threads, and opening or closing one device never holds up borrowing
+ * another.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class MidiDevicePool implements AutoCloseable {
+    private final Map<MidiDevice, Entry> entries; // The devices borrowed from the pool and not closed yet; guarded by itself
+    private final long idleNanos;                 // The time a device is kept open after its last lease is closed
+    private Thread closer;                        // The thread closing idle devices, or null if not started; guarded by entries
+    private boolean closed;                       // Whether the pool has been closed; guarded by entries
+
+    /**
+     * Constructs an empty {@code MidiDevicePool}.
+     *
+     * @param idleMillis the time to keep a device open after its last lease is closed, in milliseconds, or 0 to close
+     *                   it straight away
+     * @throws IllegalArgumentException if {@code idleMillis} is negative
+     */
+    public MidiDevicePool(long idleMillis) {
+        if (idleMillis < 0) { throw new IllegalArgumentException("idleMillis must not be negative: " + idleMillis); }
+        entries = new HashMap<>();
+        idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        closer = null;
+        closed = false;
+    } // End MidiDevicePool(long) constructor
+
+    /**
+     * Borrows a receiver of a device, opening the device unless the pool already has it open.
+     *
+     * @param device the device to send to
+     * @return the lease of a new receiver of the device, which must be closed once the receiver is no longer used
+     * @throws MidiUnavailableException if the device can't be opened or won't supply a receiver
+     * @throws IllegalArgumentException if {@code device} is null
+     * @throws IllegalStateException    if this pool is closed
+     */
+    public Lease borrowReceiver(MidiDevice device) throws MidiUnavailableException { return borrow(device, true); }
+
+    /**
+     * Borrows a transmitter of a device, opening the device unless the pool already has it open.
+     *
+     * @param device the device to receive from
+     * @return the lease of a new transmitter of the device, which must be closed once the transmitter is no longer used
+     * @throws MidiUnavailableException if the device can't be opened or won't supply a transmitter
+     * @throws IllegalArgumentException if {@code device} is null
+     * @throws IllegalStateException    if this pool is closed
+     */
+    public Lease borrowTransmitter(MidiDevice device) throws MidiUnavailableException { return borrow(device, false); }
+
+    /**
+     * Retrieves the time a device is kept open after its last lease is closed.
+     *
+     * @return the idle period in milliseconds
+     */
+    public long getIdleMillis() { return TimeUnit.NANOSECONDS.toMillis(idleNanos); }
+
+    /**
+     * Retrieves the number of devices the pool currently has open, whether borrowed or idle.
+     *
+     * @return the number of open devices
+     */
+    public int getOpenDeviceCount() {
+        int open = 0;
+        synchronized (entries) {
+            for (Entry e : entries.values()) { if (e.open) { open++; }}
+        } // End synchronized(entries)
+        return open;
+    } // End getOpenDeviceCount method
+
+    /**
+     * Closes every idle device now, and stops keeping devices open: a device that is still borrowed is closed as soon
+     * as its last lease is closed. No more leases can be borrowed afterwards.
+     */
+    @Override
+    public void close() {
+        List<Entry> idle;
+
+        synchronized (entries) {
+            if (closed) { return; }
+            closed = true;
+            if (closer != null) { LockSupport.unpark(closer); }
+            closer = null;
+            idle = new ArrayList<>(entries.values());
+        } // End synchronized(entries)
+        for (Entry e : idle) { closeIfIdle(e, System.nanoTime()); }
+    } // End close method
+
+    // Borrows a receiver or transmitter of a device, opening the device if it isn't open
+    private Lease borrow(MidiDevice device, boolean receiver) throws MidiUnavailableException {
+        Entry entry;
+
+        if (device == null) { throw new IllegalArgumentException("null device"); }
+        synchronized (entries) {
+            if (closed) { throw new IllegalStateException("MidiDevicePool closed"); }
+            entry = entries.get(device);
+            if (entry == null) {
+                entry = new Entry(device);
+                entries.put(device, entry);
+            } // End if(entry == null)
+            entry.references++; // Keeps the device from being closed as idle while it is opened
+        } // End synchronized(entries)
+
+        // Open the device if needed, waiting for the closer first if it is in the middle of closing the device
+        try {
+            synchronized (entry) {
+                if (!entry.open) {
+                    device.open();
+                    entry.open = true;
+                } // End if(!entry.open)
+                return receiver
+                        ? new Lease(entry, device.getReceiver(), null)
+                        : new Lease(entry, null, device.getTransmitter());
+            } // End synchronized(entry)
+        } catch (MidiUnavailableException | RuntimeException e) {
+            giveBack(entry);
+            throw e;
+        } // End try {} catch(MidiUnavailableException | RuntimeException)
+    } // End borrow method
+
+    // Returns a lease's reference to its device, closing the device now if it won't be kept open
+    private void giveBack(Entry entry) {
+        synchronized (entries) {
+            if (--entry.references > 0) { return; }
+            entry.idleSince = System.nanoTime();
+            if (!closed && idleNanos > 0 && entry.open) {
+                if (closer == null) {
+                    closer = new Thread(this::closeIdle, "MidiDevicePool-closer");
+                    closer.setDaemon(true);
+                    closer.start();
+                } // End if(closer == null)
+                else { LockSupport.unpark(closer); }
+                return;
+            } // End if(kept open)
+        } // End synchronized(entries)
+        closeIfIdle(entry, entry.idleSince);
+    } // End giveBack method
+
+    // Closes a device if it is still unused and has been idle for long enough, or the pool is closed
+    // Note: The entry stays in the map while its device is closed, so that a borrower waits for the close to finish and
+    //      then reopens the device, rather than opening it while it is being closed
+    private void closeIfIdle(Entry entry, long now) {
+        synchronized (entry) {
+            synchronized (entries) {
+                if (entry.references > 0 || (!closed && idleNanos > 0 && now - entry.idleSince < idleNanos)) { return; }
+            } // End synchronized(entries)
+            if (entry.open) {
+                entry.open = false;
+                try { entry.device.close(); } catch (RuntimeException e) {
+                    Logger.getLogger("MidiDevicePool").log(Level.WARNING, "Closing " + entry.device.getDeviceInfo().getName() + " failed", e);
+                } // End try {} catch(RuntimeException)
+            } // End if(entry.open)
+            synchronized (entries) {
+                if (entry.references == 0) { entries.remove(entry.device); }
+            } // End synchronized(entries)
+        } // End synchronized(entry)
+    } // End closeIfIdle method
+
+    // The closer thread's loop, closing devices once they have been idle for the idle period
+    private void closeIdle() {
+        while (true) {
+            List<Entry> due = new ArrayList<>();
+            long now = System.nanoTime();
+            long wait = Long.MAX_VALUE; // The time until the next idle device is due, or MAX_VALUE if there are none
+
+            synchronized (entries) {
+                if (closer != Thread.currentThread()) { return; } // Replaced by closing the pool
+                for (Entry e : entries.values()) {
+                    if (e.references > 0 || !e.open) { continue; }
+                    long remaining = e.idleSince + idleNanos - now;
+                    if (remaining <= 0) { due.add(e); }
+                    else { wait = Math.min(wait, remaining); }
+                } // End for(e : entries)
+            } // End synchronized(entries)
+
+            for (Entry e : due) { closeIfIdle(e, now); }
+            if (due.isEmpty()) {
+                if (wait == Long.MAX_VALUE) { LockSupport.park(this); }
+                else { LockSupport.parkNanos(this, wait); }
+            } // End if(due.isEmpty)
+        } // End while(true)
+    } // End closeIdle method
+
+    /**
+     * A receiver or transmitter borrowed from a {@link MidiDevicePool}, which keeps its device open until the lease is
+     * closed. Closing the lease closes the receiver or transmitter and returns the device to the pool.
+     *
+     * @author Noah Reeder
+     * @version 1.0
+     * @since 1.1.2
+     */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;             // The pool's entry for the device
+        private final Receiver receiver;       // The borrowed receiver, or null if a transmitter was borrowed
+        private final Transmitter transmitter; // The borrowed transmitter, or null if a receiver was borrowed
+        private final AtomicBoolean returned;  // Whether the lease has been closed
+
+        // Constructs a Lease of a receiver or transmitter of an entry's device
+        private Lease(Entry entry, Receiver receiver, Transmitter transmitter) {
+            this.entry = entry;
+            this.receiver = receiver;
+            this.transmitter = transmitter;
+            returned = new AtomicBoolean(false);
+        } // End Lease(Entry, Receiver, Transmitter) constructor
+
+        /**
+         * Retrieves the device this lease was borrowed from.
+         *
+         * @return the device
+         */
+        public MidiDevice getDevice() { return entry.device; }
+
+        /**
+         * Retrieves the borrowed receiver.
+         *
+         * @return the receiver, or {@code null} if a transmitter was borrowed
+         */
+        public Receiver getReceiver() { return receiver; }
+
+        /**
+         * Retrieves the borrowed transmitter.
+         *
+         * @return the transmitter, or {@code null} if a receiver was borrowed
+         */
+        public Transmitter getTransmitter() { return transmitter; }
+
+        /**
+         * Closes the borrowed receiver or transmitter and returns the device to the pool. Does nothing if the lease is
+         * already closed.
+         */
+        @Override
+        public void close() {
+            if (!returned.compareAndSet(false, true)) { return; }
+            if (receiver != null) { receiver.close(); }
+            if (transmitter != null) { transmitter.close(); }
+            giveBack(entry);
+        } // End close method
+    } // End Lease class
+
+    // The pool's record of one device
+    private static final class Entry {
+        final MidiDevice device; // The device
+        int references;          // The number of leases of the device, plus borrowers still opening it; guarded by entries
+        long idleSince;          // The time the last lease was closed, from System.nanoTime; guarded by entries
+        volatile boolean open;   // Whether the pool has the device open; only changed with the entry locked
+
+        Entry(MidiDevice device) { this.device = device; }
+    } // End Entry class
+} // End MidiDevicePool class
@@ -0,0 +1,206 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the notes of a Standard MIDI File across all MIDI channels, writing the result to a new Standard MIDI File.
+ * <br><br>
+ * Every event of the source file is passed through a {@link MidiProcessor} in tick order, so notes are distributed in
+ * the same way as they would be if the file was played into the processor live, except that program changes are written
+ * unchanged without clearing the processor's notes: a file changes programs mid-song while notes are held on other
+ * channels, and clearing them would leave those notes hanging. The file is streamed event by event
+ * rather than loaded as a {@link javax.sound.midi.Sequence}: each track is decoded in place and the tracks are merged as
+ * they are read, so memory use doesn't depend on the length of the file and no objects are created per event.
+ * <br><br>
+ * By default each track is decoded directly from a memory-mapped window of the file, which avoids copying the file onto
+ * the heap at all. Tracks can instead be read through a small heap buffer each, which may be preferable on platforms
+ * where a mapped file can't be deleted or replaced until the mapping is garbage collected.
+ * <br><br>
+ * The output is always a format 0 (single track) file with the same timing division as the source. Format 2 files
+ * contain independent sequences that don't share a timeline, so they aren't supported. A format 0 file has no notion of
+ * output ports, so only processors with a single output can be used; a processor spreading notes across several ports
+ * is rejected rather than having its ports silently merged onto the same 16 channels.
+ * <br><br>
+ * A splitter constructed without a processor creates its own, which is closed when the splitter is closed. A processor
+ * passed to the constructor belongs to the caller and is left open.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class MidiFileSplitter implements AutoCloseable {
+    private final MidiProcessor processor; // The MidiProcessor used to translate the channel messages of each file
+    private final boolean memoryMapped;    // Whether tracks are decoded from memory-mapped windows of the file
+    private final boolean ownsProcessor;   // Whether the processor was created by this splitter and is closed with it
+
+    /**
+     * Constructs a {@code MidiFileSplitter} that uses a specific {@link MidiProcessor} to translate messages. Messages are
+     * only translated, not sent, so the processor's receiver is not used.
+     *
+     * @param processor    the processor to translate messages with
+     * @param memoryMapped {@code true} to decode tracks from memory-mapped windows of the file, {@code false} to read
+     *                     them through a heap buffer
+     * @throws IllegalArgumentException if {@code processor} is null or has more than one output
+     */
+    public MidiFileSplitter(MidiProcessor processor, boolean memoryMapped) { this(processor, memoryMapped, false); }
+
+    /**
+     * Constructs a {@code MidiFileSplitter} that uses a specific {@link MidiProcessor} to translate messages and decodes
+     * tracks from memory-mapped windows of the file.
+     *
+     * @param processor the processor to translate messages with
+     * @throws IllegalArgumentException if {@code processor} is null or has more than one output
+     */
+    public MidiFileSplitter(MidiProcessor processor) { this(processor, true); }
+
+    /**
+     * Constructs a {@code MidiFileSplitter} with its own {@link MidiProcessor}, which is closed by {@link #close()}.
+     */
+    public MidiFileSplitter() { this(new MidiProcessor((Receiver) null), true, true); }
+
+    // Constructs a MidiFileSplitter, recording whether it is responsible for closing its processor
+    private MidiFileSplitter(MidiProcessor processor, boolean memoryMapped, boolean ownsProcessor) {
+        if (processor == null) { throw new IllegalArgumentException("processor is null"); }
+        if (processor.getPortCount() > 1) {
+            throw new IllegalArgumentException(
+                    "only 1 output can be written to a format 0 file, the processor has " + processor.getPortCount()
+            ); // End IllegalArgumentException constructor call
+        } // End if(processor.getPortCount() > 1)
+        this.processor = processor;
+        this.memoryMapped = memoryMapped;
+        this.ownsProcessor = ownsProcessor;
+    } // End MidiFileSplitter(MidiProcessor, boolean, boolean) constructor
+
+    /**
+     * Splits the notes of a Standard MIDI File and writes the result to another file, replacing it if it exists. The
+     * processor's notes are forgotten first, so notes left open by a previous file don't carry over into this one.
+     *
+     * @param input  the Standard MIDI File to read
+     * @param output the file to write
+     * @return the number of events written, not including the final end of track event
+     * @throws IOException              if reading or writing a file fails
+     * @throws InvalidMidiDataException if {@code input} is not a valid format 0 or format 1 Standard MIDI File
+     */
+    public long split(Path input, Path output) throws IOException, InvalidMidiDataException {
+        long events = 0;
+
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(14);
+            List<SmfTrackReader> tracks = new ArrayList<>();
+            long position;
+            int format;
+            int division;
+
+            // Read the header chunk
+            readFully(channel, header, 0);
+            if (header.getInt(0) != 0x4D546864 || header.getInt(4) < 6) { // "MThd"
+                throw new InvalidMidiDataException("Not a Standard MIDI File");
+            } // End if(invalid header)
+            format = header.getShort(8) & 0xFFFF;
+            division = header.getShort(12) & 0xFFFF;
+            if (format > 1) { throw new InvalidMidiDataException("Unsupported Standard MIDI File format " + format); }
+
+            // Find the track chunks, skipping any unknown chunks as the standard requires
+            position = 8 + (header.getInt(4) & 0xFFFFFFFFL);
+            while (position + 8 <= channel.size()) {
+                ByteBuffer chunkHeader = ByteBuffer.allocate(8);
+                long length;
+
+                readFully(channel, chunkHeader, position);
+                length = chunkHeader.getInt(4) & 0xFFFFFFFFL;
+                if (chunkHeader.getInt(0) == 0x4D54726B) { // "MTrk"
+                    tracks.add(memoryMapped
+                            ? new MappedSmfTrackReader(channel, position + 8, length)
+                            : new ChannelSmfTrackReader(channel, position + 8, length)
+                    ); // End tracks.add call
+                } // End if(track chunk)
+                position += 8 + length;
+            } // End while(position + 8 <= channel.size)
+
+            // Merge the tracks in tick order, translating channel messages as they are written
+            processor.forgetAllNotes();
+            try (SmfWriter writer = new SmfWriter(output, division)) {
+                // Note: Tracks are ordered by the tick of their current event, then by index so that events at the same
+                //      tick keep the order of the source tracks
+                EventHeap<Void> queue = new EventHeap<>(tracks.size());
+                for (int i = 0; i < tracks.size(); i++) { if (tracks.get(i).next()) { queue.add(tracks.get(i).getTick(), i, i, null); }}
+
+                while (!queue.isEmpty()) {
+                    int index = queue.peekValue();
+                    SmfTrackReader track = tracks.get(index);
+
+                    // Note: Each track's end of track event is dropped, since the writer ends the merged track itself
+                    switch (track.getKind()) {
+                        case SmfTrackReader.CHANNEL: {
+                            // Program changes are written unchanged rather than clearing the held notes, and a NOTE-OFF
+                            // for a note the processor's voice stealing already ended is dropped
+                            int message = track.getMessage();
+                            if (PackedMidiMessage.getCommand(message) != ShortMessage.PROGRAM_CHANGE) {
+                                message = processor.translatePackedMessage(message);
+                            } // End if(not PROGRAM_CHANGE)
+                            if (message == 0) { break; }
+                            writer.writeChannelMessage(track.getTick(), message);
+                            events++;
+                            break;
+                        } // End CHANNEL case
+                        case SmfTrackReader.META:
+                            if (track.getMessage() == SmfTrackReader.META_END_OF_TRACK) { break; }
+                            writer.writeMeta(track.getTick(), track.getMessage(), track.getData(), track.getDataLength());
+                            events++;
+                            break;
+                        default: // SYSEX
+                            writer.writeSysex(track.getTick(), track.getMessage(), track.getData(), track.getDataLength());
+                            events++;
+                            break;
+                    } // End switch(track.getKind)
+
+                    // Move on to the track's next event, dropping the track once it has been exhausted
+                    if (track.next()) { queue.replaceHeadTime(track.getTick()); }
+                    else { queue.poll(); }
+                } // End while(!queue.isEmpty)
+            } // End try(writer)
+        } // End try(channel)
+        return events;
+    } // End split method
+
+    /**
+     * Closes the {@link MidiProcessor} this splitter created, if it created one. A processor passed to the constructor is
+     * left open for its owner to close.
+     */
+    @Override
+    public void close() { if (ownsProcessor) { processor.close(); }}
+
+    // Reads from a position in a channel until the buffer is full
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) { throw new EOFException("Standard MIDI File is truncated"); }
+        } // End while(buffer.hasRemaining)
+    } // End readFully method
+} // End MidiFileSplitter class
@@ -16,65 +16,194 @@ See the License for the specific language governing permissions and
 limitations under the License.
  */
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.sound.midi.*;
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.List;
+import java.lang.management.ManagementFactory;
+import java.nio.IntBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.google.common.collect.ArrayListMultimap;
-
 /**
  * A {@link javax.sound.midi.Receiver} that splits MIDI chords into notes distributed across all MIDI channels before
  * forwarding the new {@link javax.sound.midi.MidiMessage}s to another Receiver.
+ * <br><br>
+ * A {@code MidiProcessor} is safe to use from multiple threads: sent messages are queued without locking and translated
+ * by one thread at a time, so a sender never waits for another. Channels are chosen by a {@link ChannelAllocator}, by
+ * default a {@link FirstAvailableChannelAllocator}. A processor can send to up to {@value #MAX_PORTS} outputs, whose
+ * channels form one pool where pooled channel {@code n} is channel {@code n / ports} of output {@code n % ports}.
  *
  * @author Noah Reeder
  * @version 1.0
  * @since 2020-03-08
  */
 public class MidiProcessor implements Receiver {
-    private MidiDevice midiReceiver;         // The MIDI device that owns the receiver represented by midiOut
-    private Receiver midiOut;                // The MIDI receiver to forward processed messages to
-    private ChannelStatus[] channelStatuses; // The array containing the status of all MIDI channels
-    private ArrayListMultimap<NoteMapping, NoteMapping> noteTranslations;
-    //                                       // ^ The duplicate-value-supporting map containing the active message translations
-    private boolean isOpen;                  // Boolean for whether or not the MidiProcessor has been closed
-    private boolean debugMode;
+    private static final String MBEAN_DOMAIN = "com.github.noahr_atc.midisplitter"; // The domain of the registered MBeans
+    private static final AtomicInteger instances = new AtomicInteger(0); // The number of processors created, for their IDs
+
+    /**
+     * The maximum number of outputs a processor can send to.
+     */
+    public static final int MAX_PORTS = ChannelAllocator.MAX_CHANNELS / ChannelAllocator.CHANNELS;
+
+    /**
+     * The maximum number of inputs that can be attached to a processor at once.
+     */
+    public static final int MAX_INPUTS = 15;
+
+    private static final int INPUT_QUEUE_CAPACITY = 1024; // The number of sent messages that can be queued for translation
+    private static final int DRAIN_LIMIT = 64; // The number of queued messages a sender translates before letting another thread in
+    private static final int DROPPED = 0;     // The packed message translated from a NOTE-OFF whose note was already stolen
+    private static final int DROPPED_PORT = -2; // The port a ShortMessage is routed to if it was translated to DROPPED
+
+    private final int id;                    // The ID of this processor, unique within the JVM
+    private final int ports;                 // The number of outputs, whose channels are allocated as one pool
+    private final AtomicReference<Destination> destination;
+    //                                       // ^ The receivers to forward processed messages to, along with the devices owning them
+    private final ReentrantLock stateLock;   // The lock held by the thread currently reading or mutating the channel state;
+    //                                       // ^ senders only ever try it, leaving their messages queued for the holder
+    private final ChannelAllocator channelAllocator; // The allocator choosing channels and tracking their uses
+    private final NoteTranslationTable noteTranslations;
+    //                                       // ^ The preallocated table containing the active message translations
+    private final ShortMessage batchMessage; // The message reused to forward packed messages sent in batches
+    private final InputMergeQueue inputQueue; // The lock-free queue merging the messages sent directly and to the inputs
+    private final InputMergeQueue.Sink inputSink; // The sink translating and forwarding messages drained from inputQueue
+    private final Input[] inputs;            // The attached inputs by index, where index 0 is unused; only accessed with the
+    //                                       // ^ channel state claimed
+    private int attachedInputs;              // The number of attached inputs, only accessed with the channel state claimed
+    private VoiceStealing voiceStealing;     // The voice stealing policy, or null; only accessed with the channel state claimed
+    private int stolenNoteOff;               // The NOTE-OFF ending the note stolen or reclaimed by the last translation, or DROPPED if none;
+    //                                       // ^ only accessed with the channel state claimed
+    private int noteLimit;                   // The maximum number of active translations, or 0 if notes don't expire; only
+    //                                       // ^ accessed with the channel state claimed
+    private volatile Thread reaper;          // The thread ending notes that outlive their lifetime, or null if notes don't
+    //                                       // ^ expire; only replaced with the channel state claimed
+    private volatile OutputStage outputStage; // The asynchronous or scheduled output stage, or null if forwarding synchronously
+    private volatile OutputStage retiredStage; // The replaced output stage while it flushes, which later messages wait for
+    private volatile LatencyHistogram emissionJitter; // The histogram of scheduled output lateness, or null if not scheduling
+    private volatile LatencyHistogram sendLatency; // The histogram of time spent in send, or null if not recording
+    private volatile DebugEventLog debugLog; // The binary log of translation decisions, or null if not logging
+    private final Statistics statistics;     // The counters and management view of this processor
+    private volatile boolean isOpen;         // Boolean for whether or not the MidiProcessor has been closed
+    private final boolean debugMode;
+
+    /**
+     * Constructs a {@code MidiProcessor} using several {@link MidiDevice}s and a channel allocation policy, with the option
+     * to run in debugging mode. The channels of all of the devices are allocated as one pool, and all of them are set to
+     * available.
+     *
+     * @param midiReceivers    the MIDI devices to send processed messages to, in port order
+     * @param debugMode        specifies whether to enable debugging messages, including a debug log as described by
+     *                         {@link #enableDebugLog(Path)} in the temporary directory
+     * @param channelAllocator the allocator choosing the channel of each note, which must not be used by anything else and
+     *                         must allocate between 16 channels per device
+     * @throws MidiUnavailableException if any of the provided {@link MidiDevice}s won't supply a receiver
+     * @throws IllegalArgumentException if there are no devices or more than {@link #MAX_PORTS}, or {@code channelAllocator}
+     *                                  is null or allocates between the wrong number of channels
+     */
+    public MidiProcessor(MidiDevice[] midiReceivers, boolean debugMode, ChannelAllocator channelAllocator) throws MidiUnavailableException {
+        this(midiReceivers, debugMode, channelAllocator, null);
+    } // End MidiProcessor(MidiDevice[], boolean, ChannelAllocator) constructor
+
+    /**
+     * Constructs a {@code MidiProcessor} using several {@link MidiDevice}s borrowed from a {@link MidiDevicePool} and a
+     * channel allocation policy, with the option to run in debugging mode. The channels of all of the devices are
+     * allocated as one pool, and all of them are set to available. The devices are returned to the pool when they are
+     * replaced or the processor is closed.
+     *
+     * @param midiReceivers    the MIDI devices to send processed messages to, in port order
+     * @param debugMode        specifies whether to enable debugging messages, including a debug log as described by
+     *                         {@link #enableDebugLog(Path)} in the temporary directory
+     * @param channelAllocator the allocator choosing the channel of each note, which must not be used by anything else and
+     *                         must allocate between 16 channels per device
+     * @param pool             the pool to borrow the devices' receivers from, or {@code null} to open the devices directly
+     * @throws MidiUnavailableException if any of the provided {@link MidiDevice}s won't supply a receiver
+     * @throws IllegalArgumentException if there are no devices or more than {@link #MAX_PORTS}, or {@code channelAllocator}
+     *                                  is null or allocates between the wrong number of channels
+     * @throws IllegalStateException    if {@code pool} is closed
+     */
+    public MidiProcessor(MidiDevice[] midiReceivers, boolean debugMode, ChannelAllocator channelAllocator, MidiDevicePool pool)
+            throws MidiUnavailableException {
+        this(open(checkPorts(midiReceivers), pool), debugMode, channelAllocator);
+        if (debugMode) {
+            for (MidiDevice d : midiReceivers) {
+                Logger.getLogger("MidiProcessor").log(Level.INFO, "Sending to: " + d.getDeviceInfo().getName());
+            } // End for(d : midiReceivers)
+        } // End if(debugMode)
+    } // End MidiProcessor(MidiDevice[], boolean, ChannelAllocator, MidiDevicePool) constructor
+
+    /**
+     * Constructs a {@code MidiProcessor} using several {@link MidiDevice}s without debugging output. The channels of all of
+     * the devices are set to available and allocated as one pool by a {@link FirstAvailableChannelAllocator}.
+     *
+     * @param midiReceivers the MIDI devices to send processed messages to, in port order
+     * @throws MidiUnavailableException if any of the provided {@link MidiDevice}s won't supply a receiver
+     * @throws IllegalArgumentException if there are no devices or more than {@link #MAX_PORTS}
+     */
+    public MidiProcessor(MidiDevice[] midiReceivers) throws MidiUnavailableException {
+        this(midiReceivers, false, new FirstAvailableChannelAllocator(checkPorts(midiReceivers).length * ChannelAllocator.CHANNELS));
+    } // End MidiProcessor(MidiDevice[]) constructor
+
+    /**
+     * Constructs a {@code MidiProcessor} using a {@link MidiDevice} and a channel allocation policy, with the option to run
+     * in debugging mode. All MIDI channels are set to available.
+     *
+     * @param midiReceiver     the MIDI device to send processed messages to
+     * @param debugMode        specifies whether to enable debugging messages, including a debug log as described by
+     *                         {@link #enableDebugLog(Path)} in the temporary directory
+     * @param channelAllocator the allocator choosing the channel of each note, which must not be used by anything else and
+     *                         must allocate between 16 channels
+     * @throws MidiUnavailableException if the provided {@link MidiDevice} won't supply a receiver
+     * @throws IllegalArgumentException if {@code channelAllocator} is null or allocates between the wrong number of channels
+     */
+    public MidiProcessor(MidiDevice midiReceiver, boolean debugMode, ChannelAllocator channelAllocator) throws MidiUnavailableException {
+        this(new MidiDevice[] {midiReceiver}, debugMode, channelAllocator);
+    } // End MidiProcessor(MidiDevice, boolean, ChannelAllocator) constructor
 
     /**
      * Constructs a {@code MidiProcessor} using a {@link MidiDevice} with the option to run in debugging mode. All MIDI
-     * channels are set to available.
+     * channels are set to available, and notes are allocated by a {@link FirstAvailableChannelAllocator}.
      *
      * @param midiReceiver the MIDI device to send processed messages to
-     * @param debugMode    specifies whether to enable debugging messages
+     * @param debugMode    specifies whether to enable debugging messages, including a debug log as described by
+     *                     {@link #enableDebugLog(Path)} in the temporary directory
      * @throws MidiUnavailableException if the provided {@link MidiDevice} won't supply a receiver
      */
     public MidiProcessor(MidiDevice midiReceiver, boolean debugMode) throws MidiUnavailableException {
-        channelStatuses = new ChannelStatus[]{
-                new ChannelStatus(), new ChannelStatus(), new ChannelStatus(), new ChannelStatus(),
-                new ChannelStatus(), new ChannelStatus(), new ChannelStatus(), new ChannelStatus(),
-                new ChannelStatus(), new ChannelStatus(), new ChannelStatus(), new ChannelStatus(),
-                new ChannelStatus(), new ChannelStatus(), new ChannelStatus(), new ChannelStatus()
-        }; // End ChannelStatus[] initialization
-        noteTranslations = ArrayListMultimap.create();
-        this.midiReceiver = midiReceiver;
-        try {
-            this.midiReceiver.open();
-            midiOut = this.midiReceiver.getReceiver();
-        } catch (MidiUnavailableException e) {
-            // Ensure that we close the device if we have opened it, then abort construction and forward the exception
-            if (this.midiReceiver.isOpen()) { this.midiReceiver.close(); }
-            throw e;
-        }
-        isOpen = true;
-        this.debugMode = debugMode;
-
-        if (debugMode) {
-            Logger.getLogger("MidiProcessor").log(Level.INFO, "Sending to: " + midiReceiver.getDeviceInfo().getName());
-        }
+        this(midiReceiver, debugMode, new FirstAvailableChannelAllocator());
     } // End MidiProcessor(MidiDevice, boolean) constructor
 
+    /**
+     * Constructs a {@code MidiProcessor} using a {@link MidiDevice} borrowed from a {@link MidiDevicePool}, with the
+     * option to run in debugging mode. All MIDI channels are set to available, and notes are allocated by a
+     * {@link FirstAvailableChannelAllocator}. The device is returned to the pool when it is replaced or the processor is
+     * closed.
+     *
+     * @param midiReceiver the MIDI device to send processed messages to
+     * @param debugMode    specifies whether to enable debugging messages, including a debug log as described by
+     *                     {@link #enableDebugLog(Path)} in the temporary directory
+     * @param pool         the pool to borrow the device's receiver from
+     * @throws MidiUnavailableException if the provided {@link MidiDevice} won't supply a receiver
+     * @throws IllegalStateException    if {@code pool} is closed
+     */
+    public MidiProcessor(MidiDevice midiReceiver, boolean debugMode, MidiDevicePool pool) throws MidiUnavailableException {
+        this(new MidiDevice[] {midiReceiver}, debugMode, new FirstAvailableChannelAllocator(), pool);
+    } // End MidiProcessor(MidiDevice, boolean, MidiDevicePool) constructor
+
     /**
      * Constructs a {@code MidiProcessor} using a {@link MidiDevice} without debugging output. All MIDI channels are set to available.
      *
@@ -83,28 +212,63 @@ public class MidiProcessor implements Receiver {
      */
     public MidiProcessor(MidiDevice midiReceiver) throws MidiUnavailableException { this(midiReceiver, false); }
 
+    /**
+     * Constructs a {@code MidiProcessor} using several {@link Receiver}s and a channel allocation policy, with the option
+     * to run in debugging mode. The channels of all of the receivers are allocated as one pool, and all of them are set to
+     * available.
+     *
+     * @param receivers        the MIDI receivers to send processed messages to, in port order
+     * @param debugMode        specifies whether to enable debugging messages, including a debug log as described by
+     *                         {@link #enableDebugLog(Path)} in the temporary directory
+     * @param channelAllocator the allocator choosing the channel of each note, which must not be used by anything else and
+     *                         must allocate between 16 channels per receiver
+     * @throws IllegalArgumentException if there are no receivers or more than {@link #MAX_PORTS}, or {@code channelAllocator}
+     *                                  is null or allocates between the wrong number of channels
+     */
+    public MidiProcessor(Receiver[] receivers, boolean debugMode, ChannelAllocator channelAllocator) {
+        this(new Destination(
+                new MidiDevice[checkPorts(receivers).length], receivers.clone(), new MidiDevicePool.Lease[receivers.length], null
+        ), debugMode, channelAllocator);
+        if (debugMode) {
+            for (Receiver r : receivers) { Logger.getLogger("MidiProcessor").log(Level.INFO, "Sending to Receiver: " + r); }
+        } // End if(debugMode)
+    } // End MidiProcessor(Receiver[], boolean, ChannelAllocator) constructor
+
+    /**
+     * Constructs a {@code MidiProcessor} using several {@link Receiver}s without debugging output. The channels of all of
+     * the receivers are set to available and allocated as one pool by a {@link FirstAvailableChannelAllocator}.
+     *
+     * @param receivers the MIDI receivers to send processed messages to, in port order
+     * @throws IllegalArgumentException if there are no receivers or more than {@link #MAX_PORTS}
+     */
+    public MidiProcessor(Receiver[] receivers) {
+        this(receivers, false, new FirstAvailableChannelAllocator(checkPorts(receivers).length * ChannelAllocator.CHANNELS));
+    } // End MidiProcessor(Receiver[]) constructor
+
+    /**
+     * Constructs a {@code MidiProcessor} using a {@link Receiver} and a channel allocation policy, with the option to run in
+     * debugging mode. All MIDI channels are set to available.
+     *
+     * @param receiver         the MIDI receiver to send processed messages to
+     * @param debugMode        specifies whether to enable debugging messages, including a debug log as described by
+     *                         {@link #enableDebugLog(Path)} in the temporary directory
+     * @param channelAllocator the allocator choosing the channel of each note, which must not be used by anything else and
+     *                         must allocate between 16 channels
+     * @throws IllegalArgumentException if {@code channelAllocator} is null or allocates between the wrong number of channels
+     */
+    public MidiProcessor(Receiver receiver, boolean debugMode, ChannelAllocator channelAllocator) {
+        this(new Receiver[] {receiver}, debugMode, channelAllocator);
+    } // End MidiProcessor(Receiver, boolean, ChannelAllocator) constructor
+
     /**
      * Constructs a {@code MidiProcessor} using a {@link Receiver} with the option to run in debugging mode. All MIDI
-     * channels are set to available.
+     * channels are set to available, and notes are allocated by a {@link FirstAvailableChannelAllocator}.
      *
      * @param receiver  the MIDI receiver to send processed messages to
-     * @param debugMode specifies whether to enable debugging messages
-     */
-    public MidiProcessor(Receiver receiver, boolean debugMode) {
-        channelStatuses = new ChannelStatus[]{
-                new ChannelStatus(), new ChannelStatus(), new ChannelStatus(), new ChannelStatus(),
-                new ChannelStatus(), new ChannelStatus(), new ChannelStatus(), new ChannelStatus(),
-                new ChannelStatus(), new ChannelStatus(), new ChannelStatus(), new ChannelStatus(),
-                new ChannelStatus(), new ChannelStatus(), new ChannelStatus(), new ChannelStatus()
-        }; // End ChannelStatus[] initialization
-        noteTranslations = ArrayListMultimap.create();
-        this.midiOut = receiver;
-        this.debugMode = debugMode;
-        isOpen = true;
-        if (debugMode) {
-            Logger.getLogger("MidiProcessor").log(Level.INFO, "Sending to Receiver: " + midiOut.toString());
-        }
-    } // End MidiProcessor(Receiver, boolean) constructor
+     * @param debugMode specifies whether to enable debugging messages, including a debug log as described by
+     *                  {@link #enableDebugLog(Path)} in the temporary directory
+     */
+    public MidiProcessor(Receiver receiver, boolean debugMode) { this(receiver, debugMode, new FirstAvailableChannelAllocator()); }
 
     /**
      * Constructs a {@code MidiProcessor} using a {@link Receiver} without debugging output. All MIDI channels are set to available.
@@ -113,44 +277,170 @@ public class MidiProcessor implements Receiver {
      */
     public MidiProcessor(Receiver receiver) { this(receiver, false); }
 
+    // Constructs a MidiProcessor sending to an already opened destination, closing its devices if the allocator is invalid
+    private MidiProcessor(Destination destination, boolean debugMode, ChannelAllocator channelAllocator) {
+        int ports = destination.receivers.length;
+        if (channelAllocator == null || channelAllocator.getChannelCount() != ports * ChannelAllocator.CHANNELS) {
+            release(destination);
+            if (channelAllocator == null) { throw new IllegalArgumentException("null channel allocator"); }
+            throw new IllegalArgumentException(
+                    "channel allocator has " + channelAllocator.getChannelCount() + " channels, expected " + ports * ChannelAllocator.CHANNELS
+            ); // End IllegalArgumentException constructor
+        } // End if(channelAllocator invalid)
+
+        channelAllocator.reset();
+        id = instances.incrementAndGet();
+        this.ports = ports;
+        statistics = new Statistics();
+        this.channelAllocator = channelAllocator;
+        noteTranslations = new NoteTranslationTable();
+        stateLock = new ReentrantLock();
+        batchMessage = new ShortMessage();
+        inputQueue = new InputMergeQueue(INPUT_QUEUE_CAPACITY);
+        inputSink = this::processInput;
+        inputs = new Input[MAX_INPUTS + 1];
+        attachedInputs = 0;
+        voiceStealing = null;
+        stolenNoteOff = DROPPED;
+        noteLimit = 0;
+        this.destination = new AtomicReference<>(destination);
+        this.debugMode = debugMode;
+        isOpen = true;
+        if (debugMode) { enableDefaultDebugLog(); }
+    } // End MidiProcessor(Destination, boolean, ChannelAllocator) constructor
+
     /**
-     * Sends a MIDI message to this receiver, along with an optional timestamp. Set timestamp to -1 if not used.
+     * Sends a MIDI message to this receiver, along with an optional timestamp. Set timestamp to -1 if not used. This may
+     * be called concurrently from multiple threads.
+     * <br><br>
+     * Note: If another thread is translating messages when this is called, the message is left for that thread and may be
+     * forwarded after this returns. Short messages are copied into the queue, so they may be reused as soon as this
+     * returns, but other messages, such as system exclusive messages, are queued by reference, so senders must not reuse
+     * them.
      *
      * @param message   the message to be received and processed by this {@code MidiProcessor}
      * @param timeStamp the timestamp (in microseconds) of the message
      */
     @Override
     public void send(MidiMessage message, long timeStamp) {
+        // Only time the message when recording, so that the clock isn't read at all otherwise
+        LatencyHistogram histogram = sendLatency;
+        if (histogram == null) { process(message, timeStamp); }
+        else {
+            long start = System.nanoTime();
+            process(message, timeStamp);
+            histogram.record(System.nanoTime() - start);
+        } // End if(histogram == null) {} else
+    } // End send method
+
+    // Queues a message for translation as input 0, which is the processor itself, then translates the queue unless another
+    // thread is already doing so
+    // Note: Short messages are queued packed, so the sender may reuse or change its message once this returns without
+    //      affecting what is forwarded
+    private void process(MidiMessage message, long timeStamp) {
         // Drop the message if closing
-        if (!isOpen) { return; }
+        if (message == null || !isOpen) { return; }
+        statistics.messagesIn.increment();
+        if (message instanceof ShortMessage) { submit(0, null, ShortMessageAccess.pack((ShortMessage) message), timeStamp); }
+        else { submit(0, message, 0, timeStamp); }
+    } // End process method
 
+    // Forwards a processed message to the current receiver of a port, or of every port if the port is -1
+    private void forward(MidiMessage message, int port, long timeStamp) {
         // Ensure that the midi receiver objects are valid, aborting the send operation if unavailable since we can't throw
         // an exception in the overridden method
-        if (midiOut == null) { return; }
+        // Note: The snapshot is read once so a concurrent setReceiver or close can't change it between the check and the send
+        Destination current;
+        awaitRetiredStage();
+        current = destination.get();
+        if (current == null) { return; }
+        current.awaitRestarted();
+        forward(current, message, port, timeStamp);
+    } // End forward(MidiMessage, int, long) method
+
+    // Forwards a processed message to the receiver of a port in a destination snapshot, or of every port if the port is -1
+    private void forward(Destination current, MidiMessage message, int port, long timeStamp) {
+        if (port >= 0) { deliver(current.receivers[port], message, timeStamp); }
+        else {
+            for (Receiver r : current.receivers) { deliver(r, message, timeStamp); }
+        } // End if(port >= 0) {} else
+    } // End forward(Destination, MidiMessage, int, long) method
+
+    // Sends a processed message to a single receiver, skipping a missing receiver
+    private void deliver(Receiver receiver, MidiMessage message, long timeStamp) {
+        if (receiver == null) { return; }
 
-        // If the message is a ShortMessage send it to the translator for processing, regardless forwarding the message to the receiver
         // If the receiver is closed, log it and continue
-        if (message instanceof ShortMessage) { message = translateMessage((ShortMessage) message); }
-        try { midiOut.send(message, timeStamp); } catch (IllegalStateException e) {
+        try {
+            receiver.send(message, timeStamp);
+            statistics.messagesOut.increment();
+        } catch (IllegalStateException e) {
+            statistics.receiverClosedFailures.increment();
             Logger.getLogger("MidiProcessor").log(
                     Level.SEVERE,
-                    "Receiver " + midiOut.toString() + "closed",
+                    "Receiver " + receiver.toString() + "closed",
                     e
             ); // End Logger.log call
         } // End try {} catch(IllegalStateException)
-    } // End send method
+    } // End deliver(Receiver, MidiMessage, long) method
+
+    // Sends packed messages straight to a single receiver, skipping a missing receiver and any invalid messages
+    private void deliver(Receiver receiver, int[] messages) {
+        for (int message : messages) {
+            ShortMessage shortMessage;
+            try {
+                shortMessage = new ShortMessage(
+                        PackedMidiMessage.getStatus(message),
+                        PackedMidiMessage.getData1(message),
+                        PackedMidiMessage.getData2(message)
+                ); // End ShortMessage constructor call
+            } catch (InvalidMidiDataException e) { continue; }
+            deliver(receiver, shortMessage, -1);
+        } // End for(message : messages)
+    } // End deliver(Receiver, int[]) method
 
     /**
-     * Closes this {@code MidiProcessor} and releases its resources, specifically the MIDI device assigned with setReceiver or the constructor.
+     * Closes this {@code MidiProcessor} and releases its resources, specifically the MIDI devices assigned with setReceiver or the constructor.
+     * Devices borrowed from a {@link MidiDevicePool} are returned to it rather than closed.
      */
     @Override
     public void close() {
         isOpen = false; // Stop advertising as available to process messages
-        if (midiReceiver != null && midiReceiver.isOpen()) { midiReceiver.close(); }
-        midiReceiver = null;
-        midiOut = null;
+        disableNoteExpiry();
+        closeInputs(); // End the notes still held on the attached inputs before the receivers go away
+        disableAsynchronousOutput(); // Flush any queued messages before the receiver goes away
+        disableLatencyRecording();
+        unregisterMBean();
+        disableDebugLog();
+        release(destination.getAndSet(null));
     } // End close method
 
+    /**
+     * Ends every note this processor is holding, on every input, by forwarding a NOTE-OFF to the channel and output each
+     * note was translated to. Every channel is available again afterwards. Closing a processor doesn't end the notes sent
+     * directly to it, so this should be called first when shutting down with notes possibly held, e.g. on a signal.
+     */
+    public void releaseAllNotes() {
+        claimState();
+        try {
+            OutputStage stage = outputStage;
+            for (int input = 0; input < noteTranslations.getSourceChannels() / NoteTranslationTable.CHANNELS; input++) {
+                releaseInput(input, true, stage);
+            } // End for(input < inputs)
+        } finally { releaseState(); }
+    } // End releaseAllNotes method
+
+    // Forgets every note this processor is holding, on every input, without forwarding anything, so every channel they used
+    // is available again
+    void forgetAllNotes() {
+        claimState();
+        try {
+            for (int input = 0; input < noteTranslations.getSourceChannels() / NoteTranslationTable.CHANNELS; input++) {
+                releaseInput(input, false, null);
+            } // End for(input < inputs)
+        } finally { releaseState(); }
+    } // End forgetAllNotes method
+
     /**
      * Checks whether or not {@code close} has been called on this {@code MidiProcessor}.
      *
@@ -159,216 +449,1430 @@ public class MidiProcessor implements Receiver {
     public boolean isRunning() { return isOpen; }
 
     /**
-     * Opens a MIDI device and sets it as the {@link Receiver} that processed messages are sent to.
+     * Creates a new input with its own namespace of source channels, which can be sent to from its own thread without
+     * blocking senders on the other inputs. Closing the input detaches it, ending any notes it still holds.
+     *
+     * @return the new input
+     * @throws IllegalStateException if this processor is closed, or {@link #MAX_INPUTS} inputs are already attached
+     * @see #attachInput(Transmitter)
+     */
+    public Input createInput() { return attach(null, null); }
+
+    /**
+     * Attaches a transmitter to this processor through a new input with its own namespace of source channels, as described
+     * by {@link #createInput()}. Closing the input detaches the transmitter again, but doesn't close it.
+     *
+     * @param transmitter the transmitter to receive messages from
+     * @return the new input, which is now the transmitter's receiver
+     * @throws IllegalArgumentException if {@code transmitter} is null
+     * @throws IllegalStateException    if this processor is closed, or {@link #MAX_INPUTS} inputs are already attached
+     */
+    public Input attachInput(Transmitter transmitter) {
+        if (transmitter == null) { throw new IllegalArgumentException("null transmitter"); }
+        Input input = attach(transmitter, null);
+        transmitter.setReceiver(input);
+        return input;
+    } // End attachInput(Transmitter) method
+
+    /**
+     * Borrows a transmitter of a MIDI device from a {@link MidiDevicePool} and attaches it to this processor through a new
+     * input, as described by {@link #attachInput(Transmitter)}. Closing the input detaches the transmitter and returns the
+     * device to the pool, which keeps it open for a while in case it is attached again.
+     *
+     * @param midiTransmitter the MIDI device to receive messages from
+     * @param pool            the pool to borrow the device's transmitter from
+     * @return the new input, which is now the transmitter's receiver
+     * @throws MidiUnavailableException if the provided {@link MidiDevice} won't supply a transmitter
+     * @throws IllegalArgumentException if the provided {@link MidiDevice} or pool is null
+     * @throws IllegalStateException    if this processor or {@code pool} is closed, or {@link #MAX_INPUTS} inputs are
+     *                                  already attached
+     */
+    public Input attachInput(MidiDevice midiTransmitter, MidiDevicePool pool) throws MidiUnavailableException {
+        if (midiTransmitter == null || pool == null) { throw new IllegalArgumentException(); }
+        MidiDevicePool.Lease lease = pool.borrowTransmitter(midiTransmitter);
+        Input input;
+
+        try {
+            input = attach(lease.getTransmitter(), lease);
+        } catch (IllegalStateException e) {
+            lease.close();
+            throw e;
+        } // End try {} catch(IllegalStateException)
+        lease.getTransmitter().setReceiver(input);
+        return input;
+    } // End attachInput(MidiDevice, MidiDevicePool) method
+
+    /**
+     * Starts forwarding processed messages from a dedicated dispatcher thread instead of the translating thread, so that a
+     * slow receiver doesn't hold up translation. Messages are still translated as they are sent and are queued in a
+     * preallocated ring buffer. If asynchronous output is already enabled, the existing
+     * queue is flushed and replaced. Replaces scheduled output if it is enabled.
+     * <br><br>
+     * Note: While asynchronous output is enabled, messages other than short messages are forwarded after
+     * {@link #send(MidiMessage, long)} returns, so senders must not reuse them.
+     *
+     * @param capacity     the minimum number of messages that can be queued; rounded up to a power of two
+     * @param waitStrategy how the dispatcher waits for messages, and how senders wait while the queue is full
+     * @throws IllegalArgumentException if {@code capacity} is less than 1 or greater than 2<sup>30</sup>, or
+     *                                  {@code waitStrategy} is null
+     * @see #disableAsynchronousOutput()
+     */
+    public void enableAsynchronousOutput(int capacity, WaitStrategy waitStrategy) {
+        if (waitStrategy == null) { throw new IllegalArgumentException("null wait strategy"); }
+        replaceOutputStage(new AsyncOutputStage(capacity, waitStrategy, this::dispatch), null);
+    } // End enableAsynchronousOutput method
+
+    /**
+     * Returns to forwarding processed messages on the translating thread, after flushing any queued messages. Also disables
+     * scheduled output. Does nothing if neither asynchronous nor scheduled output is enabled.
+     * <br><br>
+     * This waits for the queued messages to be forwarded. Senders keep sending meanwhile, but their messages are only
+     * forwarded once the queue has been flushed, so that they can't overtake it.
+     *
+     * @see #enableAsynchronousOutput(int, WaitStrategy)
+     */
+    public void disableAsynchronousOutput() { replaceOutputStage(null, null); }
+
+    /**
+     * Starts holding processed messages until their timestamp plus a fixed latency budget, then forwarding them from a
+     * dedicated high-priority timer thread. This removes the jitter added upstream of this {@code MidiProcessor}, such as
+     * by USB polling or OS scheduling, at the cost of delaying every message by up to the budget. Messages without a
+     * timestamp are forwarded one budget after they arrive. Forwarded messages are sent with a timestamp of -1, since it
+     * has already been honoured. If asynchronous or scheduled output is already enabled, the existing queue is flushed and
+     * replaced; messages held by a replaced scheduled stage are forwarded immediately rather than at their due times.
+     * <br><br>
+     * The difference between each message's due time and the time it was actually forwarded is recorded, and the
+     * histogram is registered with the platform MBean server under {@code name=EmissionJitter}, so the budget can be tuned
+     * against the timing actually achieved.
+     * <br><br>
+     * Note: While scheduled output is enabled, messages other than short messages are forwarded after
+     * {@link #send(MidiMessage, long)} returns, so senders must not reuse them.
+     *
+     * @param latencyMicros the latency budget in microseconds, which should exceed the worst jitter expected upstream
+     * @param capacity      the minimum number of messages that can be held; rounded up to a power of two
+     * @throws IllegalArgumentException if {@code latencyMicros} is negative, or {@code capacity} is less than 1 or greater
+     *                                  than 2<sup>30</sup>
+     * @see #disableScheduledOutput()
+     * @see #getEmissionJitter()
+     */
+    public void enableScheduledOutput(long latencyMicros, int capacity) {
+        if (latencyMicros < 0) { throw new IllegalArgumentException("negative latency budget: " + latencyMicros); }
+        LatencyHistogram jitter = new LatencyHistogram();
+        replaceOutputStage(new ScheduledOutputStage(capacity, TimeUnit.MICROSECONDS.toNanos(latencyMicros), jitter, this::dispatch), jitter);
+    } // End enableScheduledOutput method
+
+    /**
+     * Returns to forwarding processed messages on the translating thread, after immediately forwarding any held messages
+     * in the order they were due. Also disables asynchronous output. Does nothing if neither scheduled nor asynchronous
+     * output is enabled.
+     * <br><br>
+     * This waits for the held messages to be forwarded. Senders keep sending meanwhile, but their messages are only
+     * forwarded once the held messages have been, so that they can't overtake them.
+     *
+     * @see #enableScheduledOutput(long, int)
+     */
+    public void disableScheduledOutput() { replaceOutputStage(null, null); }
+
+    /**
+     * Retrieves the histogram of how late scheduled messages were forwarded relative to their due times.
+     *
+     * @return the jitter histogram, or {@code null} if scheduled output is not enabled
+     * @see #enableScheduledOutput(long, int)
+     */
+    public LatencyHistogramMXBean getEmissionJitter() { return emissionJitter; }
+
+    /**
+     * Retrieves the number of processed messages waiting to be forwarded by the asynchronous output dispatcher or the
+     * scheduled output timer.
+     *
+     * @return the number of queued messages, or {@code 0} if neither asynchronous nor scheduled output is enabled
+     */
+    public int getOutputQueueDepth() {
+        OutputStage stage = outputStage;
+        return (stage == null) ? 0 : stage.getDepth();
+    } // End getOutputQueueDepth method
+
+    /**
+     * Retrieves the number of processed messages that can be queued for the asynchronous output dispatcher or the scheduled
+     * output timer.
+     *
+     * @return the capacity of the queue, or {@code 0} if neither asynchronous nor scheduled output is enabled
+     */
+    public int getOutputQueueCapacity() {
+        OutputStage stage = outputStage;
+        return (stage == null) ? 0 : stage.getCapacity();
+    } // End getOutputQueueCapacity method
+
+    /**
+     * Starts recording the time spent in each call to {@link #send(MidiMessage, long)}, i.e. translating the message and
+     * forwarding it to the receiver, and registers the histogram of the latencies with the platform MBean server. If
+     * another thread is translating, or asynchronous or scheduled output is enabled, the recorded time ends once the
+     * message is queued rather than forwarded. Does nothing if latencies are already being recorded.
+     * <br><br>
+     * Messages sent in batches with {@link #sendBatch(int[], long[], int, int)} are not recorded.
+     *
+     * @see #disableLatencyRecording()
+     * @see #getSendLatency()
+     */
+    public void enableLatencyRecording() {
+        claimState();
+        try {
+            if (sendLatency != null) { return; }
+            LatencyHistogram histogram = new LatencyHistogram();
+            register(histogram, "SendLatency");
+            sendLatency = histogram;
+        } finally { releaseState(); }
+    } // End enableLatencyRecording method
+
+    /**
+     * Stops recording the time spent in {@link #send(MidiMessage, long)}, discarding the recorded latencies and
+     * unregistering their MBean. Does nothing if latencies are not being recorded.
+     *
+     * @see #enableLatencyRecording()
+     */
+    public void disableLatencyRecording() {
+        claimState();
+        try {
+            if (sendLatency == null) { return; }
+            sendLatency = null;
+            unregister("SendLatency");
+        } finally { releaseState(); }
+    } // End disableLatencyRecording method
+
+    /**
+     * Retrieves the histogram of the time spent in {@link #send(MidiMessage, long)}.
+     *
+     * @return the latency histogram, or {@code null} if latencies are not being recorded
+     * @see #enableLatencyRecording()
+     */
+    public LatencyHistogramMXBean getSendLatency() { return sendLatency; }
+
+    /**
+     * Starts logging every translation decision to a binary log file, which can be rendered as text afterwards with
+     * {@link DebugLogDecoder}. Each NOTE-ON, NOTE-OFF, and PROGRAM_CHANGE is logged with its timestamp, source and target
+     * channels, note number, and the use count of every channel. Records are written by a background thread, so logging
+     * adds very little latency to {@link #send(MidiMessage, long)}; if the background thread falls behind, records are
+     * dropped rather than delaying messages. If a log is already open, it is closed and replaced.
+     *
+     * @param file the file to log to, which is replaced if it exists
+     * @throws IOException if the file can't be opened or written
+     * @see #disableDebugLog()
+     */
+    public void enableDebugLog(Path file) throws IOException {
+        DebugEventLog newLog = new DebugEventLog(file, channelAllocator.getChannelCount());
+        DebugEventLog oldLog;
+
+        claimState();
+        try {
+            oldLog = debugLog;
+            debugLog = newLog;
+        } finally { releaseState(); }
+        closeDebugLog(oldLog);
+    } // End enableDebugLog method
+
+    /**
+     * Stops logging translation decisions, writing any remaining records and closing the log file. Does nothing if no log
+     * is open.
+     *
+     * @see #enableDebugLog(Path)
+     */
+    public void disableDebugLog() {
+        DebugEventLog oldLog;
+
+        claimState();
+        try {
+            oldLog = debugLog;
+            debugLog = null;
+        } finally { releaseState(); }
+        closeDebugLog(oldLog);
+    } // End disableDebugLog method
+
+    /**
+     * Registers this processor's {@link MidiProcessorMXBean} with the platform MBean server, so that its channel state and
+     * counters can be monitored through JMX, under the name {@code com.github.noahr_atc.midisplitter:type=MidiProcessor,
+     * id=<i>n</i>,name=Processor} where <i>n</i> is the processor's {@linkplain #getId() ID}. The MBean is unregistered
+     * when the processor is closed. Does nothing if it is already registered.
+     *
+     * @see #unregisterMBean()
+     */
+    public void registerMBean() {
+        if (!isMBeanRegistered()) { register(statistics, "Processor"); }
+    } // End registerMBean method
+
+    /**
+     * Unregisters this processor's {@link MidiProcessorMXBean} from the platform MBean server. Does nothing if it isn't
+     * registered.
+     *
+     * @see #registerMBean()
+     */
+    public void unregisterMBean() { unregister("Processor"); }
+
+    /**
+     * Retrieves the management view of this processor's channel state and counters, which is available whether or not it
+     * is registered with JMX.
+     *
+     * @return the management view of this processor
+     */
+    public MidiProcessorMXBean getStatistics() { return statistics; }
+
+    /**
+     * Retrieves the ID of this {@code MidiProcessor}, which identifies its MBeans.
+     *
+     * @return an ID that is unique among the processors created by this JVM
+     */
+    public int getId() { return id; }
+
+    /**
+     * Opens a MIDI device and sets it as the {@link Receiver} that processed messages are sent to. Messages being sent
+     * concurrently are forwarded to either the old or the new receiver, and the old device is closed after the swap. If
+     * this processor has several outputs, only the first is replaced.
      *
      * @param midiReceiver the desired MIDI device to receive messages
      * @throws MidiUnavailableException if the provided {@link MidiDevice} won't supply a receiver
      * @throws NullPointerException     if the provided {@link MidiDevice} is null
+     * @see #setReceiver(int, MidiDevice)
      * @see #setReceiver(Receiver)
      */
     public void setReceiver(MidiDevice midiReceiver) throws MidiUnavailableException, NullPointerException {
-        if (midiReceiver == null) { throw new IllegalArgumentException(); }
+        setReceiver(0, midiReceiver);
+    } // End setReceiver(MidiDevice) method
 
-        Receiver receiver; // The new MIDI receiver to use
+    /**
+     * Opens a MIDI device and sets it as the {@link Receiver} of one of this processor's outputs. Messages being sent
+     * concurrently are forwarded to either the old or the new receiver, and the old device is closed after the swap.
+     *
+     * @param port         the index of the output to replace
+     * @param midiReceiver the desired MIDI device to receive messages
+     * @throws MidiUnavailableException  if the provided {@link MidiDevice} won't supply a receiver
+     * @throws IllegalArgumentException  if the provided {@link MidiDevice} is null
+     * @throws IndexOutOfBoundsException if {@code port} isn't the index of one of this processor's outputs
+     * @see #setReceiver(int, Receiver)
+     */
+    public void setReceiver(int port, MidiDevice midiReceiver) throws MidiUnavailableException {
+        if (midiReceiver == null) { throw new IllegalArgumentException(); }
+        checkPort(port);
 
-        // Ensure that if MidiUnavailableException is raised that it happens before any changes to the MidiProcessor object
-        try {
-            midiReceiver.open();
-            receiver = midiReceiver.getReceiver();
-        } catch (MidiUnavailableException e) {
-            // Ensure that we close the device if we have opened it, then abort the method and forward the exception
-            if (midiReceiver.isOpen()) { midiReceiver.close(); }
-            throw e;
+        // Ensure that if MidiUnavailableException is raised that it happens before any changes to the MidiProcessor object,
+        // then swap in the new receiver and release the old one
+        replace(port, midiReceiver, open(midiReceiver), null);
+        if (debugMode) {
+            Logger.getLogger("com.noahr_atc.midisplitter").log(Level.INFO, "Sending to: " + midiReceiver.getDeviceInfo().getName());
         }
+    } // End setReceiver(int, MidiDevice) method
+
+    /**
+     * Borrows a receiver of a MIDI device from a {@link MidiDevicePool} and sets it as the {@link Receiver} of one of this
+     * processor's outputs. Messages being sent concurrently are forwarded to either the old or the new receiver. The old
+     * device is returned to its pool after the swap if it was borrowed, and closed otherwise.
+     * <br><br>
+     * Switching to a device the pool still has open takes no time, so switching back and forth between outputs doesn't
+     * drop the notes played while a device would otherwise be reopening.
+     *
+     * @param port         the index of the output to replace
+     * @param midiReceiver the desired MIDI device to receive messages
+     * @param pool         the pool to borrow the device's receiver from
+     * @throws MidiUnavailableException  if the provided {@link MidiDevice} won't supply a receiver
+     * @throws IllegalArgumentException  if the provided {@link MidiDevice} or pool is null
+     * @throws IllegalStateException     if {@code pool} is closed
+     * @throws IndexOutOfBoundsException if {@code port} isn't the index of one of this processor's outputs
+     */
+    public void setReceiver(int port, MidiDevice midiReceiver, MidiDevicePool pool) throws MidiUnavailableException {
+        if (midiReceiver == null || pool == null) { throw new IllegalArgumentException(); }
+        checkPort(port);
 
-        // Update the objects
-        if (this.midiReceiver != null && this.midiReceiver.isOpen()) { this.midiReceiver.close(); }
-        this.midiReceiver = midiReceiver;
-        this.midiOut = receiver;
+        MidiDevicePool.Lease lease = pool.borrowReceiver(midiReceiver);
+        replace(port, null, lease.getReceiver(), lease);
         if (debugMode) {
-            Logger.getLogger("com.noahr_atc.midisplitter").log(Level.INFO, "Sending to: " + midiReceiver.getDeviceInfo().getName());
+            Logger.getLogger("MidiProcessor").log(Level.INFO, "Sending to: " + midiReceiver.getDeviceInfo().getName());
         }
-    } // End setReceiver(MidiDevice) method
+    } // End setReceiver(int, MidiDevice, MidiDevicePool) method
 
     /**
-     * Sets the {@link Receiver} that processed messages are sent to.
+     * Sets the {@link Receiver} that processed messages are sent to. Messages being sent concurrently are forwarded to
+     * either the old or the new receiver, and the device owning the old receiver (if any) is closed after the swap. If
+     * this processor has several outputs, only the first is replaced.
      *
      * @param receiver the desired MIDI receiver
+     * @see #setReceiver(int, Receiver)
      * @see #setReceiver(MidiDevice)
      */
-    public void setReceiver(Receiver receiver) {
-        if (midiReceiver != null) {
-            if (midiReceiver.isOpen()) { midiReceiver.close(); }
-            midiReceiver = null;
+    public void setReceiver(Receiver receiver) { setReceiver(0, receiver); }
+
+    /**
+     * Sets the {@link Receiver} of one of this processor's outputs. Messages being sent concurrently are forwarded to
+     * either the old or the new receiver, and the device owning the old receiver (if any) is closed after the swap.
+     *
+     * @param port     the index of the output to replace
+     * @param receiver the desired MIDI receiver
+     * @throws IndexOutOfBoundsException if {@code port} isn't the index of one of this processor's outputs
+     * @see #setReceiver(int, MidiDevice)
+     * @see #handOverReceiver(int, Receiver, boolean)
+     */
+    public void setReceiver(int port, Receiver receiver) {
+        checkPort(port);
+        replace(port, null, receiver, null);
+        if (debugMode) {
+            Logger.getLogger("MidiProcessor").log(Level.INFO, "Sending to Receiver: " + String.valueOf(receiver));
+        }
+    } // End setReceiver(int, Receiver) method
+
+    /**
+     * Opens a MIDI device and hands one of this processor's outputs over to its receiver without leaving notes hanging.
+     * Every note held on the output is sent a NOTE-OFF on the old receiver once the messages sent before the handover
+     * have reached it, and can optionally be sent its NOTE-ON again on the new receiver. The old device is closed
+     * afterwards.
+     *
+     * @param port         the index of the output to hand over
+     * @param midiReceiver the desired MIDI device to receive messages
+     * @param retrigger    whether to restart the held notes on the new receiver
+     * @throws MidiUnavailableException  if the provided {@link MidiDevice} won't supply a receiver
+     * @throws IllegalArgumentException  if the provided {@link MidiDevice} is null
+     * @throws IllegalStateException     if this processor is closed
+     * @throws IndexOutOfBoundsException if {@code port} isn't the index of one of this processor's outputs
+     * @see #handOverReceiver(int, Receiver, boolean)
+     */
+    public void handOverReceiver(int port, MidiDevice midiReceiver, boolean retrigger) throws MidiUnavailableException {
+        if (midiReceiver == null) { throw new IllegalArgumentException(); }
+        checkPort(port);
+
+        handOver(port, midiReceiver, open(midiReceiver), null, retrigger);
+        if (debugMode) {
+            Logger.getLogger("MidiProcessor").log(Level.INFO, "Handed over to: " + midiReceiver.getDeviceInfo().getName());
+        }
+    } // End handOverReceiver(int, MidiDevice, boolean) method
+
+    /**
+     * Borrows a receiver of a MIDI device from a {@link MidiDevicePool} and hands one of this processor's outputs over to
+     * it without leaving notes hanging, as described by {@link #handOverReceiver(int, Receiver, boolean)}. The old device
+     * is returned to its pool afterwards if it was borrowed, and closed otherwise.
+     *
+     * @param port         the index of the output to hand over
+     * @param midiReceiver the desired MIDI device to receive messages
+     * @param pool         the pool to borrow the device's receiver from
+     * @param retrigger    whether to restart the held notes on the new receiver
+     * @throws MidiUnavailableException  if the provided {@link MidiDevice} won't supply a receiver
+     * @throws IllegalArgumentException  if the provided {@link MidiDevice} or pool is null
+     * @throws IllegalStateException     if this processor or {@code pool} is closed
+     * @throws IndexOutOfBoundsException if {@code port} isn't the index of one of this processor's outputs
+     */
+    public void handOverReceiver(int port, MidiDevice midiReceiver, MidiDevicePool pool, boolean retrigger)
+            throws MidiUnavailableException {
+        if (midiReceiver == null || pool == null) { throw new IllegalArgumentException(); }
+        checkPort(port);
+
+        MidiDevicePool.Lease lease = pool.borrowReceiver(midiReceiver);
+        handOver(port, null, lease.getReceiver(), lease, retrigger);
+        if (debugMode) {
+            Logger.getLogger("MidiProcessor").log(Level.INFO, "Handed over to: " + midiReceiver.getDeviceInfo().getName());
         }
-        this.midiOut = receiver;
+    } // End handOverReceiver(int, MidiDevice, MidiDevicePool, boolean) method
+
+    /**
+     * Hands one of this processor's outputs over to a new {@link Receiver} without leaving notes hanging, for switching
+     * between outputs in the middle of a performance.
+     * <br><br>
+     * Unlike {@link #setReceiver(int, Receiver)}, which sends the NOTE-OFFs of notes held across the swap to the new
+     * receiver, the handover happens at a single point in the stream of messages. Messages translated before it are
+     * forwarded to the old receiver, followed by a NOTE-OFF for every note still held on the output's channels, and
+     * messages translated after it are forwarded to the new receiver. If {@code retrigger} is set, the held notes are
+     * first sent their NOTE-ONs again, at their original velocities, on the new receiver, so that their NOTE-OFFs end
+     * them there. The device owning the old receiver (if any) is released once its NOTE-OFFs have been sent.
+     * <br><br>
+     * Translation only pauses while the held notes are listed and the receivers swapped, not while the NOTE-OFFs and
+     * NOTE-ONs are delivered. When retriggering, messages forwarded to the new receiver wait for the held notes to be
+     * restarted on it first. When output is asynchronous or scheduled, the handover is queued in order with the other
+     * messages, and this waits for it to be dispatched.
+     *
+     * @param port      the index of the output to hand over
+     * @param receiver  the desired MIDI receiver
+     * @param retrigger whether to restart the held notes on the new receiver
+     * @throws IllegalStateException     if this processor is closed
+     * @throws IndexOutOfBoundsException if {@code port} isn't the index of one of this processor's outputs
+     */
+    public void handOverReceiver(int port, Receiver receiver, boolean retrigger) {
+        checkPort(port);
+        handOver(port, null, receiver, null, retrigger);
         if (debugMode) {
-            Logger.getLogger("MidiProcessor").log(Level.INFO, "Sending to Receiver: " + midiOut.toString());
+            Logger.getLogger("MidiProcessor").log(Level.INFO, "Handed over to Receiver: " + String.valueOf(receiver));
         }
-    } // End setReceiver(Receiver) method
+    } // End handOverReceiver(int, Receiver, boolean) method
+
+    /**
+     * Retrieves the number of outputs this processor sends to.
+     *
+     * @return the number of outputs, from 1 to {@link #MAX_PORTS}
+     */
+    public int getPortCount() { return ports; }
+
+    /**
+     * Starts ending a held note whenever a NOTE-ON arrives while every channel is busy, reusing its channel for the new note
+     * instead of making the two share a channel. The stolen note is sent a NOTE-OFF just before the new NOTE-ON, and the
+     * NOTE-OFF later sent for it is dropped. If voice stealing is already enabled, the policy is replaced.
+     * <br><br>
+     * Note: The order in which notes already held when voice stealing is enabled were started isn't known, so until they
+     * are released they are treated as older than every later note and ordered by channel and note number.
+     *
+     * @param policy which held note to end
+     * @throws IllegalArgumentException if {@code policy} is null
+     * @see #disableVoiceStealing()
+     */
+    public void enableVoiceStealing(VoiceStealing policy) {
+        if (policy == null) { throw new IllegalArgumentException("null voice stealing policy"); }
+        claimState();
+        try {
+            noteTranslations.setVoiceStealing(policy);
+            voiceStealing = policy;
+        } finally { releaseState(); }
+    } // End enableVoiceStealing method
+
+    /**
+     * Returns to letting a NOTE-ON share the least used channel when every channel is busy. NOTE-OFFs of notes that were
+     * already stolen are still dropped. Does nothing if voice stealing is not enabled.
+     *
+     * @see #enableVoiceStealing(VoiceStealing)
+     */
+    public void disableVoiceStealing() {
+        claimState();
+        try {
+            noteTranslations.setVoiceStealing(null);
+            voiceStealing = null;
+        } finally { releaseState(); }
+    } // End disableVoiceStealing method
 
     /**
-     * Reports whether or not a MIDI channel is currently in use.
+     * Retrieves the voice stealing policy.
+     *
+     * @return the policy choosing which held note to end when every channel is busy, or {@code null} if voice stealing is
+     * not enabled
+     */
+    public VoiceStealing getVoiceStealing() {
+        claimState();
+        try { return voiceStealing; } finally { releaseState(); }
+    } // End getVoiceStealing method
+
+    /**
+     * Starts ending notes that are held for longer than a maximum lifetime, as if their NOTE-OFFs had arrived, and caps
+     * the number of notes that can be held at once. This recovers the channels of notes whose NOTE-OFFs were lost. If note
+     * expiry is already enabled, the lifetime of held notes is adjusted to the new lifetime; notes that were already held
+     * when note expiry is first enabled are given a full lifetime from now.
+     * <br><br>
+     * Expired notes are tracked in a hashed timing wheel, so adding, ending, and expiring a note are all constant-time,
+     * and are sent a NOTE-OFF by a dedicated reaper thread which wakes once every 1/62 of the lifetime, or every
+     * millisecond for lifetimes under 62 milliseconds. When a NOTE-ON arrives while the cap is reached, the note closest to
+     * expiring is ended early instead of voice stealing; messages that are only translated can't end a note, so they are
+     * left untranslated instead.
+     * <br><br>
+     * Note: A NOTE-OFF arriving after its note expired is treated as having no matching NOTE-ON, unless the same key has
+     * been pressed again since, in which case it ends the newer note. The lifetime should therefore be well beyond the
+     * longest note expected to be held intentionally.
+     *
+     * @param maxLifetimeMillis the maximum time a note can be held, in milliseconds
+     * @param maxActiveNotes    the maximum number of notes that can be held at once
+     * @throws IllegalArgumentException if {@code maxLifetimeMillis} or {@code maxActiveNotes} is less than 1
+     * @see #disableNoteExpiry()
+     * @see MidiProcessorMXBean#getExpiredNotes()
+     */
+    public void enableNoteExpiry(long maxLifetimeMillis, int maxActiveNotes) {
+        if (maxLifetimeMillis < 1) { throw new IllegalArgumentException("maximum note lifetime out of range: " + maxLifetimeMillis); }
+        if (maxActiveNotes < 1) { throw new IllegalArgumentException("maximum active notes out of range: " + maxActiveNotes); }
+        Thread oldReaper;
+        Thread thread;
+
+        // Swap in the new reaper along with the new lifetime, then stop the old one once the state is released, since it
+        // needs to claim the state to notice that it has been replaced
+        claimState();
+        try {
+            long tickNanos;
+            noteTranslations.setLifetime(TimeUnit.MILLISECONDS.toNanos(maxLifetimeMillis), System.nanoTime());
+            noteLimit = maxActiveNotes;
+            tickNanos = noteTranslations.getTickNanos();
+            thread = new Thread(() -> reap(tickNanos), "MidiProcessor-reaper");
+            thread.setDaemon(true);
+            oldReaper = reaper;
+            reaper = thread;
+        } finally { releaseState(); }
+        thread.start();
+        stopReaper(oldReaper);
+    } // End enableNoteExpiry method
+
+    /**
+     * Stops ending notes after a maximum lifetime and removes the cap on the number of notes held at once. Does nothing if
+     * note expiry is not enabled.
+     *
+     * @see #enableNoteExpiry(long, int)
+     */
+    public void disableNoteExpiry() {
+        Thread oldReaper;
+
+        claimState();
+        try {
+            oldReaper = reaper;
+            if (oldReaper == null) { return; }
+            reaper = null;
+            noteTranslations.setLifetime(0, 0);
+            noteLimit = 0;
+        } finally { releaseState(); }
+        stopReaper(oldReaper);
+    } // End disableNoteExpiry method
+
+    /**
+     * Retrieves the maximum time a note can be held before it is ended.
+     *
+     * @return the maximum note lifetime in milliseconds, or {@code 0} if note expiry is not enabled
+     * @see #enableNoteExpiry(long, int)
+     */
+    public long getNoteLifetime() {
+        claimState();
+        try { return TimeUnit.NANOSECONDS.toMillis(noteTranslations.getLifetime()); } finally { releaseState(); }
+    } // End getNoteLifetime method
+
+    /**
+     * Reports whether or not a MIDI channel is currently in use. If this processor has several outputs, channels are
+     * numbered across all of them as described by {@link MidiProcessor}.
      *
      * @param channel the channel to check for availability
      * @return {@code true} if {@code channel} is available; {@code false} if {@code channel} is out of range or in use
      */
-    public boolean channelAvailable(int channel) { return (!channelStatuses[channel].inUse()); }
+    public boolean channelAvailable(int channel) {
+        claimState();
+        try { return channelAllocator.isAvailable(channel); } finally { releaseState(); }
+    } // End channelAvailable method
 
     /**
-     * Finds the first MIDI channel from 0 that a message hasn't currently been translated to.
+     * Finds the first MIDI channel from 0 that a message hasn't currently been translated to. If this processor has several
+     * outputs, channels are numbered across all of them as described by {@link MidiProcessor}.
      *
      * @return the MIDI channel number of the available channel
      * @throws ExceededMidiChannelsException if all MIDI channels are in use
      */
     public int firstAvailableChannel() throws ExceededMidiChannelsException {
-        // Iterate over the array returning as soon as an available channel is found, throwing an exception if array exhausted
-        for (byte i = 0; i < channelStatuses.length; i++) { if (!channelStatuses[i].inUse()) { return i; }}
-        throw new ExceededMidiChannelsException();
+        int channel;
+
+        claimState();
+        try { channel = channelAllocator.firstAvailable(); } finally { releaseState(); }
+        if (channel == -1) { throw new ExceededMidiChannelsException(); }
+        return channel;
     } // End firstAvailableChannel method
 
     /**
      * Finds the MIDI channel with the least amount of uses, returning the lower channel if multiple have an equal number of uses.
+     * If this processor has several outputs, channels are numbered across all of them as described by {@link MidiProcessor}.
      *
      * @return the MIDI channel number of the least used channel
      */
     public int leastUsedChannel() {
-        int indexOfLeastUsed = 0;
-        for (byte i = 1; i < channelStatuses.length; i++) {
-            if (channelStatuses[i].getUses() < channelStatuses[indexOfLeastUsed].getUses()) { indexOfLeastUsed = i; }
-        }
-        return indexOfLeastUsed;
+        claimState();
+        try { return channelAllocator.leastUsed(); } finally { releaseState(); }
     } // End leastUsedChannel method
 
     /**
      * Translates the provided message onto the correct MIDI channel. If it is available, the original channel of {@code message} is chosen,
      * otherwise the next available channel from 0 is chosen.
+     * <br><br>
+     * Note: If this processor has several outputs, only the message's channel on its output can be recorded in a
+     * {@code ShortMessage}; use {@link #translatePackedMessage(int)} to also find out which output it is routed to.
+     * <br><br>
+     * Note: Messages that are only translated never steal voices, since the NOTE-OFF ending the stolen note couldn't be
+     * returned along with them. They still recognise the NOTE-OFFs of notes stolen while sending.
      *
      * @param message the message to be translated
-     * @return the translated version of {@code message}
+     * @return the translated version of {@code message}, or {@code null} if it is the NOTE-OFF of a note that voice
+     * stealing already ended, which must not be forwarded
      */
     public ShortMessage translateMessage(ShortMessage message) {
         if (message == null) { return null; } // Null check
 
+        claimState();
+        try { if (translate(message, false) == DROPPED_PORT) { return null; }} finally { releaseState(); }
+        return message;
+    } // End translateMessage method
+
+    /**
+     * Translates the provided packed message onto the correct MIDI channel, sharing the channel and translation state used
+     * by {@link #translateMessage(ShortMessage)}. If this processor has several outputs, translated notes are routed to the
+     * output they were allocated to as described by {@link PackedMidiMessage#getPort(int)}. As with
+     * {@link #translateMessage(ShortMessage)}, messages that are only translated never steal voices.
+     *
+     * @param message the message to be translated, packed as described by {@link PackedMidiMessage}
+     * @return the translated version of {@code message}, packed the same way, or 0 if it is the NOTE-OFF of a note that
+     * voice stealing already ended, which must not be forwarded
+     */
+    public int translatePackedMessage(int message) {
+        claimState();
+        try { return translate(message, 0, false); } finally { releaseState(); }
+    } // End translatePackedMessage method
+
+    /**
+     * Translates a batch of packed messages in place and forwards them to the receiver in a single pass, without creating a
+     * {@link ShortMessage} for each one. The channel state is claimed once for the whole batch, so messages sent
+     * concurrently from other threads are queued and processed after the batch.
+     * <br><br>
+     * Note: Forwarded messages are delivered through a {@code ShortMessage} that is reused for every message in the batch,
+     * so the receiver must not hold on to the messages it is sent. Messages that aren't forwarded because their note was
+     * stolen are translated to 0, as described by {@link #translatePackedMessage(int)}.
+     *
+     * @param messages   the messages to be translated, packed as described by {@link PackedMidiMessage}
+     * @param timeStamps the timestamps (in microseconds) of the messages, or -1 if not used, at the same indices as the messages
+     * @param offset     the index of the first message to process
+     * @param length     the number of messages to process
+     * @throws IndexOutOfBoundsException if {@code offset} and {@code length} don't describe a range of both arrays
+     */
+    public void sendBatch(int[] messages, long[] timeStamps, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > messages.length || offset + length > timeStamps.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+        } // End if(range invalid)
+
+        // Drop the messages if closing
+        if (!isOpen) { return; }
+        statistics.messagesIn.add(length);
+
+        claimState();
+        try {
+            OutputStage stage = outputStage;
+            for (int i = offset; i < offset + length; i++) {
+                messages[i] = translate(messages[i], 0, true);
+                sendStolenNoteOff(timeStamps[i], stage);
+                sendTranslated(messages[i], timeStamps[i], stage);
+            } // End for(offset <= i < offset + length)
+        } finally { releaseState(); }
+    } // End sendBatch(int[], long[], int, int) method
+
+    /**
+     * Translates the remaining packed messages of a buffer in place and forwards them to the receiver in a single pass, as
+     * described by {@link #sendBatch(int[], long[], int, int)}. The buffer's position is advanced to its limit.
+     *
+     * @param messages   the messages to be translated, packed as described by {@link PackedMidiMessage}
+     * @param timeStamps the timestamps (in microseconds) of the messages, or -1 if not used, where index 0 is the
+     *                   timestamp of the message at the buffer's position
+     * @throws IndexOutOfBoundsException if {@code timeStamps} is shorter than the number of remaining messages
+     * @throws ReadOnlyBufferException   if {@code messages} is read-only
+     */
+    public void sendBatch(IntBuffer messages, long[] timeStamps) {
+        int position = messages.position();
+        int length = messages.remaining();
+
+        if (messages.isReadOnly()) { throw new ReadOnlyBufferException(); }
+        if (length > timeStamps.length) { throw new IndexOutOfBoundsException("length " + length); }
+
+        // Drop the messages if closing
+        if (!isOpen) { return; }
+        statistics.messagesIn.add(length);
+
+        claimState();
+        try {
+            OutputStage stage = outputStage;
+            for (int i = 0; i < length; i++) {
+                int message = translate(messages.get(position + i), 0, true);
+                messages.put(position + i, message);
+                sendStolenNoteOff(timeStamps[i], stage);
+                sendTranslated(message, timeStamps[i], stage);
+            } // End for(i < length)
+        } finally { releaseState(); }
+        messages.position(position + length);
+    } // End sendBatch(IntBuffer, long[]) method
+
+    // Forwards a translated packed message either through the asynchronous output stage or directly to the receivers of its
+    // port, using the reusable batch message; the caller must have claimed the channel state
+    private void sendTranslated(int message, long timeStamp, OutputStage stage) {
+        if (message == DROPPED) { return; }
+        if (stage != null) {
+            stage.publish(message, timeStamp);
+            return;
+        } // End if(stage != null)
+
+        // Skip the message if it isn't a valid short message, as there's nothing sensible to forward
+        try {
+            batchMessage.setMessage(
+                    PackedMidiMessage.getStatus(message),
+                    PackedMidiMessage.getData1(message),
+                    PackedMidiMessage.getData2(message)
+            ); // End setMessage call
+        } catch (InvalidMidiDataException e) { return; }
+        forward(batchMessage, PackedMidiMessage.getPort(message), timeStamp);
+    } // End sendTranslated method
+
+    // Forwards the NOTE-OFF of the note stolen by the last translation, if any, ahead of the message that stole it; the
+    // caller must have claimed the channel state
+    private void sendStolenNoteOff(long timeStamp, OutputStage stage) {
+        if (stolenNoteOff == DROPPED) { return; }
+        sendTranslated(stolenNoteOff, timeStamp, stage);
+        stolenNoteOff = DROPPED;
+    } // End sendStolenNoteOff method
+
+    // Translates a message in place, returning the port it is routed to, -1 for every port, or DROPPED_PORT if it must not
+    // be forwarded; the caller must have claimed the channel state
+    private int translate(ShortMessage message, boolean steal) {
+        int original = ShortMessageAccess.pack(message);
+        int translated = translate(original, 0, steal);
+
+        // Only the channel nibble of the status byte is ever changed, so rewrite just that rather than reloading the message
+        if (translated == DROPPED) { return DROPPED_PORT; }
+        if ((translated & 0xFFFFFF) != original) { ShortMessageAccess.setChannel(message, PackedMidiMessage.getChannel(translated)); }
+        return PackedMidiMessage.getPort(translated);
+    } // End translate(ShortMessage) method
+
+    // Translates a packed message from an input, where input 0 is the processor itself, optionally stealing a voice if
+    // every channel is busy and leaving its NOTE-OFF in stolenNoteOff; the caller must have claimed the channel state
+    private int translate(int message, int input, boolean steal) {
+        int channel = PackedMidiMessage.getChannel(message);       // The original channel of the MIDI message
+        int sourceChannel = input * NoteTranslationTable.CHANNELS + channel; // The channel within the input's namespace
+        int noteNumber = PackedMidiMessage.getData1(message);      // The MIDI note/key number of the MIDI message
+        int command = PackedMidiMessage.getCommand(message);       // The command of the MIDI message
+        DebugEventLog log;                                         // The debug log, or null if not logging
+
+        // A NOTE-ON with a velocity of 0 ends its note just like a NOTE-OFF, which files and running status commonly rely on
+        if (command == ShortMessage.NOTE_ON && PackedMidiMessage.getData2(message) == 0) { command = ShortMessage.NOTE_OFF; }
+
         // Interpret the command contained in the message
-        switch (message.getCommand()) {
+        switch (command) {
             case ShortMessage.NOTE_ON: { // MIDI NOTE-ON event
-                int newChannel;     // The new channel to assign to the MIDI message
-                NoteMapping key;    // The hashmap key for the MIDI message
-
-                // If the original channel isn't available, attempt to assign the first available channel. If no channels
-                // are available, lazily distribute the message and any that come before a channel becomes available across
-                // all of the MIDI channels
-                // Note: This distribution is done so that if a channel opens up a new note immediately starts playing,
-                //      therefore even if a burst of messages come through it is more unlikely for one channel to be empty
-                //      when there are multiple notes stacked on another
-                if (!channelAvailable(message.getChannel())) {
-                    try { newChannel = firstAvailableChannel(); } catch (ExceededMidiChannelsException e) {
-                        newChannel = leastUsedChannel();
-                    } // End try {} catch (ExceededMidiChannelsException)
-                } // End if(!channelAvailable(message.channel))
-                else { newChannel = message.getChannel(); }
-
-                // Create the translation table entry, add a usage to the channel status, and update the message with the
-                // new channel, ignoring the possibility of an InvalidMidiDataException.
-                // Rationale: I know newChannel is valid, and that is the only value I'm changing in the message that is
-                //      currently guaranteed to be valid, so there should not be any issues. Additionally, in the *extremely*
-                //      unlikely case the exception does get raised, the message will simply be untranslated with no side effects
-                // Note: In order to avoid any side effects upon an exception, we must introduce 'key' in order to support having
-                //      the exception-producing method call before the translation is created
-                try {
-                    key = new NoteMapping(message.getChannel(), message.getData1());
-                    message.setMessage(message.getCommand(), newChannel, message.getData1(), message.getData2());
-                    noteTranslations.put(
-                            key,
-                            new NoteMapping(newChannel, message.getData1())
-                    ); // End put call
-                    channelStatuses[newChannel].addUse();
-
-                    // If in debug mode, construct and output the translation debugging message
-                    if (debugMode) {
-                        StringBuilder debugMessage = new StringBuilder();
-                        debugMessage.append("NOTE-ON [").append(key.getChannel()).append("] --> [").append(newChannel).append("]; ");
-                        for (ChannelStatus c : channelStatuses) { debugMessage.append(c.getUses()).append(","); }
-                        System.out.println(debugMessage.toString());
-                    } // End if(debugMode)
-                } catch (InvalidMidiDataException ignored) {}
+                int newChannel; // The new channel to assign to the MIDI message
+
+                // If the same key already has the maximum number of NOTE-ONs awaiting NOTE-OFFs, something upstream is
+                // badly wrong, so leave the message untranslated rather than lose track of a translation
+                if (!noteTranslations.canPut(sourceChannel, noteNumber)) { return message; }
+
+                // If the cap on held notes has been reached, end the note closest to expiring to make room, which also
+                // frees a channel. Otherwise, if every channel is busy and voice stealing is enabled, end a held note to
+                // free its channel
+                if (noteLimit != 0 && noteTranslations.size() >= noteLimit) {
+                    if (!steal) { return message; }
+                    reclaimNote();
+                } // End if(noteTranslations.size >= noteLimit)
+                else if (steal && voiceStealing != null && channelAllocator.firstAvailable() == -1) { stealVoice(); }
+
+                // Let the allocator choose the channel according to its policy and add a usage to it, preferring the
+                // original channel of the first output. If the channel is now over its capacity, every channel was busy
+                newChannel = channelAllocator.allocate(channel * ports);
+                if (channelAllocator.getUses(newChannel) > channelAllocator.getCapacity(newChannel)) {
+                    statistics.overflowEvents.increment();
+                } // End if(channel over capacity)
+
+                // Create the translation table entry
+                noteTranslations.put(sourceChannel, noteNumber, newChannel, PackedMidiMessage.getData2(message));
+
+                // If logging, record the translation
+                log = debugLog;
+                if (log != null) { log.record(ShortMessage.NOTE_ON, sourceChannel, newChannel, noteNumber, channelAllocator); }
 
                 // Return the reconstructed message
-                return message;
+                return route(message, newChannel);
             } // End message == NOTE_ON case
             case ShortMessage.NOTE_OFF: { // MIDI NOTE-OFF event
-                NoteMapping originalMessage;     // The NoteMapping of the original message
-                NoteMapping translatedMessage;   // The NoteMapping of the translated message
-                List<NoteMapping> multimapEntry; // The List entry from the noteTranslations multimap
+                int translatedChannel; // The channel the matching NOTE-ON was translated to
 
-                // Make a NoteMapping for the original message
-                originalMessage = new NoteMapping(message.getChannel(), message.getData1());
-
-                // Retrieve the corresponding translated message, returning the original message if an entry isn't found
-                // Note: noteTranslations.get returns empty list if not found
-                // Note 2: If an entry isn't found, the NOTE-ON event was probably sent before we started splitting notes,
+                // Remove the oldest translation of the note along with its channel usage, returning the original message
+                // if an entry isn't found
+                // Note: If an entry isn't found, the NOTE-ON event was probably sent before we started splitting notes,
                 //      so it's probably a good idea to send the unmodified NOTE-OFF anyways
-                multimapEntry = noteTranslations.get(originalMessage);
-                if (multimapEntry.isEmpty() || multimapEntry.get(0) == null) {
-                    if (debugMode) {
-                        StringBuilder debugMessage = new StringBuilder();
-                        debugMessage.append("NOTE-OFF [").append(message.getChannel()).append("] <X>; ");
-                        for (ChannelStatus c : channelStatuses) { debugMessage.append(c.getUses()).append(","); }
-                        System.out.println(debugMessage.toString());
-                    } // End if(debugMode)
+                // Note: If the note was stolen, it has already been sent a NOTE-OFF and its channel may now be playing
+                //      another note, so this NOTE-OFF is dropped
+                translatedChannel = noteTranslations.remove(sourceChannel, noteNumber);
+                if (translatedChannel == NoteTranslationTable.STOLEN) { return DROPPED; }
+                if (translatedChannel == -1) {
+                    statistics.orphanedNoteOffs.increment();
+                    log = debugLog;
+                    if (log != null) {
+                        log.record(ShortMessage.NOTE_OFF, sourceChannel, DebugEventLog.NO_TARGET, noteNumber, channelAllocator);
+                    } // End if(log != null)
                     return message;
-                }
-                translatedMessage = noteTranslations.get(originalMessage).get(0);
-
-                // Remove the hashmap entry and channel usage, and attempt to recreate the message with the translated channel
-                // Note: See above for related rationale about ignoring the InvalidMidiDataException, but in this case we
-                //      will always remove the entry so it does not get orphaned
-                NoteMapping key = new NoteMapping(message.getChannel(), message.getData1());
-                noteTranslations.remove(key, translatedMessage);
-                channelStatuses[translatedMessage.getChannel()].removeUse();
-                try {
-                    message.setMessage(
-                            message.getCommand(),
-                            translatedMessage.getChannel(),
-                            message.getData1(),
-                            message.getData2()
-                    ); // End setMessage call
-                } catch (InvalidMidiDataException ignored) {}
-
-                // If in debug mode, construct and output the translation debugging message
-                if (debugMode) {
-                    StringBuilder debugMessage = new StringBuilder();
-                    debugMessage.append("NOTE-OFF [").append(key.getChannel()).append("] --> [").append(translatedMessage.getChannel()).append("]; ");
-                    for (ChannelStatus c : channelStatuses) { debugMessage.append(c.getUses()).append(","); }
-                    System.out.println(debugMessage.toString());
-                } // End if(debugMode)
+                } // End if(translatedChannel == -1)
+                channelAllocator.release(translatedChannel);
+
+                // If logging, record the translation
+                log = debugLog;
+                if (log != null) { log.record(ShortMessage.NOTE_OFF, sourceChannel, translatedChannel, noteNumber, channelAllocator); }
 
                 // Return the reconstructed message
-                return message;
+                return route(message, translatedChannel);
             } // End message == NOTE_OFF case
             case ShortMessage.PROGRAM_CHANGE: { // Triggered by loading/seeking/stopping
-                // Clear all note mappings to prevent orphaning notes
-                noteTranslations.clear();
-                channelStatuses = new ChannelStatus[]{
-                        new ChannelStatus(), new ChannelStatus(), new ChannelStatus(), new ChannelStatus(),
-                        new ChannelStatus(), new ChannelStatus(), new ChannelStatus(), new ChannelStatus(),
-                        new ChannelStatus(), new ChannelStatus(), new ChannelStatus(), new ChannelStatus(),
-                        new ChannelStatus(), new ChannelStatus(), new ChannelStatus(), new ChannelStatus()
-                }; // End ChannelStatus[] initialization
-                if (debugMode) {
-                    StringBuilder debugMessage = new StringBuilder();
-                    debugMessage.append("RESET-TRANSLATIONS; ");
-                    for (ChannelStatus c : channelStatuses) { debugMessage.append(c.getUses()).append(","); }
-                    System.out.println(debugMessage.toString());
-                } // End if(debugMode)
+                // Clear all note mappings and channel uses to prevent orphaning notes. Once inputs are attached, only the
+                // sending input's notes are forgotten so that a sequencer stopping doesn't orphan notes held on a keyboard
+                if (attachedInputs == 0) {
+                    noteTranslations.clear();
+                    channelAllocator.reset();
+                } // End if(attachedInputs == 0)
+                else { releaseInput(input, false, null); }
+                log = debugLog;
+                if (log != null) { log.record(ShortMessage.PROGRAM_CHANGE, sourceChannel, DebugEventLog.NO_TARGET, 0, channelAllocator); }
                 return message;
             } // End message == PROGRAM_CHANGE case
             default: { // Message is of unknown type, do nothing to it
                 return message;
             } // End default case
         } // End switch(message)
-    } // End translateMessage method
+    } // End translate(int) method
+
+    // Ends the held note chosen by the voice stealing policy, releasing its channel and leaving its NOTE-OFF in
+    // stolenNoteOff; the caller must have claimed the channel state
+    private void stealVoice() {
+        int stolen = noteTranslations.steal();
+        if (stolen == -1) { return; }
+        stolenNoteOff = endTranslation(stolen);
+        statistics.stolenNotes.increment();
+    } // End stealVoice method
+
+    // Ends the held note closest to expiring to make room for another, leaving its NOTE-OFF in stolenNoteOff; the caller
+    // must have claimed the channel state
+    private void reclaimNote() {
+        int reclaimed = noteTranslations.reclaimOldest();
+        if (reclaimed == -1) { return; }
+        stolenNoteOff = endTranslation(reclaimed);
+        statistics.expiredNotes.increment();
+    } // End reclaimNote method
+
+    // Ends every held note whose lifetime is over, forwarding a NOTE-OFF for each; the caller must have claimed the channel
+    // state
+    private void expireNotes(long now) {
+        OutputStage stage = outputStage;
+        int expired;
+
+        while ((expired = noteTranslations.expire(now)) != -1) {
+            sendTranslated(endTranslation(expired), -1, stage);
+            statistics.expiredNotes.increment();
+        } // End while(expired != -1)
+    } // End expireNotes method
+
+    // Releases the channel of a translation that was removed from the table without a NOTE-OFF, as encoded by
+    // NoteTranslationTable.steal, and returns the NOTE-OFF to forward in its place; the caller must have claimed the
+    // channel state
+    private int endTranslation(int translation) {
+        int sourceChannel = translation >>> 15;
+        int noteNumber = (translation >>> 8) & 0x7F;
+        int translatedChannel = translation & 0xFF;
+        DebugEventLog log;
+
+        channelAllocator.release(translatedChannel);
+
+        // If logging, record the NOTE-OFF as if it had been sent for the note
+        log = debugLog;
+        if (log != null) { log.record(ShortMessage.NOTE_OFF, sourceChannel, translatedChannel, noteNumber, channelAllocator); }
+        return route(PackedMidiMessage.pack(ShortMessage.NOTE_OFF, 0, noteNumber, 0), translatedChannel);
+    } // End endTranslation method
+
+    // The reaper thread's loop, expiring notes once per tick of the translation table's timing wheel until replaced
+    private void reap(long tickNanos) {
+        Thread self = Thread.currentThread();
+        while (reaper == self) {
+            LockSupport.parkNanos(this, tickNanos);
+            claimState();
+            try { if (reaper == self) { expireNotes(System.nanoTime()); }} finally { releaseState(); }
+        } // End while(reaper == self)
+    } // End reap method
+
+    // Wakes a reaper thread that has been replaced, if any, and waits for it to finish
+    private static void stopReaper(Thread thread) {
+        boolean interrupted = false;
+
+        if (thread == null) { return; }
+        LockSupport.unpark(thread);
+        while (thread.isAlive()) {
+            try { thread.join(); } catch (InterruptedException e) { interrupted = true; }
+        } // End while(thread.isAlive)
+        if (interrupted) { Thread.currentThread().interrupt(); }
+    } // End stopReaper method
+
+    // Moves a packed message onto a pooled channel, routing it to that channel's output if there are several outputs
+    private int route(int message, int pooledChannel) {
+        if (ports == 1) { return PackedMidiMessage.withChannel(message, pooledChannel); }
+        return PackedMidiMessage.withPort(PackedMidiMessage.withChannel(message, pooledChannel / ports), pooledChannel % ports);
+    } // End route method
+
+    // Translates and forwards a message drained from the input queue, where short messages are packed and every other
+    // message is forwarded to every output unchanged; the caller must have claimed the channel state
+    private void processInput(int input, MidiMessage message, int packed, long timeStamp) {
+        OutputStage stage = outputStage;
+
+        if (message == null) {
+            int translated = translate(packed, input, true);
+            sendStolenNoteOff(timeStamp, stage);
+            sendTranslated(translated, timeStamp, stage);
+            return;
+        } // End if(message == null)
+        if (stage != null) { stage.publish(message, -1, timeStamp); }
+        else { forward(message, -1, timeStamp); }
+    } // End processInput method
+
+    // Forgets every note still held in an input's namespace, releasing its channel and optionally forwarding a NOTE-OFF for
+    // it; the caller must have claimed the channel state
+    private void releaseInput(int input, boolean sendNoteOffs, OutputStage stage) {
+        for (int channel = 0; channel < NoteTranslationTable.CHANNELS; channel++) {
+            int sourceChannel = input * NoteTranslationTable.CHANNELS + channel;
+            for (int note = 0; note < NoteTranslationTable.NOTES; note++) {
+                int translatedChannel;
+                while ((translatedChannel = noteTranslations.remove(sourceChannel, note)) != -1) {
+                    if (translatedChannel == NoteTranslationTable.STOLEN) { continue; } // Already ended and released
+                    channelAllocator.release(translatedChannel);
+                    if (sendNoteOffs) {
+                        sendTranslated(route(PackedMidiMessage.pack(ShortMessage.NOTE_OFF, channel, note, 0), translatedChannel), -1, stage);
+                    } // End if(sendNoteOffs)
+                } // End while(translation found)
+            } // End for(note < NOTES)
+        } // End for(channel < CHANNELS)
+    } // End releaseInput method
+
+    // Creates an input in the lowest free namespace, optionally owning a transmitter and the lease it was borrowed under
+    private Input attach(Transmitter transmitter, MidiDevicePool.Lease lease) {
+        Input input;
+
+        claimState();
+        try {
+            int index = 1;
+            if (!isOpen) { throw new IllegalStateException("MidiProcessor closed"); }
+            while (index <= MAX_INPUTS && inputs[index] != null) { index++; }
+            if (index > MAX_INPUTS) { throw new IllegalStateException("All " + MAX_INPUTS + " inputs are attached"); }
+
+            // Make room for the input's namespace before any of its messages can arrive
+            noteTranslations.ensureSourceChannels((index + 1) * NoteTranslationTable.CHANNELS);
+            attachedInputs++;
+            input = new Input(index, transmitter, lease);
+            inputs[index] = input;
+        } finally { releaseState(); }
+
+        if (debugMode) { Logger.getLogger("MidiProcessor").log(Level.INFO, "Attached input " + input.getIndex()); }
+        return input;
+    } // End attach method
+
+    // Detaches an input, translating the messages it already queued and then ending the notes it still holds
+    // Note: Claiming the state translates the messages the input already queued, so they are ended along with the others
+    private void detach(Input input) {
+        if (!input.open) { return; }
+        input.open = false;
+        if (input.transmitter != null && input.transmitter.getReceiver() == input) { input.transmitter.setReceiver(null); }
+
+        claimState();
+        try {
+            if (inputs[input.index] != input) { return; } // Already detached by a concurrent close
+            releaseInput(input.index, true, outputStage);
+            attachedInputs--;
+            inputs[input.index] = null;
+        } finally { releaseState(); }
+        if (input.lease != null) { input.lease.close(); }
+    } // End detach method
+
+    // Detaches every attached input
+    private void closeInputs() {
+        Input[] attached;
+
+        claimState();
+        try { attached = inputs.clone(); } finally { releaseState(); }
+        for (Input i : attached) { if (i != null) { i.close(); }}
+    } // End closeInputs method
+
+    // Queues a message from an input, helping to drain the queue while it is full, then drains it if no other thread is
+    private void submit(int input, MidiMessage message, int packed, long timeStamp) {
+        while (!inputQueue.offer(input, message, packed, timeStamp)) {
+            drainInputs();
+            Thread.yield();
+        } // End while(queue full)
+        drainInputs();
+    } // End submit method
+
+    // Translates and forwards the queued messages in batches of at most DRAIN_LIMIT, unless another thread holds the channel
+    // state, in which case that thread drains them once it releases the state
+    // Note: The lock is released between batches, and once another thread is waiting for it the rest of the queue is left
+    //      to that thread, which drains it as soon as it claims the state, so one sender isn't kept forwarding every other
+    //      input's messages while a control operation waits behind it
+    // Note: A receiver sending back to this processor already holds the lock, so it drains the queue itself rather than
+    //      wait for the outer drain, which it may be blocking if the queue is full
+    private void drainInputs() {
+        if (stateLock.isHeldByCurrentThread()) {
+            inputQueue.drain(inputSink, DRAIN_LIMIT);
+            return;
+        } // End if(stateLock.isHeldByCurrentThread)
+        while (inputQueue.hasPublished()) {
+            if (!stateLock.tryLock()) { return; }
+            try { inputQueue.drain(inputSink, DRAIN_LIMIT); } finally { stateLock.unlock(); }
+            if (stateLock.hasQueuedThreads()) { return; } // Hand the rest over to the waiting thread
+        } // End while(inputQueue.hasPublished)
+    } // End drainInputs method
+
+    // Swaps the output stage and the registered jitter histogram while no message can be published, then flushes the old
+    // stage once the channel state is released, waiting first for any stage retired by a concurrent replacement
+    // Note: Messages forwarded after the swap wait for the old stage to finish to preserve message order, but senders can
+    //      keep queueing messages meanwhile, which they couldn't if the old stage were flushed under the claim
+    private void replaceOutputStage(OutputStage newStage, LatencyHistogram jitter) {
+        OutputStage old = null;
+        boolean swapped = false;
+
+        while (!swapped) {
+            claimState();
+            try {
+                if (retiredStage == null) {
+                    old = outputStage;
+                    retiredStage = old;
+                    outputStage = newStage;
+                    if (emissionJitter != null) { unregister("EmissionJitter"); }
+                    emissionJitter = jitter;
+                    if (jitter != null) { register(jitter, "EmissionJitter"); }
+                    swapped = true;
+                } // End if(retiredStage == null)
+            } finally { releaseState(); }
+            if (!swapped) { awaitRetiredStage(); }
+        } // End while(!swapped)
+
+        // Only this replacement can clear the retired stage, since no other can swap until it has been cleared
+        if (old != null) {
+            old.shutdown();
+            retiredStage = null;
+        } // End if(old != null)
+    } // End replaceOutputStage method
+
+    // Opens a debug log in the temporary directory, logging rather than failing if that fails
+    private void enableDefaultDebugLog() {
+        Path file = Paths.get(System.getProperty("java.io.tmpdir"), "midisplitter-debug-" + System.currentTimeMillis() + "-" + id + ".mslog");
+        try {
+            enableDebugLog(file);
+            Logger.getLogger("MidiProcessor").log(Level.INFO, "Writing debug log to: " + file);
+        } catch (IOException e) {
+            Logger.getLogger("MidiProcessor").log(Level.WARNING, "Opening debug log " + file + " failed", e);
+        } // End try {} catch(IOException)
+    } // End enableDefaultDebugLog method
+
+    // Closes a debug log that has been swapped out, logging rather than failing if that fails
+    private static void closeDebugLog(DebugEventLog log) {
+        if (log == null) { return; }
+        try { log.close(); } catch (IOException e) {
+            Logger.getLogger("MidiProcessor").log(Level.WARNING, "Closing debug log failed", e);
+        } // End try {} catch(IOException)
+    } // End closeDebugLog method
+
+    // Waits for a replaced output stage to forward the messages it still holds, so that messages forwarded after the
+    // replacement can't overtake them
+    private void awaitRetiredStage() {
+        OutputStage retired = retiredStage;
+        if (retired != null) { retired.awaitTermination(); }
+    } // End awaitRetiredStage method
+
+    // Claims exclusive access to the channel state for an operation other than sending, parking until the thread holding it
+    // releases it, then translates the queued messages so that the operation follows every message sent before it
+    // Note: Senders never wait here, since a sender that can't take the lock leaves its message in the queue instead
+    // Note: The queue can hold no more than INPUT_QUEUE_CAPACITY messages, so draining that many covers every message sent
+    //      before the claim without letting later senders keep the operation waiting
+    private void claimState() {
+        boolean nested = stateLock.isHeldByCurrentThread();
+
+        stateLock.lock();
+        if (!nested) { inputQueue.drain(inputSink, INPUT_QUEUE_CAPACITY); }
+    } // End claimState method
+
+    // Releases exclusive access to the channel state, publishing any changes to the next thread to claim it, then drains any
+    // messages that were queued while the state was claimed
+    // Note: A sender that fails to take the lock leaves its message for the current holder, so every holder must check the
+    //      queue after releasing the state or the message could be stranded until the next message arrives
+    private void releaseState() {
+        stateLock.unlock();
+        if (!stateLock.isHeldByCurrentThread() && inputQueue.hasPublished()) { drainInputs(); }
+    } // End releaseState method
+
+    // Replaces the receiver of one port, releasing the device that owned the old receiver (if any) after the swap
+    private void replace(int port, MidiDevice device, Receiver receiver, MidiDevicePool.Lease lease) {
+        Destination old = destination.getAndUpdate(d -> (d == null ? new Destination(ports) : d).with(port, device, receiver, lease));
+        if (old != null) { release(old, port); }
+    } // End replace method
+
+    // Hands a port over to a new receiver at a single point in the stream of messages, then ends the notes held on the
+    // port on the old receiver and releases the device that owned it (if any)
+    private void handOver(int port, MidiDevice device, Receiver receiver, MidiDevicePool.Lease lease, boolean retrigger) {
+        Handover handover = null;
+        OutputStage stage = null;
+        Destination old;
+
+        // List the held notes and swap the receivers while no message can be translated, or queue the swap in order with
+        // the messages already translated if output is asynchronous
+        // Note: Senders that choose the new receiver before its notes are restarted wait for them, so the NOTE-ONs can be
+        //      sent after releasing the state without a NOTE-OFF overtaking them
+        claimState();
+        try {
+            if (isOpen) {
+                handover = new Handover(port, device, receiver, lease, retrigger);
+                stage = outputStage;
+                if (stage != null) { stage.publishBarrier(handover); }
+                else { swap(handover, handover.noteOns.length != 0); }
+            } // End if(isOpen)
+        } finally { releaseState(); }
+        if (handover == null) {
+            release(new Destination(ports).with(port, device, receiver, lease), port);
+            throw new IllegalStateException("MidiProcessor closed");
+        } // End if(handover == null)
+        if (stage != null) { awaitUninterruptibly(handover.restarted); }
+        else { restart(handover); }
+
+        // End the held notes on the old receiver, which every message translated before the handover has already reached
+        // since messages are only forwarded synchronously with the channel state claimed
+        old = handover.old;
+        if (old == null) { return; }
+        deliver(old.receivers[port], handover.noteOffs);
+        release(old, port);
+    } // End handOver method
+
+    // Swaps a handover's receiver into its port, optionally making senders that choose it wait for the held notes to be
+    // restarted
+    private void swap(Handover handover, boolean gated) {
+        handover.old = destination.getAndUpdate(d -> (d == null ? new Destination(ports) : d).with(
+                handover.port, handover.device, handover.receiver, handover.lease, gated ? handover.restarted : null
+        )); // End getAndUpdate call
+    } // End swap method
+
+    // Restarts the held notes of a handover on its new receiver, then releases anything waiting for them
+    private void restart(Handover handover) {
+        try { deliver(handover.receiver, handover.noteOns); }
+        finally { handover.restarted.countDown(); }
+    } // End restart method
+
+    // Forwards a message dispatched by the output stage, or swaps the receivers of a handover queued with the messages
+    private void dispatch(MidiMessage message, int port, long timeStamp) {
+        awaitRetiredStage();
+        if (message instanceof Handover) {
+            swap((Handover) message, false);
+            restart((Handover) message);
+        } // End if(message instanceof Handover)
+        else { forward(message, port, timeStamp); }
+    } // End dispatch method
+
+    // Waits for a latch to be released, deferring any interrupt until it has
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) { interrupted = true; }
+        } // End while(true)
+        if (interrupted) { Thread.currentThread().interrupt(); }
+    } // End awaitUninterruptibly method
+
+    // Throws an IndexOutOfBoundsException if a port isn't one of this processor's outputs
+    private void checkPort(int port) {
+        if (port < 0 || port >= ports) { throw new IndexOutOfBoundsException("port " + port + " of " + ports); }
+    } // End checkPort method
+
+    // Checks that the number of outputs is supported, returning the outputs
+    private static <T> T[] checkPorts(T[] outputs) {
+        if (outputs == null || outputs.length == 0 || outputs.length > MAX_PORTS) {
+            throw new IllegalArgumentException("between 1 and " + MAX_PORTS + " outputs are required");
+        } // End if(outputs invalid)
+        return outputs;
+    } // End checkPorts method
+
+    // Opens several MIDI devices, or borrows them from a pool if one is given, and retrieves their receivers, releasing the
+    // devices again if any fail
+    private static Destination open(MidiDevice[] midiReceivers, MidiDevicePool pool) throws MidiUnavailableException {
+        Destination opened = new Destination(midiReceivers.length);
+        try {
+            for (int i = 0; i < midiReceivers.length; i++) {
+                if (pool == null) { opened = opened.with(i, midiReceivers[i], open(midiReceivers[i]), null); }
+                else {
+                    MidiDevicePool.Lease lease = pool.borrowReceiver(midiReceivers[i]);
+                    opened = opened.with(i, null, lease.getReceiver(), lease);
+                } // End if(pool == null) {} else
+            } // End for(i < midiReceivers.length)
+        } catch (MidiUnavailableException | RuntimeException e) {
+            release(opened);
+            throw e;
+        } // End try {} catch(MidiUnavailableException | RuntimeException)
+        return opened;
+    } // End open(MidiDevice[]) method
+
+    // Opens a MIDI device and retrieves its receiver, closing the device again if that fails
+    private static Receiver open(MidiDevice midiReceiver) throws MidiUnavailableException {
+        try {
+            midiReceiver.open();
+            return midiReceiver.getReceiver();
+        } catch (MidiUnavailableException e) {
+            // Ensure that we close the device if we have opened it, then abort and forward the exception
+            if (midiReceiver.isOpen()) { midiReceiver.close(); }
+            throw e;
+        }
+    } // End open(MidiDevice) method
+
+    // Releases the devices of a destination that has been swapped out, if any
+    private static void release(Destination old) {
+        if (old == null) { return; }
+        for (int port = 0; port < old.receivers.length; port++) { release(old, port); }
+    } // End release(Destination) method
+
+    // Returns the device of one port of a destination that has been swapped out to its pool, or closes it if it wasn't borrowed
+    private static void release(Destination old, int port) {
+        if (old.leases[port] != null) { old.leases[port].close(); }
+        else { release(old.devices[port]); }
+    } // End release(Destination, int) method
+
+    // Closes a device that is no longer used, if any
+    private static void release(MidiDevice device) {
+        if (device != null && device.isOpen()) { device.close(); }
+    } // End release(MidiDevice) method
+
+    // Registers one of this processor's MBeans with the platform MBean server, logging rather than failing if that fails
+    private void register(Object mbean, String name) {
+        try { ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName(name)); } catch (JMException e) {
+            Logger.getLogger("MidiProcessor").log(Level.WARNING, "Registering MBean " + name + " failed", e);
+        } // End try {} catch(JMException)
+    } // End register method
+
+    // Unregisters one of this processor's MBeans, ignoring it if it was never registered
+    private void unregister(String name) {
+        try { ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name)); } catch (JMException ignored) {}
+    } // End unregister method
+
+    // Checks whether this processor's MidiProcessorMXBean is registered
+    private boolean isMBeanRegistered() {
+        try { return ManagementFactory.getPlatformMBeanServer().isRegistered(objectName("Processor")); } catch (JMException e) { return false; }
+    } // End isMBeanRegistered method
+
+    // Creates the JMX name of one of this processor's MBeans
+    private ObjectName objectName(String name) throws JMException {
+        return new ObjectName(MBEAN_DOMAIN + ":type=MidiProcessor,id=" + id + ",name=" + name);
+    } // End objectName method
+
+    // The contention-free counters of a processor, and its management view
+    // Note: LongAdder keeps incrementing cheap even when several threads are sending at once, which lets the counters stay
+    //      enabled under load
+    private class Statistics implements MidiProcessorMXBean {
+        final LongAdder messagesIn = new LongAdder();             // The number of messages sent to the processor
+        final LongAdder messagesOut = new LongAdder();            // The number of messages forwarded to the receiver
+        final LongAdder orphanedNoteOffs = new LongAdder();       // The number of NOTE-OFFs without a matching NOTE-ON
+        final LongAdder overflowEvents = new LongAdder();         // The number of NOTE-ONs sent while every channel was busy
+        final LongAdder stolenNotes = new LongAdder();            // The number of held notes ended by voice stealing
+        final LongAdder expiredNotes = new LongAdder();           // The number of held notes ended by note expiry
+        final LongAdder receiverClosedFailures = new LongAdder(); // The number of messages dropped by a closed receiver
+
+        @Override
+        public int[] getChannelUses() {
+            int[] uses = new int[channelAllocator.getChannelCount()];
+            claimState();
+            try {
+                for (int i = 0; i < uses.length; i++) { uses[i] = channelAllocator.getUses(i); }
+            } finally { releaseState(); }
+            return uses;
+        } // End getChannelUses method
+
+        @Override
+        public int getActiveTranslations() {
+            claimState();
+            try { return noteTranslations.size(); } finally { releaseState(); }
+        } // End getActiveTranslations method
+
+        @Override
+        public long getMessagesIn() { return messagesIn.sum(); }
+
+        @Override
+        public long getMessagesOut() { return messagesOut.sum(); }
+
+        @Override
+        public long getOrphanedNoteOffs() { return orphanedNoteOffs.sum(); }
+
+        @Override
+        public long getOverflowEvents() { return overflowEvents.sum(); }
+
+        @Override
+        public long getStolenNotes() { return stolenNotes.sum(); }
+
+        @Override
+        public long getExpiredNotes() { return expiredNotes.sum(); }
+
+        @Override
+        public long getReceiverClosedFailures() { return receiverClosedFailures.sum(); }
+
+        @Override
+        public void resetCounters() {
+            messagesIn.reset();
+            messagesOut.reset();
+            orphanedNoteOffs.reset();
+            overflowEvents.reset();
+            stolenNotes.reset();
+            expiredNotes.reset();
+            receiverClosedFailures.reset();
+        } // End resetCounters method
+    } // End Statistics class
+
+    /**
+     * An input of a {@link MidiProcessor}, created by {@link #createInput()} or {@link #attachInput(Transmitter)}. Each
+     * input has its own namespace of source channels, so the same note on the same channel from two inputs is translated
+     * as two separate notes.
+     * <br><br>
+     * Messages sent to an input are added to the lock-free queue shared by the processor and all of its inputs, and
+     * translated by whichever thread is draining it, which may be another input's thread. A sender therefore never waits
+     * for another input unless the queue is full. Short messages are copied into the queue, but other messages, such
+     * as system exclusive messages, are queued by reference, so senders must not reuse them.
+     *
+     * @author Noah Reeder
+     * @version 1.0
+     * @since 1.1.2
+     */
+    public final class Input implements Receiver {
+        private final int index;               // The index of this input, which selects its namespace of source channels
+        private final Transmitter transmitter; // The transmitter attached to this input, or null if created directly
+        private final MidiDevicePool.Lease lease; // The lease the transmitter was borrowed under, or null if not borrowed
+        private volatile boolean open;         // Whether this input still accepts messages
+
+        // Constructs an open Input with a namespace, an optional transmitter, and the lease it was borrowed under if any
+        private Input(int index, Transmitter transmitter, MidiDevicePool.Lease lease) {
+            this.index = index;
+            this.transmitter = transmitter;
+            this.lease = lease;
+            open = true;
+        } // End Input(int, Transmitter, MidiDevicePool.Lease) constructor
+
+        /**
+         * Sends a MIDI message to the processor through this input, along with an optional timestamp. Set timestamp to -1
+         * if not used. This may be called concurrently from multiple threads.
+         *
+         * @param message   the message to be received and processed by the {@code MidiProcessor}
+         * @param timeStamp the timestamp (in microseconds) of the message
+         */
+        @Override
+        public void send(MidiMessage message, long timeStamp) {
+            // Drop the message if this input or the processor is closing
+            if (message == null || !open || !isOpen) { return; }
+
+            // Only time the message when recording, so that the clock isn't read at all otherwise
+            LatencyHistogram histogram = sendLatency;
+            if (histogram == null) { queue(message, timeStamp); }
+            else {
+                long start = System.nanoTime();
+                queue(message, timeStamp);
+                histogram.record(System.nanoTime() - start);
+            } // End if(histogram == null) {} else
+        } // End send method
+
+        /**
+         * Detaches this input from the processor, ending any notes it still holds. If this input was created by
+         * {@link #attachInput(Transmitter)}, the transmitter stops sending to it but isn't closed. If it was created by
+         * {@link #attachInput(MidiDevice, MidiDevicePool)}, the transmitter is closed and its device returned to the pool.
+         */
+        @Override
+        public void close() { detach(this); }
+
+        /**
+         * Checks whether this input is still attached to its processor.
+         *
+         * @return {@code false} if this input or its processor has been closed; {@code true} otherwise
+         */
+        public boolean isOpen() { return open && isOpen; }
+
+        /**
+         * Retrieves the index of this input, which is also the upper part of its source channels in a debug log.
+         *
+         * @return the index of this input, from 1 to {@link #MAX_INPUTS}
+         */
+        public int getIndex() { return index; }
+
+        /**
+         * Retrieves the transmitter attached to this input.
+         *
+         * @return the transmitter, or {@code null} if this input was created by {@link #createInput()}
+         */
+        public Transmitter getTransmitter() { return transmitter; }
+
+        // Queues a message in this input's namespace, copying it if it is a short message
+        private void queue(MidiMessage message, long timeStamp) {
+            statistics.messagesIn.increment();
+            if (message instanceof ShortMessage) { submit(index, null, ShortMessageAccess.pack((ShortMessage) message), timeStamp); }
+            else { submit(index, message, 0, timeStamp); }
+        } // End queue method
+    } // End Input class
 
     /**
      * Indicates that all 16 MIDI channels are in use and the current note cannot be distributed to a unique channel.
@@ -417,7 +1921,10 @@ public class MidiProcessor implements Receiver {
      * @version 1.0
      * @see <a href=https://www.midi.org/specifications-old/item/table-1-summary-of-midi-message>Summary of MIDI Messages</a>
      * @since 2020-03-08
+     * @deprecated No longer used; translations are kept in a preallocated primitive table. Retained only so that
+     * subclasses referring to it still compile, and will be removed in a future release.
      */
+    @Deprecated
     protected static class NoteMapping {
         private int channel;    // The MIDI channel of the note
         private int noteNumber; // The MIDI note/key number of the note
@@ -497,7 +2004,10 @@ public class MidiProcessor implements Receiver {
      * @author Noah Reeder
      * @version 1.0
      * @since 2020-03-08
+     * @deprecated No longer used; channel uses are tracked by the {@link ChannelAllocator}. Retained only so that
+     * subclasses referring to it still compile, and will be removed in a future release.
      */
+    @Deprecated
     protected static class ChannelStatus {
         private int uses; // The counter for the current number of uses/note-on events on this channel
 
@@ -538,4 +2048,86 @@ public class MidiProcessor implements Receiver {
          */
         public int getUses() { return uses; }
     } // End ChannelStatus class
+
+    // An immutable snapshot of the receiver of each port that processed messages are forwarded to, and the device that owns
+    // each receiver (if any)
+    private static final class Destination {
+        final MidiDevice[] devices; // The MIDI device that owns each receiver, or null where the receiver was provided directly or borrowed
+        final Receiver[] receivers; // The MIDI receiver of each port to forward processed messages to
+        final MidiDevicePool.Lease[] leases; // The lease each receiver was borrowed under, or null where it wasn't borrowed
+        final CountDownLatch restarting; // Released once the notes restarted by a handover have been sent, or null if none
+
+        Destination(int ports) { this(new MidiDevice[ports], new Receiver[ports], new MidiDevicePool.Lease[ports], null); }
+
+        Destination(MidiDevice[] devices, Receiver[] receivers, MidiDevicePool.Lease[] leases, CountDownLatch restarting) {
+            this.devices = devices;
+            this.receivers = receivers;
+            this.leases = leases;
+            this.restarting = restarting;
+        } // End Destination(MidiDevice[], Receiver[], MidiDevicePool.Lease[], CountDownLatch) constructor
+
+        // Creates a copy of this destination with the receiver of one port replaced, still waiting for any restarted notes
+        Destination with(int port, MidiDevice device, Receiver receiver, MidiDevicePool.Lease lease) {
+            return with(port, device, receiver, lease, restarting);
+        } // End with(int, MidiDevice, Receiver, MidiDevicePool.Lease) method
+
+        // Creates a copy of this destination with the receiver of one port replaced, whose senders wait for a latch first
+        Destination with(int port, MidiDevice device, Receiver receiver, MidiDevicePool.Lease lease, CountDownLatch restarting) {
+            Destination copy = new Destination(devices.clone(), receivers.clone(), leases.clone(), restarting);
+            copy.devices[port] = device;
+            copy.receivers[port] = receiver;
+            copy.leases[port] = lease;
+            return copy;
+        } // End with(int, MidiDevice, Receiver, MidiDevicePool.Lease, CountDownLatch) method
+
+        // Waits for the notes restarted by a handover to be sent, so that no message forwarded here can overtake them
+        void awaitRestarted() {
+            if (restarting != null && restarting.getCount() != 0) { awaitUninterruptibly(restarting); }
+        } // End awaitRestarted method
+    } // End Destination class
+
+    // A switch of one port to a new receiver, along with the held notes to end on the old receiver and restart on the new
+    // one, which is queued as a message when output is asynchronous so that it is dispatched in order
+    private final class Handover extends MidiMessage {
+        final int port;                     // The index of the output being handed over
+        final MidiDevice device;            // The device owning the new receiver, or null if provided directly or borrowed
+        final Receiver receiver;            // The new receiver of the port
+        final MidiDevicePool.Lease lease;   // The lease the new receiver was borrowed under, or null if not borrowed
+        final int[] noteOffs;               // The packed NOTE-OFFs of the notes held on the port
+        final int[] noteOns;                // The packed NOTE-ONs restarting the notes held on the port, if retriggering
+        final CountDownLatch restarted;     // Released once the receivers have been swapped and the held notes restarted
+        volatile Destination old;           // The snapshot the new receiver was swapped into, once swapped
+
+        // Lists the notes held on a port; the caller must have claimed the channel state
+        Handover(int port, MidiDevice device, Receiver receiver, MidiDevicePool.Lease lease, boolean retrigger) {
+            super(new byte[0]);
+            int[] translations = new int[noteTranslations.size()];
+            int count = noteTranslations.list(translations);
+            int[] offs = new int[count];
+            int[] ons = new int[count];
+            int held = 0;
+
+            // Keep only the notes translated to one of the port's channels
+            for (int i = 0; i < count; i++) {
+                int translatedChannel = translations[i] & 0xFF;
+                int noteNumber = (translations[i] >>> 8) & 0x7F;
+                if (translatedChannel % ports != port) { continue; }
+                offs[held] = route(PackedMidiMessage.pack(ShortMessage.NOTE_OFF, 0, noteNumber, 0), translatedChannel);
+                ons[held] = route(PackedMidiMessage.pack(ShortMessage.NOTE_ON, 0, noteNumber, translations[i] >>> 24), translatedChannel);
+                held++;
+            } // End for(i < count)
+
+            this.port = port;
+            this.device = device;
+            this.receiver = receiver;
+            this.lease = lease;
+            noteOffs = Arrays.copyOf(offs, held);
+            noteOns = Arrays.copyOf(ons, retrigger ? held : 0);
+            restarted = new CountDownLatch(1);
+        } // End Handover(int, MidiDevice, Receiver, MidiDevicePool.Lease, boolean) constructor
+
+        // A handover is never copied, since it is only ever queued by the processor that created it
+        @Override
+        public Object clone() { return this; }
+    } // End Handover class
 } // End MidiProcessor class
@@ -0,0 +1,100 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+/**
+ * The management interface of a {@link MidiProcessor}, exposing its live channel and translation state and its message
+ * counters through JMX.
+ * <br><br>
+ * The counters are cumulative since the processor was created or the counters were last reset.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public interface MidiProcessorMXBean {
+    /**
+     * Retrieves the number of notes currently assigned to each MIDI channel. If the processor has several outputs, the
+     * channels of all outputs are included, numbered as described by {@link MidiProcessor}.
+     *
+     * @return the use counts of channels 0 to 15, or of every pooled channel if there are several outputs
+     */
+    int[] getChannelUses();
+
+    /**
+     * Retrieves the number of NOTE-ONs that have been translated and are awaiting their NOTE-OFFs.
+     *
+     * @return the number of active translations
+     */
+    int getActiveTranslations();
+
+    /**
+     * Retrieves the number of messages sent to the processor, either individually or in batches.
+     *
+     * @return the number of messages received
+     */
+    long getMessagesIn();
+
+    /**
+     * Retrieves the number of messages successfully forwarded to the receiver.
+     *
+     * @return the number of messages sent
+     */
+    long getMessagesOut();
+
+    /**
+     * Retrieves the number of NOTE-OFFs that had no matching NOTE-ON, typically because the note was already playing when
+     * splitting started. These are forwarded untranslated.
+     *
+     * @return the number of orphaned NOTE-OFFs
+     */
+    long getOrphanedNoteOffs();
+
+    /**
+     * Retrieves the number of NOTE-ONs that arrived while every channel was busy and so had to share a channel.
+     *
+     * @return the number of overflow events
+     */
+    long getOverflowEvents();
+
+    /**
+     * Retrieves the number of held notes that were ended to make room for a new note while voice stealing was enabled.
+     *
+     * @return the number of stolen notes
+     */
+    long getStolenNotes();
+
+    /**
+     * Retrieves the number of held notes that were ended by note expiry, either because they outlived the maximum note
+     * lifetime or to stay within the cap on held notes.
+     *
+     * @return the number of expired notes
+     */
+    long getExpiredNotes();
+
+    /**
+     * Retrieves the number of messages that couldn't be forwarded because the receiver was closed.
+     *
+     * @return the number of receiver-closed failures
+     */
+    long getReceiverClosedFailures();
+
+    /**
+     * Resets all counters to 0. Does not affect the channel or translation state.
+     */
+    void resetCounters();
+} // End MidiProcessorMXBean interface
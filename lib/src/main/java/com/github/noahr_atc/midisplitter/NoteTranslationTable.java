@@ -0,0 +1,522 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * The translation table used by a {@link MidiProcessor} to remember which channel each active note was translated to.
+ * <br><br>
+ * All storage is preallocated as primitive arrays indexed by (source channel, note number), so adding, looking up, and
+ * removing a translation never allocates. Source channels are numbered across the processor's inputs, 16 per input, and
+ * the table only grows when a new input is attached. Each (source channel, note number) key holds a small first-in-first-out queue of
+ * target channels so that repeated NOTE-ON events for the same key are matched with their NOTE-OFF events in order.
+ * The table can be cleared in constant time by advancing a generation counter instead of touching every entry.
+ * <br><br>
+ * When voice stealing is enabled, every active translation is also linked into an intrusive doubly-linked list threaded
+ * through the queue storage itself, oldest first. There is one list per velocity when the quietest note is stolen, or a
+ * single list otherwise, and a bitmask of the non-empty lists finds the next victim without searching. Linking,
+ * unlinking, and stealing are therefore constant-time and never allocate. A stolen translation stays in its key's queue,
+ * marked as {@link #STOLEN}, so that the NOTE-OFF meant for it is still matched in order.
+ * <br><br>
+ * When translations have a maximum lifetime, every queued entry is also linked into a hashed timing wheel of
+ * {@value #WHEEL_SLOTS} slots, each covering a fixed tick of time, in the slot of the tick its lifetime ends in. Adding
+ * and removing an entry is constant-time, and {@link #expire(long)} only visits the slots of the ticks that have passed
+ * since it was last called. An expired entry is removed from its key's queue outright, including a stolen entry whose
+ * NOTE-OFF never arrived, so lost NOTE-OFFs can't hold on to queue space or channels.
+ * <br><br>
+ * Note: This class is not thread-safe; the owning {@code MidiProcessor} is responsible for serializing access.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class NoteTranslationTable {
+    /**
+     * The number of MIDI channels of a single input.
+     */
+    static final int CHANNELS = 16;
+
+    /**
+     * The number of MIDI note numbers.
+     */
+    static final int NOTES = 128;
+
+    /**
+     * The maximum number of NOTE-ON events for a single (source channel, note number) key that can be awaiting a NOTE-OFF.
+     */
+    static final int MAX_QUEUE_DEPTH = 16;
+
+    /**
+     * The target returned by {@link #remove(int, int)} for a translation that was ended by {@link #steal()}.
+     */
+    static final int STOLEN = -2;
+
+    private static final int VELOCITIES = 128; // The number of NOTE-ON velocities, and so the number of steal lists
+    private static final int WHEEL_SLOTS = 64; // The number of slots of the timing wheel, one bit of nonEmptySlots each
+    private static final long MIN_TICK_NANOS = 1000000; // The shortest tick of the timing wheel, so it isn't swept too often
+
+    private byte[] targets;                 // The queue storage, MAX_QUEUE_DEPTH consecutive entries per key
+    private byte[] heads;                   // The index of the oldest queued target of each key
+    private byte[] sizes;                   // The number of queued targets of each key
+    private int[] keyGenerations;           // The generation each key was last written in; stale keys are considered empty
+    private int generation;                 // The current generation, advanced by clear
+    private int activeTranslations;         // The total number of active translations in the current generation
+    private byte[] velocities;              // The NOTE-ON velocity of each queued target, parallel to targets
+    private VoiceStealing stealing;         // The policy the steal lists are ordered for, or null if they aren't kept
+    private int[] older;                    // The next older entry in each linked entry's steal list, or -1
+    private int[] newer;                    // The next newer entry in each linked entry's steal list, or -1
+    private byte[] lists;                   // The steal list each linked entry is in
+    private final int[] oldest;             // The oldest entry of each steal list, or -1 if it is empty
+    private final int[] newest;             // The newest entry of each steal list, or -1 if it is empty
+    private final long[] nonEmptyLists;     // The bitmask of steal lists that have at least one entry
+    private long lifetime;                  // The maximum lifetime of an entry in nanoseconds, or 0 if entries don't expire
+    private long tickNanos;                 // The length of time covered by each slot of the timing wheel
+    private long wheelTick;                 // The tick whose slot the timing wheel is currently sweeping
+    private long[] deadlines;               // The System.nanoTime at which each wheeled entry expires
+    private int[] earlier;                  // The previous entry in each wheeled entry's slot, or -1
+    private int[] later;                    // The next entry in each wheeled entry's slot, or -1
+    private byte[] slots;                   // The timing wheel slot each wheeled entry is in
+    private final int[] firstInSlot;        // The first entry of each slot of the timing wheel, or -1 if it is empty
+    private final int[] lastInSlot;         // The last entry of each slot of the timing wheel, or -1 if it is empty
+    private long nonEmptySlots;             // The bitmask of timing wheel slots that have at least one entry
+
+    /**
+     * Constructs an empty {@code NoteTranslationTable} for the 16 channels of a single input.
+     */
+    NoteTranslationTable() {
+        targets = new byte[CHANNELS * NOTES * MAX_QUEUE_DEPTH];
+        heads = new byte[CHANNELS * NOTES];
+        sizes = new byte[CHANNELS * NOTES];
+        keyGenerations = new int[CHANNELS * NOTES];
+        generation = 1; // Stamps start at 0, so every entry begins stale
+        activeTranslations = 0;
+        velocities = new byte[CHANNELS * NOTES * MAX_QUEUE_DEPTH];
+        stealing = null;
+        oldest = new int[VELOCITIES];
+        newest = new int[VELOCITIES];
+        nonEmptyLists = new long[VELOCITIES / 64];
+        lifetime = 0;
+        firstInSlot = new int[WHEEL_SLOTS];
+        lastInSlot = new int[WHEEL_SLOTS];
+    } // End NoteTranslationTable() constructor
+
+    /**
+     * Grows the table to hold at least a number of source channels, keeping all active translations.
+     *
+     * @param sourceChannels the number of source channels required, a multiple of {@link #CHANNELS}
+     */
+    void ensureSourceChannels(int sourceChannels) {
+        int keys = sourceChannels * NOTES;
+        if (keys <= keyGenerations.length) { return; }
+
+        // Keys are ordered by source channel, so the new source channels are simply appended. The new stamps are 0, which
+        // is never the current generation, so the new keys begin empty
+        targets = Arrays.copyOf(targets, keys * MAX_QUEUE_DEPTH);
+        heads = Arrays.copyOf(heads, keys);
+        sizes = Arrays.copyOf(sizes, keys);
+        keyGenerations = Arrays.copyOf(keyGenerations, keys);
+        velocities = Arrays.copyOf(velocities, keys * MAX_QUEUE_DEPTH);
+        if (stealing != null) {
+            older = Arrays.copyOf(older, keys * MAX_QUEUE_DEPTH);
+            newer = Arrays.copyOf(newer, keys * MAX_QUEUE_DEPTH);
+            lists = Arrays.copyOf(lists, keys * MAX_QUEUE_DEPTH);
+        } // End if(stealing != null)
+        if (lifetime != 0) {
+            deadlines = Arrays.copyOf(deadlines, keys * MAX_QUEUE_DEPTH);
+            earlier = Arrays.copyOf(earlier, keys * MAX_QUEUE_DEPTH);
+            later = Arrays.copyOf(later, keys * MAX_QUEUE_DEPTH);
+            slots = Arrays.copyOf(slots, keys * MAX_QUEUE_DEPTH);
+        } // End if(lifetime != 0)
+    } // End ensureSourceChannels method
+
+    /**
+     * Retrieves the number of source channels the table currently holds.
+     *
+     * @return the number of source channels, a multiple of {@link #CHANNELS}
+     */
+    int getSourceChannels() { return keyGenerations.length / NOTES; }
+
+    /**
+     * Starts or stops keeping the steal lists used by {@link #steal()}. The lists are only allocated while voice stealing
+     * is enabled. Translations that are already active when the lists are built are linked in key order, since the order
+     * they were added in across keys isn't recorded.
+     *
+     * @param policy the policy to order the steal lists for, or {@code null} to stop keeping them
+     */
+    void setVoiceStealing(VoiceStealing policy) {
+        int entries = targets.length;
+
+        stealing = policy;
+        if (policy == null) {
+            older = null;
+            newer = null;
+            lists = null;
+            return;
+        } // End if(policy == null)
+        if (older == null) {
+            older = new int[entries];
+            newer = new int[entries];
+            lists = new byte[entries];
+        } // End if(older == null)
+
+        // Rebuild the lists from the active translations, keeping the order of each key's queue
+        clearLists();
+        for (int key = 0; key < keyGenerations.length; key++) {
+            for (int i = 0; i < size(key); i++) {
+                int entry = key * MAX_QUEUE_DEPTH + ((heads[key] + i) % MAX_QUEUE_DEPTH);
+                if (targets[entry] != STOLEN) { link(entry); }
+            } // End for(i < size)
+        } // End for(key < keys)
+    } // End setVoiceStealing method
+
+    /**
+     * Starts or stops expiring entries once they reach a maximum lifetime. The timing wheel is only allocated while
+     * entries expire. If the lifetime is changed, the deadlines of queued entries move by the difference; entries that
+     * were already queued when expiry is first enabled are given a full lifetime from {@code now}.
+     *
+     * @param lifetime the maximum lifetime of an entry in nanoseconds, at least 1 millisecond, or 0 to stop expiring entries
+     * @param now      the current {@link System#nanoTime()}
+     */
+    void setLifetime(long lifetime, long now) {
+        int entries = targets.length;
+        long oldLifetime = this.lifetime;
+
+        this.lifetime = lifetime;
+        if (lifetime == 0) {
+            deadlines = null;
+            earlier = null;
+            later = null;
+            slots = null;
+            return;
+        } // End if(lifetime == 0)
+        if (oldLifetime == 0) {
+            deadlines = new long[entries];
+            earlier = new int[entries];
+            later = new int[entries];
+            slots = new byte[entries];
+        } // End if(oldLifetime == 0)
+
+        // Size the ticks so that a full lifetime spans fewer ticks than there are slots, so a slot only holds entries that
+        // expire in the same rotation unless sweeping falls behind
+        tickNanos = Math.max(lifetime / (WHEEL_SLOTS - 2), MIN_TICK_NANOS);
+        wheelTick = now / tickNanos;
+
+        // Rebuild the wheel from the queued entries, keeping the order of each key's queue
+        clearWheel();
+        for (int key = 0; key < keyGenerations.length; key++) {
+            for (int i = 0; i < size(key); i++) {
+                int entry = key * MAX_QUEUE_DEPTH + ((heads[key] + i) % MAX_QUEUE_DEPTH);
+                deadlines[entry] = (oldLifetime == 0) ? now + lifetime : deadlines[entry] - oldLifetime + lifetime;
+                wheel(entry);
+            } // End for(i < size)
+        } // End for(key < keys)
+    } // End setLifetime method
+
+    /**
+     * Retrieves the length of time covered by each slot of the timing wheel, which is how often {@link #expire(long)}
+     * needs to be called for entries to expire on time.
+     *
+     * @return the tick length in nanoseconds, or 0 if entries don't expire
+     */
+    long getTickNanos() { return (lifetime == 0) ? 0 : tickNanos; }
+
+    /**
+     * Retrieves the maximum lifetime of an entry.
+     *
+     * @return the maximum lifetime in nanoseconds, or 0 if entries don't expire
+     */
+    long getLifetime() { return lifetime; }
+
+    /**
+     * Checks whether another translation can be added for a (source channel, note number) key.
+     *
+     * @param sourceChannel the original channel of the note
+     * @param noteNumber    the MIDI note/key number of the note
+     * @return {@code true} if the key's queue has room for another translation; {@code false} otherwise
+     */
+    boolean canPut(int sourceChannel, int noteNumber) { return size(key(sourceChannel, noteNumber)) < MAX_QUEUE_DEPTH; }
+
+    /**
+     * Adds a translation to the back of a key's queue. The caller must first ensure there is room with
+     * {@link #canPut(int, int)}.
+     *
+     * @param sourceChannel the original channel of the note
+     * @param noteNumber    the MIDI note/key number of the note
+     * @param targetChannel the channel the note was translated to
+     * @param velocity      the velocity of the NOTE-ON
+     */
+    void put(int sourceChannel, int noteNumber, int targetChannel, int velocity) {
+        int key = key(sourceChannel, noteNumber);
+        int size = size(key);
+        int entry;
+
+        if (keyGenerations[key] != generation) {
+            keyGenerations[key] = generation;
+            heads[key] = 0;
+        } // End if(keyGenerations[key] != generation)
+        entry = key * MAX_QUEUE_DEPTH + ((heads[key] + size) % MAX_QUEUE_DEPTH);
+        targets[entry] = (byte) targetChannel;
+        velocities[entry] = (byte) (velocity & 0x7F);
+        if (stealing != null) { link(entry); }
+        if (lifetime != 0) {
+            deadlines[entry] = System.nanoTime() + lifetime;
+            wheel(entry);
+        } // End if(lifetime != 0)
+        sizes[key] = (byte) (size + 1);
+        activeTranslations++;
+    } // End put method
+
+    /**
+     * Removes the oldest translation of a key.
+     *
+     * @param sourceChannel the original channel of the note
+     * @param noteNumber    the MIDI note/key number of the note
+     * @return the channel the note was translated to, {@link #STOLEN} if the note was already ended by {@link #steal()},
+     * or {@code -1} if the key has no translations
+     */
+    int remove(int sourceChannel, int noteNumber) {
+        int key = key(sourceChannel, noteNumber);
+        if (size(key) == 0) { return -1; }
+        return pop(key);
+    } // End remove method
+
+    /**
+     * Ends the active translation chosen by the voice stealing policy, marking it as {@link #STOLEN} so that the NOTE-OFF
+     * meant for it is recognised when it arrives.
+     *
+     * @return the stolen translation, as its key (source channel * 128 + note number) shifted left by 8 bits and combined
+     * with its target channel; or {@code -1} if voice stealing isn't enabled or there are no active translations
+     */
+    int steal() {
+        int list;
+        int entry;
+        int targetChannel;
+
+        if (stealing == null) { return -1; }
+        if (nonEmptyLists[0] != 0) { list = Long.numberOfTrailingZeros(nonEmptyLists[0]); }
+        else if (nonEmptyLists[1] != 0) { list = 64 + Long.numberOfTrailingZeros(nonEmptyLists[1]); }
+        else { return -1; }
+
+        entry = oldest[list];
+        targetChannel = targets[entry];
+        unlink(entry);
+        targets[entry] = (byte) STOLEN;
+        activeTranslations--;
+        return ((entry / MAX_QUEUE_DEPTH) << 8) | targetChannel;
+    } // End steal method
+
+    /**
+     * Removes an entry whose lifetime has ended by {@code now}, skipping stolen entries, which are removed without being
+     * returned. Should be called repeatedly until it returns {@code -1}, at least once per {@linkplain #getTickNanos() tick}.
+     * <br><br>
+     * Note: Entries of the same key are always removed oldest first, so expiring an entry also removes any older entries of
+     * its key, which can only be newer than their own lifetime if the lifetime was shortened.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return the expired translation, encoded as described by {@link #steal()}; or {@code -1} if entries don't expire or
+     * none have expired
+     */
+    int expire(long now) {
+        long nowTick;
+
+        if (lifetime == 0) { return -1; }
+        nowTick = now / tickNanos;
+
+        // If sweeping fell more than a rotation behind, every slot is due, so one rotation is enough to catch up
+        if (nowTick - wheelTick >= WHEEL_SLOTS) { wheelTick = nowTick - WHEEL_SLOTS + 1; }
+        while (true) {
+            // Find an expired entry in the current slot, which may also hold entries of a later rotation
+            int entry = firstInSlot[(int) wheelTick & (WHEEL_SLOTS - 1)];
+            while (entry != -1 && deadlines[entry] > now) { entry = later[entry]; }
+
+            if (entry != -1) {
+                int translation = reclaim(entry / MAX_QUEUE_DEPTH);
+                if (translation != -1) { return translation; }
+            } // End if(entry != -1)
+            else if (wheelTick == nowTick) { return -1; }
+            else { wheelTick++; }
+        } // End while(true)
+    } // End expire method
+
+    /**
+     * Removes the active translation closest to expiring, regardless of whether its lifetime has ended, to make room for
+     * another. Stolen entries found on the way are removed without being returned.
+     *
+     * @return the removed translation, encoded as described by {@link #steal()}; or {@code -1} if entries don't expire or
+     * there are no active translations
+     */
+    int reclaimOldest() {
+        if (lifetime == 0) { return -1; }
+        while (nonEmptySlots != 0) {
+            // Find the first non-empty slot from the current one onwards by rotating the current slot's bit to the bottom
+            int offset = Long.numberOfTrailingZeros(Long.rotateRight(nonEmptySlots, (int) wheelTick & (WHEEL_SLOTS - 1)));
+            int entry = firstInSlot[((int) wheelTick + offset) & (WHEEL_SLOTS - 1)];
+            int translation = reclaim(entry / MAX_QUEUE_DEPTH);
+            if (translation != -1) { return translation; }
+        } // End while(nonEmptySlots != 0)
+        return -1;
+    } // End reclaimOldest method
+
+    /**
+     * Retrieves the total number of active translations.
+     *
+     * @return the number of active translations
+     */
+    int size() { return activeTranslations; }
+
+    /**
+     * Lists every active translation without removing it, so that its note can be ended or replayed elsewhere. Stolen
+     * entries are skipped, since their notes have already been ended.
+     *
+     * @param translations the array to fill, which must have room for {@link #size()} translations
+     * @return the number of translations listed, each encoded as described by {@link #steal()} and combined with the
+     * velocity of its NOTE-ON shifted left by 24 bits
+     */
+    int list(int[] translations) {
+        int count = 0;
+
+        for (int key = 0; key < keyGenerations.length; key++) {
+            int size = size(key);
+            for (int i = 0; i < size; i++) {
+                int entry = key * MAX_QUEUE_DEPTH + ((heads[key] + i) % MAX_QUEUE_DEPTH);
+                if (targets[entry] == STOLEN) { continue; }
+                translations[count++] = (velocities[entry] << 24) | (key << 8) | targets[entry];
+            } // End for(i < size)
+        } // End for(key < keys)
+        return count;
+    } // End list method
+
+    /**
+     * Removes all translations in constant time.
+     */
+    void clear() {
+        generation++;
+        activeTranslations = 0;
+        if (stealing != null) { clearLists(); }
+        if (lifetime != 0) { clearWheel(); }
+
+        // In the extremely unlikely case that the generation wraps around to 0, stale stamps could look current again,
+        // so pay for a full wipe once every 2^32 clears
+        if (generation == 0) {
+            Arrays.fill(keyGenerations, 0);
+            generation = 1;
+        } // End if(generation == 0)
+    } // End clear method
+
+    // Removes the oldest entry of a non-empty key, returning its target channel or STOLEN
+    private int pop(int key) {
+        int entry = key * MAX_QUEUE_DEPTH + heads[key];
+        int targetChannel = targets[entry];
+
+        heads[key] = (byte) ((heads[key] + 1) % MAX_QUEUE_DEPTH);
+        sizes[key] = (byte) (sizes[key] - 1);
+        if (lifetime != 0) { unwheel(entry); }
+
+        // A stolen translation was already unlinked and stopped counting as active when it was stolen
+        if (targetChannel != STOLEN) {
+            if (stealing != null) { unlink(entry); }
+            activeTranslations--;
+        } // End if(targetChannel != STOLEN)
+        return targetChannel;
+    } // End pop method
+
+    // Removes the oldest entry of a non-empty key, returning it encoded as by steal, or -1 if it was stolen
+    private int reclaim(int key) {
+        int targetChannel = pop(key);
+        return (targetChannel == STOLEN) ? -1 : (key << 8) | targetChannel;
+    } // End reclaim method
+
+    // Adds an entry to the end of the timing wheel slot of the tick its deadline falls in, or of the current tick if the
+    // deadline has already passed
+    private void wheel(int entry) {
+        int slot = (int) Math.max(deadlines[entry] / tickNanos, wheelTick) & (WHEEL_SLOTS - 1);
+        int previous = lastInSlot[slot];
+
+        slots[entry] = (byte) slot;
+        earlier[entry] = previous;
+        later[entry] = -1;
+        if (previous == -1) {
+            firstInSlot[slot] = entry;
+            nonEmptySlots |= 1L << slot;
+        } // End if(previous == -1)
+        else { later[previous] = entry; }
+        lastInSlot[slot] = entry;
+    } // End wheel method
+
+    // Removes an entry from its timing wheel slot
+    private void unwheel(int entry) {
+        int slot = slots[entry];
+        int before = earlier[entry];
+        int after = later[entry];
+
+        if (before == -1) { firstInSlot[slot] = after; }
+        else { later[before] = after; }
+        if (after == -1) { lastInSlot[slot] = before; }
+        else { earlier[after] = before; }
+        if (firstInSlot[slot] == -1) { nonEmptySlots &= ~(1L << slot); }
+    } // End unwheel method
+
+    // Empties every timing wheel slot without touching the entries, which are rewheeled as they are added
+    private void clearWheel() {
+        Arrays.fill(firstInSlot, -1);
+        Arrays.fill(lastInSlot, -1);
+        nonEmptySlots = 0;
+    } // End clearWheel method
+
+    // Adds an entry to the newest end of the steal list for its velocity, or of the single list if stealing the oldest
+    private void link(int entry) {
+        int list = (stealing == VoiceStealing.QUIETEST) ? velocities[entry] : 0;
+        int previous = newest[list];
+
+        lists[entry] = (byte) list;
+        older[entry] = previous;
+        newer[entry] = -1;
+        if (previous == -1) {
+            oldest[list] = entry;
+            nonEmptyLists[list >>> 6] |= 1L << list;
+        } // End if(previous == -1)
+        else { newer[previous] = entry; }
+        newest[list] = entry;
+    } // End link method
+
+    // Removes an entry from its steal list
+    private void unlink(int entry) {
+        int list = lists[entry];
+        int before = older[entry];
+        int after = newer[entry];
+
+        if (before == -1) { oldest[list] = after; }
+        else { newer[before] = after; }
+        if (after == -1) { newest[list] = before; }
+        else { older[after] = before; }
+        if (oldest[list] == -1) { nonEmptyLists[list >>> 6] &= ~(1L << list); }
+    } // End unlink method
+
+    // Empties every steal list without touching the entries, which are relinked as they are added
+    private void clearLists() {
+        Arrays.fill(oldest, -1);
+        Arrays.fill(newest, -1);
+        Arrays.fill(nonEmptyLists, 0);
+    } // End clearLists method
+
+    // Retrieves the number of queued translations of a key, treating stale keys as empty
+    private int size(int key) { return (keyGenerations[key] == generation) ? sizes[key] : 0; }
+
+    // Computes the flat array index of a (source channel, note number) key
+    private static int key(int sourceChannel, int noteNumber) { return (sourceChannel << 7) | (noteNumber & 0x7F); }
+} // End NoteTranslationTable class
@@ -0,0 +1,100 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import javax.sound.midi.MidiMessage;
+
+/**
+ * A stage between a {@link MidiProcessor} and its receivers that forwards translated messages from a background thread
+ * rather than the sending thread.
+ * <br><br>
+ * Stages support a single producer. The owning {@code MidiProcessor} only publishes while it has claimed its channel
+ * state, so concurrent senders are already serialized and publish in translation order.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ * @see AsyncOutputStage
+ * @see ScheduledOutputStage
+ */
+interface OutputStage {
+    /**
+     * Queues a message for forwarding. Must only be called by one thread at a time.
+     *
+     * @param message   the message to forward
+     * @param port      the output port the message is routed to, or {@code -1} for every port
+     * @param timeStamp the timestamp of the message
+     */
+    void publish(MidiMessage message, int port, long timeStamp);
+
+    /**
+     * Queues a packed message for forwarding. Must only be called by one thread at a time.
+     *
+     * @param message   the message to forward, packed and routed as described by {@link PackedMidiMessage}
+     * @param timeStamp the timestamp of the message
+     */
+    void publish(int message, long timeStamp);
+
+    /**
+     * Queues a message that is forwarded after every message published before it and before every message published
+     * after it, even if their timestamps would order them differently. It is forwarded to every port without a timestamp.
+     * Must only be called by one thread at a time.
+     *
+     * @param message the message to forward
+     */
+    void publishBarrier(MidiMessage message);
+
+    /**
+     * Retrieves the number of messages waiting to be forwarded.
+     *
+     * @return the current queue depth
+     */
+    int getDepth();
+
+    /**
+     * Retrieves the number of messages that can be queued.
+     *
+     * @return the capacity of the queue
+     */
+    int getCapacity();
+
+    /**
+     * Stops the stage's thread once all queued messages have been forwarded, waiting for it to finish.
+     */
+    void shutdown();
+
+    /**
+     * Waits for the stage's thread to finish after {@link #shutdown()} has been called, which is once every queued message
+     * has been forwarded. Returns immediately if called from the stage's own thread, which is still forwarding.
+     */
+    void awaitTermination();
+
+    /**
+     * Receives the messages forwarded by a stage's thread.
+     */
+    @FunctionalInterface
+    interface Downstream {
+        /**
+         * Forwards a message.
+         *
+         * @param message   the message to forward
+         * @param port      the output port the message is routed to, or {@code -1} for every port
+         * @param timeStamp the timestamp of the message
+         */
+        void accept(MidiMessage message, int port, long timeStamp);
+    } // End Downstream interface
+} // End OutputStage interface
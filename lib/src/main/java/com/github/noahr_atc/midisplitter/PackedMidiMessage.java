@@ -0,0 +1,128 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+/**
+ * Utilities for MIDI short messages packed into a single {@code int}, which lets large numbers of messages be processed
+ * without creating a {@link javax.sound.midi.ShortMessage} for each one.
+ * <br><br>
+ * The status byte is stored in bits 0-7, the first data byte in bits 8-15, and the second data byte in bits 16-23, which
+ * is the same order as the bytes of a {@code ShortMessage}. The remaining bits are 0, except in messages translated by a
+ * {@link MidiProcessor} with several outputs, which record the output a note is routed to there as described by
+ * {@link #getPort(int)}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public final class PackedMidiMessage {
+    // Disable the constructor
+    private PackedMidiMessage() {}
+
+    /**
+     * Packs a short message into an {@code int}.
+     *
+     * @param status the status byte of the message, including the channel for channel messages
+     * @param data1  the first data byte of the message, or 0 if unused
+     * @param data2  the second data byte of the message, or 0 if unused
+     * @return the packed message
+     */
+    public static int pack(int status, int data1, int data2) {
+        return (status & 0xFF) | ((data1 & 0xFF) << 8) | ((data2 & 0xFF) << 16);
+    } // End pack(int, int, int) method
+
+    /**
+     * Packs a channel message into an {@code int}.
+     *
+     * @param command the command of the message, e.g. {@link javax.sound.midi.ShortMessage#NOTE_ON}
+     * @param channel the 4-bit channel of the message
+     * @param data1   the first data byte of the message, or 0 if unused
+     * @param data2   the second data byte of the message, or 0 if unused
+     * @return the packed message
+     */
+    public static int pack(int command, int channel, int data1, int data2) {
+        return pack((command & 0xF0) | (channel & 0x0F), data1, data2);
+    } // End pack(int, int, int, int) method
+
+    /**
+     * Retrieves the status byte of a packed message.
+     *
+     * @param message the packed message
+     * @return the status byte
+     */
+    public static int getStatus(int message) { return message & 0xFF; }
+
+    /**
+     * Retrieves the command of a packed channel message, i.e. the status byte without the channel.
+     *
+     * @param message the packed message
+     * @return the command
+     */
+    public static int getCommand(int message) { return message & 0xF0; }
+
+    /**
+     * Retrieves the channel of a packed channel message.
+     *
+     * @param message the packed message
+     * @return the 4-bit channel
+     */
+    public static int getChannel(int message) { return message & 0x0F; }
+
+    /**
+     * Retrieves the first data byte of a packed message.
+     *
+     * @param message the packed message
+     * @return the first data byte
+     */
+    public static int getData1(int message) { return (message >>> 8) & 0xFF; }
+
+    /**
+     * Retrieves the second data byte of a packed message.
+     *
+     * @param message the packed message
+     * @return the second data byte
+     */
+    public static int getData2(int message) { return (message >>> 16) & 0xFF; }
+
+    /**
+     * Replaces the channel of a packed channel message.
+     *
+     * @param message the packed message
+     * @param channel the new 4-bit channel
+     * @return the packed message with its channel replaced
+     */
+    public static int withChannel(int message, int channel) { return (message & ~0x0F) | (channel & 0x0F); }
+
+    /**
+     * Retrieves the output port a packed message is routed to. The port is stored in bits 24-31 as one more than its
+     * index, so that a message with those bits clear, such as any message created by {@link #pack(int, int, int)}, isn't
+     * routed to a particular port and is sent to every port.
+     *
+     * @param message the packed message
+     * @return the index of the port, or {@code -1} if the message is sent to every port
+     */
+    public static int getPort(int message) { return (message >>> 24) - 1; }
+
+    /**
+     * Routes a packed message to an output port.
+     *
+     * @param message the packed message
+     * @param port    the index of the port, from 0 to 254, or {@code -1} to send the message to every port
+     * @return the packed message with its port replaced
+     */
+    public static int withPort(int message, int port) { return (message & 0xFFFFFF) | ((port + 1) << 24); }
+} // End PackedMidiMessage class
@@ -0,0 +1,89 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+/**
+ * A {@link ChannelAllocator} that cycles through the channels, so that every channel is used equally often regardless of
+ * which channels the notes were originally sent on. This spreads wear and heat evenly across instruments that play one
+ * channel each, such as floppy drives.
+ * <br><br>
+ * A new note is assigned the next free channel after the channel chosen last, wrapping around after the last channel. If no
+ * channels are free, it is assigned the next of the least used channels in the same order.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class RoundRobinChannelAllocator extends AbstractChannelAllocator {
+    private int next; // The channel the search for the next channel starts from
+
+    /**
+     * Constructs a {@code RoundRobinChannelAllocator} for the {@value #CHANNELS} channels of a single output, starting
+     * from channel 0.
+     */
+    public RoundRobinChannelAllocator() { this(CHANNELS); }
+
+    /**
+     * Constructs a {@code RoundRobinChannelAllocator} for a number of channels, starting from channel 0.
+     *
+     * @param channelCount the number of channels to allocate between
+     * @throws IllegalArgumentException if {@code channelCount} is less than 1 or greater than {@link #MAX_CHANNELS}
+     */
+    public RoundRobinChannelAllocator(int channelCount) {
+        super(channelCount);
+        next = 0;
+    } // End RoundRobinChannelAllocator(int) constructor
+
+    /**
+     * Constructs a {@code RoundRobinChannelAllocator} with a capacity for each channel, starting from channel 0.
+     * Excluded channels are skipped.
+     *
+     * @param capacities the number of notes each channel can play at once, or 0 to exclude it
+     * @throws IllegalArgumentException if the capacities are invalid as described by
+     *                                  {@link AbstractChannelAllocator#AbstractChannelAllocator(int[])}
+     */
+    public RoundRobinChannelAllocator(int[] capacities) {
+        super(capacities);
+        next = 0;
+    } // End RoundRobinChannelAllocator(int[]) constructor
+
+    @Override
+    protected int choose(int preferredChannel) {
+        int count = getChannelCount();
+        long candidates = getLeastUsedMask(); // The free channels if any are free, otherwise the least used channels
+        long rotated;
+        int channel;
+
+        // Rotate the candidates so that the search starts at next, taking care that Java shifts by count modulo 64
+        if (next == 0) { rotated = candidates; }
+        else { rotated = ((candidates >>> next) | (candidates << (count - next))) & getChannelMask(); }
+        channel = next + Long.numberOfTrailingZeros(rotated);
+        if (channel >= count) { channel -= count; }
+
+        next = (channel + 1 == count) ? 0 : channel + 1;
+        return channel;
+    } // End choose method
+
+    /**
+     * Removes all uses from all channels and restarts the cycle from channel 0.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        next = 0;
+    } // End reset method
+} // End RoundRobinChannelAllocator class
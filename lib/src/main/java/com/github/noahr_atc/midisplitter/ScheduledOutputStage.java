@@ -0,0 +1,311 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.ShortMessage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds translated messages until their timestamp plus a fixed latency budget, then forwards them from a dedicated timer
+ * thread, which removes the jitter introduced upstream of the {@link MidiProcessor} at the cost of the budget.
+ * <br><br>
+ * Message timestamps are in microseconds on the transmitting device's clock, which has an unknown epoch. The clock is
+ * related to {@link System#nanoTime()} by the smallest observed difference between a message's arrival and its
+ * timestamp, i.e. by the message that was delayed least on its way to the processor, so every message is due at most
+ * one budget after it arrives. Messages without a timestamp are due one budget after they arrive. If the device clock
+ * jumps backwards, for instance because the device was reset, the relation is re-established from the next message.
+ * <br><br>
+ * Published messages pass through a single-producer ring buffer to the timer thread, which keeps them in an
+ * {@link EventHeap} ordered by due time, then by arrival so that messages due at the same time keep their order. The
+ * timer parks until shortly before the next message is due and spins for the rest, since parking alone is only accurate
+ * to tens of microseconds. The difference between each message's due time and the time it was actually forwarded is
+ * recorded in a {@link LatencyHistogram}. Short messages are queued packed as described by {@link PackedMidiMessage} and forwarded
+ * through a {@link ShortMessage} reused by the timer thread, so no objects are created for them; their timestamp is
+ * replaced with {@code -1}, since it has already been honoured.
+ * <br><br>
+ * A barrier is due once every message published before it is, and messages published after it are never due before it,
+ * so a barrier divides the output exactly where it was published even though timestamps otherwise reorder messages.
+ * <br><br>
+ * Once the stage is shut down, the messages it still holds are forwarded immediately in the order they were due, rather
+ * than at their due times, so that replacing or closing the stage doesn't wait for the budget.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class ScheduledOutputStage implements OutputStage {
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(200); // How long before a due time the timer stops parking
+    private static final long RESYNC_NANOS = TimeUnit.SECONDS.toNanos(1);      // How late a message must be to re-establish the clock
+    private static final int BARRIER = Integer.MIN_VALUE; // The port marking a message published as a barrier
+
+    private final MidiMessage[] messages;       // The ring of messages awaiting scheduling
+    private final int[] packedMessages;         // The ring of packed messages where messages holds null, otherwise ports
+    private final long[] timeStamps;            // The ring of timestamps matching messages
+    private final long[] arrivals;              // The ring of System.nanoTime values when the messages were published
+    private final int mask;                     // The mask converting a sequence number into a ring index
+    private final AtomicLong published;         // The sequence number after the last published message
+    private final AtomicLong consumed;          // The sequence number after the last message moved into the heap
+    private final long latencyNanos;            // The latency budget added to every message's timestamp
+    private final LatencyHistogram jitter;      // The histogram of the difference between due and actual forwarding times
+    private final Downstream downstream;        // The consumer that due messages are forwarded to
+    private final ShortMessage packedMessage;   // The timer's reusable message for forwarding packed messages
+    private final Thread timer;                 // The thread moving messages into the heap and forwarding them when due
+    private volatile boolean running;           // Whether the timer should keep waiting for messages
+    private volatile boolean timerParked;       // Whether the timer is parked and needs to be woken for a new message
+    private volatile int scheduled;             // The number of messages in the heap
+    private long nextSequence;                  // The producer's next sequence number
+    private long cachedConsumed;                // The producer's last read of consumed, to avoid rereading it
+
+    // The state of the timer thread, only accessed by it
+    private final EventHeap<MidiMessage> heap;  // The messages waiting for their due time, keyed by System.nanoTime and
+    //                                          // ^ carrying the packed message, or port, and the message object if any
+    private long clockOffset;                   // The smallest observed arrival minus timestamp, in nanoseconds
+    private boolean clockKnown;                 // Whether clockOffset has been established
+    private long latestDue;                     // The latest due time of any message added to the heap
+    private long barrierDue;                    // The due time of the last barrier, which no later message is due before
+
+    /**
+     * Constructs a {@code ScheduledOutputStage} and starts its timer thread.
+     *
+     * @param capacity     the minimum number of messages that can be held; rounded up to a power of two
+     * @param latencyNanos the latency budget to add to every message's timestamp, in nanoseconds
+     * @param jitter       the histogram to record the lateness of every forwarded message in
+     * @param downstream   the consumer to forward due messages, their ports, and their timestamps to
+     * @throws IllegalArgumentException if {@code capacity} is less than 1 or greater than 2<sup>30</sup>
+     */
+    ScheduledOutputStage(int capacity, long latencyNanos, LatencyHistogram jitter, Downstream downstream) {
+        if (capacity < 1 || capacity > (1 << 30)) { throw new IllegalArgumentException("capacity out of range: " + capacity); }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) { size <<= 1; }
+
+        messages = new MidiMessage[size];
+        packedMessages = new int[size];
+        timeStamps = new long[size];
+        arrivals = new long[size];
+        mask = size - 1;
+        published = new AtomicLong(0);
+        consumed = new AtomicLong(0);
+        this.latencyNanos = latencyNanos;
+        this.jitter = jitter;
+        this.downstream = downstream;
+        packedMessage = new ShortMessage();
+        heap = new EventHeap<>(size);
+        clockKnown = false;
+        latestDue = System.nanoTime();
+        barrierDue = latestDue;
+        running = true;
+        timer = new Thread(this::run, "MidiProcessor-scheduler");
+        timer.setDaemon(true);
+        timer.setPriority(Thread.MAX_PRIORITY);
+        timer.start();
+    } // End ScheduledOutputStage(int, long, LatencyHistogram, Downstream) constructor
+
+    @Override
+    public void publish(MidiMessage message, int port, long timeStamp) {
+        // Copy short messages so that the sender is free to reuse them
+        if (message instanceof ShortMessage) {
+            enqueue(null, PackedMidiMessage.withPort(
+                    PackedMidiMessage.pack(message.getStatus(), ((ShortMessage) message).getData1(), ((ShortMessage) message).getData2()),
+                    port
+            ), timeStamp); // End enqueue call
+        } // End if(message instanceof ShortMessage)
+        else { enqueue(message, port, timeStamp); }
+    } // End publish(MidiMessage, int, long) method
+
+    @Override
+    public void publish(int message, long timeStamp) { enqueue(null, message, timeStamp); }
+
+    /**
+     * Queues a message that is due as soon as every message published before it has been forwarded, and which holds back
+     * every message published after it until then. Must only be called by one thread at a time.
+     *
+     * @param message the message to forward
+     */
+    @Override
+    public void publishBarrier(MidiMessage message) { enqueue(message, BARRIER, -1); }
+
+    @Override
+    public int getDepth() { return (int) Math.max(0, published.get() - consumed.get()) + scheduled; }
+
+    @Override
+    public int getCapacity() { return mask + 1; }
+
+    /**
+     * Forwards every held message immediately, in the order they were due, then stops the timer, waiting for it to finish.
+     */
+    @Override
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(timer);
+        awaitTermination();
+    } // End shutdown method
+
+    /**
+     * Waits for the timer to finish after a shutdown, unless called from the timer itself.
+     */
+    @Override
+    public void awaitTermination() {
+        boolean interrupted = false;
+
+        if (Thread.currentThread() == timer) { return; }
+        while (timer.isAlive()) {
+            try { timer.join(); } catch (InterruptedException e) { interrupted = true; }
+        } // End while(timer.isAlive)
+        if (interrupted) { Thread.currentThread().interrupt(); }
+    } // End awaitTermination method
+
+    // Queues either a message object and its port, or a packed message if the object is null, parking while full
+    private void enqueue(MidiMessage message, int packed, long timeStamp) {
+        long sequence = nextSequence;
+        int index;
+
+        // Wait for the timer to free a slot, only rereading its progress when the cached value says we're full
+        while (sequence - cachedConsumed > mask) {
+            cachedConsumed = consumed.get();
+            if (sequence - cachedConsumed > mask) { WaitStrategy.PARK.idle(); }
+        } // End while(full)
+
+        // Fill the slot, then publish it with a full volatile write so the parked check below can't be reordered before it
+        index = (int) sequence & mask;
+        messages[index] = message;
+        packedMessages[index] = packed;
+        timeStamps[index] = timeStamp;
+        arrivals[index] = System.nanoTime();
+        nextSequence = sequence + 1;
+        published.set(nextSequence);
+        if (timerParked) { LockSupport.unpark(timer); }
+    } // End enqueue method
+
+    // The timer thread's loop, forwarding messages at their due times until shut down and drained
+    private void run() {
+        long next = consumed.get();
+
+        while (true) {
+            // Read running before published so that a shutdown can't slip in between draining and exiting
+            boolean keepRunning = running;
+            long available = published.get();
+            long now;
+
+            // Move newly published messages into the heap while there is room
+            while (next < available && heap.size() <= mask) {
+                int index = (int) next & mask;
+                add(next, messages[index], packedMessages[index], timeStamps[index], arrivals[index]);
+                messages[index] = null; // The heap holds the message now
+                consumed.lazySet(++next);
+            } // End while(next < available && heap not full)
+            scheduled = heap.size();
+
+            // Forward every message that is due, or every message if shutting down
+            now = System.nanoTime();
+            while (!heap.isEmpty() && (!keepRunning || heap.peekTime() - now <= 0)) {
+                emit(now);
+                now = System.nanoTime();
+            } // End while(message due)
+            scheduled = heap.size();
+
+            // Wait for the next due time or the next message, whichever comes first
+            if (heap.isEmpty()) {
+                if (!keepRunning && next == published.get()) { return; }
+                timerParked = true;
+                if (published.get() == next && running) { LockSupport.park(this); }
+                timerParked = false;
+            } // End if(heap.isEmpty)
+            else if (next < published.get() && heap.size() <= mask) { continue; } // Schedule the new messages first
+            else {
+                long wait = heap.peekTime() - now;
+                if (wait > SPIN_NANOS) {
+                    timerParked = true;
+                    if (published.get() == next || heap.size() > mask) { LockSupport.parkNanos(this, wait - SPIN_NANOS); }
+                    timerParked = false;
+                } // End if(wait > SPIN_NANOS)
+            } // End if(heap.isEmpty) {} else if(new messages) {} else
+        } // End while(true)
+    } // End run method
+
+    // Works out when a message is due and adds it to the heap
+    private void add(long order, MidiMessage message, int packed, long timeStamp, long arrival) {
+        long due;
+
+        if (packed == BARRIER && message != null) {
+            // Due no earlier than every message added before it, which sorts it after them since ties keep arrival order
+            due = (latestDue - arrival > 0) ? latestDue : arrival;
+            barrierDue = due;
+        } // End if(barrier)
+        else if (timeStamp < 0) { due = arrival + latencyNanos; }
+        else {
+            // Relate the device clock to nanoTime by the least delayed message, re-establishing the relation if the device
+            // clock appears to have jumped backwards
+            long offset = arrival - TimeUnit.MICROSECONDS.toNanos(timeStamp);
+            if (!clockKnown || offset < clockOffset || offset - clockOffset > RESYNC_NANOS) {
+                clockOffset = offset;
+                clockKnown = true;
+            } // End if(clock offset improved or reset)
+            due = TimeUnit.MICROSECONDS.toNanos(timeStamp) + clockOffset + latencyNanos;
+        } // End if(barrier) {} else if(timeStamp < 0) {} else
+
+        // Hold back messages added after the last barrier until it has been forwarded, then track the latest due time for
+        // the next barrier
+        if (due - barrierDue < 0) { due = barrierDue; }
+        if (due - latestDue > 0) { latestDue = due; }
+
+        heap.add(due, order, packed, message);
+    } // End add method
+
+    // Removes the earliest message from the heap and forwards it, recording how late it was unless it is being flushed early
+    private void emit(long now) {
+        long due = heap.peekTime();
+        int packed = heap.peekValue();
+        MidiMessage message = heap.peekObject();
+        int port = packed;
+
+        heap.poll();
+
+        try {
+            if (message == null) {
+                message = unpack(packed);
+                port = PackedMidiMessage.getPort(packed);
+            } // End if(message == null)
+            else if (port == BARRIER) {
+                downstream.accept(message, -1, -1); // A barrier isn't a message played at its due time, so isn't timed
+                return;
+            } // End if(message == null) {} else if(port == BARRIER)
+            if (now - due >= 0) { jitter.record(now - due); }
+            if (message != null) { downstream.accept(message, port, -1); }
+        } catch (RuntimeException e) {
+            // Keep forwarding even if the receiver misbehaves, since nobody else would forward the messages
+            Logger.getLogger("MidiProcessor").log(Level.SEVERE, "Forwarding scheduled message failed", e);
+        } // End try {} catch(RuntimeException)
+    } // End emit method
+
+    // Loads a packed message into the reusable message, returning null if it isn't a valid short message
+    private ShortMessage unpack(int message) {
+        try {
+            packedMessage.setMessage(
+                    PackedMidiMessage.getStatus(message),
+                    PackedMidiMessage.getData1(message),
+                    PackedMidiMessage.getData2(message)
+            ); // End setMessage call
+        } catch (InvalidMidiDataException e) { return null; }
+        return packedMessage;
+    } // End unpack method
+} // End ScheduledOutputStage class
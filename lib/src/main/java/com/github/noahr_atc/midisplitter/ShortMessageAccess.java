@@ -0,0 +1,113 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.ShortMessage;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads and rewrites {@link ShortMessage}s, avoiding the validation done by
+ * {@link ShortMessage#setMessage(int, int, int, int)} where possible.
+ * <br><br>
+ * Messages are packed through {@link MidiMessage#getStatus()}, {@link ShortMessage#getData1()}, and
+ * {@link ShortMessage#getData2()}, which every subclass answers without copying, including the JDK's own
+ * {@code FastShortMessage} that hardware transmitters deliver. Only rewriting a message's channel reaches into its
+ * backing bytes, in the protected {@code data} field of {@link MidiMessage}, and only for messages whose class is exactly
+ * {@code ShortMessage}, such as those created by applications and sequencers; subclasses may keep their contents
+ * elsewhere and leave {@code data} stale, so they are rewritten through {@code setMessage}.
+ * <br><br>
+ * Note: On Java 9 and later the field is only accessible if the {@code java.desktop} module opens
+ * {@code javax.sound.midi}, e.g. by running with {@code --add-opens=java.desktop/javax.sound.midi=ALL-UNNAMED}, which
+ * the GUI's jar does through its manifest. Otherwise every channel is rewritten through {@code setMessage}, which is
+ * logged once at {@link Level#INFO}. Either way the difference is small next to forwarding the message.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+final class ShortMessageAccess {
+    private static final MethodHandle DATA = findData(); // The getter of MidiMessage.data, or null if it is inaccessible
+
+    // Disable the constructor
+    private ShortMessageAccess() {}
+
+    /**
+     * Determines whether the channels of plain {@code ShortMessage}s are rewritten through their backing bytes.
+     *
+     * @return {@code true} if the backing bytes are accessible
+     */
+    static boolean isAvailable() { return DATA != null; }
+
+    /**
+     * Packs a short message into an {@code int} as described by {@link PackedMidiMessage}.
+     *
+     * @param message the message to pack
+     * @return the packed message
+     */
+    static int pack(ShortMessage message) {
+        return PackedMidiMessage.pack(message.getStatus(), message.getData1(), message.getData2());
+    } // End pack method
+
+    /**
+     * Replaces the channel of a channel message, leaving its command and data bytes unchanged.
+     * <br><br>
+     * Note: If the fallback {@code setMessage} call rejects the message it is left unchanged. That can only happen if the
+     * message wasn't valid to begin with, since the channel is always a valid 4-bit value.
+     *
+     * @param message the message to rewrite
+     * @param channel the new 4-bit channel
+     */
+    static void setChannel(ShortMessage message, int channel) {
+        byte[] data = getData(message);
+
+        if (data != null) {
+            data[0] = (byte) ((data[0] & 0xF0) | (channel & 0x0F));
+            return;
+        } // End if(data != null)
+        try {
+            message.setMessage(message.getCommand(), channel, message.getData1(), message.getData2());
+        } catch (InvalidMidiDataException ignored) {}
+    } // End setChannel method
+
+    // Retrieves the backing bytes of a message, or null if they can't be written directly
+    private static byte[] getData(ShortMessage message) {
+        if (DATA == null || message.getClass() != ShortMessage.class) { return null; }
+        try { return (byte[]) DATA.invokeExact((MidiMessage) message); } catch (Throwable e) { return null; }
+    } // End getData method
+
+    // Looks up the getter of MidiMessage.data, returning null if the runtime doesn't allow access to it
+    private static MethodHandle findData() {
+        try {
+            Field field = MidiMessage.class.getDeclaredField("data");
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(field);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // This is the normal outcome on a modular runtime that wasn't told to open the package
+            Logger.getLogger("MidiProcessor").log(
+                    Level.INFO,
+                    "Rewriting short messages through setMessage, since javax.sound.midi isn't opened to this module: " + e
+            ); // End Logger.log call
+            return null;
+        } // End try {} catch(ReflectiveOperationException | RuntimeException)
+    } // End findData method
+} // End ShortMessageAccess class
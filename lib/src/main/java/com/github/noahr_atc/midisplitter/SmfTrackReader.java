@@ -0,0 +1,215 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import javax.sound.midi.InvalidMidiDataException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the events of a single track chunk of a Standard MIDI File one at a time, without creating an object per event.
+ * <br><br>
+ * Events are decoded from a window of the track held in a {@link ByteBuffer}, and subclasses decide where the window
+ * comes from by implementing {@link #refill(long)}. After each call to {@link #next()} the current event is described by
+ * the getters; channel messages are packed as described by {@link PackedMidiMessage}, and the data of meta and system
+ * exclusive events is held in a buffer that is reused between events.
+ *
+ * @see ChannelSmfTrackReader
+ * @see MappedSmfTrackReader
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+abstract class SmfTrackReader {
+    /**
+     * The kind of event that is a channel message, e.g. a NOTE-ON.
+     */
+    static final int CHANNEL = 0;
+
+    /**
+     * The kind of event that is a meta event, e.g. a tempo change.
+     */
+    static final int META = 1;
+
+    /**
+     * The kind of event that is a system exclusive message.
+     */
+    static final int SYSEX = 2;
+
+    /**
+     * The meta type of the end of track event.
+     */
+    static final int META_END_OF_TRACK = 0x2F;
+
+    private ByteBuffer window;          // The window of the track being decoded
+    private long remaining;             // The number of bytes of the track not yet decoded
+    private int runningStatus;          // The status of the last channel message, or 0 if running status is cancelled
+    private long tick;                  // The absolute tick of the current event
+    private int kind;                   // The kind of the current event
+    private int message;                // The packed channel message, meta type, or system exclusive status of the current event
+    private byte[] data;                // The data of the current meta or system exclusive event
+    private int dataLength;             // The number of bytes of data that are valid
+
+    /**
+     * Constructs an {@code SmfTrackReader} for a track chunk. The first window is requested when the first event is read.
+     *
+     * @param length the length of the track chunk data
+     */
+    SmfTrackReader(long length) {
+        window = ByteBuffer.allocate(0);
+        remaining = length;
+        runningStatus = 0;
+        tick = 0;
+        data = new byte[64];
+        dataLength = 0;
+    } // End SmfTrackReader(long) constructor
+
+    /**
+     * Decodes the next event of the track.
+     *
+     * @return {@code true} if an event was decoded; {@code false} if the end of the track was reached
+     * @throws IOException              if reading the file fails
+     * @throws InvalidMidiDataException if the track contains malformed data
+     */
+    boolean next() throws IOException, InvalidMidiDataException {
+        int status;
+        int data1;
+
+        if (remaining == 0) { return false; }
+        tick += readVariableLength();
+        status = readByte();
+
+        // A data byte in place of a status byte means the previous channel message's status is repeated
+        if (status < 0x80) {
+            if (runningStatus == 0) { throw new InvalidMidiDataException("Data byte without status at tick " + tick); }
+            data1 = status;
+            status = runningStatus;
+        } // End if(status < 0x80)
+        else if (status < 0xF0) { data1 = readByte(); }
+        else { data1 = 0; }
+
+        if (status < 0xF0) { // Channel message
+            // Program change and channel pressure only have one data byte
+            int data2 = (status >= 0xC0 && status < 0xE0) ? 0 : readByte();
+            runningStatus = status;
+            kind = CHANNEL;
+            message = PackedMidiMessage.pack(status, data1, data2);
+        } // End if(status < 0xF0)
+        else if (status == 0xFF) { // Meta event
+            runningStatus = 0; // Meta and system exclusive events cancel running status
+            kind = META;
+            message = readByte();
+            readData();
+        } // End if(status < 0xF0) {} else if(status == 0xFF)
+        else if (status == 0xF0 || status == 0xF7) { // System exclusive message, or a continuation/escape of one
+            runningStatus = 0;
+            kind = SYSEX;
+            message = status;
+            readData();
+        } // End if(status < 0xF0) {} else if(status == 0xFF) {} else if(sysex)
+        else { throw new InvalidMidiDataException("Invalid status byte " + status + " at tick " + tick); }
+        return true;
+    } // End next method
+
+    /**
+     * Retrieves the absolute tick of the current event.
+     *
+     * @return the number of ticks since the start of the track
+     */
+    long getTick() { return tick; }
+
+    /**
+     * Retrieves the kind of the current event.
+     *
+     * @return {@link #CHANNEL}, {@link #META}, or {@link #SYSEX}
+     */
+    int getKind() { return kind; }
+
+    /**
+     * Retrieves the message of the current event.
+     *
+     * @return the packed channel message for {@link #CHANNEL} events, the meta type for {@link #META} events, or the
+     * status byte ({@code 0xF0} or {@code 0xF7}) for {@link #SYSEX} events
+     */
+    int getMessage() { return message; }
+
+    /**
+     * Retrieves the buffer holding the data of the current meta or system exclusive event. The buffer is reused, so its
+     * contents are only valid until the next call to {@link #next()}.
+     *
+     * @return the data buffer, of which the first {@link #getDataLength()} bytes are valid
+     */
+    byte[] getData() { return data; }
+
+    /**
+     * Retrieves the length of the data of the current meta or system exclusive event.
+     *
+     * @return the number of valid bytes in {@link #getData()}
+     */
+    int getDataLength() { return dataLength; }
+
+    /**
+     * Provides the next window of the track once the current one has been decoded. The window must start at the first
+     * byte not yet decoded and must contain at least one byte; it may extend past the end of the track, since decoding
+     * stops at the track's length.
+     *
+     * @param remaining the number of bytes of the track not yet decoded, always greater than 0
+     * @return the next window, positioned at its first byte
+     * @throws IOException if reading the file fails
+     */
+    protected abstract ByteBuffer refill(long remaining) throws IOException;
+
+    // Reads a length-prefixed block of data into the data buffer, growing it if necessary
+    private void readData() throws IOException, InvalidMidiDataException {
+        int length = readVariableLength();
+        int copied = 0;
+
+        if (length > remaining) { throw new InvalidMidiDataException("Track ends in the middle of an event"); }
+        if (length > data.length) { data = new byte[Math.max(length, data.length * 2)]; }
+
+        // Copy the data in bulk, a window at a time
+        while (copied < length) {
+            int count;
+            if (!window.hasRemaining()) { window = refill(remaining); }
+            count = Math.min(window.remaining(), length - copied);
+            window.get(data, copied, count);
+            copied += count;
+            remaining -= count;
+        } // End while(copied < length)
+        dataLength = length;
+    } // End readData method
+
+    // Reads a variable-length quantity of up to 4 bytes
+    private int readVariableLength() throws IOException, InvalidMidiDataException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = readByte();
+            value = (value << 7) | (b & 0x7F);
+            if (b < 0x80) { return value; }
+        } // End for(i < 4)
+        throw new InvalidMidiDataException("Variable-length quantity longer than 4 bytes at tick " + tick);
+    } // End readVariableLength method
+
+    // Reads the next byte of the track, moving to the next window as needed
+    private int readByte() throws IOException, InvalidMidiDataException {
+        if (remaining == 0) { throw new InvalidMidiDataException("Track ends in the middle of an event"); }
+        if (!window.hasRemaining()) { window = refill(remaining); }
+        remaining--;
+        return window.get() & 0xFF;
+    } // End readByte method
+} // End SmfTrackReader class
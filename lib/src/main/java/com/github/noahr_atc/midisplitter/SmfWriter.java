@@ -0,0 +1,180 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a format 0 Standard MIDI File one event at a time, without holding the events in memory.
+ * <br><br>
+ * Events must be written in tick order. The length of the track chunk isn't known until the last event has been
+ * written, so a placeholder is written first and patched when the writer is closed, which also appends the end of track
+ * meta event. Channel messages are written with running status.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+class SmfWriter implements Closeable {
+    private static final int BUFFER_SIZE = 65536;          // The number of bytes buffered before writing to the file
+    private static final long TRACK_LENGTH_POSITION = 18;  // The position of the track chunk's length in the file
+
+    private final FileChannel channel;  // The channel of the file being written
+    private final ByteBuffer buffer;    // The buffer of bytes not yet written to the file
+    private long trackLength;           // The number of bytes written to the track chunk so far
+    private long lastTick;              // The tick of the last event written
+    private int runningStatus;          // The status of the last channel message written, or 0 if running status is cancelled
+    private boolean closed;             // Whether the writer has been closed
+
+    /**
+     * Creates or truncates a file and writes the header of a format 0 Standard MIDI File to it.
+     *
+     * @param file     the file to write
+     * @param division the division field of the header, copied from the source file
+     * @throws IOException if the file can't be opened or written
+     */
+    SmfWriter(Path file, int division) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        trackLength = 0;
+        lastTick = 0;
+        runningStatus = 0;
+        closed = false;
+
+        // Header chunk, followed by the header of the single track chunk with a placeholder length
+        buffer.put((byte) 'M').put((byte) 'T').put((byte) 'h').put((byte) 'd').putInt(6);
+        buffer.putShort((short) 0).putShort((short) 1).putShort((short) division);
+        buffer.put((byte) 'M').put((byte) 'T').put((byte) 'r').put((byte) 'k').putInt(0);
+    } // End SmfWriter(Path, int) constructor
+
+    /**
+     * Writes a channel message.
+     *
+     * @param tick    the absolute tick of the message
+     * @param message the message, packed as described by {@link PackedMidiMessage}
+     * @throws IOException if writing the file fails
+     */
+    void writeChannelMessage(long tick, int message) throws IOException {
+        int status = PackedMidiMessage.getStatus(message);
+
+        writeDelta(tick);
+        if (status != runningStatus) {
+            writeByte(status);
+            runningStatus = status;
+        } // End if(status != runningStatus)
+        writeByte(PackedMidiMessage.getData1(message));
+        if (status < 0xC0 || status >= 0xE0) { writeByte(PackedMidiMessage.getData2(message)); } // Not program change or channel pressure
+    } // End writeChannelMessage method
+
+    /**
+     * Writes a meta event. End of track events are ignored, since one is written when the writer is closed.
+     *
+     * @param tick   the absolute tick of the event
+     * @param type   the meta type of the event
+     * @param data   the buffer holding the data of the event
+     * @param length the number of bytes of data
+     * @throws IOException if writing the file fails
+     */
+    void writeMeta(long tick, int type, byte[] data, int length) throws IOException {
+        if (type == SmfTrackReader.META_END_OF_TRACK) { return; }
+        writeDelta(tick);
+        writeByte(0xFF);
+        writeByte(type);
+        writeBlock(data, length);
+        runningStatus = 0;
+    } // End writeMeta method
+
+    /**
+     * Writes a system exclusive message.
+     *
+     * @param tick   the absolute tick of the message
+     * @param status the status byte of the message, {@code 0xF0} or {@code 0xF7}
+     * @param data   the buffer holding the data of the message
+     * @param length the number of bytes of data
+     * @throws IOException if writing the file fails
+     */
+    void writeSysex(long tick, int status, byte[] data, int length) throws IOException {
+        writeDelta(tick);
+        writeByte(status);
+        writeBlock(data, length);
+        runningStatus = 0;
+    } // End writeSysex method
+
+    /**
+     * Writes the end of track event, patches the track length, and closes the file.
+     *
+     * @throws IOException if writing the file fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) { return; }
+        closed = true;
+        try {
+            writeDelta(lastTick);
+            writeByte(0xFF);
+            writeByte(SmfTrackReader.META_END_OF_TRACK);
+            writeByte(0);
+            flush();
+            if (trackLength > 0xFFFFFFFFL) { throw new IOException("Track too long for a Standard MIDI File"); }
+
+            ByteBuffer length = ByteBuffer.allocate(4).putInt((int) trackLength);
+            length.flip();
+            while (length.hasRemaining()) { channel.write(length, TRACK_LENGTH_POSITION + length.position()); }
+        } finally { channel.close(); }
+    } // End close method
+
+    // Writes the delta time from the last event to an event at the given tick
+    private void writeDelta(long tick) throws IOException {
+        long delta = Math.max(0, tick - lastTick);
+        if (delta > 0x0FFFFFFF) { throw new IOException("Delta time too large for a Standard MIDI File"); }
+        lastTick = Math.max(lastTick, tick);
+        writeVariableLength((int) delta);
+    } // End writeDelta method
+
+    // Writes a length-prefixed block of data
+    private void writeBlock(byte[] data, int length) throws IOException {
+        writeVariableLength(length);
+        for (int i = 0; i < length; i++) { writeByte(data[i]); }
+    } // End writeBlock method
+
+    // Writes a variable-length quantity
+    private void writeVariableLength(int value) throws IOException {
+        if (value >= 1 << 21) { writeByte(0x80 | (value >>> 21)); }
+        if (value >= 1 << 14) { writeByte(0x80 | ((value >>> 14) & 0x7F)); }
+        if (value >= 1 << 7) { writeByte(0x80 | ((value >>> 7) & 0x7F)); }
+        writeByte(value & 0x7F);
+    } // End writeVariableLength method
+
+    // Writes a single byte of the track chunk, flushing the buffer when full
+    private void writeByte(int value) throws IOException {
+        if (!buffer.hasRemaining()) { flush(); }
+        buffer.put((byte) value);
+        trackLength++;
+    } // End writeByte method
+
+    // Writes the buffered bytes to the file
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) { channel.write(buffer); }
+        buffer.clear();
+    } // End flush method
+} // End SmfWriter class
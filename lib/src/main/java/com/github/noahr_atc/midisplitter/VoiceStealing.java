@@ -0,0 +1,41 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+/**
+ * Describes which note a {@link MidiProcessor} ends to make room for a new note when every channel is busy. Without voice
+ * stealing the new note shares the least used channel, which on monophonic instruments means one of the notes on that
+ * channel never sounds.
+ * <br><br>
+ * A stolen note is sent a NOTE-OFF immediately before the new NOTE-ON, and its own NOTE-OFF is dropped when it arrives
+ * so that it can't cut off the note that took over its channel.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public enum VoiceStealing {
+    /**
+     * Ends the note that has been held the longest.
+     */
+    OLDEST,
+
+    /**
+     * Ends the note with the lowest NOTE-ON velocity, choosing the one held the longest if several are equally quiet.
+     */
+    QUIETEST
+} // End VoiceStealing enum
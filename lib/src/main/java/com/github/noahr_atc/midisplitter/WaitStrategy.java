@@ -0,0 +1,64 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Describes how a background thread of a {@link MidiProcessor} waits when it has no work, and how a sender waits when
+ * the thread's queue is full. The strategies trade CPU usage for wake-up latency.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public enum WaitStrategy {
+    /**
+     * Parks the waiting thread until it is woken. Uses almost no CPU, but waking takes tens of microseconds.
+     */
+    PARK,
+
+    /**
+     * Yields the waiting thread's time slice to other threads. Uses a full core when the system is otherwise idle, but
+     * steps aside when other threads need it.
+     */
+    YIELD,
+
+    /**
+     * Spins the waiting thread without yielding. Gives the lowest latency at the cost of a dedicated core.
+     */
+    BUSY_SPIN;
+
+    private static final long PARK_NANOS = 50_000; // The time to park for when there is nobody to wake the waiting thread
+
+    /**
+     * Waits once according to this strategy. Parking threads wake on their own after a short timeout, so this is safe to
+     * call in a loop that re-checks its condition even if nothing will unpark it.
+     */
+    void idle() {
+        switch (this) {
+            case PARK:
+                LockSupport.parkNanos(PARK_NANOS);
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            default: // BUSY_SPIN
+                break;
+        } // End switch(this)
+    } // End idle method
+} // End WaitStrategy enum
@@ -0,0 +1,196 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import org.junit.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.SysexMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link AsyncOutputStage} and the {@link WaitStrategy}s it waits with.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class AsyncOutputStageTest {
+    private static final int MESSAGES = 20000; // The number of messages published in the ordering tests
+
+    @Test(timeout = 10000)
+    public void forwardsInOrderAcrossWrapAround() {
+        List<Integer> forwarded = new ArrayList<>();
+        AsyncOutputStage stage = new AsyncOutputStage(4, WaitStrategy.PARK, (message, port, timeStamp) -> {
+            forwarded.add(PackedMidiMessage.withPort(pack((ShortMessage) message), port));
+        }); // End AsyncOutputStage constructor call
+        List<Integer> expected = new ArrayList<>();
+
+        // Many more messages than slots, so the ring wraps around thousands of times while the dispatcher keeps up
+        for (int i = 0; i < MESSAGES; i++) {
+            int message = PackedMidiMessage.withPort(PackedMidiMessage.pack(ShortMessage.NOTE_ON, i % 16, i % 128, 1 + i % 127), i % 3);
+            stage.publish(message, i);
+            expected.add(message);
+        } // End for(i < MESSAGES)
+        stage.shutdown();
+
+        assertEquals(expected, forwarded);
+    } // End forwardsInOrderAcrossWrapAround method
+
+    @Test(timeout = 10000)
+    public void forwardsObjectsAndPackedMessagesTogether() throws Exception {
+        MidiMessage sysex = new SysexMessage(new byte[]{(byte) 0xF0, 0x7E, (byte) 0xF7}, 3);
+        List<String> forwarded = new ArrayList<>();
+        AsyncOutputStage stage = new AsyncOutputStage(2, WaitStrategy.PARK, (message, port, timeStamp) -> {
+            forwarded.add((message == sysex ? "sysex" : Integer.toHexString(pack((ShortMessage) message))) + ":" + port + ":" + timeStamp);
+        }); // End AsyncOutputStage constructor call
+
+        stage.publish(PackedMidiMessage.pack(ShortMessage.NOTE_ON, 0, 60, 100), 10);
+        stage.publish(sysex, 1, 20);
+        stage.publishBarrier(sysex);
+        stage.publish(PackedMidiMessage.withPort(PackedMidiMessage.pack(ShortMessage.NOTE_OFF, 1, 60, 0), 2), 30);
+        stage.shutdown();
+
+        assertEquals("[643c90:-1:10, sysex:1:20, sysex:-1:-1, 3c81:2:30]", forwarded.toString());
+    } // End forwardsObjectsAndPackedMessagesTogether method
+
+    @Test(timeout = 10000)
+    public void waitsForSpaceWhileFull() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        List<Integer> forwarded = Collections.synchronizedList(new ArrayList<>());
+        AsyncOutputStage stage = new AsyncOutputStage(2, WaitStrategy.PARK, (message, port, timeStamp) -> {
+            // Stall the first message so that the ring fills up behind it
+            forwarded.add((int) timeStamp);
+            if (timeStamp == 0) {
+                entered.countDown();
+                try { proceed.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            } // End if(first message)
+        }); // End AsyncOutputStage constructor call
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 5; i++) { stage.publish(PackedMidiMessage.pack(ShortMessage.NOTE_ON, 0, 60, 100), i); }
+        }); // End Thread constructor call
+
+        producer.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // The first message keeps its slot until it has been forwarded, so the ring is full and the producer waits to
+        // publish the third
+        while (stage.getDepth() < stage.getCapacity()) { Thread.sleep(1); }
+        producer.join(100);
+        assertTrue(producer.isAlive());
+        assertEquals(stage.getCapacity(), stage.getDepth());
+        assertEquals(1, forwarded.size());
+
+        proceed.countDown();
+        producer.join();
+        stage.shutdown();
+        assertEquals(5, forwarded.size());
+        for (int i = 0; i < 5; i++) { assertEquals(i, (int) forwarded.get(i)); }
+    } // End waitsForSpaceWhileFull method
+
+    @Test(timeout = 10000)
+    public void flushesQueuedMessagesOnShutdown() {
+        List<Integer> forwarded = new ArrayList<>();
+        AsyncOutputStage stage = new AsyncOutputStage(64, WaitStrategy.PARK, (message, port, timeStamp) -> {
+            try { Thread.sleep(1); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            forwarded.add((int) timeStamp);
+        }); // End AsyncOutputStage constructor call
+
+        for (int i = 0; i < 50; i++) { stage.publish(PackedMidiMessage.pack(ShortMessage.NOTE_ON, 0, 60, 100), i); }
+        stage.shutdown();
+
+        // Every message is forwarded by the time shutdown returns, even though the receiver is slower than the producer
+        assertEquals(50, forwarded.size());
+        assertEquals(0, stage.getDepth());
+    } // End flushesQueuedMessagesOnShutdown method
+
+    @Test(timeout = 10000)
+    public void flushesQueuedMessagesWhenAsynchronousOutputIsDisabled() {
+        List<ShortMessage> received = Collections.synchronizedList(new ArrayList<>());
+        MidiProcessor processor = new MidiProcessor(new Receiver() {
+            @Override
+            public void send(MidiMessage message, long timeStamp) {
+                try { Thread.sleep(1); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+                received.add((ShortMessage) ((ShortMessage) message).clone());
+            } // End send method
+
+            @Override
+            public void close() {}
+        }); // End MidiProcessor constructor call
+
+        processor.enableAsynchronousOutput(8, WaitStrategy.PARK);
+        for (int key = 60; key < 90; key++) { processor.send(noteOn(key), -1); }
+        processor.disableAsynchronousOutput();
+
+        // Every message is forwarded, in order, by the time asynchronous output has been disabled
+        assertEquals(30, received.size());
+        for (int i = 0; i < 30; i++) { assertEquals(60 + i, received.get(i).getData1()); }
+        processor.close();
+    } // End flushesQueuedMessagesWhenAsynchronousOutputIsDisabled method
+
+    @Test(timeout = 60000)
+    public void everyWaitStrategyForwardsEverything() throws Exception {
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            MidiMessage sysex = new SysexMessage(new byte[]{(byte) 0xF0, 0x7E, (byte) 0xF7}, 3);
+            long[] next = {0};
+            long[] outOfOrder = {0};
+            AsyncOutputStage stage = new AsyncOutputStage(16, strategy, (message, port, timeStamp) -> {
+                if (timeStamp != next[0] || (timeStamp % 10 == 0) != (message == sysex)) { outOfOrder[0]++; }
+                next[0] = timeStamp + 1;
+            }); // End AsyncOutputStage constructor call
+
+            for (int i = 0; i < MESSAGES; i++) {
+                if (i % 10 == 0) { stage.publish(sysex, -1, i); }
+                else { stage.publish(PackedMidiMessage.pack(ShortMessage.NOTE_ON, 0, 60, 100), i); }
+            } // End for(i < MESSAGES)
+            stage.shutdown();
+
+            assertEquals(strategy.name(), MESSAGES, next[0]);
+            assertEquals(strategy.name(), 0, outOfOrder[0]);
+        } // End for(strategy : values)
+    } // End everyWaitStrategyForwardsEverything method
+
+    @Test
+    public void roundsTheCapacityUpToAPowerOfTwo() {
+        AsyncOutputStage stage = new AsyncOutputStage(5, WaitStrategy.YIELD, (message, port, timeStamp) -> {});
+        assertEquals(8, stage.getCapacity());
+        stage.shutdown();
+    } // End roundsTheCapacityUpToAPowerOfTwo method
+
+    // Creates a NOTE-ON on channel 0
+    private static ShortMessage noteOn(int key) {
+        try { return new ShortMessage(ShortMessage.NOTE_ON, 0, key, 100); }
+        catch (InvalidMidiDataException e) { throw new IllegalStateException(e); }
+    } // End noteOn method
+
+    // Packs a forwarded message, which the dispatcher may reuse once the downstream returns
+    private static int pack(ShortMessage message) {
+        return PackedMidiMessage.pack(message.getStatus(), message.getData1(), message.getData2());
+    } // End pack method
+} // End AsyncOutputStageTest class
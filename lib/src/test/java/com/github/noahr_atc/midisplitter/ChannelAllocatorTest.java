@@ -0,0 +1,199 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link ChannelAllocator} implementations.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class ChannelAllocatorTest {
+    @Test
+    public void firstAvailableKeepsNotesOnTheirOriginalChannel() {
+        ChannelAllocator allocator = new FirstAvailableChannelAllocator();
+
+        assertEquals(5, allocator.allocate(5));
+        assertEquals(0, allocator.allocate(5));
+        assertEquals(1, allocator.allocate(0));
+        allocator.release(5);
+        assertEquals(5, allocator.allocate(5));
+    } // End firstAvailableKeepsNotesOnTheirOriginalChannel method
+
+    @Test
+    public void firstAvailableSpreadsNotesWhenEveryChannelIsInUse() {
+        ChannelAllocator allocator = new FirstAvailableChannelAllocator(4);
+        for (int i = 0; i < 4; i++) { assertEquals(i, allocator.allocate(0)); }
+
+        assertEquals(-1, allocator.firstAvailable());
+        assertEquals(0, allocator.allocate(0));
+        assertEquals(1, allocator.allocate(0));
+        assertEquals(2, allocator.leastUsed());
+        assertEquals(2, allocator.getUses(0));
+    } // End firstAvailableSpreadsNotesWhenEveryChannelIsInUse method
+
+    @Test
+    public void roundRobinCyclesThroughTheFreeChannels() {
+        ChannelAllocator allocator = new RoundRobinChannelAllocator(4);
+
+        assertEquals(0, allocator.allocate(2));
+        assertEquals(1, allocator.allocate(2));
+        assertEquals(2, allocator.allocate(2));
+        allocator.release(0);
+        assertEquals(3, allocator.allocate(2));
+        assertEquals(0, allocator.allocate(2)); // Wraps around to the channel released earlier
+        assertEquals(1, allocator.allocate(2)); // Every channel is in use, so the cycle continues over the least used
+    } // End roundRobinCyclesThroughTheFreeChannels method
+
+    @Test
+    public void roundRobinRestartsWhenReset() {
+        ChannelAllocator allocator = new RoundRobinChannelAllocator(4);
+        allocator.allocate(0);
+        allocator.allocate(0);
+        allocator.reset();
+
+        assertEquals(0, allocator.getUses(0));
+        assertEquals(0, allocator.allocate(3));
+    } // End roundRobinRestartsWhenReset method
+
+    @Test
+    public void leastRecentlyReleasedChoosesTheChannelFreeTheLongest() {
+        ChannelAllocator allocator = new LeastRecentlyReleasedChannelAllocator(4);
+
+        assertEquals(0, allocator.allocate(3));
+        assertEquals(1, allocator.allocate(3));
+        assertEquals(2, allocator.allocate(3));
+        allocator.release(1);
+        allocator.release(0);
+        assertEquals(3, allocator.allocate(3)); // Free since the start
+        assertEquals(1, allocator.allocate(3));
+        assertEquals(0, allocator.allocate(3));
+        assertEquals(0, allocator.allocate(3)); // Every channel is in use, so the least used is chosen
+    } // End leastRecentlyReleasedChoosesTheChannelFreeTheLongest method
+
+    @Test
+    public void leastRecentlyReleasedRestoresTheInitialOrderWhenReset() {
+        ChannelAllocator allocator = new LeastRecentlyReleasedChannelAllocator(4);
+        allocator.allocate(0);
+        allocator.allocate(0);
+        allocator.release(0);
+        allocator.reset();
+
+        for (int i = 0; i < 4; i++) { assertEquals(i, allocator.allocate(0)); }
+    } // End leastRecentlyReleasedRestoresTheInitialOrderWhenReset method
+
+    @Test
+    public void ignoresReleasingAChannelWithoutUses() {
+        ChannelAllocator[] allocators = {
+                new FirstAvailableChannelAllocator(4),
+                new RoundRobinChannelAllocator(4),
+                new LeastRecentlyReleasedChannelAllocator(4)
+        }; // End allocators initializer
+
+        for (ChannelAllocator allocator : allocators) {
+            allocator.release(2);
+            assertEquals(0, allocator.getUses(2));
+            assertTrue(allocator.isAvailable(2));
+            assertEquals(0, allocator.firstAvailable());
+        } // End for(allocator : allocators)
+    } // End ignoresReleasingAChannelWithoutUses method
+
+    @Test
+    public void tracksUsesUntilEveryNoteIsReleased() {
+        ChannelAllocator allocator = new FirstAvailableChannelAllocator(2);
+        allocator.allocate(0);
+        allocator.allocate(1);
+        allocator.allocate(0);
+
+        assertEquals(2, allocator.getUses(0));
+        allocator.release(0);
+        assertFalse(allocator.isAvailable(0));
+        allocator.release(0);
+        assertTrue(allocator.isAvailable(0));
+        assertEquals(0, allocator.firstAvailable());
+    } // End tracksUsesUntilEveryNoteIsReleased method
+
+    @Test
+    public void refusesChannelCountsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new FirstAvailableChannelAllocator(0));
+        assertThrows(IllegalArgumentException.class, () -> new RoundRobinChannelAllocator(ChannelAllocator.MAX_CHANNELS + 1));
+        assertThrows(IllegalArgumentException.class, () -> new LeastRecentlyReleasedChannelAllocator(-1));
+    } // End refusesChannelCountsOutOfRange method
+    @Test
+    public void neverAllocatesExcludedChannels() {
+        ChannelAllocator[] allocators = {
+                new FirstAvailableChannelAllocator(new int[]{0, 1, 1, 0}),
+                new RoundRobinChannelAllocator(new int[]{0, 1, 1, 0}),
+                new LeastRecentlyReleasedChannelAllocator(new int[]{0, 1, 1, 0})
+        }; // End allocators initializer
+
+        for (ChannelAllocator allocator : allocators) {
+            assertFalse(allocator.isAvailable(0));
+            assertEquals(0, allocator.getCapacity(0));
+            for (int i = 0; i < 8; i++) {
+                int channel = allocator.allocate(i % 4);
+                assertTrue(channel == 1 || channel == 2);
+            } // End for(i < 8)
+            assertEquals(4, allocator.getUses(1));
+            assertEquals(4, allocator.getUses(2));
+        } // End for(allocator : allocators)
+    } // End neverAllocatesExcludedChannels method
+
+    @Test
+    public void fillsChannelsUpToTheirCapacity() {
+        ChannelAllocator allocator = new FirstAvailableChannelAllocator(new int[]{2, 1});
+
+        assertEquals(1, allocator.allocate(1));
+        assertEquals(0, allocator.allocate(1));
+        assertTrue(allocator.isAvailable(0));
+        assertEquals(0, allocator.allocate(1));
+        assertFalse(allocator.isAvailable(0));
+        assertEquals(-1, allocator.firstAvailable());
+        allocator.release(0);
+        assertEquals(0, allocator.firstAvailable());
+    } // End fillsChannelsUpToTheirCapacity method
+
+    @Test
+    public void spreadsNotesBeforeStackingThem() {
+        ChannelAllocator allocator = new FirstAvailableChannelAllocator(new int[]{1, 4, 4});
+
+        // Once the original channel is full, each note goes to the channel with the most room left
+        assertEquals(0, allocator.allocate(0));
+        assertEquals(1, allocator.allocate(0));
+        assertEquals(2, allocator.allocate(0));
+        assertEquals(1, allocator.allocate(0));
+        assertEquals(2, allocator.leastUsed());
+    } // End spreadsNotesBeforeStackingThem method
+
+    @Test
+    public void refusesInvalidCapacities() {
+        assertThrows(IllegalArgumentException.class, () -> new FirstAvailableChannelAllocator(new int[]{0, 0}));
+        assertThrows(IllegalArgumentException.class, () -> new FirstAvailableChannelAllocator(new int[]{1, -1}));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RoundRobinChannelAllocator(new int[]{ChannelAllocator.MAX_CAPACITY + 1}));
+        assertThrows(IllegalArgumentException.class, () -> new LeastRecentlyReleasedChannelAllocator(new int[0]));
+    } // End refusesInvalidCapacities method
+} // End ChannelAllocatorTest class
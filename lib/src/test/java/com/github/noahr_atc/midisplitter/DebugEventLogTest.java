@@ -0,0 +1,162 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.sound.midi.ShortMessage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for writing a {@link DebugEventLog} and reading it back with {@link DebugLogDecoder}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class DebugEventLogTest {
+    private static final int FLOOD = 200000; // The number of records written at once in the dropped record test
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void decodesTheRecordsWritten() throws IOException {
+        Path file = folder.newFile("single.msdl").toPath();
+        ChannelAllocator allocator = new FirstAvailableChannelAllocator();
+        long before = System.currentTimeMillis();
+        DebugEventLog log = new DebugEventLog(file, ChannelAllocator.CHANNELS);
+        ByteBuffer header;
+
+        allocator.allocate(0);
+        log.record(ShortMessage.NOTE_ON, 0, 0, 60, allocator);
+        allocator.allocate(0);
+        log.record(ShortMessage.NOTE_ON, 2 * ChannelAllocator.CHANNELS + 3, 1, 64, allocator);
+        allocator.release(0);
+        log.record(ShortMessage.NOTE_OFF, 0, 0, 60, allocator);
+        log.record(ShortMessage.NOTE_OFF, 5, DebugEventLog.NO_TARGET, 70, allocator);
+        log.record(ShortMessage.PROGRAM_CHANGE, 0, DebugEventLog.NO_TARGET, 0, allocator);
+        log.close();
+
+        // The header identifies the log and gives the record size, which follows from the number of channels
+        header = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertEquals(DebugEventLog.MAGIC, header.getInt());
+        assertEquals(DebugEventLog.VERSION, header.getShort());
+        assertEquals(12 + 2 * ChannelAllocator.CHANNELS + 4, header.getShort());
+        assertTrue(header.getLong() - before >= 0);
+        assertEquals(DebugEventLog.HEADER_SIZE + 5 * DebugEventLog.recordSize(ChannelAllocator.CHANNELS), header.limit());
+
+        // A partially written final record is ignored
+        Files.write(file, new byte[10], StandardOpenOption.APPEND);
+        assertEquals(Arrays.asList(
+                "NOTE-ON 60 [0] --> [0]; " + uses(1, 0),
+                "NOTE-ON 64 [2:3] --> [1]; " + uses(1, 1),
+                "NOTE-OFF 60 [0] --> [0]; " + uses(0, 1),
+                "NOTE-OFF 70 [5] <X>; " + uses(0, 1),
+                "RESET-TRANSLATIONS; " + uses(0, 1)
+        ), decode(file)); // End assertEquals call
+    } // End decodesTheRecordsWritten method
+
+    @Test
+    public void recoversTheChannelCountFromTheRecordSize() throws IOException {
+        Path file = folder.newFile("ports.msdl").toPath();
+        int channels = 3 * ChannelAllocator.CHANNELS;
+        ChannelAllocator allocator = new FirstAvailableChannelAllocator(channels);
+        DebugEventLog log = new DebugEventLog(file, channels);
+        List<String> lines;
+
+        // With several outputs, channels are numbered across them, port first
+        for (int i = 0; i < 5; i++) { allocator.allocate(i); }
+        log.record(ShortMessage.NOTE_ON, 0, 4, 60, allocator);
+        log.close();
+
+        assertEquals(DebugEventLog.HEADER_SIZE + DebugEventLog.recordSize(channels), Files.size(file));
+        lines = decode(file);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0), lines.get(0).startsWith("NOTE-ON 60 [0] --> [1:1]; 1,1,1,1,1,0,"));
+        assertEquals(channels, lines.get(0).substring(lines.get(0).indexOf("; ") + 2).split(",").length);
+    } // End recoversTheChannelCountFromTheRecordSize method
+
+    @Test
+    public void accountsForEveryRecord() throws IOException {
+        Path file = folder.newFile("flood.msdl").toPath();
+        ChannelAllocator allocator = new FirstAvailableChannelAllocator();
+        DebugEventLog log = new DebugEventLog(file, ChannelAllocator.CHANNELS);
+        long written;
+
+        // Records the writer doesn't keep up with are dropped and counted, never partially written
+        for (int i = 0; i < FLOOD; i++) { log.record(ShortMessage.NOTE_ON, 0, 0, i % 128, allocator); }
+        log.close();
+
+        written = (Files.size(file) - DebugEventLog.HEADER_SIZE) / DebugEventLog.recordSize(ChannelAllocator.CHANNELS);
+        assertEquals(0, (Files.size(file) - DebugEventLog.HEADER_SIZE) % DebugEventLog.recordSize(ChannelAllocator.CHANNELS));
+        assertEquals(FLOOD, written + log.getDroppedRecords());
+        assertEquals(written, decode(file).size());
+    } // End accountsForEveryRecord method
+
+    @Test
+    public void rejectsFilesThatAreNotLogs() throws IOException {
+        Path notALog = folder.newFile("not-a-log.msdl").toPath();
+        Path badSize = folder.newFile("bad-size.msdl").toPath();
+
+        Files.write(notALog, "MThd, not a debug log".getBytes("US-ASCII"));
+        Files.write(badSize, ByteBuffer.allocate(DebugEventLog.HEADER_SIZE).putInt(DebugEventLog.MAGIC)
+                .putShort((short) DebugEventLog.VERSION).putShort((short) (DebugEventLog.recordSize(1) + 1)).array());
+        for (Path file : new Path[]{notALog, badSize}) {
+            try {
+                decode(file);
+                fail(file + " was decoded");
+            } catch (IOException e) { /* Expected */ }
+        } // End for(file : files)
+    } // End rejectsFilesThatAreNotLogs method
+
+    // Decodes a log, stripping the time from the start of each line
+    private static List<String> decode(Path file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<String> lines = new ArrayList<>();
+
+        try (PrintStream out = new PrintStream(bytes, true, "UTF-8")) { DebugLogDecoder.decode(file, out); }
+        for (String line : bytes.toString("UTF-8").split(System.lineSeparator())) {
+            if (!line.isEmpty()) { lines.add(line.substring(line.indexOf(' ') + 1)); }
+        } // End for(line : lines)
+        return lines;
+    } // End decode method
+
+    // Formats the use counts of a single output's channels as the decoder prints them, given those of the first two
+    private static String uses(int first, int second) {
+        StringBuilder counts = new StringBuilder().append(first).append(',').append(second).append(',');
+        for (int i = 2; i < ChannelAllocator.CHANNELS; i++) { counts.append("0,"); }
+        return counts.toString();
+    } // End uses method
+} // End DebugEventLogTest class
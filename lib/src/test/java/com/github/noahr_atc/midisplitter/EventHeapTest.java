@@ -0,0 +1,127 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link EventHeap}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class EventHeapTest {
+    private static final int EVENTS = 1000; // The number of events in the randomised tests
+
+    @Test
+    public void pollsEventsInTimeThenSequenceOrder() {
+        EventHeap<String> heap = new EventHeap<>(EVENTS);
+        Random random = new Random(42);
+        List<long[]> expected = new ArrayList<>();
+        List<long[]> polled = new ArrayList<>();
+
+        // Few distinct times, so that many events tie and are ordered by their sequence numbers
+        for (int i = 0; i < EVENTS; i++) {
+            long time = random.nextInt(20);
+            heap.add(time, i, i, "event " + i);
+            expected.add(new long[]{time, i});
+        } // End for(i < EVENTS)
+        expected.sort(Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> e[1]));
+
+        while (!heap.isEmpty()) {
+            assertEquals("event " + heap.peekValue(), heap.peekObject());
+            polled.add(new long[]{heap.peekTime(), heap.peekValue()});
+            heap.poll();
+        } // End while(!heap.isEmpty)
+        assertEquals(EVENTS, polled.size());
+        for (int i = 0; i < EVENTS; i++) {
+            assertEquals(expected.get(i)[0], polled.get(i)[0]);
+            assertEquals(expected.get(i)[1], polled.get(i)[1]);
+        } // End for(i < EVENTS)
+    } // End pollsEventsInTimeThenSequenceOrder method
+
+    @Test
+    public void keepsHeapOrderWhenTheHeadIsRescheduled() {
+        EventHeap<Void> heap = new EventHeap<>(16);
+        PriorityQueue<long[]> reference = new PriorityQueue<>(Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> e[1]));
+        Random random = new Random(7);
+
+        // Merge 16 ascending streams as the file splitter does, moving the head to its stream's next time each step
+        for (int i = 0; i < 16; i++) {
+            long time = random.nextInt(100);
+            heap.add(time, i, i, null);
+            reference.add(new long[]{time, i});
+        } // End for(i < 16)
+        for (int step = 0; step < EVENTS * 10; step++) {
+            long[] head = reference.poll();
+            long next = head[0] + random.nextInt(100);
+
+            assertEquals(head[0], heap.peekTime());
+            assertEquals(head[1], heap.peekValue());
+            if (step % 50 == 49) {
+                heap.poll(); // Occasionally exhaust a stream
+                if (heap.isEmpty()) { break; }
+            } // End if(step % 50 == 49)
+            else {
+                heap.replaceHeadTime(next);
+                reference.add(new long[]{next, head[1]});
+            } // End if(step % 50 == 49) {} else
+        } // End for(step < EVENTS * 10)
+        assertTrue(heap.isEmpty());
+        assertTrue(reference.isEmpty());
+    } // End keepsHeapOrderWhenTheHeadIsRescheduled method
+
+    @Test
+    public void comparesTimesAcrossWrapAround() {
+        EventHeap<Void> heap = new EventHeap<>(3);
+
+        // nanoTime may wrap from Long.MAX_VALUE to Long.MIN_VALUE, which is still later
+        heap.add(Long.MIN_VALUE + 10, 0, 2, null);
+        heap.add(Long.MAX_VALUE - 10, 1, 0, null);
+        heap.add(Long.MAX_VALUE, 2, 1, null);
+        for (int expected = 0; expected < 3; expected++) {
+            assertEquals(expected, heap.peekValue());
+            heap.poll();
+        } // End for(expected < 3)
+        assertTrue(heap.isEmpty());
+    } // End comparesTimesAcrossWrapAround method
+
+    @Test
+    public void releasesPolledObjects() {
+        EventHeap<Object> heap = new EventHeap<>(2);
+
+        heap.add(2, 0, 0, new Object());
+        heap.add(1, 1, 1, null);
+        heap.poll();
+        heap.poll();
+        heap.add(3, 2, 2, null);
+        assertNull(heap.peekObject());
+        assertEquals(1, heap.size());
+    } // End releasesPolledObjects method
+} // End EventHeapTest class
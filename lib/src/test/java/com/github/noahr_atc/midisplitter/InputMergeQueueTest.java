@@ -0,0 +1,135 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import org.junit.Test;
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.SysexMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link InputMergeQueue}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class InputMergeQueueTest {
+    private static final int PRODUCERS = 4;                 // The number of threads offering messages in the stress test
+    private static final int MESSAGES_PER_PRODUCER = 50000; // The number of messages each producer offers in the stress test
+
+    @Test
+    public void drainsMessagesInTheOrderTheyWereOffered() throws Exception {
+        InputMergeQueue queue = new InputMergeQueue(8);
+        MidiMessage sysex = new SysexMessage(new byte[]{(byte) 0xF0, 0x7E, (byte) 0xF7}, 3);
+        List<String> drained = new ArrayList<>();
+        List<MidiMessage> objects = new ArrayList<>();
+
+        assertFalse(queue.hasPublished());
+        assertTrue(queue.offer(0, null, 0x643C90, 10));
+        assertTrue(queue.offer(2, sysex, 0, 20));
+        assertTrue(queue.offer(1, null, 0x003C80, 30));
+        assertTrue(queue.hasPublished());
+        queue.drain((input, message, packed, timeStamp) -> {
+            drained.add(input + ":" + Integer.toHexString(packed) + ":" + timeStamp);
+            objects.add(message);
+        }); // End drain call
+
+        assertEquals("[0:643c90:10, 2:0:20, 1:3c80:30]", drained.toString());
+        assertNull(objects.get(0));
+        assertSame(sysex, objects.get(1));
+        assertFalse(queue.hasPublished());
+    } // End drainsMessagesInTheOrderTheyWereOffered method
+
+    @Test
+    public void refusesMessagesWhileFull() {
+        InputMergeQueue queue = new InputMergeQueue(4);
+        int[] count = new int[1];
+
+        for (int i = 0; i < 4; i++) { assertTrue(queue.offer(0, null, i, 0)); }
+        assertFalse(queue.offer(0, null, 4, 0));
+        queue.drain((input, message, packed, timeStamp) -> count[0]++);
+        assertEquals(4, count[0]);
+
+        // The freed slots can be reused on the next lap
+        for (int i = 0; i < 4; i++) { assertTrue(queue.offer(0, null, i, 0)); }
+        assertFalse(queue.offer(0, null, 4, 0));
+    } // End refusesMessagesWhileFull method
+
+    @Test
+    public void drainsAtMostTheLimit() {
+        InputMergeQueue queue = new InputMergeQueue(8);
+        List<Integer> drained = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) { assertTrue(queue.offer(0, null, i, 0)); }
+        assertEquals(2, queue.drain((input, message, packed, timeStamp) -> drained.add(packed), 2));
+        assertTrue(queue.hasPublished());
+
+        // The rest are left in order for the next drain, which stops once they run out
+        assertEquals(3, queue.drain((input, message, packed, timeStamp) -> drained.add(packed), 64));
+        assertEquals("[0, 1, 2, 3, 4]", drained.toString());
+        assertFalse(queue.hasPublished());
+    } // End drainsAtMostTheLimit method
+
+    @Test(timeout = 60000)
+    public void keepsTheOrderOfEachProducerUnderContention() throws Exception {
+        InputMergeQueue queue = new InputMergeQueue(64);
+        int[] nextExpected = new int[PRODUCERS];
+        int[] received = new int[1];
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] producers = new Thread[PRODUCERS];
+
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < MESSAGES_PER_PRODUCER; i++) {
+                    while (!queue.offer(producer, null, i, producer)) { Thread.yield(); } // Wait for the consumer to catch up
+                } // End for(i < MESSAGES_PER_PRODUCER)
+            }); // End Thread constructor call
+            producers[p].start();
+        } // End for(p < PRODUCERS)
+
+        // Drain on this thread until every message has arrived, checking that no producer's messages were reordered, lost,
+        // or mixed up with another producer's
+        while (received[0] < PRODUCERS * MESSAGES_PER_PRODUCER) {
+            queue.drain((input, message, packed, timeStamp) -> {
+                if (timeStamp != input || packed != nextExpected[input]) {
+                    failure.compareAndSet(null, "input " + input + " sent " + packed + " expecting " + nextExpected[input]);
+                } // End if(out of order)
+                nextExpected[input] = packed + 1;
+                received[0]++;
+            }); // End drain call
+            Thread.yield();
+        } // End while(messages outstanding)
+        for (Thread producer : producers) { producer.join(); }
+
+        assertNull(failure.get());
+        assertEquals(PRODUCERS * MESSAGES_PER_PRODUCER, received[0]);
+        for (int p = 0; p < PRODUCERS; p++) { assertEquals(MESSAGES_PER_PRODUCER, nextExpected[p]); }
+        assertFalse(queue.hasPublished());
+    } // End keepsTheOrderOfEachProducerUnderContention method
+} // End InputMergeQueueTest class
@@ -0,0 +1,129 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class LatencyHistogramTest {
+    private static final long MAX_TRACKABLE = (1L << 36) - 1; // The highest latency with its own bucket
+    private static final long FAR_ABOVE = 1_000_000;          // A latency above every bucket boundary tested, recorded to
+                                                              // ^ keep the maximum from capping the reported percentile
+
+    @Test
+    public void countsSmallLatenciesExactly() {
+        for (long nanos = 0; nanos < 64; nanos++) { assertEquals(nanos, medianBucketBound(nanos)); }
+    } // End countsSmallLatenciesExactly method
+
+    @Test
+    public void dividesEachPowerOfTwoIntoThirtyTwoBuckets() {
+        // From 64 up, each bucket spans 1/32 of its power of two, so 64 and 65 share a bucket, as do 128 to 131 and 1008 to
+        // 1023
+        assertEquals(65, medianBucketBound(64));
+        assertEquals(65, medianBucketBound(65));
+        assertEquals(67, medianBucketBound(66));
+        assertEquals(127, medianBucketBound(126));
+        assertEquals(131, medianBucketBound(128));
+        assertEquals(131, medianBucketBound(131));
+        assertEquals(135, medianBucketBound(132));
+        assertEquals(1023, medianBucketBound(1008));
+        assertEquals(1055, medianBucketBound(1024));
+    } // End dividesEachPowerOfTwoIntoThirtyTwoBuckets method
+
+    @Test
+    public void reportsPercentilesWithinThreePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long count = 1_000_000;
+
+        for (long nanos = 1; nanos <= count; nanos++) { histogram.record(nanos * 37); }
+        assertEquals(count, histogram.getCount());
+        assertWithinBucketError(count / 2 * 37, histogram.getP50Nanos());
+        assertWithinBucketError(count * 99 / 100 * 37, histogram.getP99Nanos());
+        assertWithinBucketError(count * 999 / 1000 * 37, histogram.getP999Nanos());
+        assertEquals(count * 37, histogram.getMaxNanos());
+        assertEquals(count * 37, histogram.getValueAtPercentile(100));
+    } // End reportsPercentilesWithinThreePercent method
+
+    @Test
+    public void countsLongLatenciesInTheLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long minute = TimeUnit.MINUTES.toNanos(1);
+
+        // The last bucket ends at 2^36 ns, about 69 seconds, so a minute is still counted below a longer latency
+        histogram.record(minute);
+        histogram.record(MAX_TRACKABLE + 1);
+        assertWithinBucketError(minute, histogram.getP50Nanos());
+        assertTrue(histogram.getP50Nanos() <= MAX_TRACKABLE);
+
+        // Anything longer shares the last bucket, where percentiles are reported as the exact maximum
+        histogram.reset();
+        histogram.record(MAX_TRACKABLE + 1);
+        histogram.record(TimeUnit.HOURS.toNanos(1));
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(3, histogram.getCount());
+        assertEquals(Long.MAX_VALUE, histogram.getMaxNanos());
+        assertEquals(Long.MAX_VALUE, histogram.getP50Nanos());
+    } // End countsLongLatenciesInTheLastBucket method
+
+    @Test
+    public void recordsNegativeLatenciesAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getP99Nanos());
+    } // End recordsNegativeLatenciesAsZero method
+
+    @Test
+    public void reportsNothingWhenEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(1000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getP50Nanos());
+    } // End reportsNothingWhenEmpty method
+
+    // Records a latency below a much higher one, returning the upper bound of the latency's bucket as the median reports it
+    private static long medianBucketBound(long nanos) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(nanos);
+        histogram.record(FAR_ABOVE);
+        return histogram.getP50Nanos();
+    } // End medianBucketBound method
+
+    // Checks that a reported latency is the upper bound of a bucket containing the exact latency, so at most 1/32 above it
+    private static void assertWithinBucketError(long exact, long reported) {
+        assertTrue(reported + " < " + exact, reported >= exact);
+        assertTrue(reported + " more than 1/32 above " + exact, reported - exact <= exact / 32);
+    } // End assertWithinBucketError method
+} // End LatencyHistogramTest class
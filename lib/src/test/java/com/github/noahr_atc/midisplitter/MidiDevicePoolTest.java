@@ -0,0 +1,255 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import org.junit.Test;
+
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Transmitter;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MidiDevicePool}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class MidiDevicePoolTest {
+    private static final long LONG_IDLE_MILLIS = 60000; // An idle period that never ends during a test
+    private static final long SHORT_IDLE_MILLIS = 50;   // An idle period that ends quickly
+    private static final long WAIT_MILLIS = 5000;       // The longest to wait for the pool to close an idle device
+
+    @Test
+    public void opensADeviceOnceForEveryLease() throws MidiUnavailableException {
+        StubDevice device = new StubDevice();
+        MidiDevicePool pool = new MidiDevicePool(LONG_IDLE_MILLIS);
+        MidiDevicePool.Lease receiver = pool.borrowReceiver(device);
+        MidiDevicePool.Lease transmitter = pool.borrowTransmitter(device);
+
+        assertTrue(device.isOpen());
+        assertEquals(1, device.opens);
+        assertEquals(1, pool.getOpenDeviceCount());
+        assertNotNull(receiver.getReceiver());
+        assertNull(receiver.getTransmitter());
+        assertNotNull(transmitter.getTransmitter());
+        assertNull(transmitter.getReceiver());
+        receiver.close();
+        transmitter.close();
+        pool.close();
+    } // End opensADeviceOnceForEveryLease method
+
+    @Test
+    public void reusesAnIdleDevice() throws MidiUnavailableException {
+        StubDevice device = new StubDevice();
+        MidiDevicePool pool = new MidiDevicePool(LONG_IDLE_MILLIS);
+        pool.borrowReceiver(device).close();
+
+        assertTrue(device.isOpen());
+        pool.borrowReceiver(device).close();
+        assertEquals(1, device.opens);
+        assertEquals(0, device.closes);
+        pool.close();
+    } // End reusesAnIdleDevice method
+
+    @Test(timeout = 10000)
+    public void closesADeviceOnceIdleAndReopensItWhenBorrowedAgain() throws Exception {
+        StubDevice device = new StubDevice();
+        MidiDevicePool pool = new MidiDevicePool(SHORT_IDLE_MILLIS);
+        pool.borrowReceiver(device).close();
+
+        assertTrue(awaitClosed(device));
+        assertEquals(1, device.closes);
+        assertEquals(0, pool.getOpenDeviceCount());
+
+        // Borrowing the device again reopens it, and it is closed again once idle
+        pool.borrowTransmitter(device).close();
+        assertEquals(2, device.opens);
+        assertTrue(awaitClosed(device));
+        assertEquals(2, device.closes);
+        pool.close();
+    } // End closesADeviceOnceIdleAndReopensItWhenBorrowedAgain method
+
+    @Test(timeout = 10000)
+    public void keepsABorrowedDeviceOpenPastTheIdlePeriod() throws Exception {
+        StubDevice device = new StubDevice();
+        MidiDevicePool pool = new MidiDevicePool(SHORT_IDLE_MILLIS);
+        MidiDevicePool.Lease held = pool.borrowReceiver(device);
+        pool.borrowTransmitter(device).close();
+
+        Thread.sleep(4 * SHORT_IDLE_MILLIS);
+        assertTrue(device.isOpen());
+        held.close();
+        assertTrue(awaitClosed(device));
+        pool.close();
+    } // End keepsABorrowedDeviceOpenPastTheIdlePeriod method
+
+    @Test
+    public void closesADeviceStraightAwayWithoutAnIdlePeriod() throws MidiUnavailableException {
+        StubDevice device = new StubDevice();
+        MidiDevicePool pool = new MidiDevicePool(0);
+        pool.borrowReceiver(device).close();
+
+        assertFalse(device.isOpen());
+        assertEquals(0, pool.getOpenDeviceCount());
+        pool.close();
+    } // End closesADeviceStraightAwayWithoutAnIdlePeriod method
+
+    @Test
+    public void returnsALeaseOnlyOnce() throws MidiUnavailableException {
+        StubDevice device = new StubDevice();
+        MidiDevicePool pool = new MidiDevicePool(0);
+        MidiDevicePool.Lease first = pool.borrowReceiver(device);
+        MidiDevicePool.Lease second = pool.borrowReceiver(device);
+
+        // Closing the first lease again must not give back the reference of the second
+        first.close();
+        first.close();
+        assertTrue(device.isOpen());
+        second.close();
+        assertFalse(device.isOpen());
+        pool.close();
+    } // End returnsALeaseOnlyOnce method
+
+    @Test
+    public void closesIdleDevicesAndRefusesLeasesWhenClosed() throws MidiUnavailableException {
+        StubDevice idle = new StubDevice();
+        StubDevice borrowed = new StubDevice();
+        MidiDevicePool pool = new MidiDevicePool(LONG_IDLE_MILLIS);
+        MidiDevicePool.Lease lease = pool.borrowReceiver(borrowed);
+        pool.borrowReceiver(idle).close();
+        pool.close();
+
+        assertFalse(idle.isOpen());
+        assertTrue(borrowed.isOpen());
+        lease.close();
+        assertFalse(borrowed.isOpen());
+        assertThrows(IllegalStateException.class, () -> pool.borrowReceiver(idle));
+    } // End closesIdleDevicesAndRefusesLeasesWhenClosed method
+
+    @Test
+    public void forgetsADeviceThatFailedToOpen() throws MidiUnavailableException {
+        StubDevice device = new StubDevice();
+        MidiDevicePool pool = new MidiDevicePool(LONG_IDLE_MILLIS);
+        device.unavailable = true;
+
+        assertThrows(MidiUnavailableException.class, () -> pool.borrowReceiver(device));
+        assertEquals(0, pool.getOpenDeviceCount());
+        device.unavailable = false;
+        pool.borrowReceiver(device).close();
+        assertEquals(1, device.opens);
+        pool.close();
+    } // End forgetsADeviceThatFailedToOpen method
+
+    @Test
+    public void refusesANegativeIdlePeriod() {
+        assertThrows(IllegalArgumentException.class, () -> new MidiDevicePool(-1));
+    } // End refusesANegativeIdlePeriod method
+
+    // Waits for the pool to close a device, returning whether it was closed in time
+    private static boolean awaitClosed(StubDevice device) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (device.isOpen()) {
+            if (System.currentTimeMillis() > deadline) { return false; }
+            Thread.sleep(5);
+        } // End while(device.isOpen)
+        return true;
+    } // End awaitClosed method
+
+    // A device that counts how often it is opened and closed, and can be made to fail to open
+    private static class StubDevice implements MidiDevice {
+        private volatile boolean open; // Whether the device is open
+        volatile int opens;            // The number of times the device has been opened
+        volatile int closes;           // The number of times the device has been closed
+        volatile boolean unavailable;  // Whether opening the device fails
+
+        @Override
+        public Info getDeviceInfo() { return new Info("Stub", "Test", "A device for tests", "1.0") {}; }
+
+        @Override
+        public synchronized void open() throws MidiUnavailableException {
+            if (unavailable) { throw new MidiUnavailableException("unavailable"); }
+            if (open) { return; }
+            open = true;
+            opens++;
+        } // End open method
+
+        @Override
+        public synchronized void close() {
+            if (!open) { return; }
+            open = false;
+            closes++;
+        } // End close method
+
+        @Override
+        public boolean isOpen() { return open; }
+
+        @Override
+        public long getMicrosecondPosition() { return -1; }
+
+        @Override
+        public int getMaxReceivers() { return -1; }
+
+        @Override
+        public int getMaxTransmitters() { return -1; }
+
+        @Override
+        public Receiver getReceiver() {
+            return new Receiver() {
+                @Override
+                public void send(MidiMessage message, long timeStamp) {}
+
+                @Override
+                public void close() {}
+            }; // End Receiver subclass
+        } // End getReceiver method
+
+        @Override
+        public List<Receiver> getReceivers() { return Collections.emptyList(); }
+
+        @Override
+        public Transmitter getTransmitter() {
+            return new Transmitter() {
+                private Receiver receiver; // The receiver messages would be sent to
+
+                @Override
+                public void setReceiver(Receiver receiver) { this.receiver = receiver; }
+
+                @Override
+                public Receiver getReceiver() { return receiver; }
+
+                @Override
+                public void close() {}
+            }; // End Transmitter subclass
+        } // End getTransmitter method
+
+        @Override
+        public List<Transmitter> getTransmitters() { return Collections.emptyList(); }
+    } // End StubDevice class
+} // End MidiDevicePoolTest class
@@ -0,0 +1,175 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link MidiFileSplitter}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class MidiFileSplitterTest {
+    private static final int[] CHORD = {60, 64, 67}; // The notes of the chord played in the test files
+    private static final int CHORDS = 3;             // The number of times the chord is played
+    private static final int TICKS = 480;            // The length of each chord, in ticks
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void endsNotesOnTheirChannelWhenVelocityIsZero() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int chord = 0; chord < CHORDS; chord++) {
+            for (int i = 0; i < CHORD.length; i++) { expected.add(chord * 2 * TICKS + ":144:" + i + ":" + CHORD[i] + ":100"); }
+            for (int i = 0; i < CHORD.length; i++) { expected.add((chord * 2 + 1) * TICKS + ":144:" + i + ":" + CHORD[i] + ":0"); }
+        } // End for(chord < CHORDS)
+
+        assertEquals(expected, split(true, ShortMessage.NOTE_ON));
+        assertEquals(expected, split(false, ShortMessage.NOTE_ON));
+    } // End endsNotesOnTheirChannelWhenVelocityIsZero method
+
+    @Test
+    public void endsNotesOnTheirChannelWithNoteOffs() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int chord = 0; chord < CHORDS; chord++) {
+            for (int i = 0; i < CHORD.length; i++) { expected.add(chord * 2 * TICKS + ":144:" + i + ":" + CHORD[i] + ":100"); }
+            for (int i = 0; i < CHORD.length; i++) { expected.add((chord * 2 + 1) * TICKS + ":128:" + i + ":" + CHORD[i] + ":0"); }
+        } // End for(chord < CHORDS)
+
+        assertEquals(expected, split(true, ShortMessage.NOTE_OFF));
+    } // End endsNotesOnTheirChannelWithNoteOffs method
+
+    @Test
+    public void mergesTracksInTickOrder() throws Exception {
+        Sequence sequence = new Sequence(Sequence.PPQ, TICKS);
+        Track first = sequence.createTrack();
+        Track second = sequence.createTrack();
+        File input = folder.newFile("merge.mid");
+        File output = folder.newFile("merge-split.mid");
+
+        first.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 100), 0));
+        first.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60, 0), 2 * TICKS));
+        second.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 64, 100), TICKS));
+        second.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 64, 0), 3 * TICKS));
+        MidiSystem.write(sequence, 1, input);
+
+        try (MidiFileSplitter splitter = new MidiFileSplitter()) { assertEquals(4, splitter.split(input.toPath(), output.toPath())); }
+        assertEquals(
+                Arrays.asList("0:144:0:60:100", "480:144:1:64:100", "960:128:0:60:0", "1440:128:1:64:0"),
+                channelEvents(output)
+        ); // End assertEquals call
+    } // End mergesTracksInTickOrder method
+
+    @Test
+    public void keepsHeldNotesAcrossProgramChanges() throws Exception {
+        Sequence sequence = new Sequence(Sequence.PPQ, TICKS);
+        Track track = sequence.createTrack();
+        File input = folder.newFile("program.mid");
+        File output = folder.newFile("program-split.mid");
+
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 100), 0));
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 64, 100), 0));
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.PROGRAM_CHANGE, 0, 5, 0), TICKS / 2));
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 64, 0), TICKS));
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60, 0), TICKS));
+        MidiSystem.write(sequence, 0, input);
+
+        try (MidiFileSplitter splitter = new MidiFileSplitter()) { assertEquals(5, splitter.split(input.toPath(), output.toPath())); }
+        assertEquals(
+                Arrays.asList("0:144:0:60:100", "0:144:1:64:100", "240:192:0:5:0", "480:128:1:64:0", "480:128:0:60:0"),
+                channelEvents(output)
+        ); // End assertEquals call
+    } // End keepsHeldNotesAcrossProgramChanges method
+
+    @Test
+    public void forgetsNotesLeftOpenByThePreviousFile() throws Exception {
+        Sequence sequence = new Sequence(Sequence.PPQ, TICKS);
+        Track track = sequence.createTrack();
+        File hanging = folder.newFile("hanging.mid");
+        File input = folder.newFile("next.mid");
+        File output = folder.newFile("next-split.mid");
+
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 100), 0));
+        MidiSystem.write(sequence, 0, hanging);
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60, 0), TICKS));
+        MidiSystem.write(sequence, 0, input);
+
+        // The note left open by the first file must not push the second file's note off its channel
+        try (MidiFileSplitter splitter = new MidiFileSplitter()) {
+            splitter.split(hanging.toPath(), output.toPath());
+            splitter.split(input.toPath(), output.toPath());
+        } // End try(splitter)
+        assertEquals(Arrays.asList("0:144:0:60:100", "480:128:0:60:0"), channelEvents(output));
+    } // End forgetsNotesLeftOpenByThePreviousFile method
+
+    // Writes a format 0 file of the test chords ending with a command, splits it, and lists the channel events written
+    private List<String> split(boolean memoryMapped, int noteOffCommand) throws IOException, InvalidMidiDataException {
+        Sequence sequence = new Sequence(Sequence.PPQ, TICKS);
+        Track track = sequence.createTrack();
+        File input = folder.newFile();
+        File output = folder.newFile();
+
+        for (int chord = 0; chord < CHORDS; chord++) {
+            for (int note : CHORD) { track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, note, 100), chord * 2 * TICKS)); }
+            for (int note : CHORD) { track.add(new MidiEvent(new ShortMessage(noteOffCommand, 0, note, 0), (chord * 2 + 1) * TICKS)); }
+        } // End for(chord < CHORDS)
+        MidiSystem.write(sequence, 0, input);
+
+        try (MidiProcessor processor = new MidiProcessor((Receiver) null);
+             MidiFileSplitter splitter = new MidiFileSplitter(processor, memoryMapped)) {
+            assertEquals(CHORDS * CHORD.length * 2, splitter.split(input.toPath(), output.toPath()));
+            assertEquals(0, processor.getStatistics().getActiveTranslations());
+        } // End try(processor, splitter)
+        return channelEvents(output);
+    } // End split method
+
+    // Lists the channel events of a file as "tick:command:channel:data1:data2"
+    private static List<String> channelEvents(File file) throws IOException, InvalidMidiDataException {
+        List<String> events = new ArrayList<>();
+        for (Track track : MidiSystem.getSequence(file).getTracks()) {
+            for (int i = 0; i < track.size(); i++) {
+                MidiMessage message = track.get(i).getMessage();
+                if (!(message instanceof ShortMessage)) { continue; }
+                ShortMessage m = (ShortMessage) message;
+                events.add(track.get(i).getTick() + ":" + m.getCommand() + ":" + m.getChannel() + ":" + m.getData1() + ":" + m.getData2());
+            } // End for(i < track.size)
+        } // End for(track : tracks)
+        return events;
+    } // End channelEvents method
+} // End MidiFileSplitterTest class
@@ -0,0 +1,141 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import org.junit.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link MidiProcessor#sendBatch(int[], long[], int, int)} and {@link MidiProcessor#sendBatch(IntBuffer, long[])}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class MidiProcessorBatchTest {
+    // Overlapping chords on two channels, so that notes move off their original channel and are released out of order
+    private static final int[] SONG = {
+            PackedMidiMessage.pack(ShortMessage.NOTE_ON, 0, 60, 100),
+            PackedMidiMessage.pack(ShortMessage.NOTE_ON, 0, 64, 100),
+            PackedMidiMessage.pack(ShortMessage.NOTE_ON, 1, 67, 90),
+            PackedMidiMessage.pack(ShortMessage.CONTROL_CHANGE, 0, 64, 127),
+            PackedMidiMessage.pack(ShortMessage.NOTE_OFF, 0, 60, 0),
+            PackedMidiMessage.pack(ShortMessage.NOTE_ON, 0, 72, 80),
+            PackedMidiMessage.pack(ShortMessage.NOTE_ON, 0, 64, 0), // A NOTE-ON with a velocity of 0 ends its note
+            PackedMidiMessage.pack(ShortMessage.NOTE_OFF, 1, 67, 0),
+            PackedMidiMessage.pack(ShortMessage.NOTE_OFF, 0, 72, 0),
+    }; // End SONG
+
+    @Test
+    public void forwardsTheSameMessagesAsSendingThemOneByOne() throws InvalidMidiDataException {
+        Recorder single = new Recorder();
+        Recorder batched = new Recorder();
+        MidiProcessor singleProcessor = new MidiProcessor(single);
+        MidiProcessor batchProcessor = new MidiProcessor(batched);
+        int[] messages = new int[SONG.length + 2];
+        long[] timeStamps = new long[SONG.length + 2];
+
+        for (int i = 0; i < SONG.length; i++) {
+            singleProcessor.send(unpack(SONG[i]), 1000 + i);
+            messages[i + 1] = SONG[i];
+            timeStamps[i + 1] = 1000 + i;
+        } // End for(i < SONG.length)
+        batchProcessor.sendBatch(messages, timeStamps, 1, SONG.length);
+
+        assertEquals(single.messages(), batched.messages());
+        assertEquals(SONG.length, batched.messages().size());
+
+        // The batch is rewritten in place with exactly what was forwarded, which with a single output isn't routed to a
+        // specific port, and nothing outside the range is touched
+        assertEquals(0, messages[0]);
+        assertEquals(0, messages[SONG.length + 1]);
+        for (int i = 0; i < SONG.length; i++) {
+            assertEquals(batched.messages().get(i), format(messages[i + 1], 1000 + i));
+            assertEquals(-1, PackedMidiMessage.getPort(messages[i + 1]));
+        } // End for(i < SONG.length)
+        assertEquals(0, batchProcessor.getStatistics().getActiveTranslations());
+        singleProcessor.close();
+        batchProcessor.close();
+    } // End forwardsTheSameMessagesAsSendingThemOneByOne method
+
+    @Test
+    public void sharesTranslationsWithSingleMessages() throws InvalidMidiDataException {
+        Recorder recorder = new Recorder();
+        MidiProcessor processor = new MidiProcessor(recorder);
+        int[] noteOn = {PackedMidiMessage.pack(ShortMessage.NOTE_ON, 0, 64, 100)};
+        IntBuffer noteOffs = IntBuffer.wrap(new int[]{
+                PackedMidiMessage.pack(ShortMessage.NOTE_OFF, 0, 60, 0),
+                PackedMidiMessage.pack(ShortMessage.NOTE_OFF, 0, 64, 0)
+        }); // End IntBuffer.wrap call
+
+        // A note started one way is ended on the same channel when it is ended the other way
+        processor.send(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 100), -1);
+        processor.sendBatch(noteOn, new long[]{-1}, 0, 1);
+        processor.sendBatch(noteOffs, new long[]{-1, -1});
+
+        assertEquals(
+                Arrays.asList("144:60:100@-1", "145:64:100@-1", "128:60:0@-1", "129:64:0@-1"),
+                recorder.messages()
+        ); // End assertEquals call
+        assertEquals(1, PackedMidiMessage.getChannel(noteOn[0]));
+        assertEquals(2, noteOffs.position());
+        assertEquals(0, PackedMidiMessage.getChannel(noteOffs.get(0)));
+        assertEquals(1, PackedMidiMessage.getChannel(noteOffs.get(1)));
+        assertEquals(0, processor.getStatistics().getActiveTranslations());
+        processor.close();
+    } // End sharesTranslationsWithSingleMessages method
+
+    // Unpacks a message into a new ShortMessage
+    private static ShortMessage unpack(int message) throws InvalidMidiDataException {
+        return new ShortMessage(PackedMidiMessage.getStatus(message), PackedMidiMessage.getData1(message), PackedMidiMessage.getData2(message));
+    } // End unpack method
+
+    // Formats a message as status:data1:data2@timestamp
+    private static String format(int message, long timeStamp) {
+        return PackedMidiMessage.getStatus(message) + ":" + PackedMidiMessage.getData1(message) + ":"
+                + PackedMidiMessage.getData2(message) + "@" + timeStamp;
+    } // End format method
+
+    // Records the messages it receives, formatted as status:data1:data2@timestamp
+    private static class Recorder implements Receiver {
+        private final List<String> messages = new ArrayList<>(); // The messages received
+
+        @Override
+        public void send(MidiMessage message, long timeStamp) {
+            ShortMessage shortMessage = (ShortMessage) message;
+            synchronized (messages) { messages.add(format(ShortMessageAccess.pack(shortMessage), timeStamp)); }
+        } // End send method
+
+        @Override
+        public void close() {}
+
+        List<String> messages() {
+            synchronized (messages) { return new ArrayList<>(messages); }
+        } // End messages method
+    } // End Recorder class
+} // End MidiProcessorBatchTest class
@@ -0,0 +1,158 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import org.junit.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MidiProcessor#handOverReceiver(int, Receiver, boolean)}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class MidiProcessorHandoverTest {
+    @Test
+    public void endsHeldNotesOnTheOldReceiver() throws InvalidMidiDataException {
+        Recorder before = new Recorder();
+        Recorder after = new Recorder();
+        MidiProcessor processor = new MidiProcessor(before);
+
+        processor.send(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 100), -1);
+        processor.handOverReceiver(0, after, false);
+        processor.send(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60, 0), -1);
+        processor.close();
+
+        assertEquals(Arrays.asList("144:60:100", "128:60:0"), before.messages());
+        assertEquals(Arrays.asList("128:60:0"), after.messages());
+    } // End endsHeldNotesOnTheOldReceiver method
+
+    @Test
+    public void retriggersHeldNotesBeforeLaterMessages() throws InvalidMidiDataException {
+        Recorder before = new Recorder();
+        Recorder after = new Recorder();
+        MidiProcessor processor = new MidiProcessor(before);
+
+        processor.send(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 100), -1);
+        processor.send(new ShortMessage(ShortMessage.NOTE_ON, 0, 64, 90), -1);
+        processor.handOverReceiver(0, after, true);
+        processor.send(new ShortMessage(ShortMessage.NOTE_OFF, 0, 64, 0), -1);
+        processor.close();
+
+        assertEquals(Arrays.asList("144:60:100", "144:64:90", "128:60:0", "128:64:0"), before.messages());
+        assertEquals(Arrays.asList("144:60:100", "144:64:90", "128:64:0"), after.messages());
+    } // End retriggersHeldNotesBeforeLaterMessages method
+
+    @Test
+    public void ordersTheHandoverWithQueuedMessages() throws InvalidMidiDataException {
+        Recorder before = new Recorder();
+        Recorder after = new Recorder();
+        MidiProcessor processor = new MidiProcessor(before);
+
+        processor.enableAsynchronousOutput(64, WaitStrategy.PARK);
+        processor.send(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 100), -1);
+        processor.handOverReceiver(0, after, true);
+        processor.send(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60, 0), -1);
+        processor.disableAsynchronousOutput();
+        processor.close();
+
+        assertEquals(Arrays.asList("144:60:100", "128:60:0"), before.messages());
+        assertEquals(Arrays.asList("144:60:100", "128:60:0"), after.messages());
+    } // End ordersTheHandoverWithQueuedMessages method
+
+    @Test(timeout = 10000)
+    public void holdsLaterMessagesUntilTheNotesAreRetriggered() throws Exception {
+        Recorder before = new Recorder();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        Recorder after = new Recorder() {
+            @Override
+            public void send(MidiMessage message, long timeStamp) {
+                // Stall the retriggered NOTE-ON so that a concurrent NOTE-OFF has the chance to overtake it
+                if (((ShortMessage) message).getCommand() == ShortMessage.NOTE_ON) {
+                    entered.countDown();
+                    try { proceed.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+                } // End if(NOTE_ON)
+                super.send(message, timeStamp);
+            } // End send method
+        }; // End Recorder subclass
+        MidiProcessor processor = new MidiProcessor(before);
+        Thread handover = new Thread(() -> processor.handOverReceiver(0, after, true));
+        Thread sender = new Thread(() -> {
+            try { processor.send(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60, 0), -1); }
+            catch (InvalidMidiDataException e) { throw new IllegalStateException(e); }
+        }); // End Thread constructor call
+
+        processor.send(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 100), -1);
+        handover.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // The NOTE-OFF is translated while the NOTE-ON is being restarted, but must not reach the new receiver first
+        sender.start();
+        Thread.sleep(100);
+        assertEquals(0, after.messages().size());
+        proceed.countDown();
+        sender.join();
+        handover.join();
+        processor.close();
+
+        assertEquals(Arrays.asList("144:60:100", "128:60:0"), after.messages());
+    } // End holdsLaterMessagesUntilTheNotesAreRetriggered method
+
+    @Test
+    public void refusesToHandOverWhenClosed() {
+        MidiProcessor processor = new MidiProcessor(new Recorder());
+        processor.close();
+
+        assertThrows(IllegalStateException.class, () -> processor.handOverReceiver(0, new Recorder(), false));
+    } // End refusesToHandOverWhenClosed method
+
+    // A receiver that records the command, key, and velocity of every message it is sent
+    private static class Recorder implements Receiver {
+        private final List<String> messages = new ArrayList<>(); // The messages received, formatted as command:data1:data2
+
+        @Override
+        public void send(MidiMessage message, long timeStamp) {
+            ShortMessage shortMessage = (ShortMessage) message;
+            synchronized (messages) {
+                messages.add(shortMessage.getCommand() + ":" + shortMessage.getData1() + ":" + shortMessage.getData2());
+            } // End synchronized(messages)
+        } // End send method
+
+        @Override
+        public void close() {}
+
+        List<String> messages() {
+            synchronized (messages) { return new ArrayList<>(messages); }
+        } // End messages method
+    } // End Recorder class
+} // End MidiProcessorHandoverTest class
@@ -0,0 +1,178 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+
+import org.junit.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for a {@link MidiProcessor} sending to several outputs.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class MidiProcessorPortsTest {
+    private static final int PORTS = 3;                                    // The number of outputs of the processors tested
+    private static final int CHANNELS = PORTS * ChannelAllocator.CHANNELS; // The number of channels in the processors' pool
+    private static final int FIRST_KEY = 30;                               // The key of the first note played
+
+    @Test
+    public void poolsTheChannelsOfEveryOutput() {
+        Recorder[] recorders = recorders();
+        MidiProcessor processor = new MidiProcessor(recorders);
+        Set<Integer> used = new HashSet<>();
+
+        // Every note played on channel 0 gets a (port, channel) of its own until all of them are busy
+        for (int i = 0; i < CHANNELS; i++) { send(processor, ShortMessage.NOTE_ON, FIRST_KEY + i); }
+        for (int port = 0; port < PORTS; port++) {
+            List<Integer> received = recorders[port].take();
+            assertEquals(ChannelAllocator.CHANNELS, received.size());
+            for (int message : received) {
+                assertEquals(ShortMessage.NOTE_ON, PackedMidiMessage.getCommand(message));
+                assertTrue(used.add(port * ChannelAllocator.CHANNELS + PackedMidiMessage.getChannel(message)));
+            } // End for(message : received)
+        } // End for(port < PORTS)
+        for (int channel = 0; channel < CHANNELS; channel++) { assertFalse(processor.channelAvailable(channel)); }
+        assertEquals(0, processor.getStatistics().getOverflowEvents());
+
+        // Only then does a note have to share a channel
+        send(processor, ShortMessage.NOTE_ON, FIRST_KEY + CHANNELS);
+        assertEquals(1, processor.getStatistics().getOverflowEvents());
+        processor.close();
+    } // End poolsTheChannelsOfEveryOutput method
+
+    @Test
+    public void spreadsNotesAcrossTheOutputs() {
+        Recorder[] recorders = recorders();
+        MidiProcessor processor = new MidiProcessor(recorders);
+        int[] notes = new int[PORTS];
+
+        // Consecutive pooled channels belong to different outputs, so no output is ever more than one note ahead
+        for (int i = 0; i < CHANNELS; i++) {
+            int min = Integer.MAX_VALUE;
+            int max = 0;
+            send(processor, ShortMessage.NOTE_ON, FIRST_KEY + i);
+            for (int port = 0; port < PORTS; port++) {
+                notes[port] += recorders[port].take().size();
+                min = Math.min(min, notes[port]);
+                max = Math.max(max, notes[port]);
+            } // End for(port < PORTS)
+            assertTrue(max - min <= 1);
+        } // End for(i < CHANNELS)
+        processor.close();
+    } // End spreadsNotesAcrossTheOutputs method
+
+    @Test
+    public void sendsNoteOffsToTheOutputOfTheirNoteOn() {
+        Recorder[] recorders = recorders();
+        MidiProcessor processor = new MidiProcessor(recorders);
+        List<Integer> keys = new ArrayList<>();
+        int[] portOf = new int[128];
+        int[] channelOf = new int[128];
+
+        for (int i = 0; i < CHANNELS; i++) {
+            send(processor, ShortMessage.NOTE_ON, FIRST_KEY + i);
+            keys.add(FIRST_KEY + i);
+        } // End for(i < CHANNELS)
+        for (int port = 0; port < PORTS; port++) {
+            for (int message : recorders[port].take()) {
+                portOf[PackedMidiMessage.getData1(message)] = port;
+                channelOf[PackedMidiMessage.getData1(message)] = PackedMidiMessage.getChannel(message);
+            } // End for(message : take)
+        } // End for(port < PORTS)
+
+        // Release the notes in a scrambled order, each NOTE-OFF arriving only where its NOTE-ON did
+        Collections.shuffle(keys, new Random(14));
+        for (int key : keys) {
+            send(processor, ShortMessage.NOTE_OFF, key);
+            for (int port = 0; port < PORTS; port++) {
+                List<Integer> received = recorders[port].take();
+                if (port != portOf[key]) { assertEquals(0, received.size()); continue; }
+                assertEquals(1, received.size());
+                assertEquals(PackedMidiMessage.pack(ShortMessage.NOTE_OFF, channelOf[key], key, 0), (int) received.get(0));
+            } // End for(port < PORTS)
+        } // End for(key : keys)
+        assertEquals(0, processor.getStatistics().getActiveTranslations());
+        processor.close();
+    } // End sendsNoteOffsToTheOutputOfTheirNoteOn method
+
+    @Test
+    public void sendsOtherMessagesToEveryOutput() {
+        Recorder[] recorders = recorders();
+        MidiProcessor processor = new MidiProcessor(recorders);
+
+        send(processor, ShortMessage.CONTROL_CHANGE, 64);
+        for (Recorder recorder : recorders) {
+            List<Integer> received = recorder.take();
+            assertEquals(1, received.size());
+            assertEquals(PackedMidiMessage.pack(ShortMessage.CONTROL_CHANGE, 0, 64, 100), (int) received.get(0));
+        } // End for(recorder : recorders)
+        processor.close();
+    } // End sendsOtherMessagesToEveryOutput method
+
+    // Creates a recorder for each output
+    private static Recorder[] recorders() {
+        Recorder[] recorders = new Recorder[PORTS];
+        for (int i = 0; i < PORTS; i++) { recorders[i] = new Recorder(); }
+        return recorders;
+    } // End recorders method
+
+    // Sends a new short message on channel 0 to a processor, as a transmitter would
+    private static void send(MidiProcessor processor, int command, int data1) {
+        try { processor.send(new ShortMessage(command, 0, data1, command == ShortMessage.NOTE_OFF ? 0 : 100), -1); }
+        catch (InvalidMidiDataException e) { throw new IllegalStateException(e); }
+    } // End send method
+
+    // A receiver recording the messages it is sent, packed
+    private static class Recorder implements Receiver {
+        private final List<Integer> messages = new ArrayList<>(); // The messages received since they were last taken
+
+        @Override
+        public void send(MidiMessage message, long timeStamp) {
+            synchronized (messages) { messages.add(ShortMessageAccess.pack((ShortMessage) message)); }
+        } // End send method
+
+        @Override
+        public void close() {}
+
+        // Retrieves and forgets the messages received
+        List<Integer> take() {
+            synchronized (messages) {
+                List<Integer> taken = new ArrayList<>(messages);
+                messages.clear();
+                return taken;
+            } // End synchronized(messages)
+        } // End take method
+    } // End Recorder class
+} // End MidiProcessorPortsTest class
@@ -0,0 +1,192 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import org.junit.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for sending to a {@link MidiProcessor} from several threads.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class MidiProcessorTest {
+    private static final int SENDERS = 4;              // The number of threads sending in the stress test
+    private static final int NOTES_PER_SENDER = 20000; // The number of notes each sender plays in the stress test
+    private static final int REUSED_SENDS = 90;        // The number of times one message is sent in the reuse test
+
+    @Test(timeout = 10000)
+    public void sendersDoNotWaitForASlowReceiver() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        AtomicInteger received = new AtomicInteger(0);
+        MidiProcessor processor = new MidiProcessor(new Receiver() {
+            @Override
+            public void send(MidiMessage message, long timeStamp) {
+                // Stall the first message so that the second is sent while it is being delivered
+                if (received.getAndIncrement() == 0) {
+                    entered.countDown();
+                    try { proceed.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+                } // End if(first message)
+            } // End send method
+
+            @Override
+            public void close() {}
+        }); // End MidiProcessor constructor call
+        Thread stalled = new Thread(() -> send(processor, ShortMessage.NOTE_ON, 60, 100));
+
+        stalled.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // The second sender returns without waiting, leaving its message to the thread that is delivering
+        send(processor, ShortMessage.NOTE_ON, 64, 100);
+        assertEquals(1, received.get());
+        proceed.countDown();
+        stalled.join();
+        processor.close();
+
+        assertEquals(2, received.get());
+        assertEquals(2, processor.getStatistics().getMessagesOut());
+    } // End sendersDoNotWaitForASlowReceiver method
+
+    @Test(timeout = 10000)
+    public void controlOperationsParkWhileASenderForwards() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        MidiProcessor processor = new MidiProcessor(new Receiver() {
+            @Override
+            public void send(MidiMessage message, long timeStamp) {
+                entered.countDown();
+                try { proceed.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            } // End send method
+
+            @Override
+            public void close() {}
+        }); // End MidiProcessor constructor call
+        Thread stalled = new Thread(() -> send(processor, ShortMessage.NOTE_ON, 60, 100));
+        Thread control = new Thread(() -> processor.channelAvailable(0));
+
+        stalled.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // The control operation waits for the sender to finish forwarding, parked rather than spinning
+        control.start();
+        while (control.getState() != Thread.State.WAITING) { Thread.sleep(1); }
+        proceed.countDown();
+        stalled.join();
+        control.join();
+        processor.close();
+    } // End controlOperationsParkWhileASenderForwards method
+
+    @Test(timeout = 10000)
+    public void forwardsTheContentsOfAReusedMessage() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        List<Integer> keys = Collections.synchronizedList(new ArrayList<>());
+        MidiProcessor processor = new MidiProcessor(new Receiver() {
+            @Override
+            public void send(MidiMessage message, long timeStamp) {
+                // Stall the first message so that the reused message is queued while it is being delivered
+                keys.add(((ShortMessage) message).getData1());
+                if (keys.size() == 1) {
+                    entered.countDown();
+                    try { proceed.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+                } // End if(first message)
+            } // End send method
+
+            @Override
+            public void close() {}
+        }); // End MidiProcessor constructor call
+        Thread stalled = new Thread(() -> send(processor, ShortMessage.NOTE_ON, 20, 100));
+        ShortMessage reused = new ShortMessage();
+        List<Integer> expected = new ArrayList<>();
+
+        stalled.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // Every send returns before its message is forwarded, so each one must be queued with its contents at the time
+        expected.add(20);
+        for (int key = 30; key < 30 + REUSED_SENDS; key++) {
+            reused.setMessage(ShortMessage.NOTE_ON, 0, key, 100);
+            processor.send(reused, -1);
+            expected.add(key);
+        } // End for(key < 30 + REUSED_SENDS)
+        reused.setMessage(ShortMessage.CONTROL_CHANGE, 0, 0, 0);
+        proceed.countDown();
+        stalled.join();
+        processor.close();
+
+        assertEquals(expected, keys);
+    } // End forwardsTheContentsOfAReusedMessage method
+
+    @Test(timeout = 60000)
+    public void releasesEveryNoteSentConcurrently() throws Exception {
+        AtomicInteger noteOns = new AtomicInteger(0);
+        AtomicInteger noteOffs = new AtomicInteger(0);
+        MidiProcessor processor = new MidiProcessor(new Receiver() {
+            @Override
+            public void send(MidiMessage message, long timeStamp) {
+                if (((ShortMessage) message).getCommand() == ShortMessage.NOTE_ON) { noteOns.incrementAndGet(); }
+                else { noteOffs.incrementAndGet(); }
+            } // End send method
+
+            @Override
+            public void close() {}
+        }); // End MidiProcessor constructor call
+        Thread[] senders = new Thread[SENDERS];
+
+        for (int i = 0; i < SENDERS; i++) {
+            int key = 60 + i;
+            senders[i] = new Thread(() -> {
+                for (int n = 0; n < NOTES_PER_SENDER; n++) {
+                    send(processor, ShortMessage.NOTE_ON, key, 100);
+                    send(processor, ShortMessage.NOTE_OFF, key, 0);
+                } // End for(n < NOTES_PER_SENDER)
+            }); // End Thread constructor call
+            senders[i].start();
+        } // End for(i < SENDERS)
+        for (Thread t : senders) { t.join(); }
+        processor.close();
+
+        assertEquals(SENDERS * NOTES_PER_SENDER, noteOns.get());
+        assertEquals(SENDERS * NOTES_PER_SENDER, noteOffs.get());
+        assertEquals(0, processor.getStatistics().getActiveTranslations());
+        for (int uses : processor.getStatistics().getChannelUses()) { assertEquals(0, uses); }
+    } // End releasesEveryNoteSentConcurrently method
+
+    // Sends a new short message to a processor, as a transmitter would
+    private static void send(MidiProcessor processor, int command, int key, int velocity) {
+        try { processor.send(new ShortMessage(command, 0, key, velocity), -1); }
+        catch (InvalidMidiDataException e) { throw new IllegalStateException(e); }
+    } // End send method
+} // End MidiProcessorTest class
@@ -0,0 +1,154 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+
+import org.junit.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests for {@link MidiProcessor#enableVoiceStealing(VoiceStealing)}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class MidiProcessorVoiceStealingTest {
+    private static final int CHANNELS = 16;  // The number of channels of the processor's single output
+    private static final int FIRST_KEY = 40; // The key of the first note filling the channels
+
+    @Test
+    public void stealsTheOldestNote() {
+        Recorder recorder = new Recorder();
+        MidiProcessor processor = new MidiProcessor(recorder);
+        int[] channels;
+
+        processor.enableVoiceStealing(VoiceStealing.OLDEST);
+        channels = fillChannels(processor, recorder, -1);
+
+        // The first note is ended on its channel just before the new note takes the channel over
+        send(processor, ShortMessage.NOTE_ON, 70, 100);
+        assertEquals(Arrays.asList(
+                PackedMidiMessage.pack(ShortMessage.NOTE_OFF, channels[0], FIRST_KEY, 0),
+                PackedMidiMessage.pack(ShortMessage.NOTE_ON, channels[0], 70, 100)
+        ), recorder.take()); // End assertEquals call
+        assertStolenNoteOffIsDropped(processor, recorder, FIRST_KEY, channels[0]);
+        processor.close();
+    } // End stealsTheOldestNote method
+
+    @Test
+    public void stealsTheQuietestNote() {
+        Recorder recorder = new Recorder();
+        MidiProcessor processor = new MidiProcessor(recorder);
+        int quietest = 5; // The index of the note played quietest, which isn't the oldest
+        int[] channels;
+
+        processor.enableVoiceStealing(VoiceStealing.QUIETEST);
+        channels = fillChannels(processor, recorder, quietest);
+
+        send(processor, ShortMessage.NOTE_ON, 70, 100);
+        assertEquals(Arrays.asList(
+                PackedMidiMessage.pack(ShortMessage.NOTE_OFF, channels[quietest], FIRST_KEY + quietest, 0),
+                PackedMidiMessage.pack(ShortMessage.NOTE_ON, channels[quietest], 70, 100)
+        ), recorder.take()); // End assertEquals call
+        assertStolenNoteOffIsDropped(processor, recorder, FIRST_KEY + quietest, channels[quietest]);
+        processor.close();
+    } // End stealsTheQuietestNote method
+
+    @Test
+    public void sharesAChannelWithoutVoiceStealing() {
+        Recorder recorder = new Recorder();
+        MidiProcessor processor = new MidiProcessor(recorder);
+        List<Integer> forwarded;
+
+        fillChannels(processor, recorder, -1);
+
+        // No note is ended, so the new note stacks onto a busy channel and every NOTE-OFF is forwarded
+        send(processor, ShortMessage.NOTE_ON, 70, 100);
+        forwarded = recorder.take();
+        assertEquals(1, forwarded.size());
+        assertEquals(ShortMessage.NOTE_ON, PackedMidiMessage.getCommand(forwarded.get(0)));
+        send(processor, ShortMessage.NOTE_OFF, FIRST_KEY, 0);
+        assertEquals(1, recorder.take().size());
+        assertEquals(0, processor.getStatistics().getStolenNotes());
+        processor.close();
+    } // End sharesAChannelWithoutVoiceStealing method
+
+    // Holds a note on every channel, one key apart and all at the same velocity except one played quietly if quiet isn't
+    // -1, returning the channel each note was assigned
+    private static int[] fillChannels(MidiProcessor processor, Recorder recorder, int quiet) {
+        int[] channels = new int[CHANNELS];
+        List<Integer> forwarded;
+
+        for (int i = 0; i < CHANNELS; i++) { send(processor, ShortMessage.NOTE_ON, FIRST_KEY + i, i == quiet ? 20 : 100); }
+        forwarded = recorder.take();
+        assertEquals(CHANNELS, forwarded.size());
+        for (int i = 0; i < CHANNELS; i++) { channels[i] = PackedMidiMessage.getChannel(forwarded.get(i)); }
+        for (int channel = 0; channel < CHANNELS; channel++) { assertFalse(processor.channelAvailable(channel)); }
+        return channels;
+    } // End fillChannels method
+
+    // Checks that the NOTE-OFF sent for a stolen note is dropped, so the note that took over its channel keeps playing
+    // until its own NOTE-OFF
+    private static void assertStolenNoteOffIsDropped(MidiProcessor processor, Recorder recorder, int stolenKey, int channel) {
+        send(processor, ShortMessage.NOTE_OFF, stolenKey, 0);
+        assertEquals(0, recorder.take().size());
+        send(processor, ShortMessage.NOTE_OFF, 70, 0);
+        assertEquals(Arrays.asList(PackedMidiMessage.pack(ShortMessage.NOTE_OFF, channel, 70, 0)), recorder.take());
+        assertEquals(1, processor.getStatistics().getStolenNotes());
+        assertEquals(CHANNELS - 1, processor.getStatistics().getActiveTranslations());
+    } // End assertStolenNoteOffIsDropped method
+
+    // Sends a new short message on channel 0 to a processor, as a transmitter would
+    private static void send(MidiProcessor processor, int command, int key, int velocity) {
+        try { processor.send(new ShortMessage(command, 0, key, velocity), -1); }
+        catch (InvalidMidiDataException e) { throw new IllegalStateException(e); }
+    } // End send method
+
+    // A receiver recording the messages it is sent, packed
+    private static class Recorder implements Receiver {
+        private final List<Integer> messages = new ArrayList<>(); // The messages received since they were last taken
+
+        @Override
+        public void send(MidiMessage message, long timeStamp) {
+            synchronized (messages) { messages.add(ShortMessageAccess.pack((ShortMessage) message)); }
+        } // End send method
+
+        @Override
+        public void close() {}
+
+        // Retrieves and forgets the messages received
+        List<Integer> take() {
+            synchronized (messages) {
+                List<Integer> taken = new ArrayList<>(messages);
+                messages.clear();
+                return taken;
+            } // End synchronized(messages)
+        } // End take method
+    } // End Recorder class
+} // End MidiProcessorVoiceStealingTest class
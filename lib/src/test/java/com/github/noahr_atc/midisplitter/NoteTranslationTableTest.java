@@ -0,0 +1,233 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link NoteTranslationTable}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class NoteTranslationTableTest {
+    private static final long LIFETIME = TimeUnit.MILLISECONDS.toNanos(100); // The lifetime of entries in the expiry tests
+
+    @Test
+    public void removesTranslationsOfAKeyInOrder() {
+        NoteTranslationTable table = new NoteTranslationTable();
+        table.put(0, 60, 3, 100);
+        table.put(0, 60, 7, 100);
+        table.put(0, 60, 1, 100);
+
+        assertEquals(3, table.size());
+        assertEquals(3, table.remove(0, 60));
+        assertEquals(7, table.remove(0, 60));
+        assertEquals(1, table.remove(0, 60));
+        assertEquals(-1, table.remove(0, 60));
+        assertEquals(0, table.size());
+    } // End removesTranslationsOfAKeyInOrder method
+
+    @Test
+    public void keepsKeysSeparate() {
+        NoteTranslationTable table = new NoteTranslationTable();
+        table.put(0, 60, 3, 100);
+        table.put(1, 60, 4, 100);
+        table.put(0, 61, 5, 100);
+
+        assertEquals(5, table.remove(0, 61));
+        assertEquals(4, table.remove(1, 60));
+        assertEquals(3, table.remove(0, 60));
+    } // End keepsKeysSeparate method
+
+    @Test
+    public void wrapsAroundTheQueueOfAKey() {
+        NoteTranslationTable table = new NoteTranslationTable();
+
+        // Keep the queue half full while cycling through it several times
+        for (int i = 0; i < NoteTranslationTable.MAX_QUEUE_DEPTH / 2; i++) { table.put(2, 40, i, 100); }
+        for (int i = NoteTranslationTable.MAX_QUEUE_DEPTH / 2; i < NoteTranslationTable.MAX_QUEUE_DEPTH * 4; i++) {
+            assertEquals(i - NoteTranslationTable.MAX_QUEUE_DEPTH / 2, table.remove(2, 40));
+            table.put(2, 40, i, 100);
+        } // End for(i < MAX_QUEUE_DEPTH * 4)
+        assertEquals(NoteTranslationTable.MAX_QUEUE_DEPTH / 2, table.size());
+    } // End wrapsAroundTheQueueOfAKey method
+
+    @Test
+    public void refusesTranslationsBeyondTheQueueDepth() {
+        NoteTranslationTable table = new NoteTranslationTable();
+
+        for (int i = 0; i < NoteTranslationTable.MAX_QUEUE_DEPTH; i++) {
+            assertTrue(table.canPut(0, 60));
+            table.put(0, 60, i, 100);
+        } // End for(i < MAX_QUEUE_DEPTH)
+        assertFalse(table.canPut(0, 60));
+        assertTrue(table.canPut(0, 61));
+        table.remove(0, 60);
+        assertTrue(table.canPut(0, 60));
+    } // End refusesTranslationsBeyondTheQueueDepth method
+
+    @Test
+    public void clearForgetsEveryTranslation() {
+        NoteTranslationTable table = new NoteTranslationTable();
+        table.put(0, 60, 3, 100);
+        table.put(15, 127, 9, 100);
+        table.clear();
+
+        assertEquals(0, table.size());
+        assertEquals(-1, table.remove(0, 60));
+        assertEquals(-1, table.remove(15, 127));
+
+        // A key written after the clear starts with an empty queue rather than the stale entries
+        table.put(0, 60, 11, 100);
+        assertEquals(1, table.size());
+        assertEquals(11, table.remove(0, 60));
+        assertEquals(-1, table.remove(0, 60));
+    } // End clearForgetsEveryTranslation method
+
+    @Test
+    public void clearsRepeatedly() {
+        NoteTranslationTable table = new NoteTranslationTable();
+
+        for (int generation = 0; generation < 1000; generation++) {
+            table.put(generation % 16, generation % 128, generation % 64, 100);
+            assertEquals(1, table.size());
+            table.clear();
+            assertEquals(-1, table.remove(generation % 16, generation % 128));
+        } // End for(generation < 1000)
+    } // End clearsRepeatedly method
+
+    @Test
+    public void keepsTranslationsWhenGrown() {
+        NoteTranslationTable table = new NoteTranslationTable();
+        table.put(5, 60, 3, 100);
+        table.ensureSourceChannels(3 * NoteTranslationTable.CHANNELS);
+
+        assertEquals(3 * NoteTranslationTable.CHANNELS, table.getSourceChannels());
+        assertEquals(-1, table.remove(40, 60));
+        table.put(40, 60, 8, 100);
+        assertEquals(3, table.remove(5, 60));
+        assertEquals(8, table.remove(40, 60));
+    } // End keepsTranslationsWhenGrown method
+
+    @Test
+    public void neverExpiresWithoutALifetime() {
+        NoteTranslationTable table = new NoteTranslationTable();
+        table.put(0, 60, 3, 100);
+
+        assertEquals(0, table.getTickNanos());
+        assertEquals(-1, table.expire(System.nanoTime() + TimeUnit.HOURS.toNanos(1)));
+        assertEquals(-1, table.reclaimOldest());
+        assertEquals(1, table.size());
+    } // End neverExpiresWithoutALifetime method
+
+    @Test
+    public void expiresTranslationsOnceTheirLifetimeEnds() {
+        NoteTranslationTable table = new NoteTranslationTable();
+        long now = System.nanoTime();
+        table.setLifetime(LIFETIME, now);
+        table.put(0, 60, 3, 100);
+
+        assertEquals(-1, table.expire(now));
+        assertEquals((60 << 8) | 3, table.expire(System.nanoTime() + 2 * LIFETIME));
+        assertEquals(-1, table.expire(System.nanoTime() + 2 * LIFETIME));
+        assertEquals(0, table.size());
+        assertEquals(-1, table.remove(0, 60));
+    } // End expiresTranslationsOnceTheirLifetimeEnds method
+
+    @Test
+    public void expiresTheTranslationsOfAKeyInOrder() {
+        NoteTranslationTable table = new NoteTranslationTable();
+        long later;
+        table.setLifetime(LIFETIME, System.nanoTime());
+        table.put(1, 60, 3, 100);
+        table.put(1, 60, 7, 100);
+        later = System.nanoTime() + 2 * LIFETIME;
+
+        assertEquals((188 << 8) | 3, table.expire(later)); // Source channel 1, note 60
+        assertEquals((188 << 8) | 7, table.expire(later));
+        assertEquals(-1, table.expire(later));
+    } // End expiresTheTranslationsOfAKeyInOrder method
+
+    @Test
+    public void catchesUpAfterFallingBehind() {
+        NoteTranslationTable table = new NoteTranslationTable();
+        table.setLifetime(LIFETIME, System.nanoTime());
+        table.put(0, 60, 3, 100);
+
+        // Sweeping hasn't happened for far longer than a full rotation of the timing wheel
+        assertEquals((60 << 8) | 3, table.expire(System.nanoTime() + TimeUnit.HOURS.toNanos(1)));
+        assertEquals(0, table.size());
+    } // End catchesUpAfterFallingBehind method
+
+    @Test
+    public void givesQueuedTranslationsAFullLifetimeWhenEnabled() {
+        NoteTranslationTable table = new NoteTranslationTable();
+        long now;
+        table.put(0, 60, 3, 100);
+        now = System.nanoTime();
+        table.setLifetime(LIFETIME, now);
+
+        assertEquals(-1, table.expire(now + LIFETIME / 2));
+        assertEquals((60 << 8) | 3, table.expire(now + 2 * LIFETIME));
+    } // End givesQueuedTranslationsAFullLifetimeWhenEnabled method
+
+    @Test
+    public void stopsExpiringWhenTheLifetimeIsCleared() {
+        NoteTranslationTable table = new NoteTranslationTable();
+        long now = System.nanoTime();
+        table.setLifetime(LIFETIME, now);
+        table.put(0, 60, 3, 100);
+        table.setLifetime(0, now);
+
+        assertEquals(-1, table.expire(System.nanoTime() + 2 * LIFETIME));
+        assertEquals(3, table.remove(0, 60));
+    } // End stopsExpiringWhenTheLifetimeIsCleared method
+
+    @Test
+    public void reclaimsTheOldestTranslationBeforeItExpires() {
+        NoteTranslationTable table = new NoteTranslationTable();
+        table.setLifetime(LIFETIME, System.nanoTime());
+        table.put(0, 60, 3, 100);
+        table.put(0, 61, 4, 100);
+
+        assertEquals((60 << 8) | 3, table.reclaimOldest());
+        assertEquals((61 << 8) | 4, table.reclaimOldest());
+        assertEquals(-1, table.reclaimOldest());
+        assertEquals(0, table.size());
+    } // End reclaimsTheOldestTranslationBeforeItExpires method
+
+    @Test
+    public void skipsStolenTranslationsWhenExpiring() {
+        NoteTranslationTable table = new NoteTranslationTable();
+        table.setLifetime(LIFETIME, System.nanoTime());
+        table.setVoiceStealing(VoiceStealing.OLDEST);
+        table.put(0, 60, 3, 100);
+
+        assertEquals((60 << 8) | 3, table.steal());
+        assertEquals(-1, table.expire(System.nanoTime() + 2 * LIFETIME));
+        assertEquals(-1, table.remove(0, 60));
+    } // End skipsStolenTranslationsWhenExpiring method
+} // End NoteTranslationTableTest class
@@ -0,0 +1,131 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import org.junit.Test;
+
+import javax.sound.midi.ShortMessage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ScheduledOutputStage}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class ScheduledOutputStageTest {
+    private static final long BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(50); // The latency budget of the timing tests
+    private static final long SPACING_MICROS = 30_000; // The difference between the timestamps of the timing tests' messages
+
+    @Test(timeout = 10000)
+    public void forwardsMessagesOneBudgetAfterTheirTimestamp() throws Exception {
+        LatencyHistogram jitter = new LatencyHistogram();
+        List<Long> forwardedAt = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> forwarded = Collections.synchronizedList(new ArrayList<>());
+        ScheduledOutputStage stage = new ScheduledOutputStage(16, BUDGET_NANOS, jitter, (message, port, timeStamp) -> {
+            forwardedAt.add(System.nanoTime());
+            forwarded.add(((ShortMessage) message).getData1());
+        }); // End ScheduledOutputStage constructor call
+        long start = System.nanoTime();
+
+        // Both messages arrive together, so the later timestamp looks least delayed and relates the device clock, and the
+        // earlier one was played one spacing before it
+        stage.publish(note(64), 1_000_000 + SPACING_MICROS);
+        stage.publish(note(60), 1_000_000);
+        while (forwardedAt.size() < 2) { Thread.sleep(1); }
+        stage.shutdown();
+
+        assertEquals(Arrays.asList(60, 64), forwarded);
+        assertTrue(forwardedAt.get(1) - start >= BUDGET_NANOS);
+        assertTrue(forwardedAt.get(0) - start >= BUDGET_NANOS - TimeUnit.MICROSECONDS.toNanos(SPACING_MICROS));
+        assertTrue(forwardedAt.get(1) - forwardedAt.get(0) >= TimeUnit.MICROSECONDS.toNanos(SPACING_MICROS) - TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(2, jitter.getCount());
+    } // End forwardsMessagesOneBudgetAfterTheirTimestamp method
+
+    @Test(timeout = 10000)
+    public void forwardsMessagesWithoutATimestampOneBudgetAfterTheyArrive() throws Exception {
+        List<Long> forwardedAt = Collections.synchronizedList(new ArrayList<>());
+        List<Long> timeStamps = Collections.synchronizedList(new ArrayList<>());
+        ScheduledOutputStage stage = new ScheduledOutputStage(16, BUDGET_NANOS, new LatencyHistogram(), (message, port, timeStamp) -> {
+            forwardedAt.add(System.nanoTime());
+            timeStamps.add(timeStamp);
+        }); // End ScheduledOutputStage constructor call
+        long start = System.nanoTime();
+
+        stage.publish(note(60), -1);
+        while (forwardedAt.isEmpty()) { Thread.sleep(1); }
+        stage.shutdown();
+
+        assertTrue(forwardedAt.get(0) - start >= BUDGET_NANOS);
+        assertEquals(-1, (long) timeStamps.get(0));
+    } // End forwardsMessagesWithoutATimestampOneBudgetAfterTheyArrive method
+
+    @Test(timeout = 10000)
+    public void ordersMessagesByTimestampThenArrival() throws Exception {
+        List<Integer> forwarded = Collections.synchronizedList(new ArrayList<>());
+        ScheduledOutputStage stage = new ScheduledOutputStage(256, BUDGET_NANOS, new LatencyHistogram(), (message, port, timeStamp) -> {
+            forwarded.add(((ShortMessage) message).getData1());
+        }); // End ScheduledOutputStage constructor call
+        List<Integer> expected = new ArrayList<>();
+
+        // A later timestamp published first is held back behind every message with the earlier, equal timestamp, which
+        // keep the order they were published in
+        stage.publish(note(0), 1_000_000 + SPACING_MICROS);
+        for (int key = 1; key <= 100; key++) {
+            stage.publish(note(key), 1_000_000);
+            expected.add(key);
+        } // End for(key <= 100)
+        expected.add(0);
+        while (forwarded.size() < expected.size()) { Thread.sleep(1); }
+        stage.shutdown();
+
+        assertEquals(expected, forwarded);
+    } // End ordersMessagesByTimestampThenArrival method
+
+    @Test(timeout = 10000)
+    public void forwardsHeldMessagesImmediatelyOnShutdown() {
+        LatencyHistogram jitter = new LatencyHistogram();
+        List<Integer> forwarded = new ArrayList<>();
+        ScheduledOutputStage stage = new ScheduledOutputStage(16, TimeUnit.SECONDS.toNanos(60), jitter, (message, port, timeStamp) -> {
+            forwarded.add(((ShortMessage) message).getData1());
+        }); // End ScheduledOutputStage constructor call
+        long start = System.nanoTime();
+
+        stage.publish(note(64), 1_000_000 + SPACING_MICROS);
+        stage.publish(note(60), 1_000_000);
+        stage.publish(note(67), -1);
+        stage.shutdown();
+
+        // The messages are forwarded long before their due time, in due order, and aren't counted as being on time
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(Arrays.asList(60, 64, 67), forwarded);
+        assertEquals(0, jitter.getCount());
+        assertEquals(0, stage.getDepth());
+    } // End forwardsHeldMessagesImmediatelyOnShutdown method
+
+    // Creates a NOTE-ON on channel 0, packed
+    private static int note(int key) { return PackedMidiMessage.pack(ShortMessage.NOTE_ON, 0, key, 100); }
+} // End ScheduledOutputStageTest class
@@ -0,0 +1,105 @@
+package com.github.noahr_atc.midisplitter;
+
+/*
+Copyright 2020 Noah Reeder
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import org.junit.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.ShortMessage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests for {@link ShortMessageAccess}. The backing bytes of plain {@link ShortMessage}s are only written directly if the
+ * JVM opens {@code javax.sound.midi}, which the lib module's build does on Java 9 and later; subclasses are always
+ * rewritten through {@code setMessage}.
+ *
+ * @author Noah Reeder
+ * @version 1.0
+ * @since 1.1.2
+ */
+public class ShortMessageAccessTest {
+    @Test
+    public void rewritesTheChannelOfPlainNoteMessages() throws InvalidMidiDataException {
+        assertRewritesChannel(new ShortMessage(ShortMessage.NOTE_ON, 3, 60, 100));
+        assertRewritesChannel(new ShortMessage(ShortMessage.NOTE_OFF, 3, 60, 0));
+    } // End rewritesTheChannelOfPlainNoteMessages method
+
+    @Test
+    public void rewritesTheBackingBytesWhenOpened() throws InvalidMidiDataException {
+        ShortMessage message = new ShortMessage(ShortMessage.NOTE_ON, 3, 60, 100);
+
+        assumeTrue("javax.sound.midi isn't opened to the tests", ShortMessageAccess.isAvailable());
+        assertRewritesChannel(message);
+
+        // The rewrite skips setMessage's validation but must still leave a message every getter agrees on
+        ShortMessageAccess.setChannel(message, 15);
+        assertEquals(0x9F, message.getStatus());
+        assertEquals(PackedMidiMessage.pack(ShortMessage.NOTE_ON, 15, 60, 100), ShortMessageAccess.pack(message));
+    } // End rewritesTheBackingBytesWhenOpened method
+
+    @Test
+    public void rewritesSubclassesThroughSetMessage() throws InvalidMidiDataException {
+        CountingShortMessage noteOn = new CountingShortMessage(ShortMessage.NOTE_ON, 3, 60, 100);
+        CountingShortMessage noteOff = new CountingShortMessage(ShortMessage.NOTE_OFF, 3, 60, 0);
+
+        assertRewritesChannel(noteOn);
+        assertRewritesChannel(noteOff);
+        assertEquals(1, noteOn.rewrites);
+        assertEquals(1, noteOff.rewrites);
+    } // End rewritesSubclassesThroughSetMessage method
+
+    @Test
+    public void packsThroughTheGetters() throws InvalidMidiDataException {
+        assertEquals(0x643C93, ShortMessageAccess.pack(new ShortMessage(ShortMessage.NOTE_ON, 3, 60, 100)));
+        assertEquals(0x003C83, ShortMessageAccess.pack(new CountingShortMessage(ShortMessage.NOTE_OFF, 3, 60, 0)));
+    } // End packsThroughTheGetters method
+
+    // Moves a message on channel 3 to channel 9, checking that only the channel changed
+    private static void assertRewritesChannel(ShortMessage message) {
+        int command = message.getCommand();
+        int data1 = message.getData1();
+        int data2 = message.getData2();
+
+        ShortMessageAccess.setChannel(message, 9);
+        assertEquals(command | 9, message.getStatus());
+        assertEquals(command, message.getCommand());
+        assertEquals(9, message.getChannel());
+        assertEquals(data1, message.getData1());
+        assertEquals(data2, message.getData2());
+        assertEquals(3, message.getLength());
+        assertArrayEquals(new byte[]{(byte) (command | 9), (byte) data1, (byte) data2}, message.getMessage());
+    } // End assertRewritesChannel method
+
+    // A ShortMessage subclass counting how often it is rewritten through setMessage
+    private static class CountingShortMessage extends ShortMessage {
+        private int rewrites = 0; // The number of setMessage calls after construction
+
+        CountingShortMessage(int command, int channel, int data1, int data2) throws InvalidMidiDataException {
+            super(new byte[]{(byte) (command | channel), (byte) data1, (byte) data2});
+        } // End CountingShortMessage(int, int, int, int) constructor
+
+        @Override
+        public void setMessage(int command, int channel, int data1, int data2) throws InvalidMidiDataException {
+            rewrites++;
+            super.setMessage(command, channel, data1, data2);
+        } // End setMessage method
+    } // End CountingShortMessage class
+} // End ShortMessageAccessTest class